@@ -16,21 +16,33 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
 
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccountData;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRDataDeletion;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRUserData;
 import io.swagger.annotations.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
 
 @Api(tags = "Data API", description = "the internal Data API")
 @RequestMapping("/admin/data")
 public interface DataApi {
 
+    /**
+     * Newline delimited JSON: one JSON document per line.
+     */
+    String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @ApiOperation(value = "Returns all Account data", nickname = "exportAccountData",
             notes = "Returns a paginated list of Account data", response = FRAccountData.class)
     @ApiResponses(value = {
@@ -132,4 +144,87 @@ public interface DataApi {
             @ApiParam(value = "UserId", required = true)
             @RequestParam("userId") String userId
     );
+
+    @ApiOperation(value = "Export User data as NDJSON", nickname = "exportUserDataNdjson",
+            notes = "Streams all data for a user, one document per line. Each line is an object with the 'type' " +
+                    "(collection) and the 'document' (in MongoDB Extended JSON) of the exported document. " +
+                    "Accounts come first, so the output can be imported as is.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Streams the data for a User"),
+            @ApiResponse(code = 400, message = "Bad request"),
+            @ApiResponse(code = 403, message = "Forbidden"),
+            @ApiResponse(code = 404, message = "Not found"),
+            @ApiResponse(code = 405, message = "Method Not Allowed"),
+            @ApiResponse(code = 406, message = "Not Acceptable"),
+            @ApiResponse(code = 429, message = "Too Many Requests"),
+            @ApiResponse(code = 500, message = "Internal Server Error")})
+    @RequestMapping(value = "/user/ndjson", method = RequestMethod.GET, produces = APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> exportUserDataNdjson(
+            @ApiParam(value = "UserId", required = true)
+            @RequestParam("userId") String userId
+    );
+
+    @ApiOperation(value = "Import User data as NDJSON", nickname = "importUserDataNdjson",
+            notes = "Creates data for a user from one document per line, as produced by exportUserDataNdjson. " +
+                    "The documents are written in batches as they are read, so an import that fails part way " +
+                    "leaves the documents of the previous batches in place. Returns the number of documents " +
+                    "imported per type.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The user's data was created"),
+            @ApiResponse(code = 400, message = "Bad request"),
+            @ApiResponse(code = 403, message = "Forbidden"),
+            @ApiResponse(code = 404, message = "Not found"),
+            @ApiResponse(code = 405, message = "Method Not Allowed"),
+            @ApiResponse(code = 406, message = "Not Acceptable"),
+            @ApiResponse(code = 409, message = "Conflict"),
+            @ApiResponse(code = 413, message = "Payload Too Large"),
+            @ApiResponse(code = 429, message = "Too Many Requests"),
+            @ApiResponse(code = 500, message = "Internal Server Error")})
+    @RequestMapping(value = "/user/ndjson", method = RequestMethod.POST, consumes = APPLICATION_NDJSON_VALUE)
+    ResponseEntity<Map<String, Long>> importUserDataNdjson(
+            @ApiParam(value = "UserId", required = true)
+            @RequestParam("userId") String userId,
+            @ApiParam(value = "UserData", required = true)
+            InputStream userData
+    ) throws IOException;
+
+    @ApiOperation(value = "Delete User data in bulk", nickname = "bulkDeleteUserData",
+            notes = "Deletes a user's data from Mongo DB with one delete per collection and reports the number of " +
+                    "documents deleted from each collection. When 'async' is true the deletion runs in the " +
+                    "background and its progress can be followed with getDataDeletion.",
+            response = FRDataDeletion.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The user's data was deleted", response = FRDataDeletion.class),
+            @ApiResponse(code = 202, message = "The deletion of the user's data has been started", response = FRDataDeletion.class),
+            @ApiResponse(code = 400, message = "Bad request"),
+            @ApiResponse(code = 403, message = "Forbidden"),
+            @ApiResponse(code = 404, message = "Not found"),
+            @ApiResponse(code = 405, message = "Method Not Allowed"),
+            @ApiResponse(code = 406, message = "Not Acceptable"),
+            @ApiResponse(code = 429, message = "Too Many Requests"),
+            @ApiResponse(code = 500, message = "Internal Server Error")})
+    @RequestMapping(value = "/user/bulk", method = RequestMethod.DELETE)
+    ResponseEntity<FRDataDeletion> bulkDeleteUserData(
+            @ApiParam(value = "UserId", required = true)
+            @RequestParam("userId") String userId,
+            @ApiParam(value = "Async")
+            @RequestParam(name = "async", defaultValue = "false") boolean async
+    );
+
+    @ApiOperation(value = "Get a deletion of User data", nickname = "getDataDeletion",
+            notes = "Returns the status of a deletion started by bulkDeleteUserData", response = FRDataDeletion.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The status of the deletion", response = FRDataDeletion.class),
+            @ApiResponse(code = 400, message = "Bad request"),
+            @ApiResponse(code = 403, message = "Forbidden"),
+            @ApiResponse(code = 404, message = "Not found"),
+            @ApiResponse(code = 405, message = "Method Not Allowed"),
+            @ApiResponse(code = 406, message = "Not Acceptable"),
+            @ApiResponse(code = 429, message = "Too Many Requests"),
+            @ApiResponse(code = 500, message = "Internal Server Error")})
+    @RequestMapping(value = "/user/deletions/{jobId}", method = RequestMethod.GET)
+    ResponseEntity<FRDataDeletion> getDataDeletion(
+            @ApiParam(value = "JobId", required = true)
+            @PathVariable("jobId") String jobId
+    );
 }
@@ -16,13 +16,17 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
 
 import com.forgerock.securebanking.openbanking.uk.error.OBErrorException;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRSyntheticDataProfile;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRUserData;
 import io.swagger.annotations.*;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.Map;
+
 @Api(tags = "Fake Data API", description = "API for generating 'fake' data within Mongo DB")
 @RequestMapping(value = "/admin/fake-data")
 public interface FakeDataApi {
@@ -47,4 +51,23 @@ public interface FakeDataApi {
             @ApiParam(value = "Profile")
             @RequestParam(name = "profile", required = false) String profile
     ) throws OBErrorException;
+
+    @ApiOperation(value = "Generate Synthetic Data", nickname = "generateSyntheticData",
+            notes = "Generates a large, reproducible dataset for load testing. Returns the number of documents " +
+                    "inserted in each collection", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Data generated successfully", response = Map.class),
+            @ApiResponse(code = 400, message = "Bad request"),
+            @ApiResponse(code = 403, message = "Forbidden"),
+            @ApiResponse(code = 404, message = "Not found"),
+            @ApiResponse(code = 405, message = "Method Not Allowed"),
+            @ApiResponse(code = 406, message = "Not Acceptable"),
+            @ApiResponse(code = 429, message = "Too Many Requests"),
+            @ApiResponse(code = 500, message = "Internal Server Error")})
+    @RequestMapping(value = "/synthetic",
+            method = RequestMethod.POST)
+    ResponseEntity<Map<String, Long>> generateSyntheticData(
+            @ApiParam(value = "Synthetic data profile", required = true)
+            @RequestBody FRSyntheticDataProfile profile
+    );
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The shape of a synthetic dataset, used to load test the simulator. The same profile (including the seed) always
+ * generates the same users, accounts and transactions, relative to the current month.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FRSyntheticDataProfile {
+
+    /**
+     * The seed of the random generator.
+     */
+    private long seed = 0;
+    /**
+     * The prefix of the generated user IDs, followed by the index of each user.
+     */
+    private String userIdPrefix = "synthetic-user-";
+    private int users = 10;
+    private int accountsPerUser = 3;
+    /**
+     * The mean number of transactions of each account.
+     */
+    private int transactionsPerAccount = 100;
+    private TransactionDistribution transactionDistribution = TransactionDistribution.UNIFORM;
+    /**
+     * The number of monthly statements of each account, which the transactions are spread over.
+     */
+    private int statementMonths = 12;
+
+    public enum TransactionDistribution {
+        /**
+         * Every account has exactly the mean number of transactions.
+         */
+        FIXED,
+        /**
+         * The number of transactions is uniformly distributed between zero and twice the mean.
+         */
+        UNIFORM,
+        /**
+         * Most accounts have few transactions, and a few accounts have a lot of them.
+         */
+        EXPONENTIAL
+    }
+}
@@ -21,6 +21,8 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment;
 
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRFundsConfirmationResponse;
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationBatchRequest;
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationBatchResponse;
 import com.forgerock.securebanking.openbanking.uk.error.OBErrorResponseException;
 import io.swagger.annotations.*;
 import org.springframework.http.ResponseEntity;
@@ -28,6 +30,7 @@ import org.springframework.web.bind.annotation.*;
 import uk.org.openbanking.datamodel.error.OBErrorResponse1;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
 import java.security.Principal;
 
 @Api(value = "backoffice-payment-funds", description = "the Payment Funds Confirmation API")
@@ -72,4 +75,42 @@ public interface PaymentFundsConfirmationApi {
             Principal principal
     ) throws OBErrorResponseException;
 
-}
\ No newline at end of file
+    @ApiOperation(value = "Get Payment Funds Confirmations",
+            nickname = "getPaymentFundsConfirmations",
+            notes = "Checks the availability of funds for several accounts and amounts at once. The result of each " +
+                    "item is returned in the same order as requested.",
+            response = FRFundsConfirmationBatchResponse.class,
+            tags = {"Payment Funds Confirmation",})
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Payment Funds Confirmations", response = FRFundsConfirmationBatchResponse.class),
+            @ApiResponse(code = 400, message = "Bad request", response = OBErrorResponse1.class),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 403, message = "Forbidden", response = OBErrorResponse1.class),
+            @ApiResponse(code = 404, message = "Not found"),
+            @ApiResponse(code = 405, message = "Method Not Allowed"),
+            @ApiResponse(code = 406, message = "Not Acceptable"),
+            @ApiResponse(code = 429, message = "Too Many Requests"),
+            @ApiResponse(code = 500, message = "Internal Server Error", response = OBErrorResponse1.class)})
+    @RequestMapping(value = "/payment-funds-confirmation",
+            consumes = {"application/json; charset=utf-8"},
+            produces = {"application/json; charset=utf-8"},
+            method = RequestMethod.POST)
+    ResponseEntity<FRFundsConfirmationBatchResponse> getPaymentFundsConfirmations(
+            @ApiParam(value = "The accounts and amounts to check", required = true)
+            @Valid
+            @RequestBody FRFundsConfirmationBatchRequest fundsConfirmationRequest,
+
+            @ApiParam(value = "The PSU's IP address if the PSU is currently logged in with the TPP.")
+            @RequestHeader(value = "x-fapi-customer-ip-address", required = false) String xFapiCustomerIpAddress,
+
+            @ApiParam(value = "An RFC4122 UID used as a correlation id.")
+            @RequestHeader(value = "x-fapi-interaction-id", required = false) String xFapiInteractionId,
+
+            @ApiParam(value = "Indicates the user-agent that the PSU is using.")
+            @RequestHeader(value = "x-customer-user-agent", required = false) String xCustomerUserAgent,
+
+            HttpServletRequest request,
+
+            Principal principal
+    ) throws OBErrorResponseException;
+}
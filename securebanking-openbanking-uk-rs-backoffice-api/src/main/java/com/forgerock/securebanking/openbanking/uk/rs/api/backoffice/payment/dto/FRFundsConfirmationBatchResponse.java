@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.joda.time.DateTime;
+
+import java.util.List;
+
+/**
+ * The results of a {@link FRFundsConfirmationBatchRequest}, in the same order as the requested items.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FRFundsConfirmationBatchResponse {
+
+    private DateTime fundsAvailableDateTime;
+    private List<FRFundsConfirmationResultItem> items;
+}
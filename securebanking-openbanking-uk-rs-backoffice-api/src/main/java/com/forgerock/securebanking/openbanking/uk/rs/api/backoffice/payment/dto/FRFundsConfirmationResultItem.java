@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The result of checking the availability of funds for one {@link FRFundsConfirmationRequestItem}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FRFundsConfirmationResultItem {
+
+    private String accountId;
+    private String amount;
+    private String currency;
+    /**
+     * Whether the funds are available, or null if they couldn't be checked (see {@link #error}).
+     */
+    private Boolean fundsAvailable;
+    /**
+     * Why the funds couldn't be checked, e.g. the account has no available balance.
+     */
+    private String error;
+}
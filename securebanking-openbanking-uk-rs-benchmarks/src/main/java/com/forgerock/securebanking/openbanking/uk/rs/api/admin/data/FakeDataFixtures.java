@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
+
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import org.joda.time.DateTime;
+
+import java.util.List;
+
+/**
+ * Gives the benchmark fixtures access to the fake data generation of {@link FakeDataApiController}, which is package
+ * private as the simulator only uses it through its API.
+ */
+public final class FakeDataFixtures {
+
+    private FakeDataFixtures() {
+    }
+
+    /**
+     * @param fakeData the generator of the fake data.
+     * @param account the account owning the transactions.
+     * @param statementStart the first day of the statement.
+     * @return the transactions of one monthly statement of the account, as generated for the fake data.
+     */
+    public static List<FRTransaction> statementTransactions(FakeDataApiController fakeData, FRAccount account,
+                                                            DateTime statementStart) {
+        return fakeData.generateStatementTransactions(account, statementStart);
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.benchmark;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount.FRAccountStatusCode;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount.FRAccountSubTypeCode;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount.FRAccountTypeCode;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.FakeDataApiController;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.FakeDataFixtures;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import org.joda.time.DateTime;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Realistic fixtures for the benchmarks, generated by the same code as the simulator's fake data.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    public static FRAccount anAccount() {
+        String accountId = UUID.randomUUID().toString();
+        FRAccount account = new FRAccount();
+        account.setId(accountId);
+        account.setUserID("benchmark");
+        account.setCreated(DateTime.now());
+        account.setAccount(FRFinancialAccount.builder()
+                .accountId(accountId)
+                .accountType(FRAccountTypeCode.PERSONAL)
+                .accountSubType(FRAccountSubTypeCode.CURRENTACCOUNT)
+                .currency("GBP")
+                .nickname("UK Bills")
+                .status(FRAccountStatusCode.ENABLED)
+                .statusUpdateDateTime(DateTime.now())
+                .openingDate(DateTime.now().minusYears(1))
+                .accounts(Collections.singletonList(FRAccountIdentifier.builder()
+                        .schemeName("UK.OBIE.SortCodeAccountNumber")
+                        .identification("40400411290112")
+                        .name("benchmark")
+                        .secondaryIdentification("12345")
+                        .build()))
+                .build());
+        return account;
+    }
+
+    /**
+     * @param count the number of transactions.
+     * @return transactions of a single account, spread over monthly statements going back in time.
+     */
+    public static List<FRTransaction> transactions(int count) {
+        FakeDataApiController fakeData = fakeData();
+        FRAccount account = anAccount();
+        List<FRTransaction> transactions = new ArrayList<>(count);
+        DateTime statementStart = DateTime.now().dayOfMonth().withMinimumValue();
+        while (transactions.size() < count) {
+            statementStart = statementStart.minusMonths(1);
+            transactions.addAll(FakeDataFixtures.statementTransactions(fakeData, account, statementStart));
+        }
+        return new ArrayList<>(transactions.subList(0, count));
+    }
+
+    /**
+     * @param count the number of payments in the file.
+     * @return the content of a {@code UK.OBIE.PaymentInitiation.3.1} file, paying the amounts of generated transactions.
+     */
+    public static String paymentInitiationFile(int count) {
+        StringBuilder file = new StringBuilder("{\"Data\":{\"DomesticPayments\":[");
+        List<FRTransaction> transactions = transactions(count);
+        for (int i = 0; i < count; i++) {
+            FRTransaction transaction = transactions.get(i);
+            if (i > 0) {
+                file.append(',');
+            }
+            file.append("{\"InstructionIdentification\":\"").append(transaction.getTransaction().getTransactionId())
+                    .append("\",\"EndToEndIdentification\":\"").append(transaction.getTransaction().getTransactionReference())
+                    .append("\",\"InstructedAmount\":{\"Amount\":\"").append(transaction.getTransaction().getAmount().getAmount())
+                    .append("\",\"Currency\":\"").append(transaction.getTransaction().getAmount().getCurrency())
+                    .append("\"},\"CreditorAccount\":{\"SchemeName\":\"UK.OBIE.SortCodeAccountNumber\",\"Identification\":\"")
+                    .append(String.format("%014d", i))
+                    .append("\",\"Name\":\"").append(transaction.getTransaction().getTransactionInformation())
+                    .append("\"},\"RemittanceInformation\":{\"Reference\":\"").append(transaction.getTransaction().getTransactionReference())
+                    .append("\",\"Unstructured\":\"").append(transaction.getTransaction().getTransactionInformation())
+                    .append("\"}}");
+        }
+        return file.append("]}}").toString();
+    }
+
+    private static FakeDataApiController fakeData() {
+        try {
+            return new FakeDataApiController();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load the fake data names", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.benchmark.common;
+
+import com.forgerock.securebanking.openbanking.uk.rs.common.util.PaginationUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.org.openbanking.datamodel.account.Links;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the links of a page in the middle of a collection, as done for every paged response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaginationBenchmark {
+
+    private static final String URL = "https://rs.aspsp.example.com/open-banking/v3.1.6/aisp/accounts/"
+            + "5b7d7a6e-9d38-4c1f-9c1c-1bd6bc23a7d1/transactions?fromBookingDateTime=2020-01-01T00:00:00&page=4";
+
+    @Benchmark
+    public Links generateLinks() {
+        return PaginationUtil.generateLinks(URL, 4, 10);
+    }
+
+    @Benchmark
+    public Links generateCursorLinks() {
+        return PaginationUtil.generateCursorLinks(URL, false, "MTYwOTQ1OTIwMDAwMDo1YjdkN2E2ZQ");
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.benchmark.converter;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.openbanking.uk.rs.converter.FRAccountIdentifierConverter;
+import com.forgerock.securebanking.openbanking.uk.rs.converter.FRAmountConverter;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the explicit {@link FRAmountConverter} and {@link FRAccountIdentifierConverter} conversions with the
+ * reflection based {@link ModelMapper} mapping they replaced. Run with {@code -prof gc} to compare allocations too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelMapperComparisonBenchmark {
+
+    private ModelMapper modelMapper;
+    private FRAmount amount;
+    private FRAccountIdentifier account;
+    private Class<?> obAmountType;
+    private Class<?> obAccountType;
+
+    @Setup
+    public void setUp() {
+        // The configuration of the former FRModelMapper
+        modelMapper = new ModelMapper();
+        modelMapper.getConfiguration().setSkipNullEnabled(true);
+        amount = FRAmount.builder()
+                .amount("1230.00")
+                .currency("GBP")
+                .build();
+        account = FRAccountIdentifier.builder()
+                .schemeName("UK.OBIE.SortCodeAccountNumber")
+                .identification("40400411290112")
+                .name("Mr A Smith")
+                .secondaryIdentification("12345")
+                .build();
+        // The types used for the amount and the accounts of OBTransaction6
+        obAmountType = FRAmountConverter.toOBActiveOrHistoricCurrencyAndAmount9(amount).getClass();
+        obAccountType = FRAccountIdentifierConverter.toOBCashAccount6(account).getClass();
+    }
+
+    @Benchmark
+    public Object amountWithConverter() {
+        return FRAmountConverter.toOBActiveOrHistoricCurrencyAndAmount9(amount);
+    }
+
+    @Benchmark
+    public Object amountWithModelMapper() {
+        return modelMapper.map(amount, obAmountType);
+    }
+
+    @Benchmark
+    public Object accountWithConverter() {
+        return FRAccountIdentifierConverter.toOBCashAccount6(account);
+    }
+
+    @Benchmark
+    public Object accountWithModelMapper() {
+        return modelMapper.map(account, obAccountType);
+    }
+}
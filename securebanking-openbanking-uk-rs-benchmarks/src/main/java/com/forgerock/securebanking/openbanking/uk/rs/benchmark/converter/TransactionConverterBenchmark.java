@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.benchmark.converter;
+
+import com.forgerock.securebanking.openbanking.uk.rs.benchmark.BenchmarkFixtures;
+import com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRTransactionConverter;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts a page of transactions to the latest OB model, as done for every transactions read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionConverterBenchmark {
+
+    @Param({"120"})
+    private int pageSize;
+
+    private List<FRTransaction> transactions;
+
+    @Setup
+    public void setUp() {
+        transactions = BenchmarkFixtures.transactions(pageSize);
+    }
+
+    @Benchmark
+    public void toOBTransaction6(Blackhole blackhole) {
+        for (FRTransaction transaction : transactions) {
+            blackhole.consume(FRTransactionConverter.toOBTransaction6(transaction.getTransaction()));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.benchmark.repository;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
+import com.forgerock.securebanking.openbanking.uk.rs.benchmark.BenchmarkFixtures;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlan;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepositoryImpl;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionShapingPlans;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READPAN;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READTRANSACTIONSBASIC;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READTRANSACTIONSCREDITS;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READTRANSACTIONSDEBITS;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READTRANSACTIONSDETAIL;
+
+/**
+ * Resolves the shaping plan of the permissions of a request and redacts a page of transactions with it, i.e. the
+ * in-memory part of the permission filtering of {@link FRTransactionRepositoryImpl} (formerly {@code filterTransition}).
+ * <p>
+ * Redaction is idempotent, so the same page is redacted at each invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionShapingBenchmark {
+
+    @Param({"BASIC", "DETAIL", "DETAIL_WITH_PAN"})
+    private String permissionSet;
+
+    @Param({"120"})
+    private int pageSize;
+
+    private List<FRExternalPermissionsCode> permissions;
+    private List<FRTransaction> transactions;
+
+    @Setup
+    public void setUp() {
+        transactions = BenchmarkFixtures.transactions(pageSize);
+        permissions = new ArrayList<>(Arrays.asList(READTRANSACTIONSCREDITS, READTRANSACTIONSDEBITS));
+        switch (permissionSet) {
+            case "BASIC":
+                permissions.add(READTRANSACTIONSBASIC);
+                break;
+            case "DETAIL":
+                permissions.add(READTRANSACTIONSDETAIL);
+                break;
+            case "DETAIL_WITH_PAN":
+                permissions.add(READTRANSACTIONSDETAIL);
+                permissions.add(READPAN);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown permission set: " + permissionSet);
+        }
+    }
+
+    @Benchmark
+    public List<FRTransaction> shapeTransactions() {
+        ShapingPlan<FRTransaction> shapingPlan = TransactionShapingPlans.forPermissions(permissions);
+        return shapingPlan.applyAll(transactions);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.benchmark.service;
+
+import com.forgerock.securebanking.openbanking.uk.rs.service.frequency.FrequencyRule;
+import com.forgerock.securebanking.openbanking.uk.rs.service.frequency.FrequencyService;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out the next payment date of a standing order, for each kind of frequency, and projects its next payment
+ * dates with the compiled frequency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrequencyBenchmark {
+
+    private static final DateTime PREVIOUS = new DateTime(2020, 1, 31, 10, 0);
+    private static final int PROJECTED_PAYMENTS = 12;
+
+    @Param({
+            "EvryDay",
+            "EvryWorkgDay",
+            "IntrvlWkDay:01:03",
+            "WkInMnthDay:02:03",
+            "IntrvlMnthDay:01:-01",
+            "QtrDay:ENGLISH",
+            "IntrvlDay:15"
+    })
+    private String frequency;
+
+    private FrequencyRule rule;
+
+    @Setup
+    public void setUp() {
+        rule = FrequencyService.getRule(frequency);
+    }
+
+    @Benchmark
+    public DateTime getNextDateTime() {
+        return FrequencyService.getNextDateTime(PREVIOUS, frequency);
+    }
+
+    @Benchmark
+    public List<DateTime> nextN() {
+        return FrequencyService.nextN(PREVIOUS, rule, PROJECTED_PAYMENTS);
+    }
+}
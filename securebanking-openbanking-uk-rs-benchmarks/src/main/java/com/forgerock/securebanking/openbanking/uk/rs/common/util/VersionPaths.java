@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.common.util;
+
+import com.forgerock.securebanking.openbanking.uk.common.api.meta.OBVersion;
+
+/**
+ * Lets the benchmarks extract the version of a bare path, which {@link VersionPathExtractor} only does for the
+ * requests it is given.
+ */
+public final class VersionPaths {
+
+    private VersionPaths() {
+    }
+
+    /**
+     * @param path the path of an Open Banking resource.
+     * @return the version of the path, or null if there isn't one.
+     */
+    public static OBVersion getVersionFromPath(String path) {
+        return VersionPathExtractor.getVersionFromPath(path);
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlan;
+
+import java.util.List;
+
+/**
+ * Resolves the shaping plans of {@link FRTransactionRepositoryImpl} for the benchmarks, outside of a repository.
+ */
+public final class TransactionShapingPlans {
+
+    private TransactionShapingPlans() {
+    }
+
+    /**
+     * @param permissions the permissions of a request.
+     * @return the shaping plan applied to the transactions read with the permissions.
+     */
+    public static ShapingPlan<FRTransaction> forPermissions(List<FRExternalPermissionsCode> permissions) {
+        return FRTransactionRepositoryImpl.shapingPlan(permissions);
+    }
+}
@@ -67,6 +67,9 @@ public interface TransactionsApi {
             @ApiParam(value = "Page number.", required = false, defaultValue = "0")
             @RequestParam(value = "page", defaultValue = "0") int page,
 
+            @ApiParam(value = "Opaque continuation token taken from the Links.Next of a previous page.", required = false)
+            @RequestParam(value = "cursor", required = false) String cursor,
+
             @ApiParam(value = "The unique id of the ASPSP to which the request is issued. " +
                     "The unique id will be issued by OB.", required = true)
             @RequestHeader(value = "x-fapi-financial-id", required = true) String xFapiFinancialId,
@@ -137,6 +140,9 @@ public interface TransactionsApi {
             @ApiParam(value = "Page number.", required = false, defaultValue = "0")
             @RequestParam(value = "page", defaultValue = "0") int page,
 
+            @ApiParam(value = "Opaque continuation token taken from the Links.Next of a previous page.", required = false)
+            @RequestParam(value = "cursor", required = false) String cursor,
+
             @ApiParam(value = "An Authorisation Token as per https://tools.ietf.org/html/rfc6750", required = true)
             @RequestHeader(value = "Authorization", required = true) String authorization,
 
@@ -200,6 +206,9 @@ public interface TransactionsApi {
             @ApiParam(value = "Page number.", required = false, defaultValue = "0")
             @RequestParam(value = "page", defaultValue = "0") int page,
 
+            @ApiParam(value = "Opaque continuation token taken from the Links.Next of a previous page.", required = false)
+            @RequestParam(value = "cursor", required = false) String cursor,
+
             @ApiParam(value = "A unique identifier used to identify the statement resource.", required = true)
             @PathVariable("StatementId") String statementId,
 
@@ -76,6 +76,9 @@ public interface TransactionsApi {
             @ApiParam(value = "Page number.", required = false, defaultValue = "0")
             @RequestParam(value = "page", defaultValue = "0") int page,
 
+            @ApiParam(value = "Opaque continuation token taken from the Links.Next of a previous page.", required = false)
+            @RequestParam(value = "cursor", required = false) String cursor,
+
             @ApiParam(value = "An Authorisation Token as per https://tools.ietf.org/html/rfc6750", required = true)
             @RequestHeader(value = "Authorization", required = true) String authorization,
 
@@ -144,6 +147,9 @@ public interface TransactionsApi {
             @ApiParam(value = "Page number.", required = false, defaultValue = "0")
             @RequestParam(value = "page", defaultValue = "0") int page,
 
+            @ApiParam(value = "Opaque continuation token taken from the Links.Next of a previous page.", required = false)
+            @RequestParam(value = "cursor", required = false) String cursor,
+
             @ApiParam(value = "An Authorisation Token as per https://tools.ietf.org/html/rfc6750", required = true)
             @RequestHeader(value = "Authorization", required = true) String authorization,
 
@@ -203,6 +209,9 @@ public interface TransactionsApi {
             @ApiParam(value = "Page number.", required = false, defaultValue = "0")
             @RequestParam(value = "page", defaultValue = "0") int page,
 
+            @ApiParam(value = "Opaque continuation token taken from the Links.Next of a previous page.", required = false)
+            @RequestParam(value = "cursor", required = false) String cursor,
+
             @ApiParam(value = "An Authorisation Token as per https://tools.ietf.org/html/rfc6750", required = true)
             @RequestHeader(value = "Authorization", required = true) String authorization,
 
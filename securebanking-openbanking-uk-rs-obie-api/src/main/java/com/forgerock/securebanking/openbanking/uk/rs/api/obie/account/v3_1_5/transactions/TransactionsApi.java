@@ -77,6 +77,9 @@ public interface TransactionsApi {
             @ApiParam(value = "Page number.", required = false, defaultValue = "0")
             @RequestParam(value = "page", defaultValue = "0") int page,
 
+            @ApiParam(value = "Opaque continuation token taken from the Links.Next of a previous page.", required = false)
+            @RequestParam(value = "cursor", required = false) String cursor,
+
             @ApiParam(value = "An Authorisation Token as per https://tools.ietf.org/html/rfc6750", required = true)
             @RequestHeader(value = "Authorization", required = true) String authorization,
 
@@ -145,6 +148,9 @@ public interface TransactionsApi {
             @ApiParam(value = "Page number.", required = false, defaultValue = "0")
             @RequestParam(value = "page", defaultValue = "0") int page,
 
+            @ApiParam(value = "Opaque continuation token taken from the Links.Next of a previous page.", required = false)
+            @RequestParam(value = "cursor", required = false) String cursor,
+
             @ApiParam(value = "An Authorisation Token as per https://tools.ietf.org/html/rfc6750", required = true)
             @RequestHeader(value = "Authorization", required = true) String authorization,
 
@@ -204,6 +210,9 @@ public interface TransactionsApi {
             @ApiParam(value = "Page number.", required = false, defaultValue = "0")
             @RequestParam(value = "page", defaultValue = "0") int page,
 
+            @ApiParam(value = "Opaque continuation token taken from the Links.Next of a previous page.", required = false)
+            @RequestParam(value = "cursor", required = false) String cursor,
+
             @ApiParam(value = "An Authorisation Token as per https://tools.ietf.org/html/rfc6750", required = true)
             @RequestHeader(value = "Authorization", required = true) String authorization,
 
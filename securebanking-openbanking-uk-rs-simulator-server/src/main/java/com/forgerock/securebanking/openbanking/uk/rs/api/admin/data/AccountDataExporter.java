@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
+
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccountData;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRAccountBeneficiaryConverter.toOBBeneficiary5;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRCashBalanceConverter.toOBCashBalance1;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRDirectDebitConverter.toOBReadDirectDebit2DataDirectDebit;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRFinancialAccountConverter.toOBAccount6;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FROfferConverter.toOBOffer1;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRPartyConverter.toOBParty2;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRScheduledPaymentConverter.toOBScheduledPayment3;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRStandingOrderConverter.toOBStandingOrder6;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRStatementConverter.toOBStatement2;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRTransactionConverter.toOBTransaction6;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Builds the {@link FRAccountData} of several accounts at once. The documents of each collection are fetched for all
+ * of the accounts with a single {@code $in} query, and then grouped by account in memory, so that exporting a page of
+ * accounts costs one query per collection rather than one query per collection and account.
+ */
+@Service
+public class AccountDataExporter {
+
+    private static final String ACCOUNT_ID = "accountId";
+
+    private final MongoTemplate mongoTemplate;
+
+    public AccountDataExporter(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * @param accounts the accounts to export.
+     * @return the data of each account, in the same order as the accounts.
+     */
+    public List<FRAccountData> export(Collection<FRAccount> accounts) {
+        if (accounts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> accountIds = accounts.stream().map(FRAccount::getId).collect(Collectors.toList());
+        Map<String, List<FRProduct>> products = findByAccountIds(accountIds, FRProduct.class, FRProduct::getAccountId);
+        Map<String, List<FRParty>> parties = findByAccountIds(accountIds, FRParty.class, FRParty::getAccountId);
+        Map<String, List<FRBalance>> balances = findByAccountIds(accountIds, FRBalance.class, FRBalance::getAccountId);
+        Map<String, List<FRBeneficiary>> beneficiaries =
+                findByAccountIds(accountIds, FRBeneficiary.class, FRBeneficiary::getAccountId);
+        Map<String, List<FRDirectDebit>> directDebits =
+                findByAccountIds(accountIds, FRDirectDebit.class, FRDirectDebit::getAccountId);
+        Map<String, List<FRStandingOrder>> standingOrders =
+                findByAccountIds(accountIds, FRStandingOrder.class, FRStandingOrder::getAccountId);
+        Map<String, List<FRTransaction>> transactions =
+                findByAccountIds(accountIds, FRTransaction.class, FRTransaction::getAccountId);
+        Map<String, List<FRStatement>> statements =
+                findByAccountIds(accountIds, FRStatement.class, FRStatement::getAccountId);
+        Map<String, List<FRScheduledPayment>> scheduledPayments =
+                findByAccountIds(accountIds, FRScheduledPayment.class, FRScheduledPayment::getAccountId);
+        Map<String, List<FROffer>> offers = findByAccountIds(accountIds, FROffer.class, FROffer::getAccountId);
+
+        List<FRAccountData> accountDatas = new ArrayList<>(accounts.size());
+        for (FRAccount account : accounts) {
+            String accountId = account.getId();
+            FRAccountData accountData = new FRAccountData();
+            accountData.setAccount(toOBAccount6(account.getAccount()));
+            first(products, accountId).ifPresent(product -> accountData.setProduct(product.getProduct()));
+            first(parties, accountId).ifPresent(party -> accountData.setParty(toOBParty2(party.getParty())));
+            of(balances, accountId).forEach(b -> accountData.addBalance(toOBCashBalance1(b.getBalance())));
+            of(beneficiaries, accountId).forEach(b -> accountData.addBeneficiary(toOBBeneficiary5(b.getBeneficiary())));
+            of(directDebits, accountId).forEach(d -> accountData.addDirectDebit(toOBReadDirectDebit2DataDirectDebit(d.getDirectDebit())));
+            of(standingOrders, accountId).forEach(s -> accountData.addStandingOrder(toOBStandingOrder6(s.getStandingOrder())));
+            of(transactions, accountId).forEach(t -> accountData.addTransaction(toOBTransaction6(t.getTransaction())));
+            of(statements, accountId).forEach(s -> accountData.addStatement(toOBStatement2(s.getStatement())));
+            of(scheduledPayments, accountId).forEach(s -> accountData.addScheduledPayment(toOBScheduledPayment3(s.getScheduledPayment())));
+            of(offers, accountId).forEach(o -> accountData.addOffer(toOBOffer1(o.getOffer())));
+            accountDatas.add(accountData);
+        }
+        return accountDatas;
+    }
+
+    private <T> Map<String, List<T>> findByAccountIds(List<String> accountIds, Class<T> documentClass,
+                                                      Function<T, String> accountId) {
+        return mongoTemplate.find(new Query(where(ACCOUNT_ID).in(accountIds)), documentClass).stream()
+                .collect(Collectors.groupingBy(accountId));
+    }
+
+    private static <T> List<T> of(Map<String, List<T>> documents, String accountId) {
+        return documents.getOrDefault(accountId, Collections.emptyList());
+    }
+
+    private static <T> Optional<T> first(Map<String, List<T>> documents, String accountId) {
+        return of(documents, accountId).stream().findFirst();
+    }
+}
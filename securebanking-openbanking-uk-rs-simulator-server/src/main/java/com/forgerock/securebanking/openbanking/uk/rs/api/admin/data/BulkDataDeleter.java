@@ -0,0 +1,234 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
+
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRDataDeletion;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRDataDeletion.Status;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Deletes all of the data of a user in bulk.
+ * <p>
+ * Rather than deleting the data of each account in turn, one {@code deleteMany} with an {@code $in} on the IDs of the
+ * user's accounts is issued per collection, and the collections are deleted concurrently. A deletion can also be
+ * started in the background, in which case its progress is kept (for the last few deletions only) so that it can be
+ * polled.
+ */
+@Service
+@Slf4j
+public class BulkDataDeleter {
+
+    private static final String ACCOUNT_ID = "accountId";
+    private static final String USER_ID = "userId";
+    private static final String ID = "_id";
+
+    /**
+     * The collections holding the data of an account, by their {@code accountId} field.
+     */
+    private static final List<Class<?>> ACCOUNT_DATA = Arrays.asList(
+            FRBalance.class,
+            FRProduct.class,
+            FRBeneficiary.class,
+            FRDirectDebit.class,
+            FRStandingOrder.class,
+            FRTransaction.class,
+            FRStatement.class,
+            FRScheduledPayment.class,
+            FROffer.class
+    );
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionCountCache transactionCountCache;
+    private final FRAccountCache accountCache;
+    private final ExecutorService executor;
+    private final ExecutorService jobExecutor;
+    private final int retainedJobs;
+    private final Map<String, FRDataDeletion> jobs = new ConcurrentHashMap<>();
+    private final Queue<String> jobIds = new ConcurrentLinkedQueue<>();
+
+    public BulkDataDeleter(MongoTemplate mongoTemplate, TransactionCountCache transactionCountCache,
+                           FRAccountCache accountCache,
+                           @Value("${rs.data.delete.parallelism:4}") int parallelism,
+                           @Value("${rs.data.delete.jobs.retained:100}") int retainedJobs) {
+        this.mongoTemplate = mongoTemplate;
+        this.transactionCountCache = transactionCountCache;
+        this.accountCache = accountCache;
+        this.retainedJobs = retainedJobs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "data-delete-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Deletions started in the background run one at a time, so that they can't starve the synchronous ones
+        this.jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-delete-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdown();
+        executor.shutdown();
+    }
+
+    /**
+     * Deletes the data of a user and waits for the deletion to complete.
+     *
+     * @param userId the user whose data should be deleted.
+     * @return the completed deletion, with the number of documents deleted per collection.
+     */
+    public FRDataDeletion delete(String userId) {
+        return run(newDeletion(userId));
+    }
+
+    /**
+     * Starts the deletion of the data of a user in the background.
+     *
+     * @param userId the user whose data should be deleted.
+     * @return the pending deletion, whose progress can be followed with {@link #getDeletion(String)}.
+     */
+    public FRDataDeletion deleteAsync(String userId) {
+        FRDataDeletion deletion = newDeletion(userId);
+        track(deletion);
+        jobExecutor.execute(() -> run(deletion));
+        return deletion;
+    }
+
+    /**
+     * @param jobId the ID of a deletion started with {@link #deleteAsync(String)}.
+     * @return the latest state of the deletion, or empty if it is unknown or no longer retained.
+     */
+    public Optional<FRDataDeletion> getDeletion(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * @param deletion a completed deletion.
+     * @return the number of accounts that were deleted.
+     */
+    public long getDeletedAccounts(FRDataDeletion deletion) {
+        return deletion.getDeletedDocuments().getOrDefault(collectionName(FRAccount.class), 0L);
+    }
+
+    private FRDataDeletion run(FRDataDeletion deletion) {
+        String userId = deletion.getUserId();
+        update(deletion.toBuilder().status(Status.RUNNING).build());
+        try {
+            List<String> accountIds = findAccountIds(userId);
+            Map<String, Future<Long>> deleting = new LinkedHashMap<>();
+            for (Class<?> documentClass : ACCOUNT_DATA) {
+                deleting.put(collectionName(documentClass),
+                        executor.submit(() -> remove(where(ACCOUNT_ID).in(accountIds), documentClass)));
+            }
+            // Parties are linked to an account, or to the user for the party of the user
+            deleting.put(collectionName(FRParty.class), executor.submit(() -> remove(new Criteria().orOperator(
+                    where(ACCOUNT_ID).in(accountIds), where(USER_ID).is(userId)), FRParty.class)));
+
+            Map<String, Long> deletedDocuments = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<Long>> entry : deleting.entrySet()) {
+                deletedDocuments.put(entry.getKey(), await(entry.getValue()));
+            }
+            // Accounts are deleted last, so that a failed deletion can be retried
+            deletedDocuments.put(collectionName(FRAccount.class), remove(where(ID).in(accountIds), FRAccount.class));
+            accountIds.forEach(transactionCountCache::evictAccount);
+            accountCache.invalidateUser(userId);
+            accountCache.invalidateAccounts(accountIds);
+
+            log.debug("Deleted the data of user '{}': {}", userId, deletedDocuments);
+            return update(deletion.toBuilder().status(Status.COMPLETED).deletedDocuments(deletedDocuments).build());
+        } catch (RuntimeException e) {
+            log.error("Failed to delete the data of user '{}'", userId, e);
+            update(deletion.toBuilder().status(Status.FAILED).error(e.getMessage()).build());
+            throw e;
+        }
+    }
+
+    private List<String> findAccountIds(String userId) {
+        Query query = new Query(where("userID").is(userId));
+        query.fields().include(ID);
+        List<String> accountIds = new ArrayList<>();
+        mongoTemplate.find(query, FRAccount.class).forEach(account -> accountIds.add(account.getId()));
+        return accountIds;
+    }
+
+    private long remove(Criteria criteria, Class<?> documentClass) {
+        return mongoTemplate.remove(new Query(criteria), documentClass).getDeletedCount();
+    }
+
+    private String collectionName(Class<?> documentClass) {
+        return mongoTemplate.getCollectionName(documentClass);
+    }
+
+    private FRDataDeletion newDeletion(String userId) {
+        return FRDataDeletion.builder()
+                .jobId(UUID.randomUUID().toString())
+                .userId(userId)
+                .status(Status.PENDING)
+                .build();
+    }
+
+    private void track(FRDataDeletion deletion) {
+        jobs.put(deletion.getJobId(), deletion);
+        jobIds.add(deletion.getJobId());
+        while (jobIds.size() > retainedJobs) {
+            String evicted = jobIds.poll();
+            if (evicted != null) {
+                jobs.remove(evicted);
+            }
+        }
+    }
+
+    /**
+     * Replaces the state of a tracked deletion. Each state is a new instance, so that a deletion returned to a caller
+     * is never modified afterwards.
+     */
+    private FRDataDeletion update(FRDataDeletion deletion) {
+        jobs.computeIfPresent(deletion.getJobId(), (jobId, previous) -> deletion);
+        return deletion;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while deleting data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to delete data", e.getCause());
+        }
+    }
+}
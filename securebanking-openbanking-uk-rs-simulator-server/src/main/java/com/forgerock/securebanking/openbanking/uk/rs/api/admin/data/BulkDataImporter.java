@@ -0,0 +1,357 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
+
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccountData;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRAccountBeneficiaryConverter.toOBBeneficiary5;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRCashBalanceConverter.toOBCashBalance1;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRDirectDebitConverter.toOBReadDirectDebit2DataDirectDebit;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRFinancialAccountConverter.toOBAccount6;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FROfferConverter.toOBOffer1;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRPartyConverter.toOBParty2;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRScheduledPaymentConverter.toOBScheduledPayment3;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRStandingOrderConverter.toOBStandingOrder6;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRStatementConverter.toOBStatement2;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRTransactionConverter.toOBTransaction6;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Imports the accounts of a user, and all of their data, in bulk.
+ * <p>
+ * The documents are built and validated (ownership of the accounts, duplicate balances and upload limits) in memory,
+ * before anything is written, so that an import is rejected as a whole rather than half way through. The documents of
+ * the accounts are built in parallel, the limits are checked against a single count per collection, and each collection
+ * is then written with a single unordered bulk upsert by ID, which like {@code saveAll} replaces a document that already
+ * has the same ID rather than failing on it.
+ * <p>
+ * The collections are written concurrently, so a write can still fail after other collections have been written. The
+ * documents of the import are then deleted again from every collection, and the import is rejected with the
+ * collections that failed. The IDs of the documents are generated for each import, so this only deletes documents the
+ * import has written.
+ */
+@Service
+@Slf4j
+public class BulkDataImporter {
+
+    private static final String ACCOUNT_ID = "accountId";
+    private static final String ID = "_id";
+
+    /**
+     * The collections that have an upload limit, with the name of their documents in the error message.
+     */
+    private static final Map<Class<?>, String> DOCUMENT_TYPES = new LinkedHashMap<>();
+
+    static {
+        DOCUMENT_TYPES.put(FRBalance.class, "balance");
+        DOCUMENT_TYPES.put(FRBeneficiary.class, "beneficiaries");
+        DOCUMENT_TYPES.put(FRDirectDebit.class, "direct debits");
+        DOCUMENT_TYPES.put(FRStandingOrder.class, "standing orders");
+        DOCUMENT_TYPES.put(FRTransaction.class, "transactions");
+        DOCUMENT_TYPES.put(FRStatement.class, "statements");
+        DOCUMENT_TYPES.put(FRScheduledPayment.class, "scheduled payments");
+        DOCUMENT_TYPES.put(FROffer.class, "offers");
+    }
+
+    private final DataCreator dataCreator;
+    private final MongoTemplate mongoTemplate;
+    private final TransactionCountCache transactionCountCache;
+    private final FRAccountCache accountCache;
+    private final ExecutorService executor;
+
+    public BulkDataImporter(DataCreator dataCreator, MongoTemplate mongoTemplate,
+                            TransactionCountCache transactionCountCache, FRAccountCache accountCache,
+                            @Value("${rs.data.import.parallelism:4}") int parallelism) {
+        this.dataCreator = dataCreator;
+        this.mongoTemplate = mongoTemplate;
+        this.transactionCountCache = transactionCountCache;
+        this.accountCache = accountCache;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "data-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @param accountDatas the accounts to create, with their data.
+     * @param username the user owning the accounts.
+     * @param existingAccountIds the IDs of the accounts the user already owns.
+     * @return the created accounts and data, in the same order as provided.
+     * @throws org.springframework.web.server.ResponseStatusException if the data is invalid or would exceed the
+     *                                                                 upload limits. Nothing is saved in that case.
+     */
+    public List<FRAccountData> importAccounts(List<FRAccountData> accountDatas, String username,
+                                              Set<String> existingAccountIds) {
+        List<FRAccount> accounts = new ArrayList<>();
+        for (FRAccountData accountData : accountDatas) {
+            accounts.add(accountData.getAccount() != null ? dataCreator.prepareAccount(accountData, username) : null);
+        }
+        Set<String> accountIds = new HashSet<>(existingAccountIds);
+        accounts.stream().filter(Objects::nonNull).map(FRAccount::getId).forEach(accountIds::add);
+        Set<String> ownedAccountIds = Collections.unmodifiableSet(accountIds);
+
+        Future<Map<Class<?>, Long>> existingCounts = executor.submit(() -> countDocuments(existingAccountIds));
+        Future<Set<String>> existingBalanceTypes = executor.submit(() -> findBalanceTypes(existingAccountIds));
+        List<Future<PreparedAccount>> preparing = new ArrayList<>();
+        for (int i = 0; i < accountDatas.size(); i++) {
+            FRAccountData accountData = accountDatas.get(i);
+            FRAccount account = accounts.get(i);
+            preparing.add(executor.submit(() -> prepare(accountData, account, ownedAccountIds)));
+        }
+        List<PreparedAccount> preparedAccounts = new ArrayList<>();
+        for (Future<PreparedAccount> prepared : preparing) {
+            preparedAccounts.add(await(prepared));
+        }
+
+        dataCreator.checkAccountLimit(existingAccountIds.size() + accounts.stream().filter(Objects::nonNull).count());
+        checkDuplicateBalances(preparedAccounts, await(existingBalanceTypes));
+        Map<Class<?>, List<?>> documents = collectDocuments(preparedAccounts);
+        checkDocumentLimits(documents, await(existingCounts));
+
+        try {
+            upsertAll(documents);
+        } finally {
+            accountCache.invalidateUser(username);
+        }
+        transactionCountCache.onTransactionsCreated(collect(preparedAccounts, p -> p.transactions));
+        return preparedAccounts.stream().map(PreparedAccount::toAccountData).collect(Collectors.toList());
+    }
+
+    private PreparedAccount prepare(FRAccountData accountData, FRAccount account, Set<String> accountIds) {
+        PreparedAccount prepared = new PreparedAccount();
+        prepared.account = account;
+        prepared.product = dataCreator.prepareProduct(accountData, accountIds).orElse(null);
+        prepared.party = dataCreator.prepareParty(accountData).orElse(null);
+        prepared.balances = dataCreator.prepareBalances(accountData, accountIds);
+        // Balances have no ID of their own, give them the one Mongo would so that they can be upserted
+        prepared.balances.forEach(balance -> balance.setId(new ObjectId().toHexString()));
+        prepared.beneficiaries = dataCreator.prepareBeneficiaries(accountData, accountIds);
+        prepared.directDebits = dataCreator.prepareDirectDebits(accountData, accountIds);
+        prepared.standingOrders = dataCreator.prepareStandingOrders(accountData, accountIds);
+        prepared.transactions = dataCreator.prepareTransactions(accountData, accountIds);
+        prepared.statements = dataCreator.prepareStatements(accountData, accountIds);
+        prepared.scheduledPayments = dataCreator.prepareScheduledPayments(accountData, accountIds);
+        prepared.offers = dataCreator.prepareOffers(accountData, accountIds);
+        return prepared;
+    }
+
+    private Map<Class<?>, Long> countDocuments(Set<String> existingAccountIds) {
+        Map<Class<?>, Long> counts = new HashMap<>();
+        for (Class<?> documentClass : DOCUMENT_TYPES.keySet()) {
+            counts.put(documentClass, existingAccountIds.isEmpty() ? 0L : mongoTemplate.count(
+                    new Query(where(ACCOUNT_ID).in(existingAccountIds)), documentClass));
+        }
+        return counts;
+    }
+
+    private Set<String> findBalanceTypes(Set<String> existingAccountIds) {
+        if (existingAccountIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        Query query = new Query(where(ACCOUNT_ID).in(existingAccountIds));
+        query.fields().include(ACCOUNT_ID).include("balance.type");
+        return mongoTemplate.find(query, FRBalance.class).stream()
+                .map(BulkDataImporter::balanceTypeKey)
+                .collect(Collectors.toSet());
+    }
+
+    private static void checkDuplicateBalances(List<PreparedAccount> preparedAccounts, Set<String> balanceTypes) {
+        for (PreparedAccount prepared : preparedAccounts) {
+            for (FRBalance balance : prepared.balances) {
+                if (balanceTypes.contains(balanceTypeKey(balance))) {
+                    throw DataCreator.duplicateBalance(balance);
+                }
+            }
+            // Balances of the same account data are not checked against each other
+            prepared.balances.forEach(balance -> balanceTypes.add(balanceTypeKey(balance)));
+        }
+    }
+
+    private static String balanceTypeKey(FRBalance balance) {
+        return balance.getAccountId() + ":" + balance.getBalance().getType();
+    }
+
+    private void checkDocumentLimits(Map<Class<?>, List<?>> documents, Map<Class<?>, Long> existingCounts) {
+        DOCUMENT_TYPES.forEach((documentClass, documentType) -> dataCreator.checkDocumentLimit(
+                existingCounts.get(documentClass) + documents.get(documentClass).size(), documentType));
+    }
+
+    private static Map<Class<?>, List<?>> collectDocuments(List<PreparedAccount> preparedAccounts) {
+        Map<Class<?>, List<?>> documents = new LinkedHashMap<>();
+        documents.put(FRAccount.class, collect(preparedAccounts, p -> optional(p.account)));
+        documents.put(FRProduct.class, collect(preparedAccounts, p -> optional(p.product)));
+        documents.put(FRParty.class, collect(preparedAccounts, p -> optional(p.party)));
+        documents.put(FRBalance.class, collect(preparedAccounts, p -> p.balances));
+        documents.put(FRBeneficiary.class, collect(preparedAccounts, p -> p.beneficiaries));
+        documents.put(FRDirectDebit.class, collect(preparedAccounts, p -> p.directDebits));
+        documents.put(FRStandingOrder.class, collect(preparedAccounts, p -> p.standingOrders));
+        documents.put(FRTransaction.class, collect(preparedAccounts, p -> p.transactions));
+        documents.put(FRStatement.class, collect(preparedAccounts, p -> p.statements));
+        documents.put(FRScheduledPayment.class, collect(preparedAccounts, p -> p.scheduledPayments));
+        documents.put(FROffer.class, collect(preparedAccounts, p -> p.offers));
+        return documents;
+    }
+
+    private void upsertAll(Map<Class<?>, List<?>> documents) {
+        Map<Class<?>, Future<?>> upserts = new LinkedHashMap<>();
+        documents.forEach((documentClass, documentsOfClass) -> {
+            if (!documentsOfClass.isEmpty()) {
+                upserts.put(documentClass, executor.submit(() -> upsert(documentClass, documentsOfClass)));
+            }
+        });
+        Map<Class<?>, RuntimeException> failures = new LinkedHashMap<>();
+        upserts.forEach((documentClass, upsert) -> {
+            try {
+                await(upsert);
+            } catch (RuntimeException e) {
+                failures.put(documentClass, e);
+            }
+        });
+        if (!failures.isEmpty()) {
+            failures.forEach((documentClass, e) -> log.warn("Failed to import {} documents",
+                    documentClass.getSimpleName(), e));
+            deleteAll(documents);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, String.format(
+                    "Failed to import %s, nothing has been imported", failures.keySet().stream()
+                            .map(Class::getSimpleName)
+                            .collect(Collectors.joining(", "))), failures.values().iterator().next());
+        }
+        log.debug("Bulk upserted {}", documents.entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().getSimpleName(), e -> e.getValue().size())));
+    }
+
+    private void upsert(Class<?> documentClass, List<?> documents) {
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkMode.UNORDERED, documentClass);
+        for (Object document : documents) {
+            bulkOperations.replaceOne(new Query(where(ID).is(idOf(document))), document,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        bulkOperations.execute();
+    }
+
+    private void deleteAll(Map<Class<?>, List<?>> documents) {
+        documents.forEach((documentClass, documentsOfClass) -> {
+            if (documentsOfClass.isEmpty()) {
+                return;
+            }
+            List<Object> ids = documentsOfClass.stream().map(this::idOf).collect(Collectors.toList());
+            try {
+                mongoTemplate.remove(new Query(where(ID).in(ids)), documentClass);
+            } catch (RuntimeException e) {
+                log.error("Failed to delete the {} documents of a failed import with IDs {}",
+                        documentClass.getSimpleName(), ids, e);
+            }
+        });
+    }
+
+    private Object idOf(Object document) {
+        return mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(document.getClass())
+                .getIdentifierAccessor(document)
+                .getRequiredIdentifier();
+    }
+
+    private static <T> List<T> collect(List<PreparedAccount> preparedAccounts,
+                                       Function<PreparedAccount, List<T>> documents) {
+        return preparedAccounts.stream()
+                .flatMap(prepared -> documents.apply(prepared).stream())
+                .collect(Collectors.toList());
+    }
+
+    private static <T> List<T> optional(T document) {
+        return document == null ? Collections.emptyList() : Collections.singletonList(document);
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to import data", e.getCause());
+        }
+    }
+
+    /**
+     * The documents built for one {@link FRAccountData}, before they are saved.
+     */
+    private static class PreparedAccount {
+        private FRAccount account;
+        private FRProduct product;
+        private FRParty party;
+        private List<FRBalance> balances;
+        private List<FRBeneficiary> beneficiaries;
+        private List<FRDirectDebit> directDebits;
+        private List<FRStandingOrder> standingOrders;
+        private List<FRTransaction> transactions;
+        private List<FRStatement> statements;
+        private List<FRScheduledPayment> scheduledPayments;
+        private List<FROffer> offers;
+
+        private FRAccountData toAccountData() {
+            FRAccountData accountData = new FRAccountData();
+            if (account != null) {
+                accountData.setAccount(toOBAccount6(account.getAccount()));
+            }
+            if (product != null) {
+                accountData.setProduct(product.getProduct());
+            }
+            if (party != null) {
+                accountData.setParty(toOBParty2(party.getParty()));
+            }
+            balances.forEach(b -> accountData.addBalance(toOBCashBalance1(b.getBalance())));
+            beneficiaries.forEach(b -> accountData.addBeneficiary(toOBBeneficiary5(b.getBeneficiary())));
+            directDebits.forEach(d -> accountData.addDirectDebit(toOBReadDirectDebit2DataDirectDebit(d.getDirectDebit())));
+            standingOrders.forEach(d -> accountData.addStandingOrder(toOBStandingOrder6(d.getStandingOrder())));
+            transactions.forEach(d -> accountData.addTransaction(toOBTransaction6(d.getTransaction())));
+            statements.forEach(d -> accountData.addStatement(toOBStatement2(d.getStatement())));
+            scheduledPayments.forEach(d -> accountData.addScheduledPayment(toOBScheduledPayment3(d.getScheduledPayment())));
+            offers.forEach(d -> accountData.addOffer(toOBOffer1(d.getOffer())));
+            return accountData;
+        }
+    }
+}
@@ -15,98 +15,68 @@
  */
 package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
 
-import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRPartyData;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccountData;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRDataDeletion;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRUserData;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.beneficiaries.FRBeneficiaryRepository;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.directdebits.FRDirectDebitRepository;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.offers.FROfferRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.party.FRPartyRepository;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.products.FRProductRepository;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.scheduledpayments.FRScheduledPaymentRepository;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.standingorders.FRStandingOrderRepository;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.statements.FRStatementRepository;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRAccountBeneficiaryConverter.toOBBeneficiary5;
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRCashBalanceConverter.toOBCashBalance1;
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRDirectDebitConverter.toOBReadDirectDebit2DataDirectDebit;
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRFinancialAccountConverter.toOBAccount6;
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FROfferConverter.toOBOffer1;
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRPartyConverter.toFRPartyData;
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRPartyConverter.toOBParty2;
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRScheduledPaymentConverter.toOBScheduledPayment3;
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRStandingOrderConverter.toOBStandingOrder6;
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRStatementConverter.toOBStatement2;
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRTransactionConverter.toOBTransaction6;
 
 @Controller("DataApi")
 @Slf4j
 public class DataApiController implements DataApi {
 
     private final FRAccountRepository accountsRepository;
-    private final FRBalanceRepository balanceRepository;
-    private final FRBeneficiaryRepository beneficiaryRepository;
-    private final FRDirectDebitRepository directDebitRepository;
-    private final FRProductRepository productRepository;
-    private final FRStandingOrderRepository standingOrderRepository;
-    private final FRTransactionRepository transactionRepository;
-    private final FRStatementRepository statementRepository;
-    private final FRScheduledPaymentRepository scheduledPayment1Repository;
+    private final FRAccountCache accountCache;
     private final FRPartyRepository partyRepository;
-    private final FROfferRepository offerRepository;
-    private final com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.DataUpdater dataUpdater;
-    private final com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.DataCreator dataCreator;
-
-    public DataApiController(FRDirectDebitRepository directDebitRepository, FRAccountRepository accountsRepository,
-                             FRBalanceRepository balanceRepository, FRBeneficiaryRepository beneficiaryRepository,
-                             FRProductRepository productRepository, FRStandingOrderRepository standingOrderRepository,
-                             FRTransactionRepository transactionRepository, FRStatementRepository statementRepository,
-                             DataCreator dataCreator, FRScheduledPaymentRepository scheduledPayment1Repository,
-                             FRPartyRepository partyRepository, DataUpdater dataUpdater, FROfferRepository offerRepository) {
-        this.directDebitRepository = directDebitRepository;
+    private final DataUpdater dataUpdater;
+    private final BulkDataImporter bulkDataImporter;
+    private final BulkDataDeleter bulkDataDeleter;
+    private final NdjsonDataTransfer ndjsonDataTransfer;
+    private final AccountDataExporter accountDataExporter;
+
+    public DataApiController(FRAccountRepository accountsRepository, FRAccountCache accountCache,
+                             FRPartyRepository partyRepository, DataUpdater dataUpdater, BulkDataImporter bulkDataImporter, BulkDataDeleter bulkDataDeleter,
+                             NdjsonDataTransfer ndjsonDataTransfer, AccountDataExporter accountDataExporter) {
         this.accountsRepository = accountsRepository;
-        this.balanceRepository = balanceRepository;
-        this.beneficiaryRepository = beneficiaryRepository;
-        this.productRepository = productRepository;
-        this.standingOrderRepository = standingOrderRepository;
-        this.transactionRepository = transactionRepository;
-        this.statementRepository = statementRepository;
-        this.dataCreator = dataCreator;
-        this.scheduledPayment1Repository = scheduledPayment1Repository;
+        this.accountCache = accountCache;
         this.partyRepository = partyRepository;
         this.dataUpdater = dataUpdater;
-        this.offerRepository = offerRepository;
+        this.bulkDataImporter = bulkDataImporter;
+        this.bulkDataDeleter = bulkDataDeleter;
+        this.ndjsonDataTransfer = ndjsonDataTransfer;
+        this.accountDataExporter = accountDataExporter;
     }
 
     @Override
     public ResponseEntity<Page<FRAccountData>> exportAccountData(
             @PageableDefault Pageable pageable
     ) {
-        List<FRAccountData> accountDatas = new ArrayList<>();
         Page<FRAccount> page = accountsRepository.findAll(pageable);
-        // process last page
-        for (FRAccount account : page.getContent()) {
-            accountDatas.add(getAccount(account));
-        }
+        List<FRAccountData> accountDatas = accountDataExporter.export(page.getContent());
         return ResponseEntity.ok(new PageImpl<>(accountDatas, page.getPageable(), page.getTotalElements()));
     }
 
@@ -114,7 +84,7 @@ public class DataApiController implements DataApi {
     public ResponseEntity<Boolean> hasData(
             @RequestParam("userId") String userId
     ) {
-        return ResponseEntity.ok(accountsRepository.findByUserID(userId).size() > 0);
+        return ResponseEntity.ok(accountCache.findByUserId(userId).size() > 0);
     }
 
     @Override
@@ -122,9 +92,7 @@ public class DataApiController implements DataApi {
             @RequestParam("userId") String userId
     ) {
         FRUserData userData = new FRUserData(userId);
-        for (FRAccount account : accountsRepository.findByUserID(userId)) {
-            userData.addAccountData(getAccount(account));
-        }
+        accountDataExporter.export(accountCache.findByUserId(userId)).forEach(userData::addAccountData);
 
         FRParty byUserId = partyRepository.findByUserId(userId);
         if (byUserId != null) {
@@ -140,14 +108,14 @@ public class DataApiController implements DataApi {
 
         dataUpdater.updateParty(userData);
 
-        Set<String> accountIds = accountsRepository.findByUserID(userData.getUserName())
+        Set<String> accountIds = accountCache.findByUserId(userData.getUserName())
                 .stream()
                 .map(FRAccount::getId)
                 .collect(Collectors.toSet());
         for (FRAccountData accountDataDiff : userData.getAccountDatas()) {
 
             String accountId = accountDataDiff.getAccount().getAccountId();
-            //Account
+            //Account, read from Mongo rather than the cache as it is about to be modified
             Optional<FRAccount> isAccount = accountsRepository.findById(accountId);
             if (isAccount.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Account ID '" + accountId + "' doesn't exist");
@@ -195,207 +163,58 @@ public class DataApiController implements DataApi {
             userDataResponse.setParty(toOBParty2(newPartyData));
         }
 
-        Set<String> existingAccountIds = accountsRepository.findByUserID(userData.getUserName())
+        Set<String> existingAccountIds = accountCache.findByUserId(userData.getUserName())
                 .stream()
                 .map(FRAccount::getId)
                 .collect(Collectors.toSet());
 
-        for (FRAccountData accountData : userData.getAccountDatas()) {
-            FRAccountData accountDataResponse = new FRAccountData();
-
-            //Account
-            if (accountData.getAccount() != null) {
-                FRFinancialAccount frAccount = dataCreator.createAccount(accountData, userData.getUserName()).getAccount();
-                accountDataResponse.setAccount(toOBAccount6(frAccount));
-                existingAccountIds.add(accountDataResponse.getAccount().getAccountId());
-            }
-            //Product
-            dataCreator.createProducts(accountData, existingAccountIds).ifPresent(accountDataResponse::setProduct);
-            //Party
-            dataCreator.createParty(accountData).ifPresent(p -> accountDataResponse.setParty(toOBParty2(p)));
-            //Balance
-            dataCreator.createBalances(accountData, existingAccountIds).forEach(b -> accountDataResponse.addBalance(toOBCashBalance1(b.getBalance())));
-            //Beneficiaries
-            dataCreator.createBeneficiaries(accountData, existingAccountIds).forEach(b -> accountDataResponse.addBeneficiary(toOBBeneficiary5(b.getBeneficiary())));
-            //Direct debits
-            dataCreator.createDirectDebits(accountData, existingAccountIds).forEach(d -> accountDataResponse.addDirectDebit(toOBReadDirectDebit2DataDirectDebit(d.getDirectDebit())));
-            //Standing orders
-            dataCreator.createStandingOrders(accountData, existingAccountIds).forEach(d -> accountDataResponse.addStandingOrder(toOBStandingOrder6(d.getStandingOrder())));
-            //Transactions
-            dataCreator.createTransactions(accountData, existingAccountIds).forEach(d -> accountDataResponse.addTransaction(toOBTransaction6(d.getTransaction())));
-            //Statements
-            dataCreator.createStatements(accountData, existingAccountIds).forEach(d -> accountDataResponse.addStatement(toOBStatement2(d.getStatement())));
-            //Scheduled payments
-            dataCreator.createScheduledPayments(accountData, existingAccountIds).forEach(d -> accountDataResponse.addScheduledPayment(toOBScheduledPayment3(d.getScheduledPayment())));
-            //offers
-            dataCreator.createOffers(accountData, existingAccountIds).forEach(d -> accountDataResponse.addOffer(toOBOffer1(d.getOffer())));
-
-            userDataResponse.addAccountData(accountDataResponse);
-        }
+        bulkDataImporter.importAccounts(userData.getAccountDatas(), userData.getUserName(), existingAccountIds)
+                .forEach(userDataResponse::addAccountData);
         return ResponseEntity.ok(userDataResponse);
     }
 
     @Override
-    public ResponseEntity<Boolean> deleteUserData(
+    public ResponseEntity<StreamingResponseBody> exportUserDataNdjson(
             @RequestParam("userId") String userId
     ) {
-        Collection<FRAccount> accounts = accountsRepository.findByUserID(userId);
-        for (FRAccount account : accounts) {
-            deleteAccount(account, userId);
-        }
-        return ResponseEntity.ok(accounts.size() > 0);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(outputStream -> ndjsonDataTransfer.exportUserData(userId, outputStream));
     }
 
-    private void deleteAccount(FRAccount account, String userId) {
-        accountsRepository.deleteById(account.getId());
-        balanceRepository.deleteBalanceByAccountId(account.getId());
-        productRepository.deleteProductByAccountId(account.getId());
-        beneficiaryRepository.deleteBeneficiaryByAccountId(account.getId());
-        directDebitRepository.deleteDirectDebitByAccountId(account.getId());
-        standingOrderRepository.deleteStandingOrderByAccountId(account.getId());
-        transactionRepository.deleteTransactionByAccountId(account.getId());
-        statementRepository.deleteFRStatementByAccountId(account.getId());
-        scheduledPayment1Repository.deleteFRScheduledPaymentByAccountId(account.getId());
-        partyRepository.deleteFRPartyByAccountId(account.getId());
-        offerRepository.deleteFROfferByAccountId(account.getId());
-        partyRepository.deleteFRPartyByAccountId(userId);
-
+    @Override
+    public ResponseEntity<Map<String, Long>> importUserDataNdjson(
+            @RequestParam("userId") String userId,
+            InputStream userData
+    ) throws IOException {
+        return ResponseEntity.ok(ndjsonDataTransfer.importUserData(userId, userData));
     }
 
-    private FRAccountData getAccount(FRAccount account) {
-        FRAccountData accountData = new FRAccountData();
-        accountData.setAccount(toOBAccount6(account.getAccount()));
+    @Override
+    public ResponseEntity<Boolean> deleteUserData(
+            @RequestParam("userId") String userId
+    ) {
+        FRDataDeletion deletion = bulkDataDeleter.delete(userId);
+        return ResponseEntity.ok(bulkDataDeleter.getDeletedAccounts(deletion) > 0);
+    }
 
-        Page<FRProduct> products = productRepository.findByAccountId(account.getId(), (PageRequest.of(0, 1)));
-        if (!products.getContent().isEmpty()) {
-            accountData.setProduct(products.getContent().get(0).getProduct());
-        }
-        {
-            final int pageLimit = 300;
-            int pageNumber = 0;
-            Page<FRBalance> page = balanceRepository.findByAccountId(account.getId(), PageRequest.of(pageNumber, pageLimit));
-            while (page.hasNext()) {
-                for (FRBalance balance : page.getContent()) {
-                    accountData.addBalance(toOBCashBalance1(balance.getBalance()));
-                }
-                page = balanceRepository.findAll(PageRequest.of(pageNumber++, pageLimit));
-            }
-            // process last page
-            for (FRBalance balance : page.getContent()) {
-                accountData.addBalance(toOBCashBalance1(balance.getBalance()));
-            }
-        }
-        {
-            final int pageLimit = 300;
-            int pageNumber = 0;
-            Page<FRBeneficiary> page = beneficiaryRepository.findByAccountId(account.getId(), PageRequest.of(pageNumber, pageLimit));
-            while (page.hasNext()) {
-                for (FRBeneficiary beneficiary : page.getContent()) {
-                    accountData.addBeneficiary(toOBBeneficiary5(beneficiary.getBeneficiary()));
-                }
-                page = beneficiaryRepository.findAll(PageRequest.of(pageNumber++, pageLimit));
-            }
-            // process last page
-            for (FRBeneficiary beneficiary : page.getContent()) {
-                accountData.addBeneficiary(toOBBeneficiary5(beneficiary.getBeneficiary()));
-            }
-        }
-        {
-            final int pageLimit = 300;
-            int pageNumber = 0;
-            Page<FRDirectDebit> page = directDebitRepository.findByAccountId(account.getId(), PageRequest.of(pageNumber, pageLimit));
-            while (page.hasNext()) {
-                for (FRDirectDebit directDebit : page.getContent()) {
-                    accountData.addDirectDebit(toOBReadDirectDebit2DataDirectDebit(directDebit.getDirectDebit()));
-                }
-                page = directDebitRepository.findAll(PageRequest.of(pageNumber++, pageLimit));
-            }
-            // process last page
-            for (FRDirectDebit directDebit : page.getContent()) {
-                accountData.addDirectDebit(toOBReadDirectDebit2DataDirectDebit(directDebit.getDirectDebit()));
-            }
-        }
-        {
-            final int pageLimit = 300;
-            int pageNumber = 0;
-            Page<FRStandingOrder> page = standingOrderRepository.findByAccountId(account.getId(), PageRequest.of(pageNumber, pageLimit));
-            while (page.hasNext()) {
-                for (FRStandingOrder standingOrder : page.getContent()) {
-                    accountData.addStandingOrder(toOBStandingOrder6(standingOrder.getStandingOrder()));
-                }
-                page = standingOrderRepository.findAll(PageRequest.of(pageNumber++, pageLimit));
-            }
-            // process last page
-            for (FRStandingOrder standingOrder : page.getContent()) {
-                accountData.addStandingOrder(toOBStandingOrder6(standingOrder.getStandingOrder()));
-            }
-        }
-        {
-            final int pageLimit = 300;
-            int pageNumber = 0;
-            Page<FRTransaction> page = transactionRepository.findByAccountId(account.getId(), PageRequest.of(pageNumber, pageLimit));
-            while (page.hasNext()) {
-                for (FRTransaction transaction : page.getContent()) {
-                    accountData.addTransaction(toOBTransaction6(transaction.getTransaction()));
-                }
-                page = transactionRepository.findAll(PageRequest.of(pageNumber++, pageLimit));
-            }
-            // process last page
-            for (FRTransaction transaction : page.getContent()) {
-                accountData.addTransaction(toOBTransaction6(transaction.getTransaction()));
-            }
-        }
-        {
-            final int pageLimit = 300;
-            int pageNumber = 0;
-            Page<FRStatement> page = statementRepository.findByAccountId(account.getId(), PageRequest.of(pageNumber, pageLimit));
-            while (page.hasNext()) {
-                for (FRStatement statement1 : page.getContent()) {
-                    accountData.addStatement(toOBStatement2(statement1.getStatement()));
-                }
-                page = statementRepository.findAll(PageRequest.of(pageNumber++, pageLimit));
-            }
-            // process last page
-            for (FRStatement statement1 : page.getContent()) {
-                accountData.addStatement(toOBStatement2(statement1.getStatement()));
-            }
-        }
-        {
-            final int pageLimit = 300;
-            int pageNumber = 0;
-            Page<FRScheduledPayment> page = scheduledPayment1Repository.findByAccountId(account.getId(), PageRequest.of(pageNumber, pageLimit));
-            while (page.hasNext()) {
-                for (FRScheduledPayment scheduledPayment1 : page.getContent()) {
-                    accountData.addScheduledPayment(toOBScheduledPayment3(scheduledPayment1.getScheduledPayment()));
-                }
-                page = scheduledPayment1Repository.findAll(PageRequest.of(pageNumber++, pageLimit));
-            }
-            // process last page
-            for (FRScheduledPayment scheduledPayment1 : page.getContent()) {
-                accountData.addScheduledPayment(toOBScheduledPayment3(scheduledPayment1.getScheduledPayment()));
-            }
-        }
-        {
-            FRParty party = partyRepository.findByAccountId(account.getId());
-            if (party != null) {
-                accountData.setParty(toOBParty2(party.getParty()));
-            }
-        }
-        {
-            final int pageLimit = 300;
-            int pageNumber = 0;
-            Page<FROffer> page = offerRepository.findByAccountId(account.getId(), PageRequest.of(pageNumber, pageLimit));
-            while (page.hasNext()) {
-                for (FROffer offer1 : page.getContent()) {
-                    accountData.addOffer(toOBOffer1(offer1.getOffer()));
-                }
-                page = offerRepository.findAll(PageRequest.of(pageNumber++, pageLimit));
-            }
-            // process last page
-            for (FROffer offer1 : page.getContent()) {
-                accountData.addOffer(toOBOffer1(offer1.getOffer()));
-            }
+    @Override
+    public ResponseEntity<FRDataDeletion> bulkDeleteUserData(
+            @RequestParam("userId") String userId,
+            @RequestParam(name = "async", defaultValue = "false") boolean async
+    ) {
+        if (async) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkDataDeleter.deleteAsync(userId));
         }
-        return accountData;
+        return ResponseEntity.ok(bulkDataDeleter.delete(userId));
+    }
+
+    @Override
+    public ResponseEntity<FRDataDeletion> getDataDeletion(
+            @PathVariable("jobId") String jobId
+    ) {
+        return bulkDataDeleter.getDeletion(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 }
@@ -18,6 +18,7 @@ package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRPartyData;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccountData;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.beneficiaries.FRBeneficiaryRepository;
@@ -29,6 +30,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.acco
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.standingorders.FRStandingOrderRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.statements.FRStatementRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
 import lombok.NoArgsConstructor;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,8 +44,8 @@ import uk.org.openbanking.datamodel.account.*;
 import java.util.*;
 
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRAccountBeneficiaryConverter.toFRAccountBeneficiary;
-import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRCashBalanceConverter.toFRBalanceType;
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRCashBalanceConverter.toFRCashBalance;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRCashBalanceConverter.toOBBalanceType1Code;
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRDirectDebitConverter.toFRDirectDebitData;
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRFinancialAccountConverter.toFRFinancialAccount;
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FROfferConverter.toFROfferData;
@@ -68,6 +70,8 @@ public class DataCreator {
     private FRScheduledPaymentRepository scheduledPaymentRepository;
     private FRPartyRepository partyRepository;
     private FROfferRepository offerRepository;
+    private TransactionCountCache transactionCountCache;
+    private FRAccountCache accountCache;
     private int documentLimit;
     private int accountLimit;
 
@@ -77,7 +81,8 @@ public class DataCreator {
                        FRProductRepository productRepository, FRStandingOrderRepository standingOrderRepository,
                        FRTransactionRepository transactionRepository, FRStatementRepository statementRepository,
                        FRScheduledPaymentRepository scheduledPaymentRepository, FRPartyRepository partyRepository,
-                       FROfferRepository offerRepository,
+                       FROfferRepository offerRepository, TransactionCountCache transactionCountCache,
+                       FRAccountCache accountCache,
                        @Value("${rs.data.upload.limit.documents}") Integer documentLimit,
                        @Value("${rs.data.upload.limit.accounts}") Integer accountLimit) {
         this.accountsRepository = accountsRepository;
@@ -91,11 +96,13 @@ public class DataCreator {
         this.scheduledPaymentRepository = scheduledPaymentRepository;
         this.partyRepository = partyRepository;
         this.offerRepository = offerRepository;
+        this.transactionCountCache = transactionCountCache;
+        this.accountCache = accountCache;
         this.documentLimit = documentLimit;
         this.accountLimit = accountLimit;
     }
 
-    List<FROffer> createOffers(FRAccountData accountData, Set<String> accountIds) {
+    List<FROffer> prepareOffers(FRAccountData accountData, Set<String> accountIds) {
         List<FROffer> offers = new ArrayList<>();
         for (OBOffer1 obOffer: accountData.getOffers()) {
             String accountId = obOffer.getAccountId() != null ? obOffer.getAccountId() : accountData.getAccount().getAccountId();
@@ -110,14 +117,16 @@ public class DataCreator {
             offer.setId(obOffer.getOfferId());
             offers.add(offer);
         }
-        if (offerRepository.countByAccountIdIn(accountIds) + offers.size() > documentLimit) {
-            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
-                    String.format("Cannot add offers as it has exceeded maximum limit of %s", documentLimit));
-        }
+        return offers;
+    }
+
+    List<FROffer> createOffers(FRAccountData accountData, Set<String> accountIds) {
+        List<FROffer> offers = prepareOffers(accountData, accountIds);
+        checkDocumentLimit(offerRepository.countByAccountIdIn(accountIds) + offers.size(), "offers");
         return offerRepository.saveAll(offers);
     }
 
-    List<FRScheduledPayment> createScheduledPayments(FRAccountData accountData, Set<String> accountIds) {
+    List<FRScheduledPayment> prepareScheduledPayments(FRAccountData accountData, Set<String> accountIds) {
         List<FRScheduledPayment> scheduledPayments = new ArrayList<>();
         for (OBScheduledPayment3 obScheduledPayment: accountData.getScheduledPayments()) {
             String accountId = obScheduledPayment.getAccountId() != null ? obScheduledPayment.getAccountId() : accountData.getAccount().getAccountId();
@@ -133,14 +142,16 @@ public class DataCreator {
             scheduledPayment.setStatus(FRScheduledPayment.ScheduledPaymentStatus.PENDING);
             scheduledPayments.add(scheduledPayment);
         }
-        if (scheduledPaymentRepository.countByAccountIdIn(accountIds) + scheduledPayments.size() > documentLimit) {
-            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
-                    String.format("Cannot add scheduled payments as it has exceeded maximum limit of %s", documentLimit));
-        }
+        return scheduledPayments;
+    }
+
+    List<FRScheduledPayment> createScheduledPayments(FRAccountData accountData, Set<String> accountIds) {
+        List<FRScheduledPayment> scheduledPayments = prepareScheduledPayments(accountData, accountIds);
+        checkDocumentLimit(scheduledPaymentRepository.countByAccountIdIn(accountIds) + scheduledPayments.size(), "scheduled payments");
         return scheduledPaymentRepository.saveAll(scheduledPayments);
     }
 
-    List<FRStatement> createStatements(FRAccountData accountData, Set<String> accountIds) {
+    List<FRStatement> prepareStatements(FRAccountData accountData, Set<String> accountIds) {
         List<FRStatement> statements = new ArrayList<>();
         for (OBStatement2 obStatement: accountData.getStatements()) {
             String accountId = obStatement.getAccountId() != null ? obStatement.getAccountId() : accountData.getAccount().getAccountId();
@@ -157,14 +168,16 @@ public class DataCreator {
             statement.setId(obStatement.getStatementId());
             statements.add(statement);
         }
-        if (statementRepository.countByAccountIdIn(accountIds) + statements.size() > documentLimit) {
-            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
-                    String.format("Cannot add statements as it has exceeded maximum limit of %s", documentLimit));
-        }
+        return statements;
+    }
+
+    List<FRStatement> createStatements(FRAccountData accountData, Set<String> accountIds) {
+        List<FRStatement> statements = prepareStatements(accountData, accountIds);
+        checkDocumentLimit(statementRepository.countByAccountIdIn(accountIds) + statements.size(), "statements");
         return statementRepository.saveAll(statements);
     }
 
-    List<FRTransaction> createTransactions(FRAccountData accountData, Set<String> accountIds) {
+    List<FRTransaction> prepareTransactions(FRAccountData accountData, Set<String> accountIds) {
         List<FRTransaction> transactions = new ArrayList<>();
         for (OBTransaction6 obTransaction: accountData.getTransactions()) {
             String accountId = obTransaction.getAccountId() != null ? obTransaction.getAccountId() : accountData.getAccount().getAccountId();
@@ -180,14 +193,18 @@ public class DataCreator {
             transaction.setId(obTransaction.getTransactionId());
             transactions.add(transaction);
         }
-        if (transactionRepository.countByAccountIdIn(accountIds) + transactions.size() > documentLimit) {
-            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
-                    String.format("Cannot add transactions as it has exceeded maximum limit of %s", documentLimit));
-        }
-        return transactionRepository.saveAll(transactions);
+        return transactions;
     }
 
-    List<FRStandingOrder> createStandingOrders(FRAccountData accountData, Set<String> accountIds) {
+    List<FRTransaction> createTransactions(FRAccountData accountData, Set<String> accountIds) {
+        List<FRTransaction> transactions = prepareTransactions(accountData, accountIds);
+        checkDocumentLimit(transactionRepository.countByAccountIdIn(accountIds) + transactions.size(), "transactions");
+        List<FRTransaction> savedTransactions = transactionRepository.saveAll(transactions);
+        transactionCountCache.onTransactionsCreated(savedTransactions);
+        return savedTransactions;
+    }
+
+    List<FRStandingOrder> prepareStandingOrders(FRAccountData accountData, Set<String> accountIds) {
         List<FRStandingOrder> standingOrders = new ArrayList<>();
         for (OBStandingOrder6 obStandingOrder: accountData.getStandingOrders()) {
             String accountId = obStandingOrder.getAccountId() != null ? obStandingOrder.getAccountId() : accountData.getAccount().getAccountId();
@@ -203,14 +220,16 @@ public class DataCreator {
             standingOrder.setStatus(FRStandingOrder.StandingOrderStatus.PENDING);
             standingOrders.add(standingOrder);
         }
-        if (standingOrderRepository.countByAccountIdIn(accountIds) + standingOrders.size() > documentLimit) {
-            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
-                    String.format("Cannot add standing orders as it has exceeded maximum limit of %s", documentLimit));
-        }
+        return standingOrders;
+    }
+
+    List<FRStandingOrder> createStandingOrders(FRAccountData accountData, Set<String> accountIds) {
+        List<FRStandingOrder> standingOrders = prepareStandingOrders(accountData, accountIds);
+        checkDocumentLimit(standingOrderRepository.countByAccountIdIn(accountIds) + standingOrders.size(), "standing orders");
         return standingOrderRepository.saveAll(standingOrders);
     }
 
-    List<FRDirectDebit> createDirectDebits(FRAccountData accountData, Set<String> accountIds) {
+    List<FRDirectDebit> prepareDirectDebits(FRAccountData accountData, Set<String> accountIds) {
         List<FRDirectDebit> directDebits = new ArrayList<>();
         for (OBReadDirectDebit2DataDirectDebit obDirectDebit: accountData.getDirectDebits()) {
             String accountId = obDirectDebit.getAccountId() != null ? obDirectDebit.getAccountId() : accountData.getAccount().getAccountId();
@@ -225,14 +244,16 @@ public class DataCreator {
             directDebit.setId(obDirectDebit.getDirectDebitId());
             directDebits.add(directDebit);
         }
-        if (directDebitRepository.countByAccountIdIn(accountIds) + directDebits.size() > documentLimit) {
-            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
-                    String.format("Cannot add direct debits as it has exceeded maximum limit of %s", documentLimit));
-        }
+        return directDebits;
+    }
+
+    List<FRDirectDebit> createDirectDebits(FRAccountData accountData, Set<String> accountIds) {
+        List<FRDirectDebit> directDebits = prepareDirectDebits(accountData, accountIds);
+        checkDocumentLimit(directDebitRepository.countByAccountIdIn(accountIds) + directDebits.size(), "direct debits");
         return directDebitRepository.saveAll(directDebits);
     }
 
-    List<FRBeneficiary> createBeneficiaries(FRAccountData accountData, Set<String> accountIds) {
+    List<FRBeneficiary> prepareBeneficiaries(FRAccountData accountData, Set<String> accountIds) {
         List<FRBeneficiary> beneficiaries = new ArrayList<>();
         for (OBBeneficiary5 obBeneficiary: accountData.getBeneficiaries()) {
             String accountId = obBeneficiary.getAccountId() != null ? obBeneficiary.getAccountId() : accountData.getAccount().getAccountId();
@@ -247,14 +268,16 @@ public class DataCreator {
             beneficiary.setId(obBeneficiary.getBeneficiaryId());
             beneficiaries.add(beneficiary);
         }
-        if (beneficiaryRepository.countByAccountIdIn(accountIds) + beneficiaries.size() > documentLimit) {
-            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
-                    String.format("Cannot add beneficiaries as it has exceeded maximum limit of %s", documentLimit));
-        }
+        return beneficiaries;
+    }
+
+    List<FRBeneficiary> createBeneficiaries(FRAccountData accountData, Set<String> accountIds) {
+        List<FRBeneficiary> beneficiaries = prepareBeneficiaries(accountData, accountIds);
+        checkDocumentLimit(beneficiaryRepository.countByAccountIdIn(accountIds) + beneficiaries.size(), "beneficiaries");
         return beneficiaryRepository.saveAll(beneficiaries);
     }
 
-    Optional<FRPartyData> createParty(FRAccountData accountData) {
+    Optional<FRParty> prepareParty(FRAccountData accountData) {
         if (accountData.getParty() == null) {
             return Optional.empty();
         }
@@ -263,10 +286,14 @@ public class DataCreator {
         party.setAccountId(accountData.getAccount().getAccountId());
         party.setId(accountData.getParty().getPartyId());
         party.setParty(toFRPartyData(accountData.getParty()));
-        return Optional.of(partyRepository.save(party).getParty());
+        return Optional.of(party);
     }
 
-    Optional<OBReadProduct2DataProduct> createProducts(FRAccountData accountData, Set<String> accountIds) {
+    Optional<FRPartyData> createParty(FRAccountData accountData) {
+        return prepareParty(accountData).map(party -> partyRepository.save(party).getParty());
+    }
+
+    Optional<FRProduct> prepareProduct(FRAccountData accountData, Set<String> accountIds) {
         OBReadProduct2DataProduct obProduct = accountData.getProduct();
         if (obProduct == null) {
             return Optional.empty();
@@ -281,10 +308,14 @@ public class DataCreator {
         product.setAccountId(accountId);
         product.setId(obProduct.getProductId());
         product.setProduct(obProduct);
-        return Optional.of(productRepository.save(product).getProduct());
+        return Optional.of(product);
     }
 
-    List<FRBalance> createBalances(FRAccountData accountData, Set<String> accountIds) {
+    Optional<OBReadProduct2DataProduct> createProducts(FRAccountData accountData, Set<String> accountIds) {
+        return prepareProduct(accountData, accountIds).map(product -> productRepository.save(product).getProduct());
+    }
+
+    List<FRBalance> prepareBalances(FRAccountData accountData, Set<String> accountIds) {
         List<FRBalance> balances = new ArrayList<>();
         for (OBCashBalance1 obCashBalance: accountData.getBalances()) {
             String accountId = obCashBalance.getAccountId() != null ? obCashBalance.getAccountId() : accountData.getAccount().getAccountId();
@@ -292,38 +323,71 @@ public class DataCreator {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Must specify and own the account ID to update");
             }
             obCashBalance.setAccountId(accountId);
-            // Check if balance type exists for account already
-            Optional<FRBalance> isExists = balanceRepository.findByAccountIdAndBalanceType(obCashBalance.getAccountId(), toFRBalanceType(obCashBalance.getType()));
-            if (isExists.isPresent()) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                        String.format("A Balance with this Balance Type '%s' already exists for this Account Id:%s",
-                                obCashBalance.getType(), obCashBalance.getAccountId()));
-            }
             FRBalance balance = new FRBalance();
             balance.setAccountId(obCashBalance.getAccountId());
             balance.setBalance(toFRCashBalance(obCashBalance));
             balances.add(balance);
         }
-        if (balanceRepository.countByAccountIdIn(accountIds) + balances.size() > documentLimit) {
-            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
-                    String.format("Cannot add balance as it has exceeded maximum limit of %s", documentLimit));
+        return balances;
+    }
+
+    List<FRBalance> createBalances(FRAccountData accountData, Set<String> accountIds) {
+        List<FRBalance> balances = prepareBalances(accountData, accountIds);
+        for (FRBalance balance : balances) {
+            // Check if balance type exists for account already
+            Optional<FRBalance> isExists = balanceRepository.findByAccountIdAndBalanceType(balance.getAccountId(), balance.getBalance().getType());
+            if (isExists.isPresent()) {
+                throw duplicateBalance(balance);
+            }
         }
+        checkDocumentLimit(balanceRepository.countByAccountIdIn(accountIds) + balances.size(), "balance");
         return balanceRepository.saveAll(balances);
     }
 
-    FRAccount createAccount(FRAccountData accountData, String username) {
+    static ResponseStatusException duplicateBalance(FRBalance balance) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                String.format("A Balance with this Balance Type '%s' already exists for this Account Id:%s",
+                        toOBBalanceType1Code(balance.getBalance().getType()), balance.getAccountId()));
+    }
+
+    /**
+     * @param documentCount the number of documents there would be once the new ones are saved.
+     * @param documentType the type of documents, as mentioned in the error message.
+     * @throws ResponseStatusException if the count exceeds the limit of documents.
+     */
+    void checkDocumentLimit(long documentCount, String documentType) {
+        if (documentCount > documentLimit) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    String.format("Cannot add %s as it has exceeded maximum limit of %s", documentType, documentLimit));
+        }
+    }
+
+    /**
+     * @param accountCount the number of accounts the user would have once the new ones are saved.
+     * @throws ResponseStatusException if the count exceeds the limit of accounts.
+     */
+    void checkAccountLimit(long accountCount) {
+        if (accountCount > accountLimit) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    String.format("Cannot add account as it has exceeded maximum limit of %s", accountLimit));
+        }
+    }
+
+    FRAccount prepareAccount(FRAccountData accountData, String username) {
         FRAccount account = new FRAccount();
         account.setCreated(new DateTime());
         account.setId(UUID.randomUUID().toString());
         account.setUserID(username);
         accountData.getAccount().setAccountId(account.getId());
         account.setAccount(toFRFinancialAccount(accountData.getAccount()));
-        account = accountsRepository.save(account);
+        return account;
+    }
+
+    FRAccount createAccount(FRAccountData accountData, String username) {
+        FRAccount account = accountsRepository.save(prepareAccount(accountData, username));
+        accountCache.invalidateUser(username);
         Example<FRAccount> example = Example.of(FRAccount.builder().userID(username).build());
-        if (accountsRepository.count(example) > accountLimit) {
-            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
-                    String.format("Cannot add account as it has exceeded maximum limit of %s", documentLimit));
-        }
+        checkAccountLimit(accountsRepository.count(example));
         return account;
     }
     
@@ -20,6 +20,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccoun
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRUserData;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.beneficiaries.FRBeneficiaryRepository;
@@ -31,6 +32,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.acco
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.standingorders.FRStandingOrderRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.statements.FRStatementRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
 import com.google.common.collect.ImmutableList;
 import lombok.NoArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -68,6 +70,8 @@ public class DataUpdater {
     private FRScheduledPaymentRepository scheduledPaymentRepository;
     private FRPartyRepository partyRepository;
     private FROfferRepository offerRepository;
+    private TransactionCountCache transactionCountCache;
+    private FRAccountCache accountCache;
     private int documentLimit;
 
     @Autowired
@@ -76,7 +80,9 @@ public class DataUpdater {
                        FRProductRepository productRepository, FRStandingOrderRepository standingOrderRepository,
                        FRTransactionRepository transactionRepository, FRStatementRepository statementRepository,
                        FRScheduledPaymentRepository scheduledPaymentRepository, FRPartyRepository partyRepository,
-                       FROfferRepository offerRepository, @Value("${rs.data.upload.limit.documents}") Integer documentLimit) {
+                       FROfferRepository offerRepository, TransactionCountCache transactionCountCache,
+                       FRAccountCache accountCache,
+                       @Value("${rs.data.upload.limit.documents}") Integer documentLimit) {
         this.accountsRepository = accountsRepository;
         this.balanceRepository = balanceRepository;
         this.beneficiaryRepository = beneficiaryRepository;
@@ -88,6 +94,8 @@ public class DataUpdater {
         this.scheduledPaymentRepository = scheduledPaymentRepository;
         this.partyRepository = partyRepository;
         this.offerRepository = offerRepository;
+        this.transactionCountCache = transactionCountCache;
+        this.accountCache = accountCache;
         this.documentLimit = documentLimit;
     }
 
@@ -143,6 +151,7 @@ public class DataUpdater {
             account.getAccount().setServicer(frAccountDiff.getServicer());
         }
         accountsRepository.save(account);
+        accountCache.invalidateAccount(account.getId());
     }
 
     void updateBalances(FRAccountData accountDataDiff, Set<String> accountIds) {
@@ -527,6 +536,8 @@ public class DataUpdater {
                 .addAll(newTransactionsToSave)
                 .build();
         transactionRepository.saveAll(allTransactions);
+        // Booking dates and credit/debit indicators may have changed, so the counts can't be updated incrementally
+        transactionCountCache.evictAccount(accountId);
     }
 
     void updateStatements(FRAccountData accountDataDiff, Set<String> accountIds) {
@@ -20,10 +20,12 @@ import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.acc
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
 import com.forgerock.securebanking.openbanking.uk.error.OBErrorException;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRSyntheticDataProfile;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRUserData;
 import com.forgerock.securebanking.openbanking.uk.rs.configuration.DataConfigurationProperties;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.beneficiaries.FRBeneficiaryRepository;
@@ -47,6 +49,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import uk.org.openbanking.datamodel.account.OBExternalAccountIdentification4Code;
 import uk.org.openbanking.datamodel.account.OBExternalStatementAmountType1Code;
@@ -75,8 +78,8 @@ public class FakeDataApiController implements FakeDataApi {
 
     private static final String GBP = "GBP";
     private static final String EUR = "EUR";
-    private static final String COMPANIES_CSV = "companies.csv";
-    private static final String NAMES_CSV = "names.csv";
+    static final String COMPANIES_CSV = "companies.csv";
+    static final String NAMES_CSV = "names.csv";
 
     public static final String STATEMENT_DATE_FORMAT = "yyyy-MM";
     public static final String STATEMENT_HUMAN_DATE_FORMAT = "MMM yyyy";
@@ -88,6 +91,8 @@ public class FakeDataApiController implements FakeDataApi {
     @Autowired
     private FRAccountRepository accountsRepository;
     @Autowired
+    private FRAccountCache accountCache;
+    @Autowired
     private FRBalanceRepository balanceRepository;
     @Autowired
     private FRBeneficiaryRepository beneficiaryRepository;
@@ -113,6 +118,8 @@ public class FakeDataApiController implements FakeDataApi {
     private ObjectMapper mapper;
     @Autowired
     private DataConfigurationProperties dataConfig;
+    @Autowired
+    private SyntheticDataGenerator syntheticDataGenerator;
 
     private List<String> companies;
     private List<String> names;
@@ -143,6 +150,13 @@ public class FakeDataApiController implements FakeDataApi {
         }
     }
 
+    @Override
+    public ResponseEntity<Map<String, Long>> generateSyntheticData(
+            @RequestBody FRSyntheticDataProfile profile
+    ) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(syntheticDataGenerator.generate(profile));
+    }
+
     private FRUserData getTemplate(Resource template, String username) {
         try {
             String content = StreamUtils.copyToString(template.getInputStream(), Charset.defaultCharset());
@@ -158,7 +172,7 @@ public class FakeDataApiController implements FakeDataApi {
      {
         LOGGER.debug("Generate data for user '{}'", userId);
 
-        if (accountsRepository.findByUserID(userId).size() > 0 ) {
+        if (accountCache.findByUserId(userId).size() > 0 ) {
             LOGGER.debug("User {} already have some data", userId);
         }
         {
@@ -265,6 +279,7 @@ public class FakeDataApiController implements FakeDataApi {
         }
 
         generateGlobalParty(userId, username);
+        accountCache.invalidateUser(userId);
 
         return dataController.exportUserData(userId).getBody();
      }
@@ -329,6 +344,20 @@ public class FakeDataApiController implements FakeDataApi {
         accountsRepository.save(account);
     }
 
+    /**
+     * Generates the transactions of one monthly statement of the account, the same way {@link #generateFakeData} does,
+     * without saving anything. Also used to build realistic benchmark fixtures.
+     *
+     * @param account the account owning the transactions.
+     * @param statementStart the first day of the statement.
+     * @return the transactions of the statement (between 7 and 30).
+     */
+    List<FRTransaction> generateStatementTransactions(FRAccount account, DateTime statementStart) {
+        FRBalance balance = generateBalance(account, FRCreditDebitIndicator.DEBIT, null);
+        FRStatement statement = generateStatements(account, balance, statementStart);
+        return generateTransactions(account, statement, balance);
+    }
+
     private FRBalance generateBalance(FRAccount account, FRCreditDebitIndicator creditDebitCode, List<FRCreditLine> creditLine) {
         Double amount = generateAmount(1000.0d, 10000.0d);
         FRBalance balance = new FRBalance();
@@ -700,7 +729,7 @@ public class FakeDataApiController implements FakeDataApi {
         return bd.doubleValue();
     }
 
-    private List<String> loadCSV(Resource resource) throws IOException {
+    static List<String> loadCSV(Resource resource) throws IOException {
 
         LOGGER.debug("Load resource {}", resource);
         List<String> content = new ArrayList<>();
@@ -0,0 +1,304 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.CountOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Exports and imports the data of a user as newline delimited JSON (NDJSON), one document per line:
+ * <pre>
+ * {"type":"FRTransaction","document":{"_id":"...","accountId":"...", ...}}
+ * </pre>
+ * The {@code type} is the name of the collection and the {@code document} is the stored document in MongoDB Extended
+ * JSON, so that a snapshot can be restored without any loss. Both directions stream: the export reads from MongoDB
+ * cursors and writes with a Jackson generator, the import reads one line at a time and inserts in batches. Neither
+ * holds more than a batch of documents in memory, whatever the number of documents of the user.
+ */
+@Service
+@Slf4j
+public class NdjsonDataTransfer {
+
+    static final String TYPE = "type";
+    static final String DOCUMENT = "document";
+
+    private static final String ID = "_id";
+    private static final String ACCOUNT_ID = "accountId";
+    private static final JsonWriterSettings EXTENDED_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED)
+            .build();
+
+    /**
+     * The documents that belong to an account, in the order they are exported.
+     */
+    private static final List<Class<?>> ACCOUNT_DOCUMENTS = List.of(
+            FRBalance.class,
+            FRProduct.class,
+            FRBeneficiary.class,
+            FRDirectDebit.class,
+            FRStandingOrder.class,
+            FRTransaction.class,
+            FRStatement.class,
+            FRScheduledPayment.class,
+            FROffer.class
+    );
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionCountCache transactionCountCache;
+    private final FRAccountCache accountCache;
+    private final DataCreator dataCreator;
+    private final int batchSize;
+    private final long documentLimit;
+
+    public NdjsonDataTransfer(MongoTemplate mongoTemplate, ObjectMapper objectMapper,
+                              TransactionCountCache transactionCountCache, FRAccountCache accountCache,
+                              DataCreator dataCreator,
+                              @Value("${rs.data.ndjson.batch-size:1000}") int batchSize,
+                              @Value("${rs.data.ndjson.limit.documents:10000000}") long documentLimit) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionCountCache = transactionCountCache;
+        this.accountCache = accountCache;
+        this.dataCreator = dataCreator;
+        this.batchSize = batchSize;
+        this.documentLimit = documentLimit;
+    }
+
+    /**
+     * Writes the accounts of the user, then the parties, then the other documents of the accounts.
+     *
+     * @param userId the user whose data is exported.
+     * @param outputStream where the lines are written to. It is not closed.
+     * @throws IOException if writing fails, e.g. the client went away.
+     */
+    public void exportUserData(String userId, OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // The lines are separated explicitly, the default separator would start each line but the first with a space
+        generator.setRootValueSeparator(null);
+        List<String> accountIds = new ArrayList<>();
+        long count = write(generator, FRAccount.class, new Document("userID", userId),
+                account -> accountIds.add(account.getString(ID)));
+        count += write(generator, FRParty.class, new Document("$or", List.of(
+                new Document("userId", userId),
+                new Document(ACCOUNT_ID, new Document("$in", accountIds)))), null);
+        if (!accountIds.isEmpty()) {
+            Document byAccount = new Document(ACCOUNT_ID, new Document("$in", accountIds));
+            for (Class<?> documentClass : ACCOUNT_DOCUMENTS) {
+                count += write(generator, documentClass, byAccount, null);
+            }
+        }
+        generator.close();
+        log.debug("Exported {} documents of user '{}'", count, userId);
+    }
+
+    /**
+     * Imports the lines of an export. Accounts are given to the user, and must come before the documents that belong
+     * to them; the other documents must belong to an account of the user. An account that already exists is only
+     * accepted if the user owns it (and is then rejected by its insert), so that its ID cannot be used to import
+     * documents into the account of another user.
+     *
+     * @param userId the user who owns the imported data.
+     * @param inputStream the lines to import.
+     * @return the number of documents imported, per type.
+     * @throws IOException if reading fails.
+     * @throws ResponseStatusException if a line is invalid (400), the limits are exceeded (413) or documents could not
+     *                                 be inserted, e.g. as they already exist or an account belongs to another user
+     *                                 (409). The documents of the previous
+     *                                 batches are not removed.
+     */
+    public Map<String, Long> importUserData(String userId, InputStream inputStream) throws IOException {
+        Map<String, Class<?>> documentClasses = new HashMap<>();
+        documentClasses.put(collectionName(FRAccount.class), FRAccount.class);
+        documentClasses.put(collectionName(FRParty.class), FRParty.class);
+        ACCOUNT_DOCUMENTS.forEach(documentClass -> documentClasses.put(collectionName(documentClass), documentClass));
+
+        Set<String> accountIds = findAccountIds(userId);
+        int existingAccounts = accountIds.size();
+        Set<String> accountsWithTransactions = new HashSet<>();
+        Map<String, List<Document>> batches = new LinkedHashMap<>();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        long lineNumber = 0;
+        long documentCount = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Document record = parse(line, lineNumber);
+                String type = record.get(TYPE) instanceof String ? record.getString(TYPE) : null;
+                Class<?> documentClass = type == null ? null : documentClasses.get(type);
+                if (documentClass == null || !(record.get(DOCUMENT) instanceof Document)) {
+                    throw invalidLine(lineNumber, "must have a known '" + TYPE + "' and a '" + DOCUMENT + "' object");
+                }
+                Document document = record.get(DOCUMENT, Document.class);
+                claim(userId, documentClass, document, accountIds, lineNumber);
+                if (documentClass == FRAccount.class) {
+                    dataCreator.checkAccountLimit(accountIds.size());
+                } else if (documentClass == FRTransaction.class) {
+                    accountsWithTransactions.add(document.getString(ACCOUNT_ID));
+                }
+                if (++documentCount > documentLimit) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                            String.format("Cannot import more than %s documents at once", documentLimit));
+                }
+
+                List<Document> batch = batches.computeIfAbsent(type, t -> new ArrayList<>(batchSize));
+                batch.add(document);
+                if (batch.size() >= batchSize) {
+                    insert(type, batch, counts);
+                }
+            }
+            for (Map.Entry<String, List<Document>> batch : batches.entrySet()) {
+                insert(batch.getKey(), batch.getValue(), counts);
+            }
+        } finally {
+            accountsWithTransactions.forEach(transactionCountCache::evictAccount);
+            accountCache.invalidateUser(userId);
+        }
+        log.debug("Imported {} documents ({} new accounts) for user '{}': {}", documentCount,
+                accountIds.size() - existingAccounts, userId, counts);
+        return counts;
+    }
+
+    private long write(JsonGenerator generator, Class<?> documentClass, Document filter,
+                       Consumer<Document> onDocument) throws IOException {
+        String type = collectionName(documentClass);
+        long count = 0;
+        try (MongoCursor<Document> cursor = mongoTemplate.getCollection(type).find(filter)
+                .batchSize(batchSize)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                if (onDocument != null) {
+                    onDocument.accept(document);
+                }
+                generator.writeStartObject();
+                generator.writeStringField(TYPE, type);
+                generator.writeFieldName(DOCUMENT);
+                generator.writeRawValue(document.toJson(EXTENDED_JSON));
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void claim(String userId, Class<?> documentClass, Document document, Set<String> accountIds,
+                       long lineNumber) {
+        if (documentClass == FRAccount.class) {
+            if (!(document.get(ID) instanceof String)) {
+                throw invalidLine(lineNumber, "the account must have a string '" + ID + "'");
+            }
+            String id = document.getString(ID);
+            if (!accountIds.contains(id) && accountExists(id)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(
+                        "Line %s: the account '%s' already exists", lineNumber, id));
+            }
+            document.put("userID", userId);
+            accountIds.add(id);
+            return;
+        }
+        Object accountId = document.get(ACCOUNT_ID);
+        if (documentClass == FRParty.class && accountId == null) {
+            document.put("userId", userId);
+            return;
+        }
+        if (!accountIds.contains(accountId)) {
+            throw invalidLine(lineNumber, String.format("the account '%s' is not owned by user '%s'",
+                    accountId, userId));
+        }
+    }
+
+    private void insert(String type, List<Document> batch, Map<String, Long> counts) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int inserted;
+        try {
+            inserted = mongoTemplate.bulkOps(BulkMode.UNORDERED, type).insert(batch).execute().getInsertedCount();
+        } catch (BulkOperationException e) {
+            counts.merge(type, (long) e.getResult().getInsertedCount(), Long::sum);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(
+                    "%s of %s '%s' documents could not be inserted, first error: %s", e.getErrors().size(),
+                    batch.size(), type, e.getErrors().get(0).getMessage()), e);
+        }
+        counts.merge(type, (long) inserted, Long::sum);
+        batch.clear();
+    }
+
+    private Set<String> findAccountIds(String userId) {
+        Set<String> accountIds = new HashSet<>();
+        try (MongoCursor<Document> cursor = mongoTemplate.getCollection(collectionName(FRAccount.class))
+                .find(new Document("userID", userId))
+                .projection(new Document(ID, 1))
+                .iterator()) {
+            cursor.forEachRemaining(account -> accountIds.add(account.getString(ID)));
+        }
+        return accountIds;
+    }
+
+    private boolean accountExists(String accountId) {
+        return mongoTemplate.getCollection(collectionName(FRAccount.class))
+                .countDocuments(new Document(ID, accountId), new CountOptions().limit(1)) > 0;
+    }
+
+    private static Document parse(String line, long lineNumber) {
+        try {
+            return Document.parse(line);
+        } catch (RuntimeException e) {
+            // e.g. a JsonParseException, or a BsonInvalidOperationException if the line is not an object
+            throw invalidLine(lineNumber, "is not a valid JSON object");
+        }
+    }
+
+    private static ResponseStatusException invalidLine(long lineNumber, String reason) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("Line %s: %s", lineNumber, reason));
+    }
+
+    private String collectionName(Class<?> documentClass) {
+        return mongoTemplate.getCollectionName(documentClass);
+    }
+}
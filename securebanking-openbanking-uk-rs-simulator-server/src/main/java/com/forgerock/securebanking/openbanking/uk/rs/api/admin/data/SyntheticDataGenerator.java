@@ -0,0 +1,401 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.*;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRSyntheticDataProfile;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import uk.org.openbanking.datamodel.account.OBExternalAccountIdentification4Code;
+import uk.org.openbanking.datamodel.account.OBExternalStatementAmountType1Code;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount.*;
+import static com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.FakeDataApiController.COMPANIES_CSV;
+import static com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.FakeDataApiController.NAMES_CSV;
+import static com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.FakeDataApiController.STATEMENT_DATE_FORMAT;
+import static com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.FakeDataApiController.loadCSV;
+
+/**
+ * Generates a large dataset, as described by a {@link FRSyntheticDataProfile}, to load test the simulator.
+ * <p>
+ * The users are split between the tasks of a fork/join pool. Each task is handed its own {@link SplittableRandom},
+ * split from the seed of the profile in a fixed order, so that the generated data only depends on the profile and not
+ * on how the tasks were scheduled. The documents of each task are written with unordered bulk inserts, in batches.
+ * <p>
+ * Each user is given a party and the requested number of accounts, each with a balance, monthly statements and
+ * transactions. The transactions are booked in date order and carry the running balance of the account.
+ */
+@Service
+@Slf4j
+public class SyntheticDataGenerator {
+
+    private static final String GBP = "GBP";
+    private static final int USERS_PER_TASK = 4;
+
+    private final MongoTemplate mongoTemplate;
+    private final FRAccountCache accountCache;
+    private final int batchSize;
+    private final long maxTransactions;
+    private final ForkJoinPool pool;
+    private final List<String> companies;
+    private final List<String> names;
+
+    public SyntheticDataGenerator(MongoTemplate mongoTemplate, FRAccountCache accountCache,
+                                  @Value("${rs.data.synthetic.parallelism:0}") int parallelism,
+                                  @Value("${rs.data.synthetic.batch-size:5000}") int batchSize,
+                                  @Value("${rs.data.synthetic.limit.transactions:50000000}") long maxTransactions)
+            throws IOException {
+        this.mongoTemplate = mongoTemplate;
+        this.accountCache = accountCache;
+        this.batchSize = batchSize;
+        this.maxTransactions = maxTransactions;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.companies = loadCSV(new ClassPathResource(COMPANIES_CSV));
+        this.names = loadCSV(new ClassPathResource(NAMES_CSV));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * @param profile the shape of the dataset.
+     * @return the number of documents inserted in each collection.
+     * @throws ResponseStatusException if the profile is invalid, or would generate more transactions than allowed.
+     */
+    public Map<String, Long> generate(FRSyntheticDataProfile profile) {
+        validate(profile);
+        DateTime currentMonth = DateTime.now().withTimeAtStartOfDay().dayOfMonth().withMinimumValue();
+        Map<Class<?>, LongAdder> inserted = new ConcurrentHashMap<>();
+        long start = System.currentTimeMillis();
+        try {
+            pool.invoke(new GenerateUsers(profile, currentMonth, 0, profile.getUsers(),
+                    new SplittableRandom(profile.getSeed()), inserted));
+        } finally {
+            for (int userIndex = 0; userIndex < profile.getUsers(); userIndex++) {
+                accountCache.invalidateUser(profile.getUserIdPrefix() + userIndex);
+            }
+        }
+
+        Map<String, Long> counts = new TreeMap<>();
+        inserted.forEach((documentClass, count) ->
+                counts.put(mongoTemplate.getCollectionName(documentClass), count.sum()));
+        log.info("Generated synthetic data for {} users in {}ms: {}", profile.getUsers(),
+                System.currentTimeMillis() - start, counts);
+        return counts;
+    }
+
+    /**
+     * Generates all of the documents of a single user, without saving them.
+     *
+     * @param profile the shape of the dataset.
+     * @param currentMonth the first day of the current month, i.e. of the latest (ongoing) statement.
+     * @param userIndex the index of the user in the dataset.
+     * @param random the random generator of the user.
+     * @return the documents of the user, by document class.
+     */
+    Map<Class<?>, List<Object>> generateUser(FRSyntheticDataProfile profile, DateTime currentMonth, int userIndex,
+                                             SplittableRandom random) {
+        Map<Class<?>, List<Object>> documents = new LinkedHashMap<>();
+        String userId = profile.getUserIdPrefix() + userIndex;
+        String name = pick(names, random);
+
+        String partyId = randomId(random);
+        add(documents, FRParty.builder()
+                .id(partyId)
+                .userId(userId)
+                .party(FRPartyData.builder().partyId(partyId).name(name).build())
+                .build());
+
+        for (int i = 0; i < profile.getAccountsPerUser(); i++) {
+            generateAccount(profile, currentMonth, userId, name, random, documents);
+        }
+        return documents;
+    }
+
+    private void generateAccount(FRSyntheticDataProfile profile, DateTime currentMonth, String userId, String name,
+                                 SplittableRandom random, Map<Class<?>, List<Object>> documents) {
+        String accountId = randomId(random);
+        FRAccount account = FRAccount.builder()
+                .id(accountId)
+                .userID(userId)
+                .account(builder()
+                        .accountId(accountId)
+                        .accountType(FRAccountTypeCode.PERSONAL)
+                        .accountSubType(FRAccountSubTypeCode.CURRENTACCOUNT)
+                        .currency(GBP)
+                        .nickname("Account " + accountId.substring(0, 8))
+                        .status(FRAccountStatusCode.ENABLED)
+                        .statusUpdateDateTime(currentMonth)
+                        .openingDate(currentMonth.minusMonths(profile.getStatementMonths()))
+                        .accounts(Collections.singletonList(FRAccountIdentifier.builder()
+                                .schemeName(OBExternalAccountIdentification4Code.SORTCODEACCOUNTNUMBER.toString())
+                                .identification(String.format("%06d%08d", random.nextInt(1000000),
+                                        random.nextInt(100000000)))
+                                .name(name)
+                                .build()))
+                        .build())
+                .build();
+
+        BigDecimal balance = amount(random, 1000, 10000);
+        List<FRStatement> statements = new ArrayList<>();
+        DateTime month = currentMonth.minusMonths(profile.getStatementMonths());
+        for (int i = 0; i < profile.getStatementMonths(); i++) {
+            statements.add(statement(accountId, month.plusMonths(i), randomId(random)));
+        }
+
+        // Sorted booking times, so that the running balance follows the booking order
+        int transactionCount = transactionCount(profile, random);
+        long windowStart = month.getMillis();
+        long window = Math.max(1, currentMonth.getMillis() - windowStart);
+        long[] bookingTimes = new long[transactionCount];
+        for (int i = 0; i < transactionCount; i++) {
+            bookingTimes[i] = windowStart + random.nextLong(window);
+        }
+        Arrays.sort(bookingTimes);
+
+        int statementIndex = 0;
+        addStatementAmount(statements.get(0), balance, OBExternalStatementAmountType1Code.PREVIOUSCLOSINGBALANCE);
+        for (long bookingTime : bookingTimes) {
+            DateTime bookingDateTime = new DateTime(bookingTime);
+            while (!bookingDateTime.isBefore(statements.get(statementIndex).getEndDateTime())) {
+                addStatementAmount(statements.get(statementIndex), balance, OBExternalStatementAmountType1Code.CLOSINGBALANCE);
+                statementIndex++;
+                addStatementAmount(statements.get(statementIndex), balance, OBExternalStatementAmountType1Code.PREVIOUSCLOSINGBALANCE);
+            }
+            FRCreditDebitIndicator indicator = random.nextBoolean()
+                    ? FRCreditDebitIndicator.CREDIT : FRCreditDebitIndicator.DEBIT;
+            BigDecimal amount = amount(random, 10, 500);
+            balance = indicator == FRCreditDebitIndicator.CREDIT ? balance.add(amount) : balance.subtract(amount);
+            add(documents, transaction(accountId, statements.get(statementIndex).getId(), bookingDateTime,
+                    indicator, amount, balance, pick(names, random), random));
+        }
+        for (int i = statementIndex; i < statements.size(); i++) {
+            if (i > statementIndex) {
+                addStatementAmount(statements.get(i), balance, OBExternalStatementAmountType1Code.PREVIOUSCLOSINGBALANCE);
+            }
+            addStatementAmount(statements.get(i), balance, OBExternalStatementAmountType1Code.CLOSINGBALANCE);
+        }
+        statements.forEach(statement -> add(documents, statement));
+        account.setLatestStatementId(statements.get(statements.size() - 1).getId());
+        add(documents, account);
+
+        add(documents, FRBalance.builder()
+                .id(randomId(random))
+                .accountId(accountId)
+                .balance(FRCashBalance.builder()
+                        .accountId(accountId)
+                        .amount(cashAmount(balance))
+                        .creditDebitIndicator(creditDebitIndicator(balance))
+                        .type(FRBalanceType.INTERIMAVAILABLE)
+                        .dateTime(currentMonth)
+                        .build())
+                .build());
+    }
+
+    private FRStatement statement(String accountId, DateTime startDateTime, String statementId) {
+        DateTime endDateTime = startDateTime.plusMonths(1);
+        return FRStatement.builder()
+                .id(statementId)
+                .accountId(accountId)
+                .startDateTime(startDateTime)
+                .endDateTime(endDateTime)
+                .statement(FRStatementData.builder()
+                        .accountId(accountId)
+                        .statementId(statementId)
+                        .statementReference(startDateTime.toString(STATEMENT_DATE_FORMAT))
+                        .type(FRStatementData.FRStatementType.REGULARPERIODIC)
+                        .startDateTime(startDateTime)
+                        .endDateTime(endDateTime)
+                        .statementAmounts(new ArrayList<>())
+                        .build())
+                .build();
+    }
+
+    private FRTransaction transaction(String accountId, String statementId, DateTime bookingDateTime,
+                                      FRCreditDebitIndicator indicator, BigDecimal amount, BigDecimal balance,
+                                      String counterparty, SplittableRandom random) {
+        String transactionId = randomId(random);
+        FRTransaction transaction = FRTransaction.builder()
+                .id(transactionId)
+                .accountId(accountId)
+                .bookingDateTime(bookingDateTime)
+                .transaction(FRTransactionData.builder()
+                        .accountId(accountId)
+                        .transactionId(transactionId)
+                        .transactionReference("Ref " + random.nextInt(10000))
+                        .amount(cashAmount(amount))
+                        .creditDebitIndicator(indicator)
+                        .status(FRTransactionData.FREntryStatus.BOOKED)
+                        .bookingDateTime(bookingDateTime)
+                        .valueDateTime(bookingDateTime.plusSeconds(60 + random.nextInt(240)))
+                        .transactionInformation((indicator == FRCreditDebitIndicator.CREDIT ? "Cash from " : "Cash to ")
+                                + counterparty)
+                        .balance(FRTransactionData.FRTransactionCashBalance.builder()
+                                .amount(cashAmount(balance))
+                                .creditDebitIndicator(creditDebitIndicator(balance))
+                                .type(FRBalanceType.INTERIMBOOKED)
+                                .build())
+                        .build())
+                .build();
+        transaction.addStatementId(statementId);
+        return transaction;
+    }
+
+    private static void addStatementAmount(FRStatement statement, BigDecimal balance,
+                                           OBExternalStatementAmountType1Code type) {
+        statement.getStatement().addStatementAmount(FRStatementData.FRStatementAmount.builder()
+                .amount(cashAmount(balance))
+                .creditDebitIndicator(creditDebitIndicator(balance))
+                .type(type.toString())
+                .build());
+    }
+
+    private static int transactionCount(FRSyntheticDataProfile profile, SplittableRandom random) {
+        int mean = profile.getTransactionsPerAccount();
+        switch (profile.getTransactionDistribution()) {
+            case FIXED:
+                return mean;
+            case EXPONENTIAL:
+                return (int) Math.min(Integer.MAX_VALUE / 2, Math.round(-mean * Math.log(1 - random.nextDouble())));
+            case UNIFORM:
+            default:
+                return random.nextInt(2 * mean + 1);
+        }
+    }
+
+    /**
+     * Account balances are held as a positive amount and a credit/debit indicator, where a debit is an overdraft.
+     */
+    private static FRAmount cashAmount(BigDecimal amount) {
+        return FRAmount.builder().amount(amount.abs().toPlainString()).currency(GBP).build();
+    }
+
+    private static FRCreditDebitIndicator creditDebitIndicator(BigDecimal balance) {
+        return balance.signum() < 0 ? FRCreditDebitIndicator.DEBIT : FRCreditDebitIndicator.CREDIT;
+    }
+
+    private static BigDecimal amount(SplittableRandom random, int min, int max) {
+        return BigDecimal.valueOf(min * 100L + random.nextLong((max - min) * 100L), 2);
+    }
+
+    private static String randomId(SplittableRandom random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private static String pick(List<String> values, SplittableRandom random) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static void add(Map<Class<?>, List<Object>> documents, Object document) {
+        documents.computeIfAbsent(document.getClass(), documentClass -> new ArrayList<>()).add(document);
+    }
+
+    private void validate(FRSyntheticDataProfile profile) {
+        if (profile.getUsers() <= 0 || profile.getAccountsPerUser() <= 0 || profile.getTransactionsPerAccount() < 0
+                || profile.getStatementMonths() <= 0 || profile.getTransactionDistribution() == null
+                || profile.getUserIdPrefix() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid synthetic data profile: " + profile);
+        }
+        long expectedTransactions = (long) profile.getUsers() * profile.getAccountsPerUser()
+                * profile.getTransactionsPerAccount();
+        if (expectedTransactions > maxTransactions) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Synthetic data profile would generate "
+                    + expectedTransactions + " transactions, the limit is " + maxTransactions);
+        }
+    }
+
+    /**
+     * Generates the users in the range {@code [from, to)}, splitting the range between sub tasks until it is small
+     * enough to be generated directly.
+     */
+    private class GenerateUsers extends RecursiveAction {
+
+        private final FRSyntheticDataProfile profile;
+        private final DateTime currentMonth;
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+        private final Map<Class<?>, LongAdder> inserted;
+
+        private GenerateUsers(FRSyntheticDataProfile profile, DateTime currentMonth, int from, int to,
+                              SplittableRandom random, Map<Class<?>, LongAdder> inserted) {
+            this.profile = profile;
+            this.currentMonth = currentMonth;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+            this.inserted = inserted;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= USERS_PER_TASK) {
+                generateRange();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            // The left half is always split off first, so that each range gets the same generator on every run
+            GenerateUsers left = new GenerateUsers(profile, currentMonth, from, middle, random.split(), inserted);
+            GenerateUsers right = new GenerateUsers(profile, currentMonth, middle, to, random, inserted);
+            invokeAll(left, right);
+        }
+
+        private void generateRange() {
+            Map<Class<?>, List<Object>> pending = new LinkedHashMap<>();
+            for (int userIndex = from; userIndex < to; userIndex++) {
+                generateUser(profile, currentMonth, userIndex, random).forEach((documentClass, documents) -> {
+                    List<Object> batch = pending.computeIfAbsent(documentClass, c -> new ArrayList<>());
+                    batch.addAll(documents);
+                    if (batch.size() >= batchSize) {
+                        insert(documentClass, batch);
+                        batch.clear();
+                    }
+                });
+            }
+            pending.forEach(this::insert);
+        }
+
+        private void insert(Class<?> documentClass, List<Object> documents) {
+            if (documents.isEmpty()) {
+                return;
+            }
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, documentClass).insert(documents).execute();
+            inserted.computeIfAbsent(documentClass, c -> new LongAdder()).add(documents.size());
+        }
+    }
+}
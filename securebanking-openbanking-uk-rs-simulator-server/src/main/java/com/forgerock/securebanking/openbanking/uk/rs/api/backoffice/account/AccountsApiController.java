@@ -19,7 +19,7 @@ import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.acc
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCashBalance;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
-import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,19 +36,19 @@ import static java.util.stream.Collectors.toList;
 @Controller
 @Slf4j
 public class AccountsApiController implements AccountsApi {
-    private final FRAccountRepository accountsRepository;
+    private final FRAccountCache accountCache;
     private final FRBalanceRepository balanceRepository;
 
     @Autowired
-    public AccountsApiController(FRAccountRepository accountsRepository, FRBalanceRepository balanceRepository) {
-        this.accountsRepository = accountsRepository;
+    public AccountsApiController(FRAccountCache accountCache, FRBalanceRepository balanceRepository) {
+        this.accountCache = accountCache;
         this.balanceRepository = balanceRepository;
     }
 
     @Override
     public ResponseEntity<List<FRAccountWithBalance>> getUserAccountsWithBalance(String userId, boolean withBalance) {
         log.info("Read all accounts for user ID '{}', with Balances: {}", userId, withBalance);
-        Collection<FRAccount> accountsByUserID = accountsRepository.findByUserID(userId);
+        Collection<FRAccount> accountsByUserID = accountCache.findByUserId(userId);
 
         if (!withBalance || accountsByUserID.isEmpty()) {
             log.debug("No balances required so returning {} accounts for userId: {}", accountsByUserID.size(), userId);
@@ -16,6 +16,8 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment;
 
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRFundsConfirmationResponse;
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationBatchRequest;
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationBatchResponse;
 import com.forgerock.securebanking.openbanking.uk.rs.service.balance.FundsAvailabilityService;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
@@ -57,4 +59,21 @@ public class PaymentFundsConfirmationApiController implements PaymentFundsConfir
                         .build()
                 );
     }
+
+    @Override
+    public ResponseEntity<FRFundsConfirmationBatchResponse> getPaymentFundsConfirmations(
+            FRFundsConfirmationBatchRequest fundsConfirmationRequest,
+            String xFapiCustomerIpAddress,
+            String xFapiInteractionId,
+            String xCustomerUserAgent,
+            HttpServletRequest request,
+            Principal principal) {
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(new FRFundsConfirmationBatchResponse(
+                        DateTime.now(),
+                        fundsAvailabilityService.areFundsAvailable(fundsConfirmationRequest.getItems()))
+                );
+    }
 }
@@ -15,16 +15,19 @@
  */
 package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_0.transactions;
 
+import com.forgerock.securebanking.openbanking.uk.error.OBErrorResponseException;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.AccountDataInternalIdFilter;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.PaginationUtil;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountKey;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCursor;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import uk.org.openbanking.datamodel.account.OBExternalPermissions1Code;
@@ -47,17 +50,21 @@ public class TransactionsApiController implements TransactionsApi {
 
     private final FRTransactionRepository frTransactionRepository;
     private final AccountDataInternalIdFilter accountDataInternalIdFilter;
+    private final TransactionCountCache transactionCountCache;
 
     public TransactionsApiController(FRTransactionRepository frTransactionRepository,
-                                     AccountDataInternalIdFilter accountDataInternalIdFilter) {
+                                     AccountDataInternalIdFilter accountDataInternalIdFilter,
+                                     TransactionCountCache transactionCountCache) {
         this.frTransactionRepository = frTransactionRepository;
         this.accountDataInternalIdFilter = accountDataInternalIdFilter;
+        this.transactionCountCache = transactionCountCache;
     }
 
     @Override
     public ResponseEntity<OBReadTransaction3> getAccountTransactions(
             String accountId,
             int page,
+            String cursor,
             String xFapiFinancialId,
             String authorization,
             DateTime fromBookingDateTime,
@@ -70,10 +77,13 @@ public class TransactionsApiController implements TransactionsApi {
             DateTime lastAvailableDate,
             List<OBExternalPermissions1Code> permissions,
             String httpUrl
-    ) {
+    ) throws OBErrorResponseException {
         log.info("Read transactions for account  {} with minimumPermissions {}", accountId, permissions);
         log.debug("transactionStore request transactionFrom {} transactionTo {} ", fromBookingDateTime, toBookingDateTime);
 
+        TransactionCountKey countKey = TransactionCountKey.forAccount(accountId, fromBookingDateTime,
+                toBookingDateTime, toFRExternalPermissionsCodeList(permissions));
+
         if (toBookingDateTime == null) {
             toBookingDateTime = DateTime.now();
         }
@@ -81,12 +91,12 @@ public class TransactionsApiController implements TransactionsApi {
             fromBookingDateTime = toBookingDateTime.minusYears(100);
         }
 
-        Page<FRTransaction> response = frTransactionRepository.byAccountIdAndBookingDateTimeBetweenWithPermissions(
+        Slice<FRTransaction> response = frTransactionRepository.byAccountIdAndBookingDateTimeBetweenWithPermissions(
                 accountId,
                 fromBookingDateTime,
                 toBookingDateTime,
                 toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS, Sort.Direction.ASC, "bookingDateTime"));
+                TransactionCursor.fromToken(cursor), PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS));
 
         List<OBTransaction3> transactions = response.getContent()
                 .stream()
@@ -95,18 +105,18 @@ public class TransactionsApiController implements TransactionsApi {
                 .collect(Collectors.toList());
 
         //Package the answer
-        int totalPages = response.getTotalPages();
-
         return ResponseEntity.ok(new OBReadTransaction3()
                 .data(new OBReadTransaction3Data().transaction(transactions))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages, firstAvailableDate, lastAvailableDate)));
+                .links(PaginationUtil.generateCursorLinks(httpUrl, cursor == null && page == 0, TransactionCursor.nextToken(response)))
+                .meta(PaginationUtil.generateMetaData(transactionCountCache.totalPages(countKey, PAGE_LIMIT_TRANSACTIONS),
+                        firstAvailableDate, lastAvailableDate)));
     }
 
     @Override
     public ResponseEntity<OBReadTransaction3> getTransactions(
             String xFapiFinancialId,
             int page,
+            String cursor,
             String authorization,
             DateTime xFapiCustomerLastLoggedTime,
             String xFapiCustomerIpAddress,
@@ -119,10 +129,13 @@ public class TransactionsApiController implements TransactionsApi {
             List<String> accountIds,
             List<OBExternalPermissions1Code> permissions,
             String httpUrl
-    ) {
+    ) throws OBErrorResponseException {
         log.info("Reading transations from account ids {}, fromBookingDate {} toBookingDate {} minimumPermissions {} pageNumber {} ",
                 accountIds, fromBookingDateTime, toBookingDateTime, permissions, page);
 
+        TransactionCountKey countKey = TransactionCountKey.forAccounts(accountIds, fromBookingDateTime,
+                toBookingDateTime, toFRExternalPermissionsCodeList(permissions));
+
         if (toBookingDateTime == null) {
             toBookingDateTime = DateTime.now();
         }
@@ -130,12 +143,12 @@ public class TransactionsApiController implements TransactionsApi {
             fromBookingDateTime = toBookingDateTime.minusYears(100);
         }
 
-        Page<FRTransaction> body = frTransactionRepository.byAccountIdInAndBookingDateTimeBetweenWithPermissions(
+        Slice<FRTransaction> body = frTransactionRepository.byAccountIdInAndBookingDateTimeBetweenWithPermissions(
                 accountIds,
                 fromBookingDateTime,
                 toBookingDateTime,
                 toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS, Sort.Direction.ASC, "bookingDateTime"));
+                TransactionCursor.fromToken(cursor), PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS));
 
         List<OBTransaction3> transactions = body.getContent()
                 .stream()
@@ -144,17 +157,17 @@ public class TransactionsApiController implements TransactionsApi {
                 .collect(Collectors.toList());
 
         //Package the answer
-        int totalPages = body.getTotalPages();
-
         return ResponseEntity.ok(new OBReadTransaction3().data(new OBReadTransaction3Data().transaction(transactions))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages, firstAvailableDate, lastAvailableDate)));
+                .links(PaginationUtil.generateCursorLinks(httpUrl, cursor == null && page == 0, TransactionCursor.nextToken(body)))
+                .meta(PaginationUtil.generateMetaData(transactionCountCache.totalPages(countKey, PAGE_LIMIT_TRANSACTIONS),
+                        firstAvailableDate, lastAvailableDate)));
     }
 
     @Override
     public ResponseEntity<OBReadTransaction3> getAccountStatementTransactions(
             String accountId,
             int page,
+            String cursor,
             String statementId,
             String xFapiFinancialId,
             String authorization,
@@ -168,10 +181,13 @@ public class TransactionsApiController implements TransactionsApi {
             DateTime lastAvailableDate,
             List<OBExternalPermissions1Code> permissions,
             String httpUrl
-    ) {
+    ) throws OBErrorResponseException {
         log.info("Reading transations from account id {}, statement id {}, fromBookingDate {} toBookingDate {} minimumPermissions {} pageNumber {} ",
                 accountId, statementId, fromBookingDateTime, toBookingDateTime, permissions, page);
 
+        TransactionCountKey countKey = TransactionCountKey.forStatement(accountId, statementId, fromBookingDateTime,
+                toBookingDateTime, toFRExternalPermissionsCodeList(permissions));
+
         if (toBookingDateTime == null) {
             toBookingDateTime = DateTime.now();
         }
@@ -179,13 +195,13 @@ public class TransactionsApiController implements TransactionsApi {
             fromBookingDateTime = toBookingDateTime.minusYears(100);
         }
 
-        Page<FRTransaction> response = frTransactionRepository.byAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(
+        Slice<FRTransaction> response = frTransactionRepository.byAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(
                 accountId,
                 statementId,
                 fromBookingDateTime,
                 toBookingDateTime,
                 toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS, Sort.Direction.ASC, "bookingDateTime"));
+                TransactionCursor.fromToken(cursor), PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS));
 
         List<OBTransaction3> transactions = response.getContent()
                 .stream()
@@ -194,10 +210,9 @@ public class TransactionsApiController implements TransactionsApi {
                 .collect(Collectors.toList());
 
         //Package the answer
-        int totalPages = response.getTotalPages();
-
         return ResponseEntity.ok(new OBReadTransaction3().data(new OBReadTransaction3Data().transaction(transactions))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages, firstAvailableDate, lastAvailableDate)));
+                .links(PaginationUtil.generateCursorLinks(httpUrl, cursor == null && page == 0, TransactionCursor.nextToken(response)))
+                .meta(PaginationUtil.generateMetaData(transactionCountCache.totalPages(countKey, PAGE_LIMIT_TRANSACTIONS),
+                        firstAvailableDate, lastAvailableDate)));
     }
 }
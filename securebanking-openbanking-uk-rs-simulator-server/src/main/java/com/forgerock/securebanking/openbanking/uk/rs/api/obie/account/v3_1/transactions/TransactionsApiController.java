@@ -15,17 +15,20 @@
  */
 package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1.transactions;
 
+import com.forgerock.securebanking.openbanking.uk.error.OBErrorResponseException;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.AccountDataInternalIdFilter;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.PaginationUtil;
 import com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRTransactionConverter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountKey;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCursor;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import uk.org.openbanking.datamodel.account.OBExternalPermissions1Code;
@@ -47,16 +50,20 @@ public class TransactionsApiController implements TransactionsApi {
 
     private final FRTransactionRepository frTransactionRepository;
     private final AccountDataInternalIdFilter accountDataInternalIdFilter;
+    private final TransactionCountCache transactionCountCache;
 
     public TransactionsApiController(FRTransactionRepository frTransactionRepository,
-                                     AccountDataInternalIdFilter accountDataInternalIdFilter) {
+                                     AccountDataInternalIdFilter accountDataInternalIdFilter,
+                                     TransactionCountCache transactionCountCache) {
         this.frTransactionRepository = frTransactionRepository;
         this.accountDataInternalIdFilter = accountDataInternalIdFilter;
+        this.transactionCountCache = transactionCountCache;
     }
 
     @Override
     public ResponseEntity<OBReadTransaction4> getAccountTransactions(String accountId,
                                                                      int page,
+                                                                     String cursor,
                                                                      String xFapiFinancialId,
                                                                      String authorization,
                                                                      DateTime fromBookingDateTime,
@@ -69,10 +76,13 @@ public class TransactionsApiController implements TransactionsApi {
                                                                      DateTime lastAvailableDate,
                                                                      List<OBExternalPermissions1Code> permissions,
                                                                      String httpUrl
-    ) {
+    ) throws OBErrorResponseException {
         log.info("Read transactions for account  {} with minimumPermissions {}", accountId, permissions);
         log.debug("transactionStore request transactionFrom {} transactionTo {} ", fromBookingDateTime, toBookingDateTime);
 
+        TransactionCountKey countKey = TransactionCountKey.forAccount(accountId, fromBookingDateTime,
+                toBookingDateTime, toFRExternalPermissionsCodeList(permissions));
+
         if (toBookingDateTime == null) {
             toBookingDateTime = DateTime.now();
         }
@@ -80,9 +90,9 @@ public class TransactionsApiController implements TransactionsApi {
             fromBookingDateTime = toBookingDateTime.minusYears(100);
         }
 
-        Page<FRTransaction> response = frTransactionRepository.byAccountIdAndBookingDateTimeBetweenWithPermissions(accountId,
+        Slice<FRTransaction> response = frTransactionRepository.byAccountIdAndBookingDateTimeBetweenWithPermissions(accountId,
                 fromBookingDateTime, toBookingDateTime, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS, Sort.Direction.ASC, "bookingDateTime"));
+                TransactionCursor.fromToken(cursor), PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS));
 
         List<OBTransaction4> transactions = response.getContent()
                 .stream()
@@ -92,17 +102,17 @@ public class TransactionsApiController implements TransactionsApi {
                 .collect(Collectors.toList());
 
         //Package the answer
-        int totalPages = response.getTotalPages();
-
         return ResponseEntity.ok(new OBReadTransaction4()
                 .data(new OBReadTransaction4Data().transaction(transactions))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages, firstAvailableDate, lastAvailableDate)));
+                .links(PaginationUtil.generateCursorLinks(httpUrl, cursor == null && page == 0, TransactionCursor.nextToken(response)))
+                .meta(PaginationUtil.generateMetaData(transactionCountCache.totalPages(countKey, PAGE_LIMIT_TRANSACTIONS),
+                        firstAvailableDate, lastAvailableDate)));
     }
 
     @Override
     public ResponseEntity<OBReadTransaction4> getTransactions(String xFapiFinancialId,
                                                               int page,
+                                                              String cursor,
                                                               String authorization,
                                                               DateTime xFapiCustomerLastLoggedTime,
                                                               String xFapiCustomerIpAddress,
@@ -115,11 +125,14 @@ public class TransactionsApiController implements TransactionsApi {
                                                               List<String> accountIds,
                                                               List<OBExternalPermissions1Code> permissions,
                                                               String httpUrl
-    ) {
+    ) throws OBErrorResponseException {
         log.info("Reading transations from account ids {}, fromBookingDate {} toBookingDate {} " +
                         "minimumPermissions {} pageNumber {} ", accountIds,
                 fromBookingDateTime, toBookingDateTime, permissions, page);
 
+        TransactionCountKey countKey = TransactionCountKey.forAccounts(accountIds, fromBookingDateTime,
+                toBookingDateTime, toFRExternalPermissionsCodeList(permissions));
+
         if (toBookingDateTime == null) {
             toBookingDateTime = DateTime.now();
         }
@@ -127,9 +140,9 @@ public class TransactionsApiController implements TransactionsApi {
             fromBookingDateTime = toBookingDateTime.minusYears(100);
         }
 
-        Page<FRTransaction> body = frTransactionRepository.byAccountIdInAndBookingDateTimeBetweenWithPermissions(accountIds,
+        Slice<FRTransaction> body = frTransactionRepository.byAccountIdInAndBookingDateTimeBetweenWithPermissions(accountIds,
                 fromBookingDateTime, toBookingDateTime, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS, Sort.Direction.ASC, "bookingDateTime"));
+                TransactionCursor.fromToken(cursor), PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS));
 
         List<OBTransaction4> transactions = body.getContent()
                 .stream()
@@ -139,16 +152,16 @@ public class TransactionsApiController implements TransactionsApi {
                 .collect(Collectors.toList());
 
         //Package the answer
-        int totalPages = body.getTotalPages();
-
         return  ResponseEntity.ok(new OBReadTransaction4().data(new OBReadTransaction4Data().transaction(transactions))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages, firstAvailableDate, lastAvailableDate)));
+                .links(PaginationUtil.generateCursorLinks(httpUrl, cursor == null && page == 0, TransactionCursor.nextToken(body)))
+                .meta(PaginationUtil.generateMetaData(transactionCountCache.totalPages(countKey, PAGE_LIMIT_TRANSACTIONS),
+                        firstAvailableDate, lastAvailableDate)));
     }
 
     @Override
     public ResponseEntity<OBReadTransaction4> getAccountStatementTransactions(String accountId,
                                                                               int page,
+                                                                              String cursor,
                                                                               String statementId,
                                                                               String xFapiFinancialId,
                                                                               String authorization,
@@ -162,11 +175,14 @@ public class TransactionsApiController implements TransactionsApi {
                                                                               DateTime lastAvailableDate,
                                                                               List<OBExternalPermissions1Code> permissions,
                                                                               String httpUrl
-    ) {
+    ) throws OBErrorResponseException {
         log.info("Reading transations from account id {}, statement id {}, fromBookingDate {} toBookingDate {} " +
                         "minimumPermissions {} pageNumber {} ", accountId, statementId,
                 fromBookingDateTime, toBookingDateTime, permissions, page);
 
+        TransactionCountKey countKey = TransactionCountKey.forStatement(accountId, statementId, fromBookingDateTime,
+                toBookingDateTime, toFRExternalPermissionsCodeList(permissions));
+
         if (toBookingDateTime == null) {
             toBookingDateTime = DateTime.now();
         }
@@ -174,9 +190,9 @@ public class TransactionsApiController implements TransactionsApi {
             fromBookingDateTime = toBookingDateTime.minusYears(100);
         }
 
-        Page<FRTransaction> response = frTransactionRepository.byAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(accountId, statementId,
+        Slice<FRTransaction> response = frTransactionRepository.byAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(accountId, statementId,
                 fromBookingDateTime, toBookingDateTime, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS, Sort.Direction.ASC, "bookingDateTime"));
+                TransactionCursor.fromToken(cursor), PageRequest.of(page, PAGE_LIMIT_TRANSACTIONS));
 
         List<OBTransaction4> transactions = response.getContent()
                 .stream()
@@ -186,10 +202,9 @@ public class TransactionsApiController implements TransactionsApi {
                 .collect(Collectors.toList());
 
         //Package the answer
-        int totalPages = response.getTotalPages();
-
         return ResponseEntity.ok(new OBReadTransaction4().data(new OBReadTransaction4Data().transaction(transactions))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages, firstAvailableDate, lastAvailableDate)));
+                .links(PaginationUtil.generateCursorLinks(httpUrl, cursor == null && page == 0, TransactionCursor.nextToken(response)))
+                .meta(PaginationUtil.generateMetaData(transactionCountCache.totalPages(countKey, PAGE_LIMIT_TRANSACTIONS),
+                        firstAvailableDate, lastAvailableDate)));
     }
 }
@@ -17,6 +17,7 @@ package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1_2.tr
 
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.AccountDataInternalIdFilter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Controller;
 
@@ -25,7 +26,8 @@ import org.springframework.stereotype.Controller;
 public class TransactionsApiController extends com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1_1.transactions.TransactionsApiController implements TransactionsApi {
 
     public TransactionsApiController(FRTransactionRepository frTransactionRepository,
-                                     AccountDataInternalIdFilter accountDataInternalIdFilter) {
-        super(frTransactionRepository, accountDataInternalIdFilter);
+                                     AccountDataInternalIdFilter accountDataInternalIdFilter,
+                                     TransactionCountCache transactionCountCache) {
+        super(frTransactionRepository, accountDataInternalIdFilter, transactionCountCache);
     }
 }
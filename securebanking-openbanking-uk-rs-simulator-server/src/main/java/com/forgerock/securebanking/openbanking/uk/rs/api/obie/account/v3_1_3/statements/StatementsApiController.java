@@ -17,6 +17,8 @@ package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1_3.st
 
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.AccountDataInternalIdFilter;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.PaginationUtil;
+import com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponse;
+import com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponses;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStatement;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.statements.FRStatementRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.service.statement.StatementPDFService;
@@ -24,7 +26,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
@@ -32,17 +33,24 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.FileCopyUtils;
+import uk.org.openbanking.datamodel.account.Links;
 import uk.org.openbanking.datamodel.account.OBExternalPermissions1Code;
 import uk.org.openbanking.datamodel.account.OBReadStatement2;
 import uk.org.openbanking.datamodel.account.OBReadStatement2Data;
+import uk.org.openbanking.datamodel.account.OBStatement2;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRExternalPermissionsCodeConverter.toFRExternalPermissionsCodeList;
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRStatementConverter.toOBStatement2;
+import static com.forgerock.securebanking.openbanking.uk.rs.metrics.ConversionMetrics.timed;
 
 @Controller("StatementsApiV3.1.3")
 @Slf4j
@@ -124,12 +132,10 @@ public class StatementsApiController implements StatementsApi {
                                                                  String httpUrl) {
         log.info("Read statements for account {} with minimumPermissions {}", accountId, permissions);
 
-        Page<FRStatement> statements = frStatementRepository.byAccountIdWithPermissions(accountId,
-                fromStatementDateTime, toStatementDateTime, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, pageLimitStatements, Sort.Direction.ASC, "startDateTime"));
-
-        int totalPages = statements.getTotalPages();
-        return packageResponse(page, httpUrl, statements.getContent(), totalPages);
+        long count = frStatementRepository.countByAccountId(accountId, fromStatementDateTime, toStatementDateTime);
+        return packageResponse(page, httpUrl, count, () -> frStatementRepository.streamByAccountIdWithPermissions(
+                accountId, fromStatementDateTime, toStatementDateTime, toFRExternalPermissionsCodeList(permissions),
+                PageRequest.of(page, pageLimitStatements, Sort.Direction.ASC, "startDateTime")));
     }
 
     @Override
@@ -146,9 +152,10 @@ public class StatementsApiController implements StatementsApi {
                                                           String httpUrl) {
         log.info("Reading statements from account ids {}", accountIds);
 
-        Page<FRStatement> statements = frStatementRepository.findByAccountIdIn(accountIds, PageRequest.of(page, pageLimitStatements, Sort.Direction.ASC, "startDateTime"));
-        int totalPages = statements.getTotalPages();
-        return packageResponse(page, httpUrl, statements.getContent(), totalPages);
+        long count = frStatementRepository.countByAccountIdIn(new HashSet<>(accountIds));
+        return packageResponse(page, httpUrl, count, () -> frStatementRepository.streamByAccountIdInWithPermissions(
+                accountIds, toFRExternalPermissionsCodeList(permissions),
+                PageRequest.of(page, pageLimitStatements, Sort.Direction.ASC, "startDateTime")));
     }
 
     private Integer getContentLength(Resource resource) {
@@ -166,11 +173,28 @@ public class StatementsApiController implements StatementsApi {
         return ResponseEntity.ok(new OBReadStatement2().data(new OBReadStatement2Data().statement(
                 statements
                         .stream()
-                        .map(st -> toOBStatement2(st.getStatement()))
+                        .map(timed("toOBStatement2", st -> toOBStatement2(st.getStatement())))
                         .map(st -> accountDataInternalIdFilter.apply(st))
                         .collect(Collectors.toList())))
                 .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
                 .meta(PaginationUtil.generateMetaData(totalPages)));
     }
 
+    /**
+     * The statements are converted and written as they are read from the cursor, once the response is serialised.
+     */
+    private ResponseEntity<OBReadStatement2> packageResponse(int page, String httpUrl, long count,
+                                                             Supplier<Stream<FRStatement>> statements) {
+        int totalPages = PaginationUtil.totalPages(count, pageLimitStatements);
+        Links links = PaginationUtil.generateLinks(httpUrl, page, totalPages);
+        Function<FRStatement, OBStatement2> converter = timed("toOBStatement2",
+                st -> toOBStatement2(st.getStatement()));
+
+        return ResponseEntity.ok(StreamedResponses.statements(new StreamedResponse<>(
+                statements,
+                pageLimitStatements,
+                converter.andThen(accountDataInternalIdFilter::apply),
+                (last, hasNext) -> links,
+                PaginationUtil.generateMetaData(totalPages))));
+    }
 }
@@ -15,6 +15,7 @@
  */
 package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1_3.transactions;
 
+import com.forgerock.securebanking.openbanking.uk.error.OBErrorResponseException;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.ResponseEntity;
@@ -40,6 +41,7 @@ public class TransactionsApiController implements TransactionsApi {
     @Override
     public ResponseEntity<OBReadTransaction5> getAccountTransactions(String accountId,
                                                                      int page,
+                                                                     String cursor,
                                                                      String authorization,
                                                                      DateTime xFapiAuthDate,
                                                                      DateTime fromBookingDateTime,
@@ -50,10 +52,11 @@ public class TransactionsApiController implements TransactionsApi {
                                                                      String xFapiInteractionId,
                                                                      String xCustomerUserAgent,
                                                                      List<OBExternalPermissions1Code> permissions,
-                                                                     String httpUrl) {
+                                                                     String httpUrl) throws OBErrorResponseException {
         return previousVersionController.getAccountTransactions(
                 accountId,
                 page,
+                cursor,
                 DUMMY_FINANCIAL_ID,
                 authorization,
                 fromBookingDateTime,
@@ -72,6 +75,7 @@ public class TransactionsApiController implements TransactionsApi {
     public ResponseEntity<OBReadTransaction5> getAccountStatementTransactions(String statementId,
                                                                               String accountId,
                                                                               int page,
+                                                                              String cursor,
                                                                               String authorization,
                                                                               DateTime xFapiAuthDate,
                                                                               DateTime fromBookingDateTime,
@@ -82,10 +86,11 @@ public class TransactionsApiController implements TransactionsApi {
                                                                               String xFapiInteractionId,
                                                                               String xCustomerUserAgent,
                                                                               List<OBExternalPermissions1Code> permissions,
-                                                                              String httpUrl) {
+                                                                              String httpUrl) throws OBErrorResponseException {
         return previousVersionController.getAccountStatementTransactions(
                 accountId,
                 page,
+                cursor,
                 statementId,
                 DUMMY_FINANCIAL_ID,
                 authorization,
@@ -103,6 +108,7 @@ public class TransactionsApiController implements TransactionsApi {
 
     @Override
     public ResponseEntity<OBReadTransaction5> getTransactions(int page,
+                                                              String cursor,
                                                               String authorization,
                                                               DateTime xFapiAuthDate,
                                                               DateTime fromBookingDateTime,
@@ -114,10 +120,11 @@ public class TransactionsApiController implements TransactionsApi {
                                                               String xCustomerUserAgent,
                                                               List<String> accountIds,
                                                               List<OBExternalPermissions1Code> permissions,
-                                                              String httpUrl) {
+                                                              String httpUrl) throws OBErrorResponseException {
         return previousVersionController.getTransactions(
                 DUMMY_FINANCIAL_ID,
                 page,
+                cursor,
                 authorization,
                 xFapiAuthDate,
                 xFapiCustomerIpAddress,
@@ -17,24 +17,29 @@ package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1_5.be
 
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.AccountDataInternalIdFilter;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.PaginationUtil;
+import com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponse;
+import com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponses;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBeneficiary;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.beneficiaries.FRBeneficiaryRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import uk.org.openbanking.datamodel.account.Links;
+import uk.org.openbanking.datamodel.account.OBBeneficiary5;
 import uk.org.openbanking.datamodel.account.OBExternalPermissions1Code;
 import uk.org.openbanking.datamodel.account.OBReadBeneficiary5;
-import uk.org.openbanking.datamodel.account.OBReadBeneficiary5Data;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRAccountBeneficiaryConverter.toOBBeneficiary5;
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRExternalPermissionsCodeConverter.toFRExternalPermissionsCodeList;
+import static com.forgerock.securebanking.openbanking.uk.rs.metrics.ConversionMetrics.timed;
 
 @Controller("BeneficiariesApiV3.1.5")
 @Slf4j
@@ -66,9 +71,7 @@ public class BeneficiariesApiController implements BeneficiariesApi {
                                                                       String httpUrl) {
         log.info("Read beneficiaries for account {} with minimumPermissions {}", accountId, permissions);
 
-        Page<FRBeneficiary> beneficiaries = frBeneficiaryRepository.byAccountIdWithPermissions(accountId, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, pageLimitBeneficiaries));
-        return packageResponse(page, httpUrl, beneficiaries);
+        return packageResponse(page, httpUrl, Collections.singletonList(accountId), permissions);
     }
 
     @Override
@@ -83,21 +86,23 @@ public class BeneficiariesApiController implements BeneficiariesApi {
                                                                String httpUrl) {
         log.info("Beneficiaries from account ids {}", accountIds);
 
-        Page<FRBeneficiary> beneficiaries = frBeneficiaryRepository.byAccountIdInWithPermissions(accountIds, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, pageLimitBeneficiaries));
-        return packageResponse(page, httpUrl, beneficiaries);
+        return packageResponse(page, httpUrl, accountIds, permissions);
     }
 
-    private ResponseEntity<OBReadBeneficiary5> packageResponse(int page, String httpUrl, Page<FRBeneficiary> beneficiaries) {
-        int totalPages = beneficiaries.getTotalPages();
+    private ResponseEntity<OBReadBeneficiary5> packageResponse(int page, String httpUrl, List<String> accountIds,
+                                                               List<OBExternalPermissions1Code> permissions) {
+        long count = frBeneficiaryRepository.countByAccountIdIn(new HashSet<>(accountIds));
+        int totalPages = PaginationUtil.totalPages(count, pageLimitBeneficiaries);
+        Links links = PaginationUtil.generateLinks(httpUrl, page, totalPages);
+        Function<FRBeneficiary, OBBeneficiary5> converter = timed("toOBBeneficiary5",
+                b -> toOBBeneficiary5(b.getBeneficiary()));
 
-        return ResponseEntity.ok(new OBReadBeneficiary5().data(new OBReadBeneficiary5Data().beneficiary(
-                beneficiaries.getContent()
-                        .stream()
-                        .map(b -> toOBBeneficiary5(b.getBeneficiary()))
-                        .map(b -> accountDataInternalIdFilter.apply(b))
-                        .collect(Collectors.toList())))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages)));
+        return ResponseEntity.ok(StreamedResponses.beneficiaries(new StreamedResponse<FRBeneficiary>(
+                () -> frBeneficiaryRepository.streamByAccountIdInWithPermissions(accountIds,
+                        toFRExternalPermissionsCodeList(permissions), PageRequest.of(page, pageLimitBeneficiaries)),
+                pageLimitBeneficiaries,
+                converter.andThen(accountDataInternalIdFilter::apply),
+                (last, hasNext) -> links,
+                PaginationUtil.generateMetaData(totalPages))));
     }
 }
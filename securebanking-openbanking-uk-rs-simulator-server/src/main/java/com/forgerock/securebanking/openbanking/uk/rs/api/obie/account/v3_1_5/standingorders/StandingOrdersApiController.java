@@ -17,24 +17,29 @@ package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1_5.st
 
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.AccountDataInternalIdFilter;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.PaginationUtil;
+import com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponse;
+import com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponses;
 import com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRStandingOrderConverter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.standingorders.FRStandingOrderRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import uk.org.openbanking.datamodel.account.Links;
 import uk.org.openbanking.datamodel.account.OBExternalPermissions1Code;
 import uk.org.openbanking.datamodel.account.OBReadStandingOrder6;
-import uk.org.openbanking.datamodel.account.OBReadStandingOrder6Data;
+import uk.org.openbanking.datamodel.account.OBStandingOrder6;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRExternalPermissionsCodeConverter.toFRExternalPermissionsCodeList;
+import static com.forgerock.securebanking.openbanking.uk.rs.metrics.ConversionMetrics.timed;
 
 @Controller("StandingOrdersApiV3.1.5")
 @Slf4j
@@ -66,21 +71,7 @@ public class StandingOrdersApiController implements StandingOrdersApi {
                                                                          String httpUrl) {
         log.info("Read standing orders for account {} with minimumPermissions {}",
                 accountId, permissions);
-        Page<FRStandingOrder> standingOrders =
-                frStandingOrderRepository.byAccountIdWithPermissions(accountId, toFRExternalPermissionsCodeList(permissions),
-                        PageRequest.of(page, pageLimitStandingOrders));
-
-        int totalPages = standingOrders.getTotalPages();
-
-        return ResponseEntity.ok(new OBReadStandingOrder6()
-                .data(new OBReadStandingOrder6Data().standingOrder(standingOrders.getContent()
-                        .stream()
-                        .map(FRStandingOrder::getStandingOrder)
-                        .map(FRStandingOrderConverter::toOBStandingOrder6)
-                        .map(so -> accountDataInternalIdFilter.apply(so))
-                        .collect(Collectors.toList())))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages)));
+        return packageResponse(page, httpUrl, Collections.singletonList(accountId), permissions);
     }
 
     @Override
@@ -94,17 +85,23 @@ public class StandingOrdersApiController implements StandingOrdersApi {
                                                                   List<OBExternalPermissions1Code> permissions,
                                                                   String httpUrl) {
         log.info("Reading standing orders from account ids {}", accountIds);
-        Page<FRStandingOrder> standingOrders = frStandingOrderRepository.byAccountIdInWithPermissions(accountIds, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, pageLimitStandingOrders));
-        int totalPages = standingOrders.getTotalPages();
+        return packageResponse(page, httpUrl, accountIds, permissions);
+    }
+
+    private ResponseEntity<OBReadStandingOrder6> packageResponse(int page, String httpUrl, List<String> accountIds,
+                                                                 List<OBExternalPermissions1Code> permissions) {
+        long count = frStandingOrderRepository.countByAccountIdIn(new HashSet<>(accountIds));
+        int totalPages = PaginationUtil.totalPages(count, pageLimitStandingOrders);
+        Links links = PaginationUtil.generateLinks(httpUrl, page, totalPages);
+        Function<FRStandingOrder, OBStandingOrder6> converter = timed("toOBStandingOrder6",
+                so -> FRStandingOrderConverter.toOBStandingOrder6(so.getStandingOrder()));
 
-        return ResponseEntity.ok(new OBReadStandingOrder6()
-                .data(new OBReadStandingOrder6Data().standingOrder(standingOrders.getContent().stream()
-                        .map(FRStandingOrder::getStandingOrder)
-                        .map(FRStandingOrderConverter::toOBStandingOrder6)
-                        .map(so -> accountDataInternalIdFilter.apply(so))
-                        .collect(Collectors.toList())))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages)));
+        return ResponseEntity.ok(StreamedResponses.standingOrders(new StreamedResponse<FRStandingOrder>(
+                () -> frStandingOrderRepository.streamByAccountIdInWithPermissions(accountIds,
+                        toFRExternalPermissionsCodeList(permissions), PageRequest.of(page, pageLimitStandingOrders)),
+                pageLimitStandingOrders,
+                converter.andThen(accountDataInternalIdFilter::apply),
+                (last, hasNext) -> links,
+                PaginationUtil.generateMetaData(totalPages))));
     }
 }
@@ -15,28 +15,35 @@
  */
 package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1_5.transactions;
 
+import com.forgerock.securebanking.openbanking.uk.error.OBErrorResponseException;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.AccountDataInternalIdFilter;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.PaginationUtil;
+import com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponse;
+import com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponses;
 import com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRTransactionConverter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountKey;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCursor;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import uk.org.openbanking.datamodel.account.Meta;
 import uk.org.openbanking.datamodel.account.OBExternalPermissions1Code;
-import uk.org.openbanking.datamodel.account.OBReadDataTransaction6;
 import uk.org.openbanking.datamodel.account.OBReadTransaction6;
 import uk.org.openbanking.datamodel.account.OBTransaction6;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRExternalPermissionsCodeConverter.toFRExternalPermissionsCodeList;
+import static com.forgerock.securebanking.openbanking.uk.rs.metrics.ConversionMetrics.timed;
 
 @Controller("TransactionsApiV3.1.5")
 @Slf4j
@@ -48,17 +55,22 @@ public class TransactionsApiController implements TransactionsApi {
 
     private final AccountDataInternalIdFilter accountDataInternalIdFilter;
 
+    private final TransactionCountCache transactionCountCache;
+
     public TransactionsApiController(@Value("${rs.page.default.transaction.size:120}") int pageLimitTransactions,
                                      FRTransactionRepository FRTransactionRepository,
-                                     AccountDataInternalIdFilter accountDataInternalIdFilter) {
+                                     AccountDataInternalIdFilter accountDataInternalIdFilter,
+                                     TransactionCountCache transactionCountCache) {
         this.pageLimitTransactions = pageLimitTransactions;
         this.FRTransactionRepository = FRTransactionRepository;
         this.accountDataInternalIdFilter = accountDataInternalIdFilter;
+        this.transactionCountCache = transactionCountCache;
     }
 
     @Override
     public ResponseEntity<OBReadTransaction6> getAccountTransactions(String accountId,
                                                                      int page,
+                                                                     String cursor,
                                                                      String authorization,
                                                                      DateTime xFapiAuthDate,
                                                                      DateTime fromBookingDateTime,
@@ -69,12 +81,15 @@ public class TransactionsApiController implements TransactionsApi {
                                                                      String xFapiInteractionId,
                                                                      String xCustomerUserAgent,
                                                                      List<OBExternalPermissions1Code> permissions,
-                                                                     String httpUrl) {
+                                                                     String httpUrl) throws OBErrorResponseException {
         log.info("Read transactions for account  {} with minimumPermissions {}", accountId,
                 permissions);
         log.debug("transactionStore request transactionFrom {} transactionTo {} ",
                 fromBookingDateTime, toBookingDateTime);
 
+        TransactionCountKey countKey = TransactionCountKey.forAccount(accountId, fromBookingDateTime,
+                toBookingDateTime, toFRExternalPermissionsCodeList(permissions));
+
         if (toBookingDateTime == null) {
             toBookingDateTime = DateTime.now();
         }
@@ -82,30 +97,20 @@ public class TransactionsApiController implements TransactionsApi {
             fromBookingDateTime = toBookingDateTime.minusYears(100);
         }
 
-        Page<FRTransaction> response = FRTransactionRepository.byAccountIdAndBookingDateTimeBetweenWithPermissions(accountId,
-                fromBookingDateTime, toBookingDateTime, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, pageLimitTransactions, Sort.Direction.ASC, "bookingDateTime"));
-
-        List<OBTransaction6> transactions = response.getContent()
-                .stream()
-                .map(FRTransaction::getTransaction)
-                .map(FRTransactionConverter::toOBTransaction6)
-                .map(t -> accountDataInternalIdFilter.apply(t))
-                .collect(Collectors.toList());
-
-        //Package the answer
-        int totalPages = response.getTotalPages();
-
-        return ResponseEntity.ok(new OBReadTransaction6()
-                .data(new OBReadDataTransaction6().transaction(transactions))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages, firstAvailableDate, lastAvailableDate)));
+        DateTime from = fromBookingDateTime;
+        DateTime to = toBookingDateTime;
+        TransactionCursor after = TransactionCursor.fromToken(cursor);
+        return packageResponse(page, cursor, httpUrl, countKey, firstAvailableDate, lastAvailableDate,
+                () -> FRTransactionRepository.streamByAccountIdAndBookingDateTimeBetweenWithPermissions(accountId,
+                        from, to, toFRExternalPermissionsCodeList(permissions), after,
+                        PageRequest.of(page, pageLimitTransactions)));
     }
 
     @Override
     public ResponseEntity<OBReadTransaction6> getAccountStatementTransactions(String statementId,
                                                                               String accountId,
                                                                               int page,
+                                                                              String cursor,
                                                                               String authorization,
                                                                               DateTime xFapiAuthDate,
                                                                               DateTime fromBookingDateTime,
@@ -116,11 +121,14 @@ public class TransactionsApiController implements TransactionsApi {
                                                                               String xFapiInteractionId,
                                                                               String xCustomerUserAgent,
                                                                               List<OBExternalPermissions1Code> permissions,
-                                                                              String httpUrl) {
+                                                                              String httpUrl) throws OBErrorResponseException {
         log.info("Reading transations from account id {}, statement id {}, fromBookingDate {} toBookingDate {} " +
                         "minimumPermissions {} pageNumber {} ", accountId, statementId,
                 fromBookingDateTime, toBookingDateTime, permissions, page);
 
+        TransactionCountKey countKey = TransactionCountKey.forStatement(accountId, statementId, fromBookingDateTime,
+                toBookingDateTime, toFRExternalPermissionsCodeList(permissions));
+
         if (toBookingDateTime == null) {
             toBookingDateTime = DateTime.now();
         }
@@ -128,27 +136,18 @@ public class TransactionsApiController implements TransactionsApi {
             fromBookingDateTime = toBookingDateTime.minusYears(100);
         }
 
-        Page<FRTransaction> response = FRTransactionRepository.byAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(accountId, statementId,
-                fromBookingDateTime, toBookingDateTime, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, pageLimitTransactions, Sort.Direction.ASC, "bookingDateTime"));
-
-        List<OBTransaction6> transactions = response.getContent()
-                .stream()
-                .map(FRTransaction::getTransaction)
-                .map(FRTransactionConverter::toOBTransaction6)
-                .map(t -> accountDataInternalIdFilter.apply(t))
-                .collect(Collectors.toList());
-
-        //Package the answer
-        int totalPages = response.getTotalPages();
-
-        return ResponseEntity.ok(new OBReadTransaction6().data(new OBReadDataTransaction6().transaction(transactions))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages, firstAvailableDate, lastAvailableDate)));
+        DateTime from = fromBookingDateTime;
+        DateTime to = toBookingDateTime;
+        TransactionCursor after = TransactionCursor.fromToken(cursor);
+        return packageResponse(page, cursor, httpUrl, countKey, firstAvailableDate, lastAvailableDate,
+                () -> FRTransactionRepository.streamByAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(
+                        accountId, statementId, from, to, toFRExternalPermissionsCodeList(permissions), after,
+                        PageRequest.of(page, pageLimitTransactions)));
     }
 
     @Override
     public ResponseEntity<OBReadTransaction6> getTransactions(int page,
+                                                              String cursor,
                                                               String authorization,
                                                               DateTime xFapiAuthDate,
                                                               DateTime fromBookingDateTime,
@@ -160,10 +159,13 @@ public class TransactionsApiController implements TransactionsApi {
                                                               String xCustomerUserAgent,
                                                               List<String> accountIds,
                                                               List<OBExternalPermissions1Code> permissions,
-                                                              String httpUrl) {
+                                                              String httpUrl) throws OBErrorResponseException {
         log.info("Reading transations from account ids {}, fromBookingDate {} toBookingDate {} minimumPermissions {} pageNumber {} ",
                 accountIds, fromBookingDateTime, toBookingDateTime, permissions, page);
 
+        TransactionCountKey countKey = TransactionCountKey.forAccounts(accountIds, fromBookingDateTime,
+                toBookingDateTime, toFRExternalPermissionsCodeList(permissions));
+
         if (toBookingDateTime == null) {
             toBookingDateTime = DateTime.now();
         }
@@ -171,22 +173,37 @@ public class TransactionsApiController implements TransactionsApi {
             fromBookingDateTime = toBookingDateTime.minusYears(100);
         }
 
-        Page<FRTransaction> body = FRTransactionRepository.byAccountIdInAndBookingDateTimeBetweenWithPermissions(accountIds,
-                fromBookingDateTime, toBookingDateTime, toFRExternalPermissionsCodeList(permissions),
-                PageRequest.of(page, pageLimitTransactions, Sort.Direction.ASC, "bookingDateTime"));
-
-        List<OBTransaction6> transactions = body.getContent()
-                .stream()
-                .map(FRTransaction::getTransaction)
-                .map(FRTransactionConverter::toOBTransaction6)
-                .map(t -> accountDataInternalIdFilter.apply(t))
-                .collect(Collectors.toList());
-
-        //Package the answer
-        int totalPages = body.getTotalPages();
+        DateTime from = fromBookingDateTime;
+        DateTime to = toBookingDateTime;
+        TransactionCursor after = TransactionCursor.fromToken(cursor);
+        return packageResponse(page, cursor, httpUrl, countKey, firstAvailableDate, lastAvailableDate,
+                () -> FRTransactionRepository.streamByAccountIdInAndBookingDateTimeBetweenWithPermissions(accountIds,
+                        from, to, toFRExternalPermissionsCodeList(permissions), after,
+                        PageRequest.of(page, pageLimitTransactions)));
+    }
 
-        return  ResponseEntity.ok(new OBReadTransaction6().data(new OBReadDataTransaction6().transaction(transactions))
-                .links(PaginationUtil.generateLinks(httpUrl, page, totalPages))
-                .meta(PaginationUtil.generateMetaData(totalPages, firstAvailableDate, lastAvailableDate)));
+    /**
+     * The transactions are converted and written as they are read from the cursor, once the response is serialised.
+     * The cursor reads one more transaction than the page holds, which tells whether a next link is needed.
+     */
+    private ResponseEntity<OBReadTransaction6> packageResponse(int page,
+                                                               String cursor,
+                                                               String httpUrl,
+                                                               TransactionCountKey countKey,
+                                                               DateTime firstAvailableDate,
+                                                               DateTime lastAvailableDate,
+                                                               Supplier<Stream<FRTransaction>> transactions) {
+        Meta meta = PaginationUtil.generateMetaData(transactionCountCache.totalPages(countKey, pageLimitTransactions),
+                firstAvailableDate, lastAvailableDate);
+        Function<FRTransaction, OBTransaction6> converter = timed("toOBTransaction6",
+                t -> FRTransactionConverter.toOBTransaction6(t.getTransaction()));
+
+        return ResponseEntity.ok(StreamedResponses.transactions(new StreamedResponse<>(
+                transactions,
+                pageLimitTransactions,
+                converter.andThen(accountDataInternalIdFilter::apply),
+                (last, hasNext) -> PaginationUtil.generateCursorLinks(httpUrl, cursor == null && page == 0,
+                        hasNext ? TransactionCursor.after(last).toToken() : null),
+                meta)));
     }
 }
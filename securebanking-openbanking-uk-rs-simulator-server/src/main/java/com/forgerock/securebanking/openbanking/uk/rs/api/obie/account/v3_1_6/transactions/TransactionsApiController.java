@@ -16,6 +16,7 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1_6.transactions;
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
 import com.forgerock.securebanking.openbanking.uk.rs.common.util.AccountDataInternalIdFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
@@ -25,7 +26,8 @@ public class TransactionsApiController extends com.forgerock.securebanking.openb
 
     public TransactionsApiController(@Value("${rs.page.default.transaction.size:120}") int pageLimitTransactions,
                                      FRTransactionRepository FRTransactionRepository,
-                                     AccountDataInternalIdFilter accountDataInternalIdFilter) {
-        super(pageLimitTransactions, FRTransactionRepository, accountDataInternalIdFilter);
+                                     AccountDataInternalIdFilter accountDataInternalIdFilter,
+                                     TransactionCountCache transactionCountCache) {
+        super(pageLimitTransactions, FRTransactionRepository, accountDataInternalIdFilter, transactionCountCache);
     }
 }
@@ -21,6 +21,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.common.util.VersionPathExtr
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticPaymentSubmission;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.IdempotentRepositoryAdapter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.DomesticPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
@@ -50,11 +51,14 @@ public class DomesticPaymentsApiController implements DomesticPaymentsApi {
 
     private final DomesticPaymentSubmissionRepository paymentSubmissionRepository;
     private final PaymentSubmissionValidator paymentSubmissionValidator;
+    private final PaymentIdempotencyStore idempotencyStore;
 
     public DomesticPaymentsApiController(DomesticPaymentSubmissionRepository paymentSubmissionRepository,
-                                         PaymentSubmissionValidator paymentSubmissionValidator) {
+                                         PaymentSubmissionValidator paymentSubmissionValidator,
+                                         PaymentIdempotencyStore idempotencyStore) {
         this.paymentSubmissionRepository = paymentSubmissionRepository;
         this.paymentSubmissionValidator = paymentSubmissionValidator;
+        this.idempotencyStore = idempotencyStore;
     }
 
     @Override
@@ -93,7 +97,7 @@ public class DomesticPaymentsApiController implements DomesticPaymentsApi {
                 .build();
 
         // Save the payment
-        frPaymentSubmission = new IdempotentRepositoryAdapter<>(paymentSubmissionRepository)
+        frPaymentSubmission = new IdempotentRepositoryAdapter<>(paymentSubmissionRepository, idempotencyStore)
                 .idempotentSave(frPaymentSubmission);
         return ResponseEntity.status(HttpStatus.CREATED).body(responseEntity(frPaymentSubmission));
     }
@@ -23,6 +23,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.common.util.VersionPathExtr
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticScheduledPaymentSubmission;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.IdempotentRepositoryAdapter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.DomesticScheduledPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.service.scheduledpayment.ScheduledPaymentService;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import lombok.extern.slf4j.Slf4j;
@@ -54,14 +55,17 @@ public class DomesticScheduledPaymentsApiController implements DomesticScheduled
 
     private final DomesticScheduledPaymentSubmissionRepository scheduledPaymentSubmissionRepository;
     private final PaymentSubmissionValidator paymentSubmissionValidator;
+    private final PaymentIdempotencyStore idempotencyStore;
     private final ScheduledPaymentService scheduledPaymentService;
 
     public DomesticScheduledPaymentsApiController(
             DomesticScheduledPaymentSubmissionRepository scheduledPaymentSubmissionRepository,
             PaymentSubmissionValidator paymentSubmissionValidator,
+            PaymentIdempotencyStore idempotencyStore,
             ScheduledPaymentService scheduledPaymentService) {
         this.scheduledPaymentSubmissionRepository = scheduledPaymentSubmissionRepository;
         this.paymentSubmissionValidator = paymentSubmissionValidator;
+        this.idempotencyStore = idempotencyStore;
         this.scheduledPaymentService = scheduledPaymentService;
     }
 
@@ -103,7 +107,7 @@ public class DomesticScheduledPaymentsApiController implements DomesticScheduled
                 .build();
 
         // Save the scheduled payment
-        frPaymentSubmission = new IdempotentRepositoryAdapter<>(scheduledPaymentSubmissionRepository)
+        frPaymentSubmission = new IdempotentRepositoryAdapter<>(scheduledPaymentSubmissionRepository, idempotencyStore)
                 .idempotentSave(frPaymentSubmission);
 
         // Save the scheduled payment data for the Accounts API
@@ -23,6 +23,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.common.util.VersionPathExtr
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticStandingOrderPaymentSubmission;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.IdempotentRepositoryAdapter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.DomesticStandingOrderPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.service.standingorder.StandingOrderService;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import lombok.extern.slf4j.Slf4j;
@@ -54,14 +55,17 @@ public class DomesticStandingOrdersApiController implements DomesticStandingOrde
 
     private final DomesticStandingOrderPaymentSubmissionRepository standingOrderPaymentSubmissionRepository;
     private final PaymentSubmissionValidator paymentSubmissionValidator;
+    private final PaymentIdempotencyStore idempotencyStore;
     private final StandingOrderService standingOrderService;
 
     public DomesticStandingOrdersApiController(
             DomesticStandingOrderPaymentSubmissionRepository standingOrderPaymentSubmissionRepository,
             PaymentSubmissionValidator paymentSubmissionValidator,
+            PaymentIdempotencyStore idempotencyStore,
             StandingOrderService standingOrderService) {
         this.standingOrderPaymentSubmissionRepository = standingOrderPaymentSubmissionRepository;
         this.paymentSubmissionValidator = paymentSubmissionValidator;
+        this.idempotencyStore = idempotencyStore;
         this.standingOrderService = standingOrderService;
     }
 
@@ -102,7 +106,8 @@ public class DomesticStandingOrdersApiController implements DomesticStandingOrde
                 .build();
 
         // Save the standing order
-        frPaymentSubmission = new IdempotentRepositoryAdapter<>(standingOrderPaymentSubmissionRepository)
+        frPaymentSubmission = new IdempotentRepositoryAdapter<>(
+                standingOrderPaymentSubmissionRepository, idempotencyStore)
                 .idempotentSave(frPaymentSubmission);
 
         // Save the standing order data for the Accounts API
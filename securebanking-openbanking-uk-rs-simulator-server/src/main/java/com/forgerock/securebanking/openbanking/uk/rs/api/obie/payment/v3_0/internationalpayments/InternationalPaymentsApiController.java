@@ -21,6 +21,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.common.util.VersionPathExtr
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRInternationalPaymentSubmission;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.IdempotentRepositoryAdapter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.InternationalPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
@@ -51,11 +52,14 @@ public class InternationalPaymentsApiController implements InternationalPayments
 
     private final InternationalPaymentSubmissionRepository paymentSubmissionRepository;
     private final PaymentSubmissionValidator paymentSubmissionValidator;
+    private final PaymentIdempotencyStore idempotencyStore;
 
     public InternationalPaymentsApiController(InternationalPaymentSubmissionRepository paymentSubmissionRepository,
-                                              PaymentSubmissionValidator paymentSubmissionValidator) {
+                                              PaymentSubmissionValidator paymentSubmissionValidator,
+                                              PaymentIdempotencyStore idempotencyStore) {
         this.paymentSubmissionRepository = paymentSubmissionRepository;
         this.paymentSubmissionValidator = paymentSubmissionValidator;
+        this.idempotencyStore = idempotencyStore;
     }
 
     @Override
@@ -95,7 +99,7 @@ public class InternationalPaymentsApiController implements InternationalPayments
                 .build();
 
         // Save the international payment
-        frPaymentSubmission = new IdempotentRepositoryAdapter<>(paymentSubmissionRepository)
+        frPaymentSubmission = new IdempotentRepositoryAdapter<>(paymentSubmissionRepository, idempotencyStore)
                 .idempotentSave(frPaymentSubmission);
         return ResponseEntity.status(HttpStatus.CREATED).body(responseEntity(frPaymentSubmission));
     }
@@ -23,6 +23,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.common.util.VersionPathExtr
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRInternationalStandingOrderPaymentSubmission;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.IdempotentRepositoryAdapter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.InternationalStandingOrderPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.service.standingorder.StandingOrderService;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import lombok.extern.slf4j.Slf4j;
@@ -54,14 +55,17 @@ public class InternationalStandingOrdersApiController implements InternationalSt
 
     private final InternationalStandingOrderPaymentSubmissionRepository standingOrderPaymentSubmissionRepository;
     private final PaymentSubmissionValidator paymentSubmissionValidator;
+    private final PaymentIdempotencyStore idempotencyStore;
     private final StandingOrderService standingOrderService;
 
     public InternationalStandingOrdersApiController(
             InternationalStandingOrderPaymentSubmissionRepository standingOrderPaymentSubmissionRepository,
             PaymentSubmissionValidator paymentSubmissionValidator,
+            PaymentIdempotencyStore idempotencyStore,
             StandingOrderService standingOrderService) {
         this.standingOrderPaymentSubmissionRepository = standingOrderPaymentSubmissionRepository;
         this.paymentSubmissionValidator = paymentSubmissionValidator;
+        this.idempotencyStore = idempotencyStore;
         this.standingOrderService = standingOrderService;
     }
 
@@ -103,7 +107,8 @@ public class InternationalStandingOrdersApiController implements InternationalSt
                 .build();
 
         // Save the international standing order
-        frPaymentSubmission = new IdempotentRepositoryAdapter<>(standingOrderPaymentSubmissionRepository)
+        frPaymentSubmission = new IdempotentRepositoryAdapter<>(
+                standingOrderPaymentSubmissionRepository, idempotencyStore)
                 .idempotentSave(frPaymentSubmission);
 
         // Save the standing order data for the Accounts API
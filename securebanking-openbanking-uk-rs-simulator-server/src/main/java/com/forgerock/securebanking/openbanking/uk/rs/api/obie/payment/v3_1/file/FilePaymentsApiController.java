@@ -23,6 +23,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.common.util.VersionPathExtr
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRFilePaymentSubmission;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.IdempotentRepositoryAdapter;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.FilePaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
@@ -52,11 +53,14 @@ public class FilePaymentsApiController implements FilePaymentsApi {
 
     private final FilePaymentSubmissionRepository filePaymentSubmissionRepository;
     private final PaymentSubmissionValidator paymentSubmissionValidator;
+    private final PaymentIdempotencyStore idempotencyStore;
 
     public FilePaymentsApiController(FilePaymentSubmissionRepository filePaymentSubmissionRepository,
-                                     PaymentSubmissionValidator paymentSubmissionValidator) {
+                                     PaymentSubmissionValidator paymentSubmissionValidator,
+                                     PaymentIdempotencyStore idempotencyStore) {
         this.filePaymentSubmissionRepository = filePaymentSubmissionRepository;
         this.paymentSubmissionValidator = paymentSubmissionValidator;
+        this.idempotencyStore = idempotencyStore;
     }
 
     @Override
@@ -89,7 +93,7 @@ public class FilePaymentsApiController implements FilePaymentsApi {
                 .build();
 
         // Save the file payment(s)
-        frPaymentSubmission = new IdempotentRepositoryAdapter<>(filePaymentSubmissionRepository)
+        frPaymentSubmission = new IdempotentRepositoryAdapter<>(filePaymentSubmissionRepository, idempotencyStore)
                 .idempotentSave(frPaymentSubmission);
         return ResponseEntity.status(HttpStatus.CREATED).body(responseEntity(frPaymentSubmission));
     }
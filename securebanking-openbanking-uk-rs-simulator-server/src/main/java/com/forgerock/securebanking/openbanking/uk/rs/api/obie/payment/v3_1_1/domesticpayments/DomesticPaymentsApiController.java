@@ -16,6 +16,7 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.obie.payment.v3_1_1.domesticpayments;
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.DomesticPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import org.springframework.stereotype.Controller;
 
@@ -23,7 +24,8 @@ import org.springframework.stereotype.Controller;
 public class DomesticPaymentsApiController extends com.forgerock.securebanking.openbanking.uk.rs.api.obie.payment.v3_1.domesticpayments.DomesticPaymentsApiController implements DomesticPaymentsApi {
 
     public DomesticPaymentsApiController(DomesticPaymentSubmissionRepository paymentSubmissionRepository,
-                                         PaymentSubmissionValidator paymentSubmissionValidator) {
-        super(paymentSubmissionRepository, paymentSubmissionValidator);
+                                         PaymentSubmissionValidator paymentSubmissionValidator,
+                                         PaymentIdempotencyStore idempotencyStore) {
+        super(paymentSubmissionRepository, paymentSubmissionValidator, idempotencyStore);
     }
 }
@@ -16,6 +16,7 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.obie.payment.v3_1_2.file;
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.FilePaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Controller;
@@ -25,7 +26,8 @@ import org.springframework.stereotype.Controller;
 public class FilePaymentsApiController extends com.forgerock.securebanking.openbanking.uk.rs.api.obie.payment.v3_1_1.file.FilePaymentsApiController implements FilePaymentsApi {
 
     public FilePaymentsApiController(FilePaymentSubmissionRepository filePaymentSubmissionRepository,
-                                     PaymentSubmissionValidator paymentSubmissionValidator) {
-        super(filePaymentSubmissionRepository, paymentSubmissionValidator);
+                                     PaymentSubmissionValidator paymentSubmissionValidator,
+                                     PaymentIdempotencyStore idempotencyStore) {
+        super(filePaymentSubmissionRepository, paymentSubmissionValidator, idempotencyStore);
     }
 }
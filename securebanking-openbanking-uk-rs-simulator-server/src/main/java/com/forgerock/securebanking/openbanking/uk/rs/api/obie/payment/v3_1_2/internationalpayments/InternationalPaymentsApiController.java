@@ -16,6 +16,7 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.obie.payment.v3_1_2.internationalpayments;
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.InternationalPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Controller;
@@ -25,7 +26,8 @@ import org.springframework.stereotype.Controller;
 public class InternationalPaymentsApiController extends com.forgerock.securebanking.openbanking.uk.rs.api.obie.payment.v3_1_1.internationalpayments.InternationalPaymentsApiController implements InternationalPaymentsApi {
 
     public InternationalPaymentsApiController(InternationalPaymentSubmissionRepository paymentSubmissionRepository,
-                                              PaymentSubmissionValidator paymentSubmissionValidator) {
-        super(paymentSubmissionRepository, paymentSubmissionValidator);
+                                              PaymentSubmissionValidator paymentSubmissionValidator,
+                                              PaymentIdempotencyStore idempotencyStore) {
+        super(paymentSubmissionRepository, paymentSubmissionValidator, idempotencyStore);
     }
 }
@@ -21,6 +21,7 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.obie.payment.v3_1_4.file;
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.FilePaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.PaymentSubmissionValidator;
 import org.springframework.stereotype.Controller;
 
@@ -28,7 +29,8 @@ import org.springframework.stereotype.Controller;
 public class FilePaymentsApiController extends com.forgerock.securebanking.openbanking.uk.rs.api.obie.payment.v3_1_3.file.FilePaymentsApiController implements FilePaymentsApi {
 
     public FilePaymentsApiController(FilePaymentSubmissionRepository filePaymentSubmissionRepository,
-                                     PaymentSubmissionValidator paymentSubmissionValidator) {
-        super(filePaymentSubmissionRepository, paymentSubmissionValidator);
+                                     PaymentSubmissionValidator paymentSubmissionValidator,
+                                     PaymentIdempotencyStore idempotencyStore) {
+        super(filePaymentSubmissionRepository, paymentSubmissionValidator, idempotencyStore);
     }
 }
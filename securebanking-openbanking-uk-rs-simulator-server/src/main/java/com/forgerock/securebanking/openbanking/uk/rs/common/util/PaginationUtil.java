@@ -23,6 +23,7 @@ import uk.org.openbanking.datamodel.account.Meta;
 public class PaginationUtil {
 
     public static final String PAGE = "page";
+    public static final String CURSOR = "cursor";
 
     public static Links generateLinks(String httpUrl, int page, int totalPages) {
         UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder
@@ -58,6 +59,31 @@ public class PaginationUtil {
         return links;
     }
 
+    /**
+     * Generates the links for a page that was read using keyset pagination. Unlike page numbers, a cursor can only
+     * move forwards, so there is no {@code Prev} or {@code Last} link.
+     *
+     * @param httpUrl the url of the current request, including any query parameters.
+     * @param firstPage true if the current request did not provide a cursor.
+     * @param nextCursor the token for the following page, or null if this is the last page.
+     * @return the links
+     */
+    public static Links generateCursorLinks(String httpUrl, boolean firstPage, String nextCursor) {
+        UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder
+                .fromHttpUrl(httpUrl);
+        Links links = new Links();
+        links.setSelf(uriComponentsBuilder.build().encode().toUriString());
+
+        uriComponentsBuilder.replaceQueryParam(PAGE);
+        if (!firstPage || nextCursor != null) {
+            links.setFirst(uriComponentsBuilder.replaceQueryParam(CURSOR).build().encode().toUriString());
+        }
+        if (nextCursor != null) {
+            links.setNext(uriComponentsBuilder.replaceQueryParam(CURSOR, nextCursor).build().encode().toUriString());
+        }
+        return links;
+    }
+
     public static Links generateLinksOnePager(String httpUrl) {
         String resourceUrl = UriComponentsBuilder.fromHttpUrl(httpUrl).toUriString();
 
@@ -70,9 +96,17 @@ public class PaginationUtil {
         return generateMetaData(totalPages, null, null);
     }
 
-    public static Meta generateMetaData(int totalPages, DateTime firstAvailableDate, DateTime lastAvailableDate) {
+    /**
+     * @param totalPages the total number of pages, or null if it is not known.
+     * @param firstAvailableDate the first available date, may be null.
+     * @param lastAvailableDate the last available date, may be null.
+     * @return the meta data
+     */
+    public static Meta generateMetaData(Integer totalPages, DateTime firstAvailableDate, DateTime lastAvailableDate) {
         Meta metaData = new Meta();
-        metaData.setTotalPages(totalPages);
+        if (totalPages != null) {
+            metaData.setTotalPages(totalPages);
+        }
         if (firstAvailableDate != null) {
             metaData.setFirstAvailableDateTime(firstAvailableDate);
         }
@@ -82,6 +116,15 @@ public class PaginationUtil {
         return metaData;
     }
 
+    /**
+     * @param count the total number of resources.
+     * @param pageSize the maximum number of resources in a page.
+     * @return the number of pages needed to hold the resources.
+     */
+    public static int totalPages(long count, int pageSize) {
+        return (int) ((count + pageSize - 1) / pageSize);
+    }
+
     private static String getUrlWithPage(int page, UriComponentsBuilder builder) {
         return builder.replaceQueryParam(PAGE, page).build().encode().toUriString();
     }
@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.common.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import uk.org.openbanking.datamodel.account.Links;
+import uk.org.openbanking.datamodel.account.Meta;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes the body of an OB read response of a collection endpoint straight from a Mongo cursor, with a
+ * {@link JsonGenerator}: each document is converted and written as soon as it is read, so that a response never holds
+ * more than one document of its page in memory, whatever the page size. {@code Links} and {@code Meta} are written
+ * after the data array.
+ * <p>
+ * The cursor is only opened once the response is being written, and it is closed as soon as the data array has been
+ * written, or writing it has failed. A response that is never written (e.g. because an exception was thrown before
+ * it could be) therefore never opens one.
+ * <p>
+ * The generated API interfaces fix the type of each response, so a response is written by a subclass of its OB model
+ * (see {@link StreamedResponses}), which is serialised by {@link Serializer}.
+ *
+ * @param <D> the type of the documents read.
+ */
+public class StreamedResponse<D> {
+
+    private static final String DATA = "Data";
+    private static final String LINKS = "Links";
+    private static final String META = "Meta";
+
+    private final Supplier<Stream<D>> documents;
+    private final int pageSize;
+    private final Function<D, ?> converter;
+    private final BiFunction<D, Boolean, Links> links;
+    private final Meta meta;
+
+    /**
+     * @param documents opens the cursor that the documents of the page are read from. The cursor may hold one more
+     *                  document than the page, to tell whether there is a next page.
+     * @param pageSize the maximum number of documents written.
+     * @param converter converts each document to the element written in the data array.
+     * @param links provides the links, given the last document written (null if none) and whether there is a next
+     *              page.
+     * @param meta the meta data.
+     */
+    public StreamedResponse(Supplier<Stream<D>> documents, int pageSize, Function<D, ?> converter,
+                            BiFunction<D, Boolean, Links> links, Meta meta) {
+        this.documents = documents;
+        this.pageSize = pageSize;
+        this.converter = converter;
+        this.links = links;
+        this.meta = meta;
+    }
+
+    /**
+     * Writes the response as a JSON object.
+     *
+     * @param dataField the name of the data array, e.g. {@code Transaction}.
+     * @param generator the generator writing the response.
+     * @param provider the provider of the serialisers of the elements, links and meta data.
+     * @throws IOException if writing the response fails.
+     */
+    void writeTo(String dataField, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart(DATA);
+        generator.writeArrayFieldStart(dataField);
+        D last = null;
+        boolean hasNext = false;
+        try (Stream<D> page = documents.get()) {
+            Iterator<D> iterator = page.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                D document = iterator.next();
+                if (written == pageSize) {
+                    hasNext = true;
+                    break;
+                }
+                provider.defaultSerializeValue(converter.apply(document), generator);
+                last = document;
+                written++;
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        provider.defaultSerializeField(LINKS, links.apply(last, hasNext), generator);
+        provider.defaultSerializeField(META, meta, generator);
+        generator.writeEndObject();
+    }
+
+    /**
+     * A response that is written by a {@link StreamedResponse}.
+     */
+    public interface Source {
+
+        /**
+         * @return the name of the data array, e.g. {@code Transaction}.
+         */
+        String dataField();
+
+        StreamedResponse<?> streamedResponse();
+    }
+
+    /**
+     * Serialises the responses that are written by a {@link StreamedResponse}.
+     */
+    public static class Serializer extends StdSerializer<Source> {
+
+        public Serializer() {
+            super(Source.class);
+        }
+
+        @Override
+        public void serialize(Source source, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            source.streamedResponse().writeTo(source.dataField(), generator, provider);
+        }
+    }
+}
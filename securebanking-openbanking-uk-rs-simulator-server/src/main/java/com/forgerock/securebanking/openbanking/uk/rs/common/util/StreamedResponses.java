@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.common.util;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import uk.org.openbanking.datamodel.account.OBReadBeneficiary5;
+import uk.org.openbanking.datamodel.account.OBReadStandingOrder6;
+import uk.org.openbanking.datamodel.account.OBReadStatement2;
+import uk.org.openbanking.datamodel.account.OBReadTransaction6;
+
+/**
+ * The OB read responses of the collection endpoints that are written by a {@link StreamedResponse}.
+ */
+public class StreamedResponses {
+
+    public static OBReadTransaction6 transactions(StreamedResponse<?> response) {
+        return new Transactions(response);
+    }
+
+    public static OBReadStatement2 statements(StreamedResponse<?> response) {
+        return new Statements(response);
+    }
+
+    public static OBReadBeneficiary5 beneficiaries(StreamedResponse<?> response) {
+        return new Beneficiaries(response);
+    }
+
+    public static OBReadStandingOrder6 standingOrders(StreamedResponse<?> response) {
+        return new StandingOrders(response);
+    }
+
+    @JsonSerialize(using = StreamedResponse.Serializer.class)
+    private static class Transactions extends OBReadTransaction6 implements StreamedResponse.Source {
+        private final StreamedResponse<?> response;
+
+        private Transactions(StreamedResponse<?> response) {
+            this.response = response;
+        }
+
+        @Override
+        public String dataField() {
+            return "Transaction";
+        }
+
+        @Override
+        public StreamedResponse<?> streamedResponse() {
+            return response;
+        }
+    }
+
+    @JsonSerialize(using = StreamedResponse.Serializer.class)
+    private static class Statements extends OBReadStatement2 implements StreamedResponse.Source {
+        private final StreamedResponse<?> response;
+
+        private Statements(StreamedResponse<?> response) {
+            this.response = response;
+        }
+
+        @Override
+        public String dataField() {
+            return "Statement";
+        }
+
+        @Override
+        public StreamedResponse<?> streamedResponse() {
+            return response;
+        }
+    }
+
+    @JsonSerialize(using = StreamedResponse.Serializer.class)
+    private static class Beneficiaries extends OBReadBeneficiary5 implements StreamedResponse.Source {
+        private final StreamedResponse<?> response;
+
+        private Beneficiaries(StreamedResponse<?> response) {
+            this.response = response;
+        }
+
+        @Override
+        public String dataField() {
+            return "Beneficiary";
+        }
+
+        @Override
+        public StreamedResponse<?> streamedResponse() {
+            return response;
+        }
+    }
+
+    @JsonSerialize(using = StreamedResponse.Serializer.class)
+    private static class StandingOrders extends OBReadStandingOrder6 implements StreamedResponse.Source {
+        private final StreamedResponse<?> response;
+
+        private StandingOrders(StreamedResponse<?> response) {
+            this.response = response;
+        }
+
+        @Override
+        public String dataField() {
+            return "StandingOrder";
+        }
+
+        @Override
+        public StreamedResponse<?> streamedResponse() {
+            return response;
+        }
+    }
+}
@@ -42,6 +42,10 @@ public class VersionPathExtractor {
                 HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE));
     }
 
+    /**
+     * @param path the path of an Open Banking resource.
+     * @return OBVersion or null if no version present in path
+     */
     static OBVersion getVersionFromPath(String path) {
         if (StringUtils.isEmpty(path)) {
             log.warn("Path not defined");
@@ -23,51 +23,111 @@ public class FRAccountIdentifierConverter {
 
     // OB to FR
     public static FRAccountIdentifier toFRAccountIdentifier(OBCashAccount3 account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBCashAccount6 account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBCashAccount51 account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBCashAccount60 account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBCashAccount61 account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBCashAccountDebtor4 account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBCashAccountCreditor3 account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBWriteDomestic2DataInitiationCreditorAccount account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBWriteDomestic2DataInitiationDebtorAccount account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBWriteDomesticStandingOrder3DataInitiationCreditorAccount account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBWriteInternationalStandingOrder4DataInitiationCreditorAccount account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBWriteDomesticStandingOrder3DataInitiationDebtorAccount account) {
-        return FRModelMapper.map(account, FRAccountIdentifier.class);
+        return account == null ? null : FRAccountIdentifier.builder()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification())
+                .build();
     }
 
     public static FRAccountIdentifier toFRAccountIdentifier(OBCashAccountDebtor1 account) {
@@ -90,15 +150,27 @@ public class FRAccountIdentifierConverter {
 
     // FR to OB
     public static OBCashAccountCreditor3 toOBCashAccountCreditor3(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccountCreditor3.class);
+        return account == null ? null : new OBCashAccountCreditor3()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccountDebtor4 toOBCashAccountDebtor4(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccountDebtor4.class);
+        return account == null ? null : new OBCashAccountDebtor4()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccount1 toOBCashAccount1(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccount1.class);
+        return account == null ? null : new OBCashAccount1()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccount2 toOBCashAccount2(FRAccountIdentifier account) {
@@ -110,55 +182,107 @@ public class FRAccountIdentifierConverter {
     }
 
     public static OBCashAccount3 toOBCashAccount3(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccount3.class);
+        return account == null ? null : new OBCashAccount3()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccount5 toOBCashAccount5(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccount5.class);
+        return account == null ? null : new OBCashAccount5()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccount6 toOBCashAccount6(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccount6.class);
+        return account == null ? null : new OBCashAccount6()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccount50 toOBCashAccount50(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccount50.class);
+        return account == null ? null : new OBCashAccount50()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccount51 toOBCashAccount51(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccount51.class);
+        return account == null ? null : new OBCashAccount51()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccount60 toOBCashAccount60(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccount60.class);
+        return account == null ? null : new OBCashAccount60()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccount61 toOBCashAccount61(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBCashAccount61.class);
+        return account == null ? null : new OBCashAccount61()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBAccount3Account toOBAccount3Account(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBAccount3Account.class);
+        return account == null ? null : new OBAccount3Account()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBWriteDomestic2DataInitiationCreditorAccount toOBWriteDomestic2DataInitiationCreditorAccount(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBWriteDomestic2DataInitiationCreditorAccount.class);
+        return account == null ? null : new OBWriteDomestic2DataInitiationCreditorAccount()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBWriteDomestic2DataInitiationDebtorAccount toOBWriteDomestic2DataInitiationDebtorAccount(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBWriteDomestic2DataInitiationDebtorAccount.class);
+        return account == null ? null : new OBWriteDomestic2DataInitiationDebtorAccount()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBWriteDomesticStandingOrder3DataInitiationCreditorAccount toOBWriteDomesticStandingOrder3DataInitiationCreditorAccount(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBWriteDomesticStandingOrder3DataInitiationCreditorAccount.class);
+        return account == null ? null : new OBWriteDomesticStandingOrder3DataInitiationCreditorAccount()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBWriteInternationalStandingOrder4DataInitiationCreditorAccount toOBWriteInternationalStandingOrder4DataInitiationCreditorAccount(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBWriteInternationalStandingOrder4DataInitiationCreditorAccount.class);
+        return account == null ? null : new OBWriteInternationalStandingOrder4DataInitiationCreditorAccount()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBWriteDomesticStandingOrder3DataInitiationDebtorAccount toOBWriteDomesticStandingOrder3DataInitiationDebtorAccount(FRAccountIdentifier account) {
-        return FRModelMapper.map(account, OBWriteDomesticStandingOrder3DataInitiationDebtorAccount.class);
+        return account == null ? null : new OBWriteDomesticStandingOrder3DataInitiationDebtorAccount()
+                .schemeName(account.getSchemeName())
+                .identification(account.getIdentification())
+                .name(account.getName())
+                .secondaryIdentification(account.getSecondaryIdentification());
     }
 
     public static OBCashAccountDebtor1 toOBCashAccountDebtor1(FRAccountIdentifier account) {
@@ -24,147 +24,237 @@ public class FRAmountConverter {
 
     // OB to FR
     public static FRAmount toFRAmount(OBActiveOrHistoricCurrencyAndAmount0 amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBActiveOrHistoricCurrencyAndAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBActiveOrHistoricCurrencyAndAmount1 amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBActiveOrHistoricCurrencyAndAmount2 amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBActiveOrHistoricCurrencyAndAmount3 amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBActiveOrHistoricCurrencyAndAmount4 amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBActiveOrHistoricCurrencyAndAmount9 amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBActiveOrHistoricCurrencyAndAmount10 amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBActiveOrHistoricCurrencyAndAmount11 amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBDomestic2InstructedAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBDomesticStandingOrder3FirstPaymentAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBDomesticStandingOrder3FinalPaymentAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBDomesticStandingOrder3RecurringPaymentAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBWriteDomestic2DataInitiationInstructedAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBWriteDomesticStandingOrder3DataInitiationFinalPaymentAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBWriteDomesticStandingOrder3DataInitiationRecurringPaymentAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(OBWriteDomesticStandingOrder3DataInitiationFirstPaymentAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     public static FRAmount toFRAmount(uk.org.openbanking.datamodel.account.OBActiveOrHistoricCurrencyAndAmount amount) {
-        return FRModelMapper.map(amount, FRAmount.class);
+        return amount == null ? null : FRAmount.builder()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency())
+                .build();
     }
 
     // FR to OB
     public static OBActiveOrHistoricCurrencyAndAmount toOBActiveOrHistoricCurrencyAndAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, OBActiveOrHistoricCurrencyAndAmount.class);
+        return amount == null ? null : new OBActiveOrHistoricCurrencyAndAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBActiveOrHistoricCurrencyAndAmount2 toOBActiveOrHistoricCurrencyAndAmount2(FRAmount amount) {
-        return FRModelMapper.map(amount, OBActiveOrHistoricCurrencyAndAmount2.class);
+        return amount == null ? null : new OBActiveOrHistoricCurrencyAndAmount2()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBActiveOrHistoricCurrencyAndAmount3 toOBActiveOrHistoricCurrencyAndAmount3(FRAmount amount) {
-        return FRModelMapper.map(amount, OBActiveOrHistoricCurrencyAndAmount3.class);
+        return amount == null ? null : new OBActiveOrHistoricCurrencyAndAmount3()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBActiveOrHistoricCurrencyAndAmount4 toOBActiveOrHistoricCurrencyAndAmount4(FRAmount amount) {
-        return FRModelMapper.map(amount, OBActiveOrHistoricCurrencyAndAmount4.class);
+        return amount == null ? null : new OBActiveOrHistoricCurrencyAndAmount4()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBActiveOrHistoricCurrencyAndAmount9 toOBActiveOrHistoricCurrencyAndAmount9(FRAmount amount) {
-        return FRModelMapper.map(amount, OBActiveOrHistoricCurrencyAndAmount9.class);
+        return amount == null ? null : new OBActiveOrHistoricCurrencyAndAmount9()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBActiveOrHistoricCurrencyAndAmount10 toOBActiveOrHistoricCurrencyAndAmount10(FRAmount amount) {
-        return FRModelMapper.map(amount, OBActiveOrHistoricCurrencyAndAmount10.class);
+        return amount == null ? null : new OBActiveOrHistoricCurrencyAndAmount10()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBActiveOrHistoricCurrencyAndAmount11 toOBActiveOrHistoricCurrencyAndAmount11(FRAmount amount) {
-        return FRModelMapper.map(amount, OBActiveOrHistoricCurrencyAndAmount11.class);
+        return amount == null ? null : new OBActiveOrHistoricCurrencyAndAmount11()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static uk.org.openbanking.datamodel.account.OBActiveOrHistoricCurrencyAndAmount toAccountOBActiveOrHistoricCurrencyAndAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, uk.org.openbanking.datamodel.account.OBActiveOrHistoricCurrencyAndAmount.class);
+        return amount == null ? null : new uk.org.openbanking.datamodel.account.OBActiveOrHistoricCurrencyAndAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBActiveOrHistoricCurrencyAndAmount0 toOBActiveOrHistoricCurrencyAndAmount0(FRAmount amount) {
-        return FRModelMapper.map(amount, OBActiveOrHistoricCurrencyAndAmount0.class);
+        return amount == null ? null : new OBActiveOrHistoricCurrencyAndAmount0()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBActiveOrHistoricCurrencyAndAmount1 toOBActiveOrHistoricCurrencyAndAmount1(FRAmount amount) {
-        return FRModelMapper.map(amount, OBActiveOrHistoricCurrencyAndAmount1.class);
+        return amount == null ? null : new OBActiveOrHistoricCurrencyAndAmount1()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBWriteDomestic2DataInitiationInstructedAmount toOBWriteDomestic2DataInitiationInstructedAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, OBWriteDomestic2DataInitiationInstructedAmount.class);
+        return amount == null ? null : new OBWriteDomestic2DataInitiationInstructedAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBDomestic2InstructedAmount toOBDomestic2InstructedAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, OBDomestic2InstructedAmount.class);
+        return amount == null ? null : new OBDomestic2InstructedAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBWriteDomesticStandingOrder3DataInitiationFinalPaymentAmount toOBWriteDomesticStandingOrder3DataInitiationFinalPaymentAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, OBWriteDomesticStandingOrder3DataInitiationFinalPaymentAmount.class);
+        return amount == null ? null : new OBWriteDomesticStandingOrder3DataInitiationFinalPaymentAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBWriteDomesticStandingOrder3DataInitiationRecurringPaymentAmount toOBWriteDomesticStandingOrder3DataInitiationRecurringPaymentAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, OBWriteDomesticStandingOrder3DataInitiationRecurringPaymentAmount.class);
+        return amount == null ? null : new OBWriteDomesticStandingOrder3DataInitiationRecurringPaymentAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBWriteDomesticStandingOrder3DataInitiationFirstPaymentAmount toOBWriteDomesticStandingOrder3DataInitiationFirstPaymentAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, OBWriteDomesticStandingOrder3DataInitiationFirstPaymentAmount.class);
+        return amount == null ? null : new OBWriteDomesticStandingOrder3DataInitiationFirstPaymentAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBDomesticStandingOrder3FirstPaymentAmount toOBDomesticStandingOrder3FirstPaymentAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, OBDomesticStandingOrder3FirstPaymentAmount.class);
+        return amount == null ? null : new OBDomesticStandingOrder3FirstPaymentAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBDomesticStandingOrder3RecurringPaymentAmount toOBDomesticStandingOrder3RecurringPaymentAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, OBDomesticStandingOrder3RecurringPaymentAmount.class);
+        return amount == null ? null : new OBDomesticStandingOrder3RecurringPaymentAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 
     public static OBDomesticStandingOrder3FinalPaymentAmount toOBDomesticStandingOrder3FinalPaymentAmount(FRAmount amount) {
-        return FRModelMapper.map(amount, OBDomesticStandingOrder3FinalPaymentAmount.class);
+        return amount == null ? null : new OBDomesticStandingOrder3FinalPaymentAmount()
+                .amount(amount.getAmount())
+                .currency(amount.getCurrency());
     }
 }
@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.metrics;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Times the conversions from the persisted FR data model to the OB data model of the collection endpoints. The
+ * converters are static, so the timings are recorded in the global registry (to which Spring Boot adds its own
+ * registry) in the {@value #METRIC_NAME} timer, tagged with the name of the conversion.
+ * <p>
+ * The collection responses are written as a
+ * {@link com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponse}, which converts each document as
+ * it is read from the repository cursor, so the conversions happen while the response is being written. Subtracting
+ * the conversion and repository times from {@code http.server.requests} leaves the time spent serialising.
+ */
+public final class ConversionMetrics {
+
+    static final String METRIC_NAME = "rs.conversions";
+
+    private ConversionMetrics() {
+    }
+
+    /**
+     * @param conversion the name of the conversion, e.g. {@code toOBTransaction6}.
+     * @param converter the conversion to time.
+     * @return the conversion, recording the time of each invocation.
+     */
+    public static <S, T> Function<S, T> timed(String conversion, Function<S, T> converter) {
+        Timer timer = Timer.builder(METRIC_NAME)
+                .tag("conversion", conversion)
+                .register(Metrics.globalRegistry);
+        return source -> {
+            long start = System.nanoTime();
+            try {
+                return converter.apply(source);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+}
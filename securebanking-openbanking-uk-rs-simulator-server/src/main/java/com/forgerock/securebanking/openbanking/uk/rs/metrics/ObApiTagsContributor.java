@@ -0,0 +1,95 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.metrics;
+
+import com.forgerock.securebanking.openbanking.uk.rs.api.discovery.AvailableApiEndpoint;
+import com.forgerock.securebanking.openbanking.uk.rs.api.discovery.AvailableApiEndpointsResolver;
+import com.forgerock.securebanking.openbanking.uk.rs.api.discovery.ControllerMethod;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Adds the Open Banking version, API group and API reference of the handled endpoint to the
+ * {@code http.server.requests} timer recorded by Spring Boot Actuator, which already carries the method, URI template,
+ * status and outcome. Requests that are not for an Open Banking endpoint are tagged with {@value #NONE}.
+ * <p>
+ * The tags are resolved once per controller method and cached, so that tagging a request is a single map lookup.
+ */
+@Component
+public class ObApiTagsContributor implements WebMvcTagsContributor {
+
+    static final String VERSION_TAG = "ob.version";
+    static final String GROUP_TAG = "ob.group";
+    static final String API_TAG = "ob.api";
+    static final String NONE = "none";
+
+    private static final Tags NO_OB_API = Tags.of(VERSION_TAG, NONE, GROUP_TAG, NONE, API_TAG, NONE);
+
+    private final AvailableApiEndpointsResolver availableApiEndpointsResolver;
+    private final Map<HandlerMethod, Tags> tagsByHandler = new ConcurrentHashMap<>();
+    private volatile Map<ControllerMethod, AvailableApiEndpoint> endpoints;
+
+    // @Lazy as the resolver needs the request mappings, which are not available yet when the metrics filter is created
+    public ObApiTagsContributor(@Lazy AvailableApiEndpointsResolver availableApiEndpointsResolver) {
+        this.availableApiEndpointsResolver = availableApiEndpointsResolver;
+    }
+
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                 Throwable exception) {
+        if (!(handler instanceof HandlerMethod)) {
+            return NO_OB_API;
+        }
+        return tagsByHandler.computeIfAbsent((HandlerMethod) handler, this::resolveTags);
+    }
+
+    @Override
+    public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+        return Tags.empty();
+    }
+
+    private Tags resolveTags(HandlerMethod handlerMethod) {
+        AvailableApiEndpoint endpoint = getEndpoints()
+                .get(ControllerMethod.of(handlerMethod.getBeanType(), handlerMethod.getMethod()));
+        if (endpoint == null) {
+            return NO_OB_API;
+        }
+        return Tags.of(
+                VERSION_TAG, endpoint.getVersion(),
+                GROUP_TAG, endpoint.getGroupName().name(),
+                API_TAG, endpoint.getApiReference().name());
+    }
+
+    private Map<ControllerMethod, AvailableApiEndpoint> getEndpoints() {
+        if (endpoints == null) {
+            endpoints = availableApiEndpointsResolver.getAvailableApiEndpoints().stream()
+                    .collect(Collectors.toMap(AvailableApiEndpoint::getControllerMethod, Function.identity(),
+                            (first, second) -> first));
+        }
+        return endpoints;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every method invocation of the Spring Data repositories (including the custom {@code *Impl} fragments), so
+ * that the latency of MongoDB can be told apart from the rest of a request. Invocations are recorded in the
+ * {@value #METRIC_NAME} timer, tagged with the repository, the method and the exception thrown (if any), and publish
+ * a percentile histogram. The timers are registered once per method and exception, rather than on every invocation.
+ * <p>
+ * Methods returning a {@link java.util.stream.Stream} only account for running the query and opening the cursor. The
+ * collection endpoints call them as their
+ * {@link com.forgerock.securebanking.openbanking.uk.rs.common.util.StreamedResponse} is written, so reading the
+ * documents from the cursor is part of the response serialisation.
+ */
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    static final String METRIC_NAME = "rs.repository.invocations";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    /**
+     * @param meterRegistry resolved on first use, so that creating this post processor does not force the early
+     *                      creation of the registry.
+     */
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Repository && bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            // Repositories are already proxies, the timing is added as their outermost advice
+            Advised repository = (Advised) bean;
+            repository.addAdvice(0, new TimingInterceptor(repositoryName(repository)));
+        }
+        return bean;
+    }
+
+    private static String repositoryName(Advised repository) {
+        // The application repository interface is the first one proxied
+        Class<?>[] interfaces = repository.getProxiedInterfaces();
+        return interfaces.length > 0 ? interfaces[0].getSimpleName() : repository.getTargetClass().getSimpleName();
+    }
+
+    private class TimingInterceptor implements MethodInterceptor {
+
+        private final String repository;
+        private final Map<Method, Map<String, Timer>> timers = new ConcurrentHashMap<>();
+
+        TimingInterceptor(String repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            long start = System.nanoTime();
+            String exception = "none";
+            try {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                exception = e.getClass().getSimpleName();
+                throw e;
+            } finally {
+                timer(invocation.getMethod(), exception).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private Timer timer(Method method, String exception) {
+            return timers.computeIfAbsent(method, m -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(exception, e -> Timer.builder(METRIC_NAME)
+                            .tag("repository", repository)
+                            .tag("method", method.getName())
+                            .tag("exception", e)
+                            .publishPercentileHistogram()
+                            .register(meterRegistry.getObject()));
+        }
+    }
+}
@@ -30,8 +30,7 @@ import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
+import java.math.RoundingMode;
 import java.util.Objects;
 
 /**
@@ -43,7 +42,8 @@ import java.util.Objects;
 @AllArgsConstructor
 @Document
 public class FRBalance {
-    private final static NumberFormat FORMAT_AMOUNT = new DecimalFormat("#0.00");
+    // Same as a "#0.00" DecimalFormat, which can't be shared between threads
+    private static final int AMOUNT_SCALE = 2;
 
     @Id
     @Indexed
@@ -74,7 +74,7 @@ public class FRBalance {
     }
 
     public void setAmount(BigDecimal amount) {
-        getBalance().getAmount().setAmount(FORMAT_AMOUNT.format(amount));
+        getBalance().getAmount().setAmount(amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_EVEN).toPlainString());
     }
 
     public void setCreditDebitIndicator(FRCreditDebitIndicator code) {
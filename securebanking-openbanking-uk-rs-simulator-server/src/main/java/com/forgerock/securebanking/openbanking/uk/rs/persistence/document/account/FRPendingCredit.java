@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.joda.time.DateTime;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A credit to a balance that could not be made when it was due, kept for reconciliation. Pending credits are applied
+ * (and removed) by the next payments posted, see
+ * {@link com.forgerock.securebanking.openbanking.uk.rs.service.payment.PaymentPostingService}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class FRPendingCredit {
+
+    @Id
+    private String id;
+    private String accountId;
+    private FRBalanceType balanceType;
+    private BigDecimal amount;
+    /** The payment submissions the credit is due for. */
+    private List<String> submissionIds;
+    private DateTime created;
+}
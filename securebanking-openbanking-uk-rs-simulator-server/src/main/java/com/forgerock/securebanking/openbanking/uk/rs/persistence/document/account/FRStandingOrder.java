@@ -55,6 +55,9 @@ public class FRStandingOrder {
 
     private StandingOrderStatus status;
 
+    /** The number of payments made so far (see StandingOrderRecurrenceEngine). */
+    private int paymentsMade;
+
     /**
      * Internal status of a standing order with regards to payment execution
      */
@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.joda.time.DateTime;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * The idempotency key a payment submission was created with, keyed by the ID of its consent (a consent can only be
+ * used for a single submission). Records are removed by a TTL index once the idempotency key has expired.
+ * <p>
+ * A record is pending from when it is stored, before its submission is saved, until the submission has been saved.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document
+public class FRPaymentIdempotencyRecord {
+
+    @Id
+    private String consentId;
+
+    private String idempotencyKey;
+
+    private String submissionId;
+
+    private DateTime created;
+
+    /** Whether the submission has been saved, rather than being about to be saved. */
+    private boolean saved;
+
+    /**
+     * @param paymentSubmission a payment submission that has been saved.
+     * @return the record of the submission.
+     */
+    public static FRPaymentIdempotencyRecord of(PaymentSubmission paymentSubmission) {
+        return new FRPaymentIdempotencyRecord(paymentSubmission.getConsentId(), paymentSubmission.getIdempotencyKey(),
+                paymentSubmission.getId(), paymentSubmission.getCreated(), true);
+    }
+
+    /**
+     * @param paymentSubmission a payment submission that is about to be saved.
+     * @return the pending record of the submission.
+     */
+    public static FRPaymentIdempotencyRecord pending(PaymentSubmission paymentSubmission) {
+        return new FRPaymentIdempotencyRecord(paymentSubmission.getConsentId(), paymentSubmission.getIdempotencyKey(),
+                paymentSubmission.getId(), paymentSubmission.getCreated(), false);
+    }
+}
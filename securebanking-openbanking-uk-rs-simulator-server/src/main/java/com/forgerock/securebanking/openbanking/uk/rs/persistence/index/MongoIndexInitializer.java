@@ -0,0 +1,153 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.index;
+
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the indexes declared in {@link MongoIndexes} on startup (creating an index that already exists is a no-op)
+ * and, optionally, checks with {@code explain} the query each index was declared for. A query that ends up with a
+ * collection scan or an in-memory sort is logged as a warning.
+ */
+@Component
+@Slf4j
+public class MongoIndexInitializer {
+
+    private static final String COLLECTION_SCAN = "COLLSCAN";
+    private static final String INDEX_SCAN = "IXSCAN";
+    private static final String IN_MEMORY_SORT = "SORT";
+    private static final int INDEX_OPTIONS_CONFLICT = 85;
+    private static final int INDEX_KEY_SPECS_CONFLICT = 86;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean verifyQueryPlans;
+
+    public MongoIndexInitializer(MongoTemplate mongoTemplate,
+                                 @Value("${rs.data.indexes.verify-query-plans:true}") boolean verifyQueryPlans) {
+        this.mongoTemplate = mongoTemplate;
+        this.verifyQueryPlans = verifyQueryPlans;
+    }
+
+    @PostConstruct
+    protected void init() {
+        for (MongoIndexSpec spec : MongoIndexes.getIndexes()) {
+            String indexName = ensureIndex(spec);
+            log.debug("Ensured index '{}' on collection '{}'", indexName, collectionName(spec));
+            if (verifyQueryPlans) {
+                verifyQueryPlan(spec);
+            }
+        }
+    }
+
+    /**
+     * Creates the index, replacing an existing index of the same name that was declared differently (e.g. an index
+     * that has since been made unique), as MongoDB can't change the options of an existing index.
+     */
+    private String ensureIndex(MongoIndexSpec spec) {
+        IndexOperations indexOps = mongoTemplate.indexOps(spec.getDocumentClass());
+        try {
+            return indexOps.ensureIndex(spec.toIndex());
+        } catch (DataIntegrityViolationException e) {
+            if (!isIndexConflict(e)) {
+                throw e;
+            }
+            log.info("Replacing index '{}' on collection '{}' as its declaration has changed", spec.getName(),
+                    collectionName(spec));
+            indexOps.dropIndex(spec.getName());
+            return indexOps.ensureIndex(spec.toIndex());
+        }
+    }
+
+    private static boolean isIndexConflict(DataIntegrityViolationException e) {
+        if (!(e.getCause() instanceof MongoException)) {
+            return false;
+        }
+        int code = ((MongoException) e.getCause()).getCode();
+        return code == INDEX_OPTIONS_CONFLICT || code == INDEX_KEY_SPECS_CONFLICT;
+    }
+
+    /**
+     * Runs {@code explain} for the query shape of the index and checks the stages of the winning plan.
+     *
+     * @param spec the index specification
+     * @return true if the winning plan neither scans the whole collection nor sorts in memory.
+     */
+    boolean verifyQueryPlan(MongoIndexSpec spec) {
+        String collectionName = collectionName(spec);
+        Document find = new Document("find", collectionName).append("filter", spec.getQueryFilter());
+        if (spec.getQuerySort() != null) {
+            find.append("sort", spec.getQuerySort());
+        }
+        List<Document> stages = new ArrayList<>();
+        try {
+            Document explain = mongoTemplate.executeCommand(new Document("explain", find)
+                    .append("verbosity", "queryPlanner"));
+            Document queryPlanner = explain.get("queryPlanner", Document.class);
+            Document winningPlan = queryPlanner.get("winningPlan", Document.class);
+            // Slot based execution engine nests the classic plan
+            if (winningPlan.containsKey("queryPlan")) {
+                winningPlan = winningPlan.get("queryPlan", Document.class);
+            }
+            collectStages(winningPlan, stages);
+        } catch (RuntimeException e) {
+            log.warn("Unable to explain query {} on collection '{}'", find.toJson(), collectionName, e);
+            return false;
+        }
+
+        boolean usesIndex = stages.stream().anyMatch(stage -> INDEX_SCAN.equals(stage.getString("stage"))
+                && spec.getName().equals(stage.getString("indexName")));
+        boolean scansCollection = stages.stream().anyMatch(stage -> COLLECTION_SCAN.equals(stage.getString("stage")));
+        boolean sortsInMemory = stages.stream().anyMatch(stage -> IN_MEMORY_SORT.equals(stage.getString("stage")));
+        if (scansCollection || sortsInMemory) {
+            log.warn("Query {} on collection '{}' is not served by index '{}'. Winning plan stages: {}",
+                    find.toJson(), collectionName, spec.getName(), stages);
+            return false;
+        }
+        if (!usesIndex) {
+            // Another index was preferred, which is fine as long as there was no collection scan or in-memory sort
+            log.debug("Query on collection '{}' is served by another index than '{}'. Winning plan stages: {}",
+                    collectionName, spec.getName(), stages);
+        }
+        return true;
+    }
+
+    private static void collectStages(Document plan, List<Document> stages) {
+        if (plan == null) {
+            return;
+        }
+        stages.add(new Document("stage", plan.getString("stage")).append("indexName", plan.getString("indexName")));
+        collectStages(plan.get("inputStage", Document.class), stages);
+        List<Document> inputStages = plan.getList("inputStages", Document.class);
+        if (inputStages != null) {
+            inputStages.forEach(inputStage -> collectStages(inputStage, stages));
+        }
+    }
+
+    private String collectionName(MongoIndexSpec spec) {
+        return mongoTemplate.getCollectionName(spec.getDocumentClass());
+    }
+}
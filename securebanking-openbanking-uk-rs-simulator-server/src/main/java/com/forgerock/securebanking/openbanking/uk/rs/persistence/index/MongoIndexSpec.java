@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.index;
+
+import lombok.Getter;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Declares a single (possibly compound) index on a document class, together with the shape of the query it is meant
+ * to serve. The query shape is used to check, via {@code explain}, that MongoDB actually picks the index.
+ */
+@Getter
+public class MongoIndexSpec {
+
+    private final Class<?> documentClass;
+    private final String name;
+    private final Map<String, Sort.Direction> keys = new LinkedHashMap<>();
+    private boolean unique;
+    private boolean sparse;
+    private Duration expireAfter;
+    private Document queryFilter = new Document();
+    private Document querySort;
+
+    private MongoIndexSpec(Class<?> documentClass, String name) {
+        this.documentClass = documentClass;
+        this.name = name;
+    }
+
+    public static MongoIndexSpec index(Class<?> documentClass, String name) {
+        return new MongoIndexSpec(documentClass, name);
+    }
+
+    public MongoIndexSpec on(String key) {
+        keys.put(key, Sort.Direction.ASC);
+        return this;
+    }
+
+    public MongoIndexSpec unique() {
+        this.unique = true;
+        return this;
+    }
+
+    /**
+     * Leaves documents without the indexed fields out of the index, e.g. so that they don't conflict with each other
+     * in a unique index.
+     *
+     * @return this spec
+     */
+    public MongoIndexSpec sparse() {
+        this.sparse = true;
+        return this;
+    }
+
+    /**
+     * @param expireAfter how long after the (date) value of the indexed field documents are removed by MongoDB.
+     * @return this spec
+     */
+    public MongoIndexSpec expireAfter(Duration expireAfter) {
+        this.expireAfter = expireAfter;
+        return this;
+    }
+
+    /**
+     * @param filter a representative filter (the values are irrelevant, only the fields and operators matter).
+     * @return this spec
+     */
+    public MongoIndexSpec servesFilter(Document filter) {
+        this.queryFilter = filter;
+        return this;
+    }
+
+    /**
+     * @param sort the sort that must be satisfied by the index rather than in memory.
+     * @return this spec
+     */
+    public MongoIndexSpec servesSort(Document sort) {
+        this.querySort = sort;
+        return this;
+    }
+
+    /**
+     * @return the Spring Data definition used to create the index.
+     */
+    public Index toIndex() {
+        Index index = new Index().named(name);
+        keys.forEach(index::on);
+        if (unique) {
+            index.unique();
+        }
+        if (sparse) {
+            index.sparse();
+        }
+        if (expireAfter != null) {
+            index.expire(expireAfter);
+        }
+        return index;
+    }
+}
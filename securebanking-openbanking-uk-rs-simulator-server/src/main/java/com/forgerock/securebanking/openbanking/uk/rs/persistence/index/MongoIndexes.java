@@ -0,0 +1,155 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.index;
+
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStatement;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticScheduledPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticStandingOrderPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRFilePaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRInternationalPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRInternationalScheduledPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRInternationalStandingOrderPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRPaymentIdempotencyRecord;
+import org.bson.Document;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.index.MongoIndexSpec.index;
+import static com.forgerock.securebanking.openbanking.uk.rs.validator.IdempotencyValidator.X_IDEMPOTENCY_KEY_EXPIRY_HOURS;
+
+/**
+ * The compound indexes required by the hot queries of the repositories. Each index lists the query shape it serves, so
+ * that {@link MongoIndexInitializer} can check the index is picked by the query planner.
+ * <p>
+ * Single field indexes that are declared with {@code @Indexed} on the documents are not repeated here.
+ */
+public final class MongoIndexes {
+
+    private static final String SAMPLE_ID = "sample";
+    private static final Date SAMPLE_DATE = new Date(0);
+
+    private static final List<Class<?>> PAYMENT_SUBMISSIONS = Arrays.asList(
+            FRDomesticPaymentSubmission.class,
+            FRDomesticScheduledPaymentSubmission.class,
+            FRDomesticStandingOrderPaymentSubmission.class,
+            FRFilePaymentSubmission.class,
+            FRInternationalPaymentSubmission.class,
+            FRInternationalScheduledPaymentSubmission.class,
+            FRInternationalStandingOrderPaymentSubmission.class
+    );
+
+    private static final List<MongoIndexSpec> INDEXES = Stream.concat(
+            Stream.of(
+                    // Transactions of one or more accounts, within a booking date window (keyset sort)
+                    index(FRTransaction.class, "accountId_bookingDateTime_id")
+                            .on("accountId").on("bookingDateTime").on("_id")
+                            .servesFilter(new Document("accountId", SAMPLE_ID)
+                                    .append("bookingDateTime", new Document("$gt", SAMPLE_DATE)))
+                            .servesSort(new Document("bookingDateTime", 1).append("_id", 1)),
+                    // As above, restricted to credits or debits only
+                    index(FRTransaction.class, "accountId_creditDebitIndicator_bookingDateTime_id")
+                            .on("accountId").on("transaction.creditDebitIndicator").on("bookingDateTime").on("_id")
+                            .servesFilter(new Document("accountId", SAMPLE_ID)
+                                    .append("transaction.creditDebitIndicator", "CREDIT")
+                                    .append("bookingDateTime", new Document("$gt", SAMPLE_DATE)))
+                            .servesSort(new Document("bookingDateTime", 1).append("_id", 1)),
+                    // Transactions of a statement
+                    index(FRTransaction.class, "accountId_statementIds_bookingDateTime_id")
+                            .on("accountId").on("statementIds").on("bookingDateTime").on("_id")
+                            .servesFilter(new Document("accountId", SAMPLE_ID)
+                                    .append("statementIds", SAMPLE_ID)
+                                    .append("bookingDateTime", new Document("$gt", SAMPLE_DATE)))
+                            .servesSort(new Document("bookingDateTime", 1).append("_id", 1)),
+                    // Balance of a given type, e.g. the funds availability check
+                    index(FRBalance.class, "accountId_balanceType")
+                            .on("accountId").on("balance.type")
+                            .servesFilter(new Document("accountId", SAMPLE_ID)
+                                    .append("balance.type", "INTERIMAVAILABLE")),
+                    index(FRStatement.class, "accountId_startDateTime_endDateTime")
+                            .on("accountId").on("startDateTime").on("endDateTime")
+                            .servesFilter(new Document("accountId", SAMPLE_ID)
+                                    .append("startDateTime", new Document("$gt", SAMPLE_DATE))
+                                    .append("endDateTime", new Document("$gt", SAMPLE_DATE))),
+                    index(FRStandingOrder.class, "status")
+                            .on("status")
+                            .servesFilter(new Document("status",
+                                    new Document("$in", Collections.singletonList("PENDING")))),
+                    // Standing orders with an instalment due (see StandingOrderRecurrenceEngine)
+                    index(FRStandingOrder.class, "status_firstPaymentDateTime")
+                            .on("status").on("standingOrder.firstPaymentDateTime")
+                            .servesFilter(new Document("status", "PENDING")
+                                    .append("executionClaim", new Document("$exists", false))
+                                    .append("standingOrder.firstPaymentDateTime", new Document("$lte", SAMPLE_DATE))),
+                    index(FRStandingOrder.class, "status_nextPaymentDateTime")
+                            .on("status").on("standingOrder.nextPaymentDateTime")
+                            .servesFilter(new Document("status", "ACTIVE")
+                                    .append("executionClaim", new Document("$exists", false))
+                                    .append("standingOrder.nextPaymentDateTime", new Document("$lte", SAMPLE_DATE))),
+                    index(FRScheduledPayment.class, "status")
+                            .on("status")
+                            .servesFilter(new Document("status", "PENDING")),
+                    // Pending payments due within a time range (see ScheduledPaymentScheduler)
+                    index(FRScheduledPayment.class, "status_scheduledPaymentDateTime")
+                            .on("status").on("scheduledPayment.scheduledPaymentDateTime")
+                            .servesFilter(new Document("status", "PENDING")
+                                    .append("executionClaim", new Document("$exists", false))
+                                    .append("scheduledPayment.scheduledPaymentDateTime",
+                                            new Document("$gte", SAMPLE_DATE).append("$lt", SAMPLE_DATE))),
+                    // Accounts held here that payments are made from or to
+                    index(FRAccount.class, "accountIdentification")
+                            .on("account.accounts.identification")
+                            .servesFilter(new Document("account.accounts.identification",
+                                    new Document("$in", Collections.singletonList(SAMPLE_ID)))),
+                    // Idempotency keys are only kept for as long as they can be reused
+                    index(FRPaymentIdempotencyRecord.class, "created")
+                            .on("created")
+                            .expireAfter(Duration.ofHours(X_IDEMPOTENCY_KEY_EXPIRY_HOURS))
+                            .servesFilter(new Document("created", new Document("$lt", SAMPLE_DATE)))
+            ),
+            PAYMENT_SUBMISSIONS.stream().flatMap(documentClass -> Stream.of(
+                    // A consent can only be used for a single submission (see IdempotentRepositoryAdapter)
+                    index(documentClass, "consentId")
+                            .on("payment.data.consentId")
+                            .unique()
+                            .sparse()
+                            .servesFilter(new Document("payment.data.consentId", SAMPLE_ID)),
+                    // Unclaimed submissions to execute (see PaymentExecutionEngine)
+                    index(documentClass, "status")
+                            .on("status")
+                            .servesFilter(new Document("status",
+                                    new Document("$in", Collections.singletonList("PENDING")))
+                                    .append("executionClaim", new Document("$exists", false)))))
+    ).collect(Collectors.toList());
+
+    private MongoIndexes() {
+    }
+
+    public static List<MongoIndexSpec> getIndexes() {
+        return INDEXES;
+    }
+}
@@ -16,10 +16,17 @@
 package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository;
 
 import com.forgerock.securebanking.openbanking.uk.error.OBErrorResponseException;
+import com.forgerock.securebanking.openbanking.uk.error.OBRIErrorResponseCategory;
+import com.forgerock.securebanking.openbanking.uk.error.OBRIErrorType;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRPaymentIdempotencyRecord;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.PaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentSubmissionRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.validator.IdempotencyValidator;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
 
 import java.util.Optional;
 
@@ -32,31 +39,129 @@ import java.util.Optional;
  * <li/> If valid and not repeated -> save and return new object
  * <li/> If invalid -> throw OBErrorResponseException
  * </ul>
+ * Repeated requests are settled from the {@link PaymentIdempotencyStore}, falling back to looking the submission up
+ * by consent ID if it has no record (e.g. because the record has expired). A new submission is recorded in the store,
+ * as pending, before it is saved, so that only one of several concurrent requests for the same consent creates a
+ * submission; the others are settled as repeated requests once it has been saved. A request made while the submission
+ * is still being saved is rejected with a conflict, to be retried. The pending record of a submission that was never
+ * saved is only replaced once the store considers it orphaned, so that a slow save isn't mistaken for a failed one.
+ * <p>
+ * New submissions are inserted rather than saved, so that the unique index on the consent ID of each submission
+ * collection rejects a duplicate submission that got past the store (e.g. if the submission of a record replaced as
+ * orphaned was saved after all). The submission it duplicates is then returned instead, as for any other repeated
+ * request.
+ * <p>
+ * Each outcome is counted in the {@value #METRIC_NAME} counter, tagged with the type of submission.
  *
  * @param <T> The type of the {@link PaymentSubmission} (e.g. FRDomesticPaymentSubmission).
  */
 @Slf4j
 public class IdempotentRepositoryAdapter<T extends PaymentSubmission> {
 
+    static final String METRIC_NAME = "rs.payments.idempotent.submissions";
+
     private final PaymentSubmissionRepository<T> repository;
+    private final PaymentIdempotencyStore idempotencyStore;
 
-    public IdempotentRepositoryAdapter(PaymentSubmissionRepository<T> repository) {
+    public IdempotentRepositoryAdapter(PaymentSubmissionRepository<T> repository,
+                                       PaymentIdempotencyStore idempotencyStore) {
         this.repository = repository;
+        this.idempotencyStore = idempotencyStore;
     }
 
     public T idempotentSave(T paymentSubmission) throws OBErrorResponseException {
-        Optional<T> isPaymentSubmission = repository.findByConsentId(paymentSubmission.getConsentId());
-        if (isPaymentSubmission.isPresent()) {
-            log.info("A payment with this consent id '{}' was already found. Checking idempotency key.", isPaymentSubmission.get().getConsentId());
-            IdempotencyValidator.validateIdempotencyRequest(paymentSubmission, isPaymentSubmission.get());
-            log.info("Idempotent request is valid. Returning [201 CREATED] but take no further action.");
-            return isPaymentSubmission.get();
-        } else {
+        FRPaymentIdempotencyRecord record = idempotencyStore.find(paymentSubmission.getConsentId());
+        if (record == null) {
+            Optional<T> isPaymentSubmission = repository.findByConsentId(paymentSubmission.getConsentId());
+            if (isPaymentSubmission.isPresent()) {
+                log.info("A payment with this consent id '{}' was already found. Checking idempotency key.", isPaymentSubmission.get().getConsentId());
+                validate(paymentSubmission, FRPaymentIdempotencyRecord.of(isPaymentSubmission.get()));
+                return replayed(paymentSubmission, isPaymentSubmission.get());
+            }
             log.info("No payment with this consent id '{}' exists. Proceed to create it.", paymentSubmission.getConsentId());
-            log.debug("Saving new payment submission: {}", paymentSubmission);
-            paymentSubmission = repository.save(paymentSubmission);
-            log.info("Created new Payment Submission: {}", paymentSubmission.getId());
-            return paymentSubmission;
+            record = idempotencyStore.putIfAbsent(FRPaymentIdempotencyRecord.pending(paymentSubmission));
+            if (record == null) {
+                return create(paymentSubmission);
+            }
+            log.info("A concurrent payment with this consent id '{}' was recorded first.", paymentSubmission.getConsentId());
+        }
+
+        log.info("A payment with this consent id '{}' was already recorded. Checking idempotency key.", record.getConsentId());
+        validate(paymentSubmission, record);
+        Optional<T> isPaymentSubmission = repository.findById(record.getSubmissionId());
+        if (isPaymentSubmission.isPresent()) {
+            if (!record.isSaved()) {
+                // Saved by a request that hasn't marked its record as saved (yet)
+                idempotencyStore.markSaved(record);
+            }
+            return replayed(paymentSubmission, isPaymentSubmission.get());
+        }
+        if (record.isSaved()) {
+            throw new IllegalStateException("Payment submission '" + record.getSubmissionId()
+                    + "' recorded for consent id '" + record.getConsentId() + "' no longer exists");
+        }
+        if (!idempotencyStore.replaceOrphaned(record, FRPaymentIdempotencyRecord.pending(paymentSubmission))) {
+            log.info("Payment submission '{}' recorded for consent id '{}' is still being saved.",
+                    record.getSubmissionId(), record.getConsentId());
+            count(paymentSubmission, "conflict");
+            throw new OBErrorResponseException(
+                    HttpStatus.CONFLICT,
+                    OBRIErrorResponseCategory.REQUEST_INVALID,
+                    OBRIErrorType.PAYMENT_SUBMISSION_ALREADY_EXISTS.toOBError1(record.getSubmissionId()));
+        }
+        // Whoever recorded the submission failed to save it
+        log.warn("Payment submission '{}' recorded for consent id '{}' was never saved. Proceed to create it.",
+                record.getSubmissionId(), record.getConsentId());
+        return create(paymentSubmission);
+    }
+
+    private T create(T paymentSubmission) throws OBErrorResponseException {
+        log.debug("Saving new payment submission: {}", paymentSubmission);
+        T created;
+        try {
+            created = repository.insert(paymentSubmission);
+        } catch (DuplicateKeyException e) {
+            // The unique consentId index caught a concurrent submission that the idempotency store didn't
+            idempotencyStore.remove(FRPaymentIdempotencyRecord.pending(paymentSubmission));
+            T existing = repository.findByConsentId(paymentSubmission.getConsentId()).orElseThrow(() -> e);
+            log.info("A concurrent payment with this consent id '{}' was saved first. Checking idempotency key.",
+                    existing.getConsentId());
+            idempotencyStore.putIfAbsent(FRPaymentIdempotencyRecord.of(existing));
+            validate(paymentSubmission, FRPaymentIdempotencyRecord.of(existing));
+            return replayed(paymentSubmission, existing);
+        } catch (RuntimeException e) {
+            idempotencyStore.remove(FRPaymentIdempotencyRecord.pending(paymentSubmission));
+            throw e;
+        }
+        try {
+            idempotencyStore.markSaved(FRPaymentIdempotencyRecord.of(created));
+        } catch (RuntimeException e) {
+            // The record stays pending, and is marked as saved by the next request that finds the submission
+            log.warn("Failed to mark the record of payment submission '{}' as saved", created.getId(), e);
+        }
+        log.info("Created new Payment Submission: {}", created.getId());
+        count(created, "created");
+        return created;
+    }
+
+    private void validate(T paymentSubmission, FRPaymentIdempotencyRecord existing) throws OBErrorResponseException {
+        try {
+            IdempotencyValidator.validateIdempotencyRequest(paymentSubmission, existing);
+        } catch (OBErrorResponseException e) {
+            count(paymentSubmission, "rejected");
+            throw e;
         }
     }
+
+    private T replayed(T paymentSubmission, T existing) {
+        log.info("Idempotent request is valid. Returning [201 CREATED] but take no further action.");
+        count(paymentSubmission, "replayed");
+        return existing;
+    }
+
+    private static void count(PaymentSubmission paymentSubmission, String outcome) {
+        Metrics.counter(METRIC_NAME,
+                "submission", paymentSubmission.getClass().getSimpleName(),
+                "outcome", outcome).increment();
+    }
 }
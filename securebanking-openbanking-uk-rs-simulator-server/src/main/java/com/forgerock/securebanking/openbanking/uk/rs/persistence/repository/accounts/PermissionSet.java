@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A compact, immutable representation of the {@code x-ob-permissions} of a consent. Lookups are constant time and the
+ * whole set is also available as a bitmask (one bit per permission ordinal), which is used to cache everything that
+ * only depends on the permissions.
+ */
+public final class PermissionSet {
+
+    static {
+        if (FRExternalPermissionsCode.values().length > Long.SIZE) {
+            throw new IllegalStateException("Too many permissions to be represented by a bitmask");
+        }
+    }
+
+    private final Set<FRExternalPermissionsCode> permissions;
+    private final long mask;
+
+    private PermissionSet(Set<FRExternalPermissionsCode> permissions, long mask) {
+        this.permissions = permissions;
+        this.mask = mask;
+    }
+
+    public static PermissionSet of(Collection<FRExternalPermissionsCode> permissions) {
+        EnumSet<FRExternalPermissionsCode> permissionSet = EnumSet.noneOf(FRExternalPermissionsCode.class);
+        long mask = 0L;
+        for (FRExternalPermissionsCode permission : permissions) {
+            permissionSet.add(permission);
+            mask |= 1L << permission.ordinal();
+        }
+        return new PermissionSet(permissionSet, mask);
+    }
+
+    public boolean contains(FRExternalPermissionsCode permission) {
+        return permissions.contains(permission);
+    }
+
+    public long getMask() {
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return permissions.toString();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts;
+
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * How the documents read for a given set of permissions are shaped before being returned to a TPP: the fields that
+ * Mongo leaves out through the projection of the query, and the redactions applied in Java (e.g. PAN masking). A plan
+ * is immutable and only depends on the permissions, so it is built once per permission set, see {@link ShapingPlans}.
+ *
+ * @param <T> the type of document
+ */
+public final class ShapingPlan<T> {
+
+    private final Set<String> excludedFields;
+    private final List<Consumer<T>> redactions;
+
+    private ShapingPlan(Set<String> excludedFields, List<Consumer<T>> redactions) {
+        this.excludedFields = Collections.unmodifiableSet(excludedFields);
+        this.redactions = Collections.unmodifiableList(redactions);
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @param query the query to restrict the returned fields of.
+     * @return the provided query
+     */
+    public Query applyTo(Query query) {
+        excludedFields.forEach(field -> query.fields().exclude(field));
+        return query;
+    }
+
+    /**
+     * Applies the redactions of the plan to each document, in a single pass.
+     *
+     * @param documents the documents read from Mongo.
+     * @return the provided documents
+     */
+    public <C extends Iterable<T>> C applyAll(C documents) {
+        if (!redactions.isEmpty()) {
+            for (T document : documents) {
+                redact(document);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * @param document the document read from Mongo, may be null.
+     * @return the provided document
+     */
+    public T apply(T document) {
+        if (document != null) {
+            redact(document);
+        }
+        return document;
+    }
+
+    private void redact(T document) {
+        for (Consumer<T> redaction : redactions) {
+            redaction.accept(document);
+        }
+    }
+
+    public static final class Builder<T> {
+
+        private final Set<String> excludedFields = new TreeSet<>();
+        private final List<Consumer<T>> redactions = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder<T> exclude(String... fields) {
+            Collections.addAll(excludedFields, fields);
+            return this;
+        }
+
+        public Builder<T> redact(Consumer<T> redaction) {
+            redactions.add(redaction);
+            return this;
+        }
+
+        public ShapingPlan<T> build() {
+            return new ShapingPlan<>(excludedFields, redactions);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * The {@link ShapingPlan}s of a type of document, built on first use and cached by permission bitmask. There are
+ * only a handful of distinct permission sets in practice, so the cache is not bounded.
+ *
+ * @param <T> the type of document
+ */
+public final class ShapingPlans<T> {
+
+    private final Function<PermissionSet, ShapingPlan<T>> planFactory;
+    private final ConcurrentMap<Long, ShapingPlan<T>> plans = new ConcurrentHashMap<>();
+
+    public ShapingPlans(Function<PermissionSet, ShapingPlan<T>> planFactory) {
+        this.planFactory = planFactory;
+    }
+
+    public ShapingPlan<T> forPermissions(Collection<FRExternalPermissionsCode> permissions) {
+        PermissionSet permissionSet = PermissionSet.of(permissions);
+        return plans.computeIfAbsent(permissionSet.getMask(), mask -> planFactory.apply(permissionSet));
+    }
+}
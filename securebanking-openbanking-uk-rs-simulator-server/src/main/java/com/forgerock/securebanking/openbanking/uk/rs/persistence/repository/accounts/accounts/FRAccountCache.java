@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts;
+
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * A cache-aside layer in front of {@link FRAccountRepository} for the accounts of a user and the accounts themselves,
+ * which are read by every admin and backoffice call but rarely change.
+ * <p>
+ * Both caches are bounded (Caffeine's W-TinyLFU eviction) and entries also expire after a while, as a safety net for
+ * writes that bypass this class. Code that creates, updates or deletes accounts must call the relevant
+ * {@code invalidate} method once it has written to Mongo.
+ * <p>
+ * The cached accounts are shared between callers and must not be modified. Code that modifies an account must read
+ * it from {@link FRAccountRepository} instead, and invalidate it once it has been saved.
+ */
+@Component
+public class FRAccountCache {
+
+    public static final String USER_ACCOUNTS_CACHE = "rs.accounts.by-user";
+    public static final String ACCOUNTS_CACHE = "rs.accounts.by-id";
+
+    private final FRAccountRepository accountRepository;
+    private final Cache<String, List<String>> accountIdsByUser;
+    private final Cache<String, FRAccount> accounts;
+
+    public FRAccountCache(FRAccountRepository accountRepository, MeterRegistry meterRegistry,
+                          @Value("${rs.cache.accounts.max-users:10000}") long maxUsers,
+                          @Value("${rs.cache.accounts.max-accounts:50000}") long maxAccounts,
+                          @Value("${rs.cache.accounts.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.accountRepository = accountRepository;
+        this.accountIdsByUser = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.accounts = Caffeine.newBuilder()
+                .maximumSize(maxAccounts)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, accountIdsByUser, USER_ACCOUNTS_CACHE);
+        CaffeineCacheMetrics.monitor(meterRegistry, accounts, ACCOUNTS_CACHE);
+    }
+
+    /**
+     * @param userId the ID of the user.
+     * @return the accounts owned by the user, in the order they were returned by Mongo.
+     */
+    public List<FRAccount> findByUserId(String userId) {
+        List<String> accountIds = accountIdsByUser.get(userId, this::loadUserAccounts);
+        Map<String, FRAccount> found = accounts.getAll(accountIds, this::loadAccounts);
+        return accountIds.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param accountId the ID of the account.
+     * @return the account, or empty if it doesn't exist (which is not cached).
+     */
+    public Optional<FRAccount> findById(String accountId) {
+        return Optional.ofNullable(accounts.get(accountId, id -> accountRepository.findById(id).orElse(null)));
+    }
+
+    /**
+     * To be called when accounts have been created for, or deleted from, a user.
+     *
+     * @param userId the ID of the user.
+     */
+    public void invalidateUser(String userId) {
+        accountIdsByUser.invalidate(userId);
+    }
+
+    /**
+     * To be called when accounts have been modified or deleted.
+     *
+     * @param accountIds the IDs of the accounts.
+     */
+    public void invalidateAccounts(Collection<String> accountIds) {
+        accounts.invalidateAll(accountIds);
+    }
+
+    public void invalidateAccount(String accountId) {
+        accounts.invalidate(accountId);
+    }
+
+    private List<String> loadUserAccounts(String userId) {
+        Collection<FRAccount> userAccounts = accountRepository.findByUserID(userId);
+        List<String> accountIds = new ArrayList<>(userAccounts.size());
+        for (FRAccount account : userAccounts) {
+            accounts.put(account.getId(), account);
+            accountIds.add(account.getId());
+        }
+        return Collections.unmodifiableList(accountIds);
+    }
+
+    private Map<String, FRAccount> loadAccounts(Iterable<? extends String> accountIds) {
+        List<String> ids = new ArrayList<>();
+        accountIds.forEach(ids::add);
+        Map<String, FRAccount> loaded = new HashMap<>();
+        accountRepository.findAllById(ids).forEach(account -> loaded.put(account.getId(), account));
+        return loaded;
+    }
+}
@@ -18,17 +18,18 @@ package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.acc
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlan;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlans;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import org.joda.time.DateTime;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 import uk.org.openbanking.datamodel.account.OBExternalAccountIdentification3Code;
@@ -36,18 +37,30 @@ import uk.org.openbanking.datamodel.account.OBExternalAccountIdentification3Code
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @Repository
 public class FRAccountRepositoryImpl implements FRAccountRepositoryCustom {
-    @Autowired
-    @Lazy
-    private FRAccountRepository accountsRepository;
+
+    /**
+     * Sub-documents hidden from {@code ReadAccountsBasic} are left out by Mongo. The PANs of the sub-accounts are
+     * masked for {@code ReadAccountsDetail} unless {@code ReadPAN} is held.
+     */
+    private static final ShapingPlans<FRAccount> SHAPING_PLANS = new ShapingPlans<>(permissions -> {
+        ShapingPlan.Builder<FRAccount> plan = ShapingPlan.builder();
+        if (permissions.contains(FRExternalPermissionsCode.READACCOUNTSBASIC)) {
+            plan.exclude("account.accounts", "account.servicer");
+        }
+        if (permissions.contains(FRExternalPermissionsCode.READACCOUNTSDETAIL)
+                && !permissions.contains(FRExternalPermissionsCode.READPAN)) {
+            plan.redact(FRAccountRepositoryImpl::maskPan);
+        }
+        return plan.build();
+    });
 
     private MongoTemplate mongoTemplate;
 
@@ -58,12 +71,8 @@ public class FRAccountRepositoryImpl implements FRAccountRepositoryCustom {
     @Override
     public Collection<FRAccount> byUserIDWithPermissions(String userID, List<FRExternalPermissionsCode> permissions, Pageable
             pageable) {
-        Collection<FRAccount> accounts = accountsRepository.findByUserID(userID);
         try {
-            for (FRAccount account : accounts) {
-                filterAccount(account, permissions);
-            }
-            return accounts;
+            return find(where("userID").is(userID), permissions);
         } catch (IllegalArgumentException e) {
             return Collections.emptyList();
         }
@@ -71,14 +80,9 @@ public class FRAccountRepositoryImpl implements FRAccountRepositoryCustom {
 
     @Override
     public FRAccount byAccountId(String accountId, List<FRExternalPermissionsCode> permissions) {
-        Optional<FRAccount> isAccount = accountsRepository.findById(accountId);
-        if (!isAccount.isPresent()) {
-            return null;
-        }
-        FRAccount account = isAccount.get();
         try {
-            filterAccount(account, permissions);
-            return account;
+            List<FRAccount> accounts = find(where("id").is(accountId), permissions);
+            return accounts.isEmpty() ? null : accounts.get(0);
         } catch (IllegalArgumentException e) {
             return null;
         }
@@ -86,40 +90,29 @@ public class FRAccountRepositoryImpl implements FRAccountRepositoryCustom {
 
     @Override
     public List<FRAccount> byAccountIds(List<String> accountIds, List<FRExternalPermissionsCode> permissions) {
-        Iterable<FRAccount> accounts = accountsRepository.findAllById(accountIds);
         try {
-            for (FRAccount account : accounts) {
-                filterAccount(account, permissions);
-            }
-            return StreamSupport.stream(accounts.spliterator(), false).collect(Collectors.toList());
+            return find(where("id").in(accountIds), permissions);
         } catch (IllegalArgumentException e) {
             return Collections.emptyList();
         }
     }
 
-    private void filterAccount(FRAccount account, List<FRExternalPermissionsCode> permissions) {
-        for (FRExternalPermissionsCode permission : permissions) {
-            switch (permission) {
+    private List<FRAccount> find(Criteria criteria, List<FRExternalPermissionsCode> permissions) {
+        ShapingPlan<FRAccount> shapingPlan = SHAPING_PLANS.forPermissions(permissions);
+        return shapingPlan.applyAll(mongoTemplate.find(shapingPlan.applyTo(new Query(criteria)), FRAccount.class));
+    }
 
-                case READACCOUNTSBASIC:
-                    account.getAccount().setAccounts(null);
-                    account.getAccount().setServicer(null);
-                    break;
-                case READACCOUNTSDETAIL:
-                    if (!CollectionUtils.isEmpty(account.getAccount().getAccounts())) {
-                        for (FRAccountIdentifier subAccount : account.getAccount().getAccounts()) {
-                            if (!permissions.contains(FRExternalPermissionsCode.READPAN)
-                                    && OBExternalAccountIdentification3Code.PAN.toString().equals(subAccount.getSchemeName())) {
-                                subAccount.setIdentification("xxx");
-                            }
-                        }
-                    }
-                    break;
+    private static void maskPan(FRAccount account) {
+        if (CollectionUtils.isEmpty(account.getAccount().getAccounts())) {
+            return;
+        }
+        for (FRAccountIdentifier subAccount : account.getAccount().getAccounts()) {
+            if (OBExternalAccountIdentification3Code.PAN.toString().equals(subAccount.getSchemeName())) {
+                subAccount.setIdentification("xxx");
             }
         }
     }
 
-
     @Override
     public List<String> getUserIds(DateTime from, DateTime to) {
         Aggregation aggregation = newAggregation(
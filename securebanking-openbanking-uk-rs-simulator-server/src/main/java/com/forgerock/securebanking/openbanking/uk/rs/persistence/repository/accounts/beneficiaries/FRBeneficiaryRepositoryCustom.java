@@ -22,6 +22,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface FRBeneficiaryRepositoryCustom {
 
@@ -31,4 +32,11 @@ public interface FRBeneficiaryRepositoryCustom {
             Pageable pageable);
 
     Page<FRBeneficiary> byAccountIdInWithPermissions(List<String> accountIds, List<FRExternalPermissionsCode> permissions, Pageable pageable);
+
+    /**
+     * Streams a page of the beneficiaries of the accounts. The returned stream holds an open cursor and must be closed.
+     */
+    Stream<FRBeneficiary> streamByAccountIdInWithPermissions(List<String> accountIds,
+                                                             List<FRExternalPermissionsCode> permissions,
+                                                             Pageable pageable);
 }
@@ -16,21 +16,45 @@
 package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.beneficiaries;
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBeneficiary;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlan;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlans;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @Repository
 public class FRBeneficiaryRepositoryImpl implements FRBeneficiaryRepositoryCustom {
+    /**
+     * The creditor account is hidden from {@code ReadBeneficiariesBasic}.
+     */
+    private static final ShapingPlans<FRBeneficiary> SHAPING_PLANS = new ShapingPlans<>(permissions -> {
+        ShapingPlan.Builder<FRBeneficiary> plan = ShapingPlan.builder();
+        if (permissions.contains(FRExternalPermissionsCode.READBENEFICIARIESBASIC)) {
+            plan.redact(beneficiary -> beneficiary.getBeneficiary().setCreditorAccount(null));
+        }
+        return plan.build();
+    });
+
+    private static final String ACCOUNT_ID = "accountId";
+
     @Autowired
     @Lazy
     private FRBeneficiaryRepository beneficiaryRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Override
     public Page<FRBeneficiary> byAccountIdWithPermissions(String accountId, List<FRExternalPermissionsCode> permissions,
                                                           Pageable pageable) {
@@ -43,17 +67,17 @@ public class FRBeneficiaryRepositoryImpl implements FRBeneficiaryRepositoryCusto
         return filter(beneficiaryRepository.findByAccountIdIn(accountIds, pageable), permissions);
     }
 
+    @Override
+    public Stream<FRBeneficiary> streamByAccountIdInWithPermissions(List<String> accountIds,
+                                                                    List<FRExternalPermissionsCode> permissions,
+                                                                    Pageable pageable) {
+        ShapingPlan<FRBeneficiary> shapingPlan = SHAPING_PLANS.forPermissions(permissions);
+        Query query = shapingPlan.applyTo(new Query(where(ACCOUNT_ID).in(accountIds)).with(pageable));
+        return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, FRBeneficiary.class))
+                .map(shapingPlan::apply);
+    }
+
     private Page<FRBeneficiary> filter(Page<FRBeneficiary> beneficiaries, List<FRExternalPermissionsCode> permissions) {
-        for (FRExternalPermissionsCode permission : permissions) {
-            switch (permission) {
-
-                case READBENEFICIARIESBASIC:
-                    for (FRBeneficiary beneficiary : beneficiaries) {
-                        beneficiary.getBeneficiary().setCreditorAccount(null);
-                    }
-                    break;
-            }
-        }
-        return beneficiaries;
+        return SHAPING_PLANS.forPermissions(permissions).applyAll(beneficiaries);
     }
 }
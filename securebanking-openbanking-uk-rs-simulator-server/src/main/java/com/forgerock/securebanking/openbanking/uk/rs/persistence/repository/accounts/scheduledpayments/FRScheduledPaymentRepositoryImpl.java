@@ -16,6 +16,8 @@
 package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.scheduledpayments;
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlan;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlans;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
@@ -26,6 +28,20 @@ import java.util.List;
 
 public class FRScheduledPaymentRepositoryImpl implements FRScheduledPaymentRepositoryCustom {
 
+    /**
+     * The creditor account and agent are hidden from {@code ReadScheduledPaymentsBasic}.
+     */
+    private static final ShapingPlans<FRScheduledPayment> SHAPING_PLANS = new ShapingPlans<>(permissions -> {
+        ShapingPlan.Builder<FRScheduledPayment> plan = ShapingPlan.builder();
+        if (permissions.contains(FRExternalPermissionsCode.READSCHEDULEDPAYMENTSBASIC)) {
+            plan.redact(scheduledPayment -> {
+                scheduledPayment.getScheduledPayment().setCreditorAccount(null);
+                scheduledPayment.getScheduledPayment().setCreditorAgent(null);
+            });
+        }
+        return plan.build();
+    });
+
     @Autowired
     @Lazy
     private FRScheduledPaymentRepository scheduledPayment1Repository;
@@ -42,17 +58,6 @@ public class FRScheduledPaymentRepositoryImpl implements FRScheduledPaymentRepos
 
 
     private Page<FRScheduledPayment> filter(Page<FRScheduledPayment> scheduledPayments, List<FRExternalPermissionsCode> permissions) {
-
-        for (FRScheduledPayment scheduledPayment : scheduledPayments) {
-            for (FRExternalPermissionsCode permission : permissions) {
-                switch (permission) {
-                    case READSCHEDULEDPAYMENTSBASIC:
-                        scheduledPayment.getScheduledPayment().setCreditorAccount(null);
-                        scheduledPayment.getScheduledPayment().setCreditorAgent(null);
-                        break;
-                }
-            }
-        }
-        return scheduledPayments;
+        return SHAPING_PLANS.forPermissions(permissions).applyAll(scheduledPayments);
     }
 }
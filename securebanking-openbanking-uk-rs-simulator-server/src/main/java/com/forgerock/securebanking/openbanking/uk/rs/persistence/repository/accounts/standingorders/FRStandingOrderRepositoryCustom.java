@@ -22,6 +22,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface FRStandingOrderRepositoryCustom {
 
@@ -31,4 +32,12 @@ public interface FRStandingOrderRepositoryCustom {
             Pageable pageable);
 
     Page<FRStandingOrder> byAccountIdInWithPermissions(List<String> accountIds, List<FRExternalPermissionsCode> permissions, Pageable pageable);
+
+    /**
+     * Streams a page of the standing orders of the accounts. The returned stream holds an open cursor and must be
+     * closed.
+     */
+    Stream<FRStandingOrder> streamByAccountIdInWithPermissions(List<String> accountIds,
+                                                               List<FRExternalPermissionsCode> permissions,
+                                                               Pageable pageable);
 }
@@ -16,20 +16,44 @@
 package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.standingorders;
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlan;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlans;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
 
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 public class FRStandingOrderRepositoryImpl implements FRStandingOrderRepositoryCustom {
 
+    /**
+     * The creditor account is hidden from {@code ReadStandingOrdersBasic}.
+     */
+    private static final ShapingPlans<FRStandingOrder> SHAPING_PLANS = new ShapingPlans<>(permissions -> {
+        ShapingPlan.Builder<FRStandingOrder> plan = ShapingPlan.builder();
+        if (permissions.contains(FRExternalPermissionsCode.READSTANDINGORDERSBASIC)) {
+            plan.redact(standingOrder -> standingOrder.getStandingOrder().setCreditorAccount(null));
+        }
+        return plan.build();
+    });
+
+    private static final String ACCOUNT_ID = "accountId";
+
     @Autowired
     @Lazy
     private FRStandingOrderRepository standingOrderRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Override
     public Page<FRStandingOrder> byAccountIdWithPermissions(String accountId, List<FRExternalPermissionsCode> permissions, Pageable pageable) {
         return filter(standingOrderRepository.findByAccountId(accountId, pageable), permissions);
@@ -40,17 +64,17 @@ public class FRStandingOrderRepositoryImpl implements FRStandingOrderRepositoryC
         return filter(standingOrderRepository.findByAccountIdIn(accountIds, pageable), permissions);
     }
 
+    @Override
+    public Stream<FRStandingOrder> streamByAccountIdInWithPermissions(List<String> accountIds,
+                                                                      List<FRExternalPermissionsCode> permissions,
+                                                                      Pageable pageable) {
+        ShapingPlan<FRStandingOrder> shapingPlan = SHAPING_PLANS.forPermissions(permissions);
+        Query query = shapingPlan.applyTo(new Query(where(ACCOUNT_ID).in(accountIds)).with(pageable));
+        return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, FRStandingOrder.class))
+                .map(shapingPlan::apply);
+    }
+
     private Page<FRStandingOrder> filter(Page<FRStandingOrder> standingOrders, List<FRExternalPermissionsCode> permissions) {
-        for (FRExternalPermissionsCode permission : permissions) {
-            switch (permission) {
-
-                case READSTANDINGORDERSBASIC:
-                    for (FRStandingOrder standingOrder : standingOrders) {
-                        standingOrder.getStandingOrder().setCreditorAccount(null);
-                    }
-                    break;
-            }
-        }
-        return standingOrders;
+        return SHAPING_PLANS.forPermissions(permissions).applyAll(standingOrders);
     }
 }
@@ -22,6 +22,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface FRStatementRepositoryCustom {
 
@@ -42,4 +43,31 @@ public interface FRStatementRepositoryCustom {
             List<String> accountIds,
             List<FRExternalPermissionsCode> permissions,
             Pageable pageable);
+
+    /**
+     * Streams a page of the statements of an account, with a start and end date within the provided dates if either
+     * is provided. The returned stream holds an open cursor and must be closed.
+     */
+    Stream<FRStatement> streamByAccountIdWithPermissions(
+            String accountId,
+            DateTime fromStatementDateTime,
+            DateTime toStatementDateTime,
+            List<FRExternalPermissionsCode> permissions,
+            Pageable pageable);
+
+    /**
+     * @return the number of statements streamed by {@link #streamByAccountIdWithPermissions} across all pages.
+     */
+    long countByAccountId(
+            String accountId,
+            DateTime fromStatementDateTime,
+            DateTime toStatementDateTime);
+
+    /**
+     * Streams a page of the statements of the accounts. The returned stream holds an open cursor and must be closed.
+     */
+    Stream<FRStatement> streamByAccountIdInWithPermissions(
+            List<String> accountIds,
+            List<FRExternalPermissionsCode> permissions,
+            Pageable pageable);
 }
@@ -16,21 +16,48 @@
 package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.statements;
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStatement;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlan;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlans;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
 
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 public class FRStatementRepositoryImpl implements FRStatementRepositoryCustom {
 
+    /**
+     * The statement amounts are hidden from {@code ReadStatementsBasic}.
+     */
+    private static final ShapingPlans<FRStatement> SHAPING_PLANS = new ShapingPlans<>(permissions -> {
+        ShapingPlan.Builder<FRStatement> plan = ShapingPlan.builder();
+        if (permissions.contains(FRExternalPermissionsCode.READSTATEMENTSBASIC)) {
+            plan.redact(statement -> statement.getStatement().setStatementAmounts(null));
+        }
+        return plan.build();
+    });
+
+    private static final String ACCOUNT_ID = "accountId";
+    private static final String START_DATE_TIME = "startDateTime";
+    private static final String END_DATE_TIME = "endDateTime";
+
     @Autowired
     @Lazy
     private FRStatementRepository statement1Repository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Override
     public Page<FRStatement> byAccountIdWithPermissions(
             String accountId,
@@ -59,29 +86,63 @@ public class FRStatementRepositoryImpl implements FRStatementRepositoryCustom {
         return filter(statement1Repository.findByAccountIdIn(accountIds, pageable), permissions);
     }
 
-    private Page<FRStatement> filter(Page<FRStatement> statements, List<FRExternalPermissionsCode> permissions) {
-        for (FRExternalPermissionsCode permission : permissions) {
-            for (FRStatement statement : statements) {
-                switch (permission) {
-                    case READSTATEMENTSBASIC:
-                        statement.getStatement().setStatementAmounts(null);
-                        break;
-                }
-            }
+    @Override
+    public Stream<FRStatement> streamByAccountIdWithPermissions(
+            String accountId,
+            DateTime fromStatementDateTime,
+            DateTime toStatementDateTime,
+            List<FRExternalPermissionsCode> permissions, Pageable pageable) {
+
+        Criteria criteria = accountStatements(accountId, fromStatementDateTime, toStatementDateTime);
+        return stream(new Query(criteria).with(pageable), permissions);
+    }
+
+    @Override
+    public long countByAccountId(String accountId, DateTime fromStatementDateTime, DateTime toStatementDateTime) {
+        Criteria criteria = accountStatements(accountId, fromStatementDateTime, toStatementDateTime);
+        return mongoTemplate.count(new Query(criteria), FRStatement.class);
+    }
+
+    @Override
+    public Stream<FRStatement> streamByAccountIdInWithPermissions(List<String> accountIds,
+                                                                  List<FRExternalPermissionsCode> permissions,
+                                                                  Pageable pageable) {
+        return stream(new Query(where(ACCOUNT_ID).in(accountIds)).with(pageable), permissions);
+    }
+
+    /**
+     * Unlike the derived queries, a date left out leaves its side of the range open.
+     */
+    private static Criteria accountStatements(String accountId, DateTime fromStatementDateTime,
+                                              DateTime toStatementDateTime) {
+        Criteria criteria = where(ACCOUNT_ID).is(accountId);
+        if (fromStatementDateTime != null || toStatementDateTime != null) {
+            between(criteria.and(START_DATE_TIME), fromStatementDateTime, toStatementDateTime);
+            between(criteria.and(END_DATE_TIME), fromStatementDateTime, toStatementDateTime);
         }
-        return statements;
+        return criteria;
     }
 
-    private List<FRStatement> filter(List<FRStatement> statements, List<FRExternalPermissionsCode> permissions) {
-        for (FRExternalPermissionsCode permission : permissions) {
-            for (FRStatement statement : statements) {
-                switch (permission) {
-                    case READSTATEMENTSBASIC:
-                        statement.getStatement().setStatementAmounts(null);
-                        break;
-                }
-            }
+    private static void between(Criteria field, DateTime from, DateTime to) {
+        if (from != null) {
+            field.gt(from);
         }
-        return statements;
+        if (to != null) {
+            field.lt(to);
+        }
+    }
+
+    private Stream<FRStatement> stream(Query query, List<FRExternalPermissionsCode> permissions) {
+        ShapingPlan<FRStatement> shapingPlan = SHAPING_PLANS.forPermissions(permissions);
+        return StreamUtils.createStreamFromIterator(mongoTemplate.stream(shapingPlan.applyTo(query), FRStatement.class))
+                .map(shapingPlan::apply);
+    }
+
+    private Page<FRStatement> filter(Page<FRStatement> statements, List<FRExternalPermissionsCode> permissions) {
+        return SHAPING_PLANS.forPermissions(permissions).applyAll(statements);
+    }
+
+    private List<FRStatement> filter(List<FRStatement> statements, List<FRExternalPermissionsCode> permissions) {
+        return SHAPING_PLANS.forPermissions(permissions).applyAll(statements);
     }
 }
@@ -18,12 +18,13 @@ package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.acc
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
 import org.joda.time.DateTime;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.repository.query.Param;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import static com.forgerock.securebanking.openbanking.uk.rs.api.obie.ApiConstants.BOOKED_TIME_DATE_FORMAT;
 import static com.forgerock.securebanking.openbanking.uk.rs.api.obie.ApiConstants.ParametersFieldName.FROM_BOOKING_DATE_TIME;
@@ -31,28 +32,60 @@ import static com.forgerock.securebanking.openbanking.uk.rs.api.obie.ApiConstant
 
 public interface FRTransactionRepositoryCustom {
 
-    Page<FRTransaction> byAccountIdAndBookingDateTimeBetweenWithPermissions(
+    Slice<FRTransaction> byAccountIdAndBookingDateTimeBetweenWithPermissions(
             @Param("accountId") String accountId,
             @Param(FROM_BOOKING_DATE_TIME) @DateTimeFormat(pattern = BOOKED_TIME_DATE_FORMAT) DateTime fromBookingDateTime,
             @Param(TO_BOOKING_DATE_TIME) @DateTimeFormat(pattern = BOOKED_TIME_DATE_FORMAT) DateTime
                     toBookingDateTime,
             @Param("permissions") List<FRExternalPermissionsCode> permissions,
+            @Param("after") TransactionCursor after,
             Pageable pageable);
 
-    Page<FRTransaction> byAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(
+    Slice<FRTransaction> byAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(
             @Param("accountId") String accountId,
             @Param("statementId") String statementId,
             @Param(FROM_BOOKING_DATE_TIME) @DateTimeFormat(pattern = BOOKED_TIME_DATE_FORMAT) DateTime fromBookingDateTime,
             @Param(TO_BOOKING_DATE_TIME) @DateTimeFormat(pattern = BOOKED_TIME_DATE_FORMAT) DateTime
                     toBookingDateTime,
             @Param("permissions") List<FRExternalPermissionsCode> permissions,
+            @Param("after") TransactionCursor after,
             Pageable pageable);
 
 
-    Page<FRTransaction> byAccountIdInWithPermissions(List<String> accountIds, List<FRExternalPermissionsCode>
-            permissions, Pageable pageable);
+    Slice<FRTransaction> byAccountIdInWithPermissions(List<String> accountIds, List<FRExternalPermissionsCode>
+            permissions, TransactionCursor after, Pageable pageable);
 
-    Page<FRTransaction> byAccountIdInAndBookingDateTimeBetweenWithPermissions(List<String> accountIds,
-                                                                              DateTime fromBookingDateTime, DateTime toBookingDateTime, List<FRExternalPermissionsCode> permissions,
-                                                                              Pageable pageable);
+    Slice<FRTransaction> byAccountIdInAndBookingDateTimeBetweenWithPermissions(List<String> accountIds,
+                                                                               DateTime fromBookingDateTime, DateTime toBookingDateTime, List<FRExternalPermissionsCode> permissions,
+                                                                               TransactionCursor after, Pageable pageable);
+
+    /**
+     * Streams a page of the transactions of an account, plus the first transaction of the next page if there is one.
+     * The returned stream holds an open cursor and must be closed.
+     */
+    Stream<FRTransaction> streamByAccountIdAndBookingDateTimeBetweenWithPermissions(
+            String accountId, DateTime fromBookingDateTime, DateTime toBookingDateTime,
+            List<FRExternalPermissionsCode> permissions, TransactionCursor after, Pageable pageable);
+
+    /**
+     * Streams a page of the transactions of a statement, see
+     * {@link #streamByAccountIdAndBookingDateTimeBetweenWithPermissions}.
+     */
+    Stream<FRTransaction> streamByAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(
+            String accountId, String statementId, DateTime fromBookingDateTime, DateTime toBookingDateTime,
+            List<FRExternalPermissionsCode> permissions, TransactionCursor after, Pageable pageable);
+
+    /**
+     * Streams a page of the transactions of several accounts, see
+     * {@link #streamByAccountIdAndBookingDateTimeBetweenWithPermissions}.
+     */
+    Stream<FRTransaction> streamByAccountIdInAndBookingDateTimeBetweenWithPermissions(
+            List<String> accountIds, DateTime fromBookingDateTime, DateTime toBookingDateTime,
+            List<FRExternalPermissionsCode> permissions, TransactionCursor after, Pageable pageable);
+
+    /**
+     * @param key the accounts, statement, booking date window (null bounds are open ended) and permissions.
+     * @return the number of transactions visible with the permissions of the key.
+     */
+    long countWithPermissions(TransactionCountKey key);
 }
@@ -17,164 +17,244 @@ package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.acc
 
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlan;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.ShapingPlans;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
 import uk.org.openbanking.datamodel.account.OBCreditDebitCode;
 import uk.org.openbanking.datamodel.account.OBExternalAccountIdentification3Code;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Reads transactions using keyset (seek) pagination on {@code (bookingDateTime, _id)}. When a {@link TransactionCursor}
+ * is provided the query resumes directly after it, so reading a deep page costs the same as reading the first one. No
+ * count query is issued - one extra document is read to find out whether a next page exists. Counts are only read
+ * when required, see {@link TransactionCountCache}.
+ */
 public class FRTransactionRepositoryImpl implements FRTransactionRepositoryCustom {
     private static final Logger LOGGER = LoggerFactory.getLogger(FRTransactionRepositoryImpl.class);
 
-    @Autowired
-    @Lazy
-    private FRTransactionRepository transactionRepository;
+    private static final String ID = "id";
+    private static final String ACCOUNT_ID = "accountId";
+    private static final String STATEMENT_IDS = "statementIds";
+    private static final String BOOKING_DATE_TIME = "bookingDateTime";
+    private static final String CREDIT_DEBIT_INDICATOR = "transaction.creditDebitIndicator";
+
+    /**
+     * Sub-documents hidden from {@code ReadTransactionsBasic} are left out by Mongo. PANs are masked unless
+     * {@code ReadPAN} is held, only for the identifiers whose scheme is PAN.
+     */
+    private static final ShapingPlans<FRTransaction> SHAPING_PLANS = new ShapingPlans<>(permissions -> {
+        ShapingPlan.Builder<FRTransaction> plan = ShapingPlan.builder();
+        if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSBASIC)) {
+            plan.exclude("transaction.transactionInformation",
+                    "transaction.balance",
+                    "transaction.merchantDetails",
+                    "transaction.creditorAgent",
+                    "transaction.debtorAgent")
+                    .redact(transaction -> transaction.getTransaction().setTransactionInformation(""));
+        }
+        if (!permissions.contains(FRExternalPermissionsCode.READPAN)) {
+            plan.redact(transaction -> {
+                maskPan(transaction.getTransaction().getDebtorAccount());
+                maskPan(transaction.getTransaction().getCreditorAccount());
+            });
+        }
+        return plan.build();
+    });
+
+    private final MongoTemplate mongoTemplate;
+
+    public FRTransactionRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
 
     @Override
-    public Page<FRTransaction> byAccountIdAndBookingDateTimeBetweenWithPermissions(String accountId, DateTime
+    public Slice<FRTransaction> byAccountIdAndBookingDateTimeBetweenWithPermissions(String accountId, DateTime
             fromBookingDateTime, DateTime toBookingDateTime, List<FRExternalPermissionsCode> permissions,
-                                                                                   Pageable pageable) {
-
-        if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS)
-                && permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS)) {
-            return filterTransition(transactionRepository
-                    .findByAccountIdAndBookingDateTimeBetween(accountId, fromBookingDateTime, toBookingDateTime, pageable), permissions);
-        } else if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS)) {
-            return filterTransition(transactionRepository
-                            .findByAccountIdAndTransactionCreditDebitIndicatorAndBookingDateTimeBetween(accountId,
-                                    OBCreditDebitCode.CREDIT, fromBookingDateTime, toBookingDateTime, pageable),
-                    permissions);
-        } else if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS)) {
-            return filterTransition(transactionRepository
-                            .findByAccountIdAndTransactionCreditDebitIndicatorAndBookingDateTimeBetween(accountId,
-                                    OBCreditDebitCode.DEBIT, fromBookingDateTime, toBookingDateTime, pageable),
-                    permissions);
-        } else {
-            LOGGER.warn("Need at least one of the following permissions: " +
-                    FRExternalPermissionsCode.READTRANSACTIONSCREDITS + " or " + FRExternalPermissionsCode
-                    .READTRANSACTIONSDEBITS);
-            return new PageImpl<>(Collections.emptyList());
-        }
+                                                                                    TransactionCursor after,
+                                                                                    Pageable pageable) {
+        Criteria criteria = where(ACCOUNT_ID).is(accountId)
+                .and(BOOKING_DATE_TIME).gt(fromBookingDateTime).lt(toBookingDateTime);
+        return findWithPermissions(criteria, permissions, after, pageable);
     }
 
     @Override
-    public Page<FRTransaction> byAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(
+    public Slice<FRTransaction> byAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(
             String accountId,
             String statementId,
             DateTime fromBookingDateTime,
             DateTime toBookingDateTime,
             List<FRExternalPermissionsCode> permissions,
+            TransactionCursor after,
             Pageable pageable) {
+        Criteria criteria = where(ACCOUNT_ID).is(accountId)
+                .and(STATEMENT_IDS).is(statementId)
+                .and(BOOKING_DATE_TIME).gt(fromBookingDateTime).lt(toBookingDateTime);
+        return findWithPermissions(criteria, permissions, after, pageable);
+    }
 
-        if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS)
-                && permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS)) {
-            return filterTransition(transactionRepository
-                    .findByAccountIdAndStatementIdsAndBookingDateTimeBetween(accountId, statementId, fromBookingDateTime, toBookingDateTime, pageable), permissions);
-        } else if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS)) {
-            return filterTransition(transactionRepository
-                            .findByAccountIdAndStatementIdsAndTransactionCreditDebitIndicatorAndBookingDateTimeBetween(accountId, statementId,
-                                    OBCreditDebitCode.CREDIT, fromBookingDateTime, toBookingDateTime, pageable),
-                    permissions);
-        } else if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS)) {
-            return filterTransition(transactionRepository
-                            .findByAccountIdAndStatementIdsAndTransactionCreditDebitIndicatorAndBookingDateTimeBetween(accountId, statementId,
-                                    OBCreditDebitCode.DEBIT, fromBookingDateTime, toBookingDateTime, pageable),
-                    permissions);
-        } else {
-            LOGGER.warn("Need at least one of the following permissions: " +
-                    FRExternalPermissionsCode.READTRANSACTIONSCREDITS + " or " + FRExternalPermissionsCode
-                    .READTRANSACTIONSDEBITS);
-            return new PageImpl<>(Collections.emptyList());
-        }
+    @Override
+    public Slice<FRTransaction> byAccountIdInWithPermissions(List<String> accountIds, List<FRExternalPermissionsCode>
+            permissions, TransactionCursor after, Pageable pageable) {
+        Criteria criteria = where(ACCOUNT_ID).in(accountIds);
+        return findWithPermissions(criteria, permissions, after, pageable);
     }
 
     @Override
-    public Page<FRTransaction> byAccountIdInWithPermissions(List<String> accountIds, List<FRExternalPermissionsCode>
-            permissions, Pageable pageable) {
-
-        if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS)
-                && permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS)) {
-            return filterTransition(transactionRepository
-                    .findByAccountIdIn(accountIds, pageable), permissions);
-        } else if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS)) {
-            return filterTransition(transactionRepository
-                            .findByAccountIdInAndTransactionCreditDebitIndicator(accountIds, OBCreditDebitCode.CREDIT,
-                                    pageable),
-                    permissions);
-        } else if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS)) {
-            return filterTransition(transactionRepository
-                            .findByAccountIdInAndTransactionCreditDebitIndicator(accountIds, OBCreditDebitCode.DEBIT,
-                                    pageable),
-                    permissions);
-        } else {
-            LOGGER.warn("Need at least one of the following permissions: " +
-                    FRExternalPermissionsCode.READTRANSACTIONSCREDITS + " or " + FRExternalPermissionsCode
-                    .READTRANSACTIONSDEBITS);
-            return new PageImpl<>(Collections.emptyList());
+    public Slice<FRTransaction> byAccountIdInAndBookingDateTimeBetweenWithPermissions(List<String> accountIds,
+                                                                                      DateTime fromBookingDateTime, DateTime toBookingDateTime, List<FRExternalPermissionsCode> permissions,
+                                                                                      TransactionCursor after, Pageable pageable) {
+        Criteria criteria = where(ACCOUNT_ID).in(accountIds)
+                .and(BOOKING_DATE_TIME).gt(fromBookingDateTime).lt(toBookingDateTime);
+        return findWithPermissions(criteria, permissions, after, pageable);
+    }
+
+    @Override
+    public long countWithPermissions(TransactionCountKey key) {
+        if (!key.isCredits() && !key.isDebits()) {
+            return 0;
+        }
+        Criteria criteria = where(ACCOUNT_ID).in(key.getAccountIds());
+        if (key.getStatementId() != null) {
+            criteria.and(STATEMENT_IDS).is(key.getStatementId());
         }
+        if (key.getFromBookingDateTime() != null || key.getToBookingDateTime() != null) {
+            Criteria bookingDateTime = criteria.and(BOOKING_DATE_TIME);
+            if (key.getFromBookingDateTime() != null) {
+                bookingDateTime.gt(key.getFromBookingDateTime());
+            }
+            if (key.getToBookingDateTime() != null) {
+                bookingDateTime.lt(key.getToBookingDateTime());
+            }
+        }
+        Query query = new Query(criteria);
+        if (key.isCredits() != key.isDebits()) {
+            query.addCriteria(creditDebitCriteria(key.isCredits()));
+        }
+        return mongoTemplate.count(query, FRTransaction.class);
     }
 
+    @Override
+    public Stream<FRTransaction> streamByAccountIdAndBookingDateTimeBetweenWithPermissions(
+            String accountId, DateTime fromBookingDateTime, DateTime toBookingDateTime,
+            List<FRExternalPermissionsCode> permissions, TransactionCursor after, Pageable pageable) {
+        Criteria criteria = where(ACCOUNT_ID).is(accountId)
+                .and(BOOKING_DATE_TIME).gt(fromBookingDateTime).lt(toBookingDateTime);
+        return streamWithPermissions(criteria, permissions, after, pageable);
+    }
 
     @Override
-    public Page<FRTransaction> byAccountIdInAndBookingDateTimeBetweenWithPermissions(List<String> accountIds,
-                                                                                     DateTime fromBookingDateTime, DateTime toBookingDateTime, List<FRExternalPermissionsCode> permissions,
-                                                                                     Pageable pageable) {
-
-        if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS)
-                && permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS)) {
-            return filterTransition(transactionRepository
-                    .findByAccountIdInAndBookingDateTimeBetween(accountIds, fromBookingDateTime, toBookingDateTime,
-                            pageable), permissions);
-        } else if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS)) {
-            return filterTransition(transactionRepository
-                            .findByAccountIdInAndTransactionCreditDebitIndicatorAndBookingDateTimeBetween(accountIds,
-                                    OBCreditDebitCode.CREDIT, fromBookingDateTime, toBookingDateTime, pageable),
-                    permissions);
-        } else if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS)) {
-            return filterTransition(transactionRepository
-                            .findByAccountIdInAndTransactionCreditDebitIndicatorAndBookingDateTimeBetween(accountIds,
-                                    OBCreditDebitCode.DEBIT, fromBookingDateTime, toBookingDateTime, pageable),
-                    permissions);
-        } else {
+    public Stream<FRTransaction> streamByAccountIdAndStatementIdAndBookingDateTimeBetweenWithPermissions(
+            String accountId, String statementId, DateTime fromBookingDateTime, DateTime toBookingDateTime,
+            List<FRExternalPermissionsCode> permissions, TransactionCursor after, Pageable pageable) {
+        Criteria criteria = where(ACCOUNT_ID).is(accountId)
+                .and(STATEMENT_IDS).is(statementId)
+                .and(BOOKING_DATE_TIME).gt(fromBookingDateTime).lt(toBookingDateTime);
+        return streamWithPermissions(criteria, permissions, after, pageable);
+    }
+
+    @Override
+    public Stream<FRTransaction> streamByAccountIdInAndBookingDateTimeBetweenWithPermissions(
+            List<String> accountIds, DateTime fromBookingDateTime, DateTime toBookingDateTime,
+            List<FRExternalPermissionsCode> permissions, TransactionCursor after, Pageable pageable) {
+        Criteria criteria = where(ACCOUNT_ID).in(accountIds)
+                .and(BOOKING_DATE_TIME).gt(fromBookingDateTime).lt(toBookingDateTime);
+        return streamWithPermissions(criteria, permissions, after, pageable);
+    }
+
+    private Slice<FRTransaction> findWithPermissions(Criteria criteria, List<FRExternalPermissionsCode> permissions,
+                                                     TransactionCursor after, Pageable pageable) {
+        Query query = pageQuery(criteria, permissions, after, pageable);
+        if (query == null) {
+            return new SliceImpl<>(Collections.emptyList());
+        }
+        int pageSize = pageable.getPageSize();
+        List<FRTransaction> transactions = mongoTemplate.find(query, FRTransaction.class);
+        boolean hasNext = transactions.size() > pageSize;
+        if (hasNext) {
+            transactions = transactions.subList(0, pageSize);
+        }
+        return SHAPING_PLANS.forPermissions(permissions).applyAll(new SliceImpl<>(transactions, pageable, hasNext));
+    }
+
+    /**
+     * The transactions are read from the cursor as the stream is consumed, and the cursor is closed with the stream.
+     */
+    private Stream<FRTransaction> streamWithPermissions(Criteria criteria, List<FRExternalPermissionsCode> permissions,
+                                                        TransactionCursor after, Pageable pageable) {
+        Query query = pageQuery(criteria, permissions, after, pageable);
+        if (query == null) {
+            return Stream.empty();
+        }
+        ShapingPlan<FRTransaction> shapingPlan = SHAPING_PLANS.forPermissions(permissions);
+        return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, FRTransaction.class))
+                .map(shapingPlan::apply);
+    }
+
+    /**
+     * Applies the credit/debit restrictions of the permissions and the keyset position to the provided criteria.
+     * The offset of the pageable is only honoured when no cursor is provided, to keep supporting the page based links
+     * that were issued before cursors were introduced. One more transaction than the page size is read, to find out
+     * whether a next page exists.
+     *
+     * @return the query, or null if the permissions allow neither credits nor debits to be read.
+     */
+    private Query pageQuery(Criteria criteria, List<FRExternalPermissionsCode> permissions, TransactionCursor after,
+                            Pageable pageable) {
+        boolean credits = permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS);
+        boolean debits = permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS);
+        if (!credits && !debits) {
             LOGGER.warn("Need at least one of the following permissions: " +
                     FRExternalPermissionsCode.READTRANSACTIONSCREDITS + " or " + FRExternalPermissionsCode
                     .READTRANSACTIONSDEBITS);
-            return new PageImpl<>(Collections.emptyList());
+            return null;
+        }
+
+        Query query = SHAPING_PLANS.forPermissions(permissions).applyTo(new Query(criteria));
+        if (credits != debits) {
+            query.addCriteria(creditDebitCriteria(credits));
         }
+        if (after != null) {
+            query.addCriteria(new Criteria().orOperator(
+                    where(BOOKING_DATE_TIME).gt(after.getBookingDateTime()),
+                    where(BOOKING_DATE_TIME).is(after.getBookingDateTime()).and(ID).gt(after.getId())));
+        }
+        return query.with(Sort.by(Sort.Direction.ASC, BOOKING_DATE_TIME, ID))
+                .skip(after == null ? pageable.getOffset() : 0)
+                .limit(pageable.getPageSize() + 1);
     }
 
-    private Page<FRTransaction> filterTransition(Page<FRTransaction> transactions, List<FRExternalPermissionsCode> permissions) {
-        for (FRTransaction transaction : transactions) {
-            for (FRExternalPermissionsCode permission : permissions) {
-                switch (permission) {
-                    case READTRANSACTIONSBASIC:
-                        transaction.getTransaction().setTransactionInformation("");
-                        transaction.getTransaction().setBalance(null);
-                        transaction.getTransaction().setMerchantDetails(null);
-                        transaction.getTransaction().setCreditorAgent(null);
-                        transaction.getTransaction().setDebtorAgent(null);
-                        break;
-                }
-                if (!permissions.contains(FRExternalPermissionsCode.READPAN)
-                        && transaction.getTransaction().getDebtorAccount() != null
-                        && OBExternalAccountIdentification3Code.PAN.toString().equals(transaction.getTransaction().getDebtorAccount().getSchemeName())) {
-                    transaction.getTransaction().getDebtorAccount().setIdentification("xxx");
-                }
-                if (!permissions.contains(FRExternalPermissionsCode.READPAN)
-                        && transaction.getTransaction().getCreditorAccount() != null
-                        && OBExternalAccountIdentification3Code.PAN.toString().equals(transaction.getTransaction().getCreditorAccount().getSchemeName())) {
-                    transaction.getTransaction().getCreditorAccount().setIdentification("xxx");
-                }
-            }
+    /**
+     * @param permissions the permissions of a request.
+     * @return the shaping plan applied to the transactions read with the permissions.
+     */
+    static ShapingPlan<FRTransaction> shapingPlan(List<FRExternalPermissionsCode> permissions) {
+        return SHAPING_PLANS.forPermissions(permissions);
+    }
+
+    private static Criteria creditDebitCriteria(boolean credits) {
+        return where(CREDIT_DEBIT_INDICATOR).is(credits ? OBCreditDebitCode.CREDIT : OBCreditDebitCode.DEBIT);
+    }
+
+    private static void maskPan(FRAccountIdentifier account) {
+        if (account != null && OBExternalAccountIdentification3Code.PAN.toString().equals(account.getSchemeName())) {
+            account.setIdentification("xxx");
         }
-        return transactions;
     }
 }
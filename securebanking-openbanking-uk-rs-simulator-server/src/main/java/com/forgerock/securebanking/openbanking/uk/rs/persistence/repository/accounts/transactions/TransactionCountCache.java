@@ -0,0 +1,159 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions;
+
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the number of transactions behind a {@link TransactionCountKey}, so that {@code Meta.TotalPages} can be
+ * provided without a count query for every page read.
+ * <p>
+ * The cache is bounded (Caffeine's W-TinyLFU eviction), so that keys built from one-off booking date windows are
+ * evicted rather than filling it up. The cached keys are also indexed by account, so that newly created transactions
+ * are only matched against the keys of their own account.
+ * <p>
+ * Counts are kept up to date incrementally when transactions are created and dropped when the transactions of an
+ * account are modified or deleted. They are approximate: a count computed while transactions are being created may
+ * miss or double count them, and a window that is open ended also counts transactions booked in the future.
+ */
+@Component
+public class TransactionCountCache {
+
+    public static final String CACHE_NAME = "rs.transactions.counts";
+
+    private final FRTransactionRepository transactionRepository;
+    private final boolean enabled;
+    private final Cache<TransactionCountKey, AtomicLong> counts;
+    private final ConcurrentMap<String, Set<TransactionCountKey>> keysByAccount = new ConcurrentHashMap<>();
+
+    public TransactionCountCache(FRTransactionRepository transactionRepository, MeterRegistry meterRegistry,
+                                 @Value("${rs.page.transaction.total-pages.enabled:true}") boolean enabled,
+                                 @Value("${rs.page.transaction.count-cache.max-entries:10000}") long maxEntries) {
+        this.transactionRepository = transactionRepository;
+        this.enabled = enabled;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .executor(Runnable::run)
+                .removalListener((TransactionCountKey key, AtomicLong count, RemovalCause cause) -> unindex(key))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, counts, CACHE_NAME);
+    }
+
+    /**
+     * @param key the transactions being paged through.
+     * @param pageSize the number of transactions in a page.
+     * @return the total number of pages, or null if total pages are disabled.
+     */
+    public Integer totalPages(TransactionCountKey key, int pageSize) {
+        if (!enabled) {
+            return null;
+        }
+        long count = count(key);
+        return (int) ((count + pageSize - 1) / pageSize);
+    }
+
+    long count(TransactionCountKey key) {
+        return counts.get(key, this::load).get();
+    }
+
+    /**
+     * Adds newly created transactions to the counts they are part of.
+     *
+     * @param transactions the transactions that have been saved.
+     */
+    public void onTransactionsCreated(Collection<FRTransaction> transactions) {
+        Map<String, List<FRTransaction>> transactionsByAccount = transactions.stream()
+                .filter(transaction -> transaction.getAccountId() != null)
+                .collect(Collectors.groupingBy(FRTransaction::getAccountId));
+        transactionsByAccount.forEach((accountId, accountTransactions) -> {
+            Set<TransactionCountKey> keys = keysByAccount.get(accountId);
+            if (keys == null) {
+                return;
+            }
+            for (TransactionCountKey key : keys) {
+                AtomicLong count = counts.getIfPresent(key);
+                if (count == null) {
+                    continue;
+                }
+                long created = accountTransactions.stream().filter(key::matches).count();
+                if (created > 0) {
+                    count.addAndGet(created);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops the counts that include the given account, to be used when its transactions are modified or deleted.
+     *
+     * @param accountId the ID of the account.
+     */
+    public void evictAccount(String accountId) {
+        Set<TransactionCountKey> keys = keysByAccount.get(accountId);
+        if (keys != null) {
+            counts.invalidateAll(keys);
+        }
+    }
+
+    /**
+     * @return the number of cached counts, once pending evictions have been carried out.
+     */
+    long size() {
+        counts.cleanUp();
+        return counts.estimatedSize();
+    }
+
+    private AtomicLong load(TransactionCountKey key) {
+        AtomicLong count = new AtomicLong(transactionRepository.countWithPermissions(key));
+        for (String accountId : key.getAccountIds()) {
+            keysByAccount.compute(accountId, (id, keys) -> {
+                Set<TransactionCountKey> accountKeys = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                accountKeys.add(key);
+                return accountKeys;
+            });
+        }
+        return count;
+    }
+
+    private void unindex(TransactionCountKey key) {
+        for (String accountId : key.getAccountIds()) {
+            keysByAccount.computeIfPresent(accountId, (id, keys) -> {
+                // The key may have been cached again in the meantime
+                if (!counts.asMap().containsKey(key)) {
+                    keys.remove(key);
+                }
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+}
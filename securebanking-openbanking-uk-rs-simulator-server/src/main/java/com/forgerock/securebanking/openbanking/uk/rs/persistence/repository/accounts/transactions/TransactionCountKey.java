@@ -0,0 +1,94 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import lombok.Value;
+import org.joda.time.DateTime;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Identifies the set of transactions a TPP is paging through: the accounts, the optional statement, the booking date
+ * window (as requested, i.e. null when open ended) and whether credits and/or debits are visible with the consented
+ * permissions. Used as the key of the {@link TransactionCountCache}.
+ */
+@Value
+public class TransactionCountKey {
+
+    List<String> accountIds;
+    String statementId;
+    DateTime fromBookingDateTime;
+    DateTime toBookingDateTime;
+    boolean credits;
+    boolean debits;
+
+    public static TransactionCountKey forAccount(String accountId, DateTime fromBookingDateTime,
+                                                 DateTime toBookingDateTime,
+                                                 List<FRExternalPermissionsCode> permissions) {
+        return forAccounts(Collections.singletonList(accountId), fromBookingDateTime, toBookingDateTime, permissions);
+    }
+
+    public static TransactionCountKey forStatement(String accountId, String statementId, DateTime fromBookingDateTime,
+                                                   DateTime toBookingDateTime,
+                                                   List<FRExternalPermissionsCode> permissions) {
+        return new TransactionCountKey(Collections.singletonList(accountId), statementId, fromBookingDateTime,
+                toBookingDateTime, permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS),
+                permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS));
+    }
+
+    public static TransactionCountKey forAccounts(List<String> accountIds, DateTime fromBookingDateTime,
+                                                  DateTime toBookingDateTime,
+                                                  List<FRExternalPermissionsCode> permissions) {
+        // Sorted so that the same accounts requested in a different order share a single entry
+        List<String> sortedAccountIds = accountIds.stream().sorted().distinct().collect(Collectors.toList());
+        return new TransactionCountKey(Collections.unmodifiableList(sortedAccountIds), null, fromBookingDateTime,
+                toBookingDateTime, permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSCREDITS),
+                permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSDEBITS));
+    }
+
+    /**
+     * @param transaction a transaction that has just been created.
+     * @return true if the transaction is part of the set of transactions identified by this key.
+     */
+    public boolean matches(FRTransaction transaction) {
+        if (!accountIds.contains(transaction.getAccountId())) {
+            return false;
+        }
+        if (statementId != null
+                && (transaction.getStatementIds() == null || !transaction.getStatementIds().contains(statementId))) {
+            return false;
+        }
+        DateTime bookingDateTime = transaction.getBookingDateTime();
+        if (fromBookingDateTime != null && (bookingDateTime == null || !bookingDateTime.isAfter(fromBookingDateTime))) {
+            return false;
+        }
+        if (toBookingDateTime != null && (bookingDateTime == null || !bookingDateTime.isBefore(toBookingDateTime))) {
+            return false;
+        }
+        if (credits && debits) {
+            return true;
+        }
+        FRCreditDebitIndicator creditDebitIndicator = transaction.getTransaction() == null ? null
+                : transaction.getTransaction().getCreditDebitIndicator();
+        return (credits && creditDebitIndicator == FRCreditDebitIndicator.CREDIT)
+                || (debits && creditDebitIndicator == FRCreditDebitIndicator.DEBIT);
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions;
+
+import com.forgerock.securebanking.openbanking.uk.error.OBErrorResponseException;
+import com.forgerock.securebanking.openbanking.uk.error.OBRIErrorResponseCategory;
+import com.forgerock.securebanking.openbanking.uk.error.OBRIErrorType;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import lombok.Value;
+import org.joda.time.DateTime;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.common.util.PaginationUtil.CURSOR;
+
+/**
+ * The position of the last transaction returned in a page, used to seek directly to the next page instead of
+ * skipping over all of the previous ones. Transactions are ordered by {@code (bookingDateTime, _id)}, so the pair
+ * uniquely identifies a position even when several transactions share the same booking date.
+ * <p>
+ * The cursor is handed to TPPs as an opaque, URL safe token in the {@code Links.Next} of a transactions response.
+ */
+@Value
+public class TransactionCursor {
+
+    private static final String SEPARATOR = ":";
+
+    DateTime bookingDateTime;
+    String id;
+
+    /**
+     * @param transaction the last transaction of a page.
+     * @return a cursor that resumes immediately after the provided transaction.
+     */
+    public static TransactionCursor after(FRTransaction transaction) {
+        return new TransactionCursor(transaction.getBookingDateTime(), transaction.getId());
+    }
+
+    /**
+     * @param transactions a page of transactions that was read using a cursor.
+     * @return the token to request the following page with, or null if this is the last page.
+     */
+    public static String nextToken(Slice<FRTransaction> transactions) {
+        List<FRTransaction> content = transactions.getContent();
+        if (!transactions.hasNext() || content.isEmpty()) {
+            return null;
+        }
+        return after(content.get(content.size() - 1)).toToken();
+    }
+
+    /**
+     * Decodes a token previously provided by {@link #toToken()}.
+     *
+     * @param token the value of the {@code cursor} query parameter, may be null.
+     * @return the decoded cursor, or null if no token was provided (i.e. the first page is required).
+     * @throws OBErrorResponseException if the token has been tampered with or was not issued by this server.
+     */
+    public static TransactionCursor fromToken(String token) throws OBErrorResponseException {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            if (separator <= 0 || separator == decoded.length() - 1) {
+                throw new IllegalArgumentException("Missing separator in cursor: " + decoded);
+            }
+            long bookingDateTime = Long.parseLong(decoded.substring(0, separator));
+            return new TransactionCursor(new DateTime(bookingDateTime), decoded.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new OBErrorResponseException(
+                    HttpStatus.BAD_REQUEST,
+                    OBRIErrorResponseCategory.REQUEST_INVALID,
+                    OBRIErrorType.REQUEST_ARGUMENT_TYPE_MISMATCH.toOBError1(CURSOR, TransactionCursor.class.getSimpleName())
+            );
+        }
+    }
+
+    public String toToken() {
+        String raw = bookingDateTime.getMillis() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
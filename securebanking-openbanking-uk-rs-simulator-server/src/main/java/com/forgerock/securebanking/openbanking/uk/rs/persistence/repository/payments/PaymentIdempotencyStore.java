@@ -0,0 +1,167 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments;
+
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRPaymentIdempotencyRecord;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.validator.IdempotencyValidator.X_IDEMPOTENCY_KEY_EXPIRY_HOURS;
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Stores the {@link FRPaymentIdempotencyRecord} of each payment submission, so that a repeated submission can be
+ * settled with a single lookup by consent ID. Records are created atomically (with an upsert), so that only one of
+ * several concurrent submissions for the same consent can record itself.
+ * <p>
+ * A record is stored pending before its submission is saved, and marked as saved once it has been. A pending record
+ * is only considered orphaned, and can only be replaced, once it is older than the pending timeout.
+ * <p>
+ * Only saved records are cached in memory, in a bounded cache, until their idempotency key expires. Saved records are
+ * never replaced, so the caches of several instances can't disagree about them.
+ */
+@Component
+public class PaymentIdempotencyStore {
+
+    public static final String CACHE_NAME = "rs.payments.idempotency";
+
+    private static final String ID_FIELD = "_id";
+    private static final String SUBMISSION_ID_FIELD = "submissionId";
+    private static final String CREATED_FIELD = "created";
+    private static final String SAVED_FIELD = "saved";
+
+    private final MongoTemplate mongoTemplate;
+    private final long pendingTimeoutMillis;
+    private final Cache<String, FRPaymentIdempotencyRecord> records;
+
+    public PaymentIdempotencyStore(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+                                   @Value("${rs.cache.idempotency.max-entries:100000}") long maxEntries,
+                                   @Value("${rs.cache.idempotency.pending-timeout:1m}") Duration pendingTimeout) {
+        this.mongoTemplate = mongoTemplate;
+        this.pendingTimeoutMillis = pendingTimeout.toMillis();
+        this.records = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofHours(X_IDEMPOTENCY_KEY_EXPIRY_HOURS))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, records, CACHE_NAME);
+    }
+
+    /**
+     * @param consentId the ID of the consent of a payment submission.
+     * @return the record of the submission made with the consent, or null if there is none (or it has expired).
+     */
+    public FRPaymentIdempotencyRecord find(String consentId) {
+        FRPaymentIdempotencyRecord record = records.getIfPresent(consentId);
+        if (record == null) {
+            record = mongoTemplate.findById(consentId, FRPaymentIdempotencyRecord.class);
+            if (record != null && record.isSaved()) {
+                records.put(consentId, record);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Atomically stores the record, unless there is a record for its consent already.
+     *
+     * @param record the record of a payment submission, pending if the submission is about to be created.
+     * @return null if the record has been stored, otherwise the existing record.
+     */
+    public FRPaymentIdempotencyRecord putIfAbsent(FRPaymentIdempotencyRecord record) {
+        Update update = new Update()
+                .setOnInsert("idempotencyKey", record.getIdempotencyKey())
+                .setOnInsert(SUBMISSION_ID_FIELD, record.getSubmissionId())
+                .setOnInsert(CREATED_FIELD, record.getCreated())
+                .setOnInsert(SAVED_FIELD, record.isSaved());
+        FRPaymentIdempotencyRecord existing;
+        while (true) {
+            try {
+                existing = mongoTemplate.findAndModify(query(where(ID_FIELD).is(record.getConsentId())), update,
+                        options().upsert(true).returnNew(false), FRPaymentIdempotencyRecord.class);
+                break;
+            } catch (DuplicateKeyException e) {
+                // A concurrent upsert inserted the record first, which the next attempt returns
+            }
+        }
+        FRPaymentIdempotencyRecord stored = existing == null ? record : existing;
+        if (stored.isSaved()) {
+            records.put(stored.getConsentId(), stored);
+        }
+        return existing;
+    }
+
+    /**
+     * Marks a pending record as saved, once its payment submission has been saved.
+     *
+     * @param record the record of the payment submission, which is left alone if it has been replaced in the meantime.
+     */
+    public void markSaved(FRPaymentIdempotencyRecord record) {
+        UpdateResult result = mongoTemplate.updateFirst(query(where(ID_FIELD).is(record.getConsentId())
+                        .and(SUBMISSION_ID_FIELD).is(record.getSubmissionId())),
+                new Update().set(SAVED_FIELD, true), FRPaymentIdempotencyRecord.class);
+        if (result.getMatchedCount() > 0) {
+            records.put(record.getConsentId(), new FRPaymentIdempotencyRecord(record.getConsentId(),
+                    record.getIdempotencyKey(), record.getSubmissionId(), record.getCreated(), true));
+        }
+    }
+
+    /**
+     * Atomically replaces a pending record whose payment submission was never saved, provided it is older than the
+     * pending timeout (i.e. the request that stored it has given up rather than being slow to save the submission).
+     *
+     * @param orphaned the pending record to replace.
+     * @param replacement the pending record of a payment submission that is about to be created instead.
+     * @return true if the record has been replaced, false if it is still pending or has been replaced already.
+     */
+    public boolean replaceOrphaned(FRPaymentIdempotencyRecord orphaned, FRPaymentIdempotencyRecord replacement) {
+        UpdateResult result = mongoTemplate.updateFirst(query(where(ID_FIELD).is(orphaned.getConsentId())
+                        .and(SUBMISSION_ID_FIELD).is(orphaned.getSubmissionId())
+                        .and(SAVED_FIELD).ne(true)
+                        .and(CREATED_FIELD).lt(DateTime.now().minus(pendingTimeoutMillis))),
+                new Update()
+                        .set("idempotencyKey", replacement.getIdempotencyKey())
+                        .set(SUBMISSION_ID_FIELD, replacement.getSubmissionId())
+                        .set(CREATED_FIELD, replacement.getCreated())
+                        .set(SAVED_FIELD, false),
+                FRPaymentIdempotencyRecord.class);
+        return result.getModifiedCount() > 0;
+    }
+
+    /**
+     * Removes a record, e.g. if its payment submission couldn't be saved.
+     *
+     * @param record the record to remove, which is left alone if it has been replaced in the meantime.
+     */
+    public void remove(FRPaymentIdempotencyRecord record) {
+        mongoTemplate.remove(query(where(ID_FIELD).is(record.getConsentId())
+                .and(SUBMISSION_ID_FIELD).is(record.getSubmissionId())), FRPaymentIdempotencyRecord.class);
+        records.invalidate(record.getConsentId());
+    }
+}
@@ -16,6 +16,7 @@
 package com.forgerock.securebanking.openbanking.uk.rs.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 // TODO #25 - this approach is a starter for ten to get us up and running. We need to configure the logging as per the
@@ -23,8 +24,12 @@ import org.springframework.stereotype.Component;
 /**
  * Outputs the occurrence of an event/activity to the configured default logger. Each output has a recognised prefix
  * so that is it easy to identify the analytics events in the logs.
+ * <p>
+ * The output happens on the calling thread, so this is only used when {@code rs.analytics.async.enabled} is false
+ * (see {@link com.forgerock.securebanking.openbanking.uk.rs.service.analytics.AsyncAnalyticsService}).
  */
 @Component
+@ConditionalOnProperty(name = "rs.analytics.async.enabled", havingValue = "false")
 @Slf4j
 public class AnalyticsLogService implements AnalyticsService {
 
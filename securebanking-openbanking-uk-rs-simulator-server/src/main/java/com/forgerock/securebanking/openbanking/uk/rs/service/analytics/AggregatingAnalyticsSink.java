@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps, in memory, the number of occurrences of each activity. Activities are told apart by their text before
+ * formatting, i.e. "Payment {} created" counts all payments whatever their id.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.analytics.sinks.aggregate.enabled", havingValue = "true", matchIfMissing = true)
+public class AggregatingAnalyticsSink implements AnalyticsSink {
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(List<AnalyticsEvent> events) {
+        for (AnalyticsEvent event : events) {
+            counts.computeIfAbsent(event.getText(), text -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * @return a snapshot of the number of occurrences of each activity.
+     */
+    public Map<String, Long> getCounts() {
+        return counts.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().sum()));
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+import lombok.Value;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * An activity recorded through {@link com.forgerock.securebanking.openbanking.uk.rs.service.AnalyticsService}. The
+ * message is only formatted when a sink needs it, i.e. on the background thread rather than on the request thread.
+ * The arguments are therefore held by reference and should not be mutated after being recorded.
+ */
+@Value
+public class AnalyticsEvent {
+
+    long timestamp;
+    String text;
+    Object[] arguments;
+
+    /**
+     * @return the text with its '{}' placeholders replaced by the arguments, as per the slf4j format.
+     */
+    public String getMessage() {
+        return MessageFormatter.arrayFormat(text, arguments).getMessage();
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock free ring buffer with many producers and a single consumer.
+ * <p>
+ * Each slot carries a sequence number that tells whether it is free to be written at a given position, or ready to be
+ * read. Producers claim a position with a single CAS on the tail, so they never wait for each other nor for the
+ * consumer; if the buffer is full {@link #offer(Object)} fails straight away.
+ *
+ * @param <E> the type of the elements.
+ */
+class AnalyticsRingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only read and written by the consumer, volatile so that size() can be read from other threads
+    private volatile long head;
+
+    /**
+     * @param requestedCapacity the minimum capacity, rounded up to the next power of two.
+     */
+    AnalyticsRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + requestedCapacity);
+        }
+        this.capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * May be called by any thread.
+     *
+     * @param element the element to add.
+     * @return false if the buffer is full.
+     */
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    // Publishes the element to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // The slot still holds the element written one lap earlier
+                return false;
+            }
+            // Otherwise another producer claimed the position first, retry with the new tail
+        }
+    }
+
+    /**
+     * Must only be called by the single consumer thread.
+     *
+     * @param consumer receives the elements, in the order they were added.
+     * @param maxElements the maximum number of elements to remove.
+     * @return the number of elements removed.
+     */
+    int drain(Consumer<E> consumer, int maxElements) {
+        long position = head;
+        int drained = 0;
+        while (drained < maxElements) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                // Not published yet
+                break;
+            }
+            E element = elements.get(index);
+            elements.lazySet(index, null);
+            // Frees the slot for the producers of the next lap
+            sequences.set(index, position + capacity);
+            position++;
+            drained++;
+            consumer.accept(element);
+        }
+        head = position;
+        return drained;
+    }
+
+    /**
+     * @return an estimate of the number of elements in the buffer.
+     */
+    int size() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - head));
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
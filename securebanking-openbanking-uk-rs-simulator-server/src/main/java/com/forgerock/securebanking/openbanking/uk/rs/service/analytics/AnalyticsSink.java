@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+import java.util.List;
+
+/**
+ * A destination of the analytics events. Every {@link AnalyticsSink} bean receives all of the events drained by
+ * {@link AsyncAnalyticsService}, one batch at a time and always from the same background thread.
+ */
+public interface AnalyticsSink {
+
+    /**
+     * @param events the batch of events, in the order they were recorded. The list is reused for the next batch, so
+     *               it must not be held onto once this method returns.
+     */
+    void write(List<AnalyticsEvent> events);
+
+    /**
+     * Called once the last batch has been written, when the application shuts down.
+     */
+    default void close() {
+    }
+}
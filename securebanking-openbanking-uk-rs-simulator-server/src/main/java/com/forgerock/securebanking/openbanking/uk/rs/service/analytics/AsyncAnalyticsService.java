@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+import com.forgerock.securebanking.openbanking.uk.rs.service.AnalyticsService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Records the analytics events without blocking the request thread (unless the {@link BackpressurePolicy#BLOCK}
+ * policy is configured). Events are added to a bounded {@link AnalyticsRingBuffer} and drained in batches by a
+ * background thread, which hands each batch to every {@link AnalyticsSink}.
+ * <p>
+ * Events that cannot be buffered are counted in the {@value #DROPPED_METRIC} counter, tagged with the reason
+ * ({@code full} or {@code sampled}).
+ */
+@Service
+@ConditionalOnProperty(name = "rs.analytics.async.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class AsyncAnalyticsService implements AnalyticsService {
+
+    static final String RECORDED_METRIC = "rs.analytics.events.recorded";
+    static final String DROPPED_METRIC = "rs.analytics.events.dropped";
+    static final String BUFFER_METRIC = "rs.analytics.buffer.size";
+    static final String SINK_FAILURES_METRIC = "rs.analytics.sink.failures";
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final AnalyticsRingBuffer<AnalyticsEvent> buffer;
+    private final List<AnalyticsSink> sinks;
+    private final BackpressurePolicy backpressurePolicy;
+    private final int batchSize;
+    private final int sampleRate;
+    private final int sampleThreshold;
+    private final long blockTimeoutNanos;
+    private final long idleWaitNanos;
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final List<AnalyticsEvent> batch;
+    private final MeterRegistry meterRegistry;
+    private final Counter recorded;
+    private final Counter droppedFull;
+    private final Counter droppedSampled;
+    private volatile boolean running;
+    private Thread drainer;
+
+    public AsyncAnalyticsService(ObjectProvider<AnalyticsSink> sinks,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${rs.analytics.buffer-size:8192}") int bufferSize,
+                                 @Value("${rs.analytics.batch-size:512}") int batchSize,
+                                 @Value("${rs.analytics.backpressure:DROP}") BackpressurePolicy backpressurePolicy,
+                                 @Value("${rs.analytics.sample-rate:10}") int sampleRate,
+                                 @Value("${rs.analytics.block-timeout-ms:5}") long blockTimeoutMillis,
+                                 @Value("${rs.analytics.idle-wait-ms:20}") long idleWaitMillis) {
+        this.buffer = new AnalyticsRingBuffer<>(bufferSize);
+        this.sinks = sinks.orderedStream().collect(Collectors.toList());
+        this.backpressurePolicy = backpressurePolicy;
+        this.batchSize = batchSize;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.sampleThreshold = buffer.capacity() / 2;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+        this.idleWaitNanos = TimeUnit.MILLISECONDS.toNanos(idleWaitMillis);
+        this.batch = new ArrayList<>(batchSize);
+        this.meterRegistry = meterRegistry;
+        this.recorded = meterRegistry.counter(RECORDED_METRIC);
+        this.droppedFull = meterRegistry.counter(DROPPED_METRIC, "reason", "full");
+        this.droppedSampled = meterRegistry.counter(DROPPED_METRIC, "reason", "sampled");
+        Gauge.builder(BUFFER_METRIC, buffer, AnalyticsRingBuffer::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        log.info("Analytics events are buffered ({} events, {} policy) and written to {}", buffer.capacity(),
+                backpressurePolicy, sinks.stream().map(s -> s.getClass().getSimpleName()).collect(Collectors.toList()));
+        running = true;
+        drainer = new Thread(this::drainLoop, "analytics-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Stops the background thread once the events still in the buffer have been written, then closes the sinks.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(drainer);
+        drainer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordActivity(String text, Object... arguments) {
+        AnalyticsEvent event = new AnalyticsEvent(System.currentTimeMillis(), text, arguments);
+        switch (backpressurePolicy) {
+            case SAMPLE:
+                if (buffer.size() >= sampleThreshold && sampleCounter.getAndIncrement() % sampleRate != 0) {
+                    droppedSampled.increment();
+                    return;
+                }
+                offerOrDrop(event);
+                break;
+            case BLOCK:
+                offerOrBlock(event);
+                break;
+            default:
+                offerOrDrop(event);
+        }
+    }
+
+    private void offerOrDrop(AnalyticsEvent event) {
+        if (buffer.offer(event)) {
+            recorded.increment();
+        } else {
+            droppedFull.increment();
+        }
+    }
+
+    private void offerOrBlock(AnalyticsEvent event) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (!buffer.offer(event)) {
+            if (System.nanoTime() - deadline >= 0) {
+                droppedFull.increment();
+                return;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        recorded.increment();
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drainBatch() == 0) {
+                LockSupport.parkNanos(idleWaitNanos);
+            }
+        }
+        while (drainBatch() > 0) {
+            // Flushes the events recorded before the shutdown
+        }
+        sinks.forEach(AnalyticsSink::close);
+    }
+
+    /**
+     * @return the number of events written to the sinks.
+     */
+    int drainBatch() {
+        batch.clear();
+        int drained = buffer.drain(batch::add, batchSize);
+        if (drained == 0) {
+            return 0;
+        }
+        List<AnalyticsEvent> events = Collections.unmodifiableList(batch);
+        for (AnalyticsSink sink : sinks) {
+            try {
+                sink.write(events);
+            } catch (RuntimeException e) {
+                log.warn("Failed to write {} analytics events to {}", drained, sink.getClass().getSimpleName(), e);
+                meterRegistry.counter(SINK_FAILURES_METRIC, "sink", sink.getClass().getSimpleName()).increment();
+            }
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+/**
+ * What {@link AsyncAnalyticsService} does with an event when the buffer cannot readily take it.
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * Drops the event if the buffer is full. The request thread never waits.
+     */
+    DROP,
+
+    /**
+     * Once the buffer is half full only keeps one event in every {@code rs.analytics.sample-rate}, and drops the event
+     * if the buffer is full. The request thread never waits.
+     */
+    SAMPLE,
+
+    /**
+     * Waits for up to {@code rs.analytics.block-timeout-ms} for space in the buffer before dropping the event.
+     */
+    BLOCK
+}
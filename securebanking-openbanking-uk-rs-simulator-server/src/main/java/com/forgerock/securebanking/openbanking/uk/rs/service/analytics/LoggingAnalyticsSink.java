@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Outputs the analytics events to the configured default logger, with the same prefix as
+ * {@link com.forgerock.securebanking.openbanking.uk.rs.service.AnalyticsLogService}, so that the events end up where
+ * they did before being recorded asynchronously. This is the default sink.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.analytics.sinks.log.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class LoggingAnalyticsSink implements AnalyticsSink {
+
+    private static final String PREFIX = "ANALYTICS: ";
+
+    @Override
+    public void write(List<AnalyticsEvent> events) {
+        for (AnalyticsEvent event : events) {
+            log.info(PREFIX + event.getText(), event.getArguments());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts the analytics events into a capped collection, so that the most recent events can be queried without the
+ * collection growing unbounded. Each batch is written with a single bulk insert.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.analytics.sinks.mongo.enabled", havingValue = "true")
+@Slf4j
+public class MongoAnalyticsSink implements AnalyticsSink {
+
+    private final MongoTemplate mongoTemplate;
+    private final String collectionName;
+    private final long maxCollectionSize;
+
+    public MongoAnalyticsSink(MongoTemplate mongoTemplate,
+                              @Value("${rs.analytics.sinks.mongo.collection:analyticsEvents}") String collectionName,
+                              @Value("${rs.analytics.sinks.mongo.max-size-bytes:67108864}") long maxCollectionSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.collectionName = collectionName;
+        this.maxCollectionSize = maxCollectionSize;
+    }
+
+    @PostConstruct
+    protected void init() {
+        if (!mongoTemplate.collectionExists(collectionName)) {
+            mongoTemplate.createCollection(collectionName, CollectionOptions.empty().capped().size(maxCollectionSize));
+            log.debug("Created capped collection '{}' of {} bytes", collectionName, maxCollectionSize);
+        }
+    }
+
+    @Override
+    public void write(List<AnalyticsEvent> events) {
+        List<Document> documents = new ArrayList<>(events.size());
+        for (AnalyticsEvent event : events) {
+            documents.add(new Document("timestamp", new Date(event.getTimestamp()))
+                    .append("text", event.getText())
+                    .append("message", event.getMessage())
+                    .append("arguments", event.getArguments() == null ? null : Arrays.stream(event.getArguments())
+                            .map(String::valueOf)
+                            .collect(Collectors.toList())));
+        }
+        mongoTemplate.insert(documents, collectionName);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Appends the analytics events to a file, one line per event, prefixed with the ISO-8601 time of the event. Once the
+ * file exceeds its maximum size it is rolled over to {@code <file>.1}, the previous {@code <file>.1} to
+ * {@code <file>.2} and so on, keeping at most {@code rs.analytics.sinks.file.max-history} rolled files.
+ * <p>
+ * This sink is only enabled explicitly, along with the path of its file, which has no default so that the events are
+ * never written relative to whichever directory the application was started from.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.analytics.sinks.file.enabled", havingValue = "true")
+@Slf4j
+public class RollingFileAnalyticsSink implements AnalyticsSink {
+
+    private final Path file;
+    private final long maxFileSize;
+    private final int maxHistory;
+    private BufferedWriter writer;
+    private long fileSize;
+
+    public RollingFileAnalyticsSink(@Value("${rs.analytics.sinks.file.path}") String file,
+                                    @Value("${rs.analytics.sinks.file.max-size-bytes:10485760}") long maxFileSize,
+                                    @Value("${rs.analytics.sinks.file.max-history:5}") int maxHistory) {
+        this.file = Paths.get(file);
+        this.maxFileSize = maxFileSize;
+        this.maxHistory = maxHistory;
+    }
+
+    @Override
+    public void write(List<AnalyticsEvent> events) {
+        try {
+            if (writer == null) {
+                open();
+            }
+            for (AnalyticsEvent event : events) {
+                String line = Instant.ofEpochMilli(event.getTimestamp()) + " " + event.getMessage();
+                writer.write(line);
+                writer.newLine();
+                // Close enough for multi-byte characters, the limit is not meant to be exact
+                fileSize += line.length() + 1;
+            }
+            writer.flush();
+            if (fileSize >= maxFileSize) {
+                rollOver();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write analytics events to " + file, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Unable to close analytics file {}", file, e);
+            }
+            writer = null;
+        }
+    }
+
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        fileSize = Files.size(file);
+    }
+
+    private void rollOver() throws IOException {
+        close();
+        Files.deleteIfExists(rolled(maxHistory));
+        for (int i = maxHistory - 1; i >= 1; i--) {
+            if (Files.exists(rolled(i))) {
+                Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxHistory > 0) {
+            Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        open();
+    }
+
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.balance;
+
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType.INTERIMAVAILABLE;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator.DEBIT;
+
+/**
+ * An optional, in-memory copy of the {@code INTERIMAVAILABLE} balance of each account, used to check the availability
+ * of funds without a round trip to Mongo, which remains the system of record.
+ * <p>
+ * Balances are held in signed minor units (i.e. scaled by {@link #SCALE}, and negative when the balance is a
+ * {@code DEBIT}) as {@code long}s, so that checking the funds of an account that is in the ledger neither reads Mongo
+ * nor allocates. A balance is added when it is first read from Mongo and replaced whenever it is written. A balance
+ * with more decimal places than {@link #SCALE} is never added, and its funds are checked against Mongo as before.
+ * <p>
+ * Deletions can't be matched to accounts reliably, so they empty the ledger. To avoid a balance read from Mongo
+ * before a deletion or update being added afterwards, reads are only added if the ledger hasn't changed since they
+ * started (see {@link #getVersion()}).
+ * <p>
+ * Only the writes of this instance are seen by the ledger, so each balance expires once it has been held for
+ * {@code rs.balance.ledger.expire-after-write}, after which it is read from Mongo again. This bounds how stale a
+ * balance written by another instance can be.
+ */
+@Component
+public class BalanceLedger {
+
+    /**
+     * The value returned when an amount isn't in the ledger or can't be represented in minor units.
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+    static final int SCALE = 2;
+
+    private static final long MAX_BEFORE_DIGIT = (Long.MAX_VALUE - 9) / 10;
+
+    private final boolean enabled;
+    private final long expireAfterWriteNanos;
+    private final ConcurrentMap<String, Entry> balances = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    public BalanceLedger(@Value("${rs.balance.ledger.enabled:false}") boolean enabled,
+                         @Value("${rs.balance.ledger.expire-after-write:5s}") Duration expireAfterWrite) {
+        this.enabled = enabled;
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param accountId the ID of the account.
+     * @return the available balance of the account in signed minor units, or {@link #UNKNOWN} if it isn't in the
+     *         ledger or has expired.
+     */
+    public long getAvailable(String accountId) {
+        Entry balance = balances.get(accountId);
+        if (balance == null) {
+            return UNKNOWN;
+        }
+        if (balance.isExpired(System.nanoTime())) {
+            balances.remove(accountId, balance);
+            return UNKNOWN;
+        }
+        return balance.available;
+    }
+
+    /**
+     * @return a version that changes whenever a balance is written or deleted, to be read before reading a balance
+     *         from Mongo and passed to {@link #load(FRBalance, long)}.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Adds a balance that was read from Mongo, unless the account is already in the ledger (and hasn't expired) or a
+     * balance has been written or deleted since the read started.
+     *
+     * @param balance the balance read from Mongo.
+     * @param versionBeforeRead the {@link #getVersion()} before reading the balance.
+     */
+    public void load(FRBalance balance, long versionBeforeRead) {
+        if (!enabled || !isAvailableBalance(balance)) {
+            return;
+        }
+        long available = signedMinorUnits(balance);
+        if (available != UNKNOWN && version.get() == versionBeforeRead) {
+            long now = System.nanoTime();
+            balances.compute(balance.getAccountId(), (accountId, current) ->
+                    current == null || current.isExpired(now) ? new Entry(available, now + expireAfterWriteNanos)
+                            : current);
+        }
+    }
+
+    /**
+     * Replaces a balance that has been written to Mongo, or removes it if it isn't (or no longer) an available balance
+     * that the ledger can hold.
+     *
+     * @param balance the balance that has been saved.
+     */
+    public void put(FRBalance balance) {
+        if (!enabled || balance.getAccountId() == null) {
+            return;
+        }
+        version.incrementAndGet();
+        // The type of the balance may just have changed from available to another one
+        long available = isAvailableBalance(balance) ? signedMinorUnits(balance) : UNKNOWN;
+        if (available == UNKNOWN) {
+            balances.remove(balance.getAccountId());
+        } else {
+            balances.put(balance.getAccountId(), new Entry(available, System.nanoTime() + expireAfterWriteNanos));
+        }
+    }
+
+    /**
+     * Empties the ledger, to be used when balances are deleted.
+     */
+    public void clear() {
+        if (!enabled) {
+            return;
+        }
+        version.incrementAndGet();
+        balances.clear();
+    }
+
+    /**
+     * Parses a decimal amount (e.g. {@code 10.5}) into minor units without allocating.
+     *
+     * @param amount the amount, with an optional sign and decimal places.
+     * @param roundUp whether to round up an amount with more decimal places than {@link #SCALE}. If false, such an
+     *                amount is {@link #UNKNOWN}.
+     * @return the amount in minor units, or {@link #UNKNOWN} if it is invalid, overflows or can't be represented.
+     */
+    static long toMinorUnits(CharSequence amount, boolean roundUp) {
+        int length = amount == null ? 0 : amount.length();
+        if (length == 0) {
+            return UNKNOWN;
+        }
+        int i = 0;
+        boolean negative = false;
+        if (amount.charAt(0) == '-' || amount.charAt(0) == '+') {
+            negative = amount.charAt(0) == '-';
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;
+        boolean truncated = false;
+        for (; i < length; i++) {
+            char c = amount.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return UNKNOWN;
+            }
+            digits++;
+            if (decimals >= SCALE) {
+                truncated |= c != '0';
+                continue;
+            }
+            if (value > MAX_BEFORE_DIGIT) {
+                return UNKNOWN;
+            }
+            value = value * 10 + (c - '0');
+            if (decimals >= 0) {
+                decimals++;
+            }
+        }
+        if (digits == 0) {
+            return UNKNOWN;
+        }
+        for (int scale = Math.max(decimals, 0); scale < SCALE; scale++) {
+            if (value > MAX_BEFORE_DIGIT) {
+                return UNKNOWN;
+            }
+            value *= 10;
+        }
+        if (truncated) {
+            if (!roundUp) {
+                return UNKNOWN;
+            }
+            // Towards positive infinity, so that comparing a balance in minor units with it stays exact
+            if (!negative) {
+                value++;
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the amount of the balance in minor units, negated if the balance is a {@code DEBIT}, or {@link #UNKNOWN}
+     *         if it can't be represented.
+     */
+    private static long signedMinorUnits(FRBalance balance) {
+        long amount = toMinorUnits(balance.getBalance().getAmount().getAmount(), false);
+        return amount != UNKNOWN && balance.getCreditDebitIndicator() == DEBIT ? -amount : amount;
+    }
+
+    private static boolean isAvailableBalance(FRBalance balance) {
+        return balance.getBalance() != null
+                && balance.getBalance().getType() == INTERIMAVAILABLE
+                && balance.getBalance().getAmount() != null;
+    }
+
+    private static final class Entry {
+
+        private final long available;
+        private final long expiresAt;
+
+        private Entry(long available, long expiresAt) {
+            this.available = available;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.balance;
+
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the {@link BalanceLedger} up to date with the balances that are written without going through
+ * {@link BalanceStoreService}, e.g. by the admin data API.
+ */
+@Component
+public class BalanceLedgerMongoEventListener extends AbstractMongoEventListener<FRBalance> {
+
+    private final BalanceLedger balanceLedger;
+
+    public BalanceLedgerMongoEventListener(BalanceLedger balanceLedger) {
+        this.balanceLedger = balanceLedger;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<FRBalance> event) {
+        balanceLedger.put(event.getSource());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<FRBalance> event) {
+        balanceLedger.clear();
+    }
+}
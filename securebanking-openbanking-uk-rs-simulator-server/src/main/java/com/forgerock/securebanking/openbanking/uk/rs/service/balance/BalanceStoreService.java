@@ -16,24 +16,59 @@
 package com.forgerock.securebanking.openbanking.uk.rs.service.balance;
 
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
+import com.google.common.util.concurrent.Striped;
+import com.mongodb.client.result.UpdateResult;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator.CREDIT;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator.DEBIT;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 /**
  * Service for saving and retrieving {@link FRBalance} objects to/from the MongoDB repository.
+ * <p>
+ * Balances are written while holding a lock for the account, taken from a fixed number of stripes, so that concurrent
+ * payments on the same account within this instance are serialised rather than losing each other's updates. Across
+ * instances, {@link #credit} and {@link #debit} only write a balance if it is unchanged since it was read, and retry
+ * otherwise.
  */
 @Service
 @Slf4j
 public class BalanceStoreService {
 
     private final FRBalanceRepository balanceRepository;
+    private final BalanceLedger balanceLedger;
+    private final MongoTemplate mongoTemplate;
+    private final Striped<Lock> accountLocks;
+    private final int maxAttempts;
 
-    public BalanceStoreService(FRBalanceRepository balanceRepository) {
+    public BalanceStoreService(FRBalanceRepository balanceRepository,
+                               BalanceLedger balanceLedger,
+                               MongoTemplate mongoTemplate,
+                               @Value("${rs.balance.lock.stripes:1024}") int lockStripes,
+                               @Value("${rs.balance.update.max-attempts:10}") int maxAttempts) {
         this.balanceRepository = balanceRepository;
+        this.balanceLedger = balanceLedger;
+        this.mongoTemplate = mongoTemplate;
+        this.accountLocks = Striped.lock(lockStripes);
+        this.maxAttempts = maxAttempts;
     }
 
     /**
@@ -49,12 +84,128 @@ public class BalanceStoreService {
     }
 
     /**
-     * Updates a {@link FRBalance} instance in the Repository.
+     * Retrieves the {@link FRBalance}s of a given type for several accounts, with a single query.
+     *
+     * @param accountIds The IDs of the accounts whose balances are required.
+     * @param balanceType The type of the {@link FRBalance}s to retrieve.
+     * @return The {@link FRBalance}s found, keyed by account ID. Accounts without a balance of the type are absent.
+     */
+    public Map<String, FRBalance> getBalances(Collection<String> accountIds, FRBalanceType balanceType) {
+        log.debug("Read balances for {} accounts", accountIds.size());
+        Map<String, FRBalance> balances = new HashMap<>();
+        for (FRBalance balance : balanceRepository.findByAccountIdIn(new ArrayList<>(accountIds))) {
+            if (balance.getBalance().getType() == balanceType) {
+                balances.put(balance.getAccountId(), balance);
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Updates a {@link FRBalance} instance in the Repository, and in the {@link BalanceLedger} if it is enabled.
      *
      * @param balance The {@link FRBalance} to update.
      */
     public void updateBalance(FRBalance balance) {
         log.debug("Save balance {}", balance);
-        balanceRepository.save(balance);
+        Lock lock = accountLocks.get(balance.getAccountId());
+        lock.lock();
+        try {
+            balanceLedger.put(balanceRepository.save(balance));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Atomically adds an amount to a balance.
+     *
+     * @param accountId The ID of the account.
+     * @param balanceType The type of the {@link FRBalance} to update.
+     * @param amount The (positive) amount to add.
+     * @return The updated {@link FRBalance}.
+     */
+    public FRBalance credit(String accountId, FRBalanceType balanceType, BigDecimal amount) {
+        return adjustBalance(accountId, balanceType, amount, true);
+    }
+
+    /**
+     * Atomically subtracts an amount from a balance. The balance may become a debit, i.e. funds should be checked
+     * beforehand if that isn't acceptable.
+     *
+     * @param accountId The ID of the account.
+     * @param balanceType The type of the {@link FRBalance} to update.
+     * @param amount The (positive) amount to subtract.
+     * @return The updated {@link FRBalance}.
+     */
+    public FRBalance debit(String accountId, FRBalanceType balanceType, BigDecimal amount) {
+        return adjustBalance(accountId, balanceType, amount.negate(), true);
+    }
+
+    /**
+     * Atomically subtracts an amount from a balance, only if the balance covers it. The funds are checked against the
+     * balance that is written over, so concurrent debits can't take the balance below zero between them.
+     *
+     * @param accountId The ID of the account.
+     * @param balanceType The type of the {@link FRBalance} to update.
+     * @param amount The (positive) amount to subtract.
+     * @return An {@link Optional} containing the updated {@link FRBalance}, or empty if the funds were insufficient
+     * (in which case the balance is left unchanged).
+     */
+    public Optional<FRBalance> debitIfAvailable(String accountId, FRBalanceType balanceType, BigDecimal amount) {
+        return Optional.ofNullable(adjustBalance(accountId, balanceType, amount.negate(), false));
+    }
+
+    /**
+     * @return the updated balance, or null if it would have become a debit while that isn't allowed.
+     */
+    private FRBalance adjustBalance(String accountId, FRBalanceType balanceType, BigDecimal delta,
+                                    boolean allowDebit) {
+        Lock lock = accountLocks.get(accountId);
+        lock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                FRBalance balance = getBalance(accountId, balanceType)
+                        .orElseThrow(() -> new IllegalStateException("No balance found of type '" + balanceType
+                                + "' for account id '" + accountId + "'"));
+                String previousAmount = balance.getCurrencyAndAmount().getAmount();
+                FRCreditDebitIndicator previousIndicator = balance.getCreditDebitIndicator();
+
+                BigDecimal signedAmount = previousIndicator == DEBIT ? balance.getAmount().negate() : balance.getAmount();
+                BigDecimal newAmount = signedAmount.add(delta);
+                if (!allowDebit && newAmount.signum() < 0) {
+                    log.debug("Insufficient funds in the {} balance of account {} for {}", balanceType, accountId,
+                            delta.negate());
+                    return null;
+                }
+                balance.setAmount(newAmount.abs());
+                balance.setCreditDebitIndicator(newAmount.signum() < 0 ? DEBIT : CREDIT);
+
+                // Only write the balance if no other instance has changed it since it was read
+                UpdateResult result = mongoTemplate.updateFirst(
+                        query(where("_id").is(balance.getId())
+                                .and("balance.amount.amount").is(previousAmount)
+                                .and("balance.creditDebitIndicator").is(previousIndicator)),
+                        new Update()
+                                .set("balance.amount.amount", balance.getCurrencyAndAmount().getAmount())
+                                .set("balance.creditDebitIndicator", balance.getCreditDebitIndicator())
+                                .currentDate("updated"),
+                        FRBalance.class);
+                if (result.getModifiedCount() == 1) {
+                    log.debug("Adjusted {} balance of account {} by {} to {} {}", balanceType, accountId, delta,
+                            balance.getCreditDebitIndicator(), balance.getCurrencyAndAmount().getAmount());
+                    // Updates don't raise the events that keep the ledger in step with saves
+                    balanceLedger.put(balance);
+                    return balance;
+                }
+                if (attempt >= maxAttempts) {
+                    throw new OptimisticLockingFailureException("Unable to update the " + balanceType
+                            + " balance of account id '" + accountId + "' after " + attempt + " attempts");
+                }
+                log.debug("Balance of account {} changed concurrently, retrying", accountId);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 }
@@ -15,6 +15,8 @@
  */
 package com.forgerock.securebanking.openbanking.uk.rs.service.balance;
 
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationRequestItem;
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationResultItem;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
 import com.google.common.base.Preconditions;
 import lombok.extern.slf4j.Slf4j;
@@ -22,18 +24,26 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType.INTERIMAVAILABLE;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator.DEBIT;
 
 @Service
 @Slf4j
 public class FundsAvailabilityService {
 
     private final BalanceStoreService balanceStoreService;
+    private final BalanceLedger balanceLedger;
 
-    public FundsAvailabilityService(BalanceStoreService balanceStoreService) {
+    public FundsAvailabilityService(BalanceStoreService balanceStoreService, BalanceLedger balanceLedger) {
         this.balanceStoreService = balanceStoreService;
+        this.balanceLedger = balanceLedger;
     }
 
     /**
@@ -47,16 +57,82 @@ public class FundsAvailabilityService {
         Preconditions.checkArgument(!StringUtils.isEmpty(accountId), "Account Id cannot be empty");
         Preconditions.checkArgument(!StringUtils.isEmpty(amount), "Amount cannot be empty");
 
+        if (balanceLedger.isEnabled()) {
+            long available = balanceLedger.getAvailable(accountId);
+            long requested = BalanceLedger.toMinorUnits(amount, true);
+            if (available != BalanceLedger.UNKNOWN && requested != BalanceLedger.UNKNOWN) {
+                return available >= requested;
+            }
+        }
+
+        long ledgerVersion = balanceLedger.getVersion();
         Optional<FRBalance> balanceIf = balanceStoreService.getBalance(accountId, INTERIMAVAILABLE);
 
         // Verify account for a balance
         FRBalance balance = balanceIf.orElseThrow(() -> new IllegalStateException("No balance found of type '"
                 + INTERIMAVAILABLE + "' for account id '" + accountId + "'"));
-        BigDecimal currentBalance = balance.getAmount();
+        balanceLedger.load(balance, ledgerVersion);
+        BigDecimal currentBalance = signedAmount(balance);
         BigDecimal requestAmount = new BigDecimal(amount);
 
         log.debug("Check if balance: '{}' from accountId: '{}' is sufficient to cover the amount: '{}'",
                 currentBalance.toPlainString(), accountId, amount);
         return (currentBalance.compareTo(requestAmount) >= 0);
     }
+
+    /**
+     * Determines if several accounts have the provided amounts available. The balances of all of the accounts are
+     * read with a single query, rather than one per item.
+     *
+     * @param items The accounts, amounts and currencies to check.
+     * @return The result of each item, in the same order as the provided items. An item that can't be checked (e.g.
+     * the account has no available balance) has an error instead of failing the whole batch.
+     */
+    public List<FRFundsConfirmationResultItem> areFundsAvailable(List<FRFundsConfirmationRequestItem> items) {
+        Set<String> accountIds = new LinkedHashSet<>();
+        items.forEach(item -> accountIds.add(item.getAccountId()));
+
+        long ledgerVersion = balanceLedger.getVersion();
+        Map<String, FRBalance> balances = balanceStoreService.getBalances(accountIds, INTERIMAVAILABLE);
+        balances.values().forEach(balance -> balanceLedger.load(balance, ledgerVersion));
+
+        List<FRFundsConfirmationResultItem> results = new ArrayList<>(items.size());
+        for (FRFundsConfirmationRequestItem item : items) {
+            FRFundsConfirmationResultItem result = FRFundsConfirmationResultItem.builder()
+                    .accountId(item.getAccountId())
+                    .amount(item.getAmount())
+                    .currency(item.getCurrency())
+                    .build();
+            results.add(result);
+
+            FRBalance balance = balances.get(item.getAccountId());
+            if (balance == null) {
+                result.setError("No balance found of type '" + INTERIMAVAILABLE + "' for account id '"
+                        + item.getAccountId() + "'");
+                continue;
+            }
+            if (!balance.getCurrency().equals(item.getCurrency())) {
+                result.setError("Currency '" + item.getCurrency() + "' does not match the currency '"
+                        + balance.getCurrency() + "' of account id '" + item.getAccountId() + "'");
+                continue;
+            }
+            BigDecimal requestAmount;
+            try {
+                requestAmount = new BigDecimal(item.getAmount());
+            } catch (NumberFormatException e) {
+                result.setError("Invalid amount '" + item.getAmount() + "'");
+                continue;
+            }
+            result.setFundsAvailable(signedAmount(balance).compareTo(requestAmount) >= 0);
+        }
+        log.debug("Checked funds availability of {} items on {} accounts", items.size(), accountIds.size());
+        return results;
+    }
+
+    /**
+     * @return the amount of the balance, negative if it is a {@code DEBIT}, as held by the {@link BalanceLedger}.
+     */
+    private static BigDecimal signedAmount(FRBalance balance) {
+        return balance.getCreditDebitIndicator() == DEBIT ? balance.getAmount().negate() : balance.getAmount();
+    }
 }
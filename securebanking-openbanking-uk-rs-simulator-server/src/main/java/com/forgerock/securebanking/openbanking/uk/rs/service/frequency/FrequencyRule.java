@@ -0,0 +1,32 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.frequency;
+
+import org.joda.time.DateTime;
+
+/**
+ * A frequency of payments, compiled once from its string representation (e.g. {@code IntrvlMnthDay:01:-01}) by
+ * {@link FrequencyService#getRule(String)}. Rules are immutable and thread safe.
+ */
+@FunctionalInterface
+public interface FrequencyRule {
+
+    /**
+     * @param previous the date of the previous payment.
+     * @return the date of the payment following the previous one.
+     */
+    DateTime next(DateTime previous);
+}
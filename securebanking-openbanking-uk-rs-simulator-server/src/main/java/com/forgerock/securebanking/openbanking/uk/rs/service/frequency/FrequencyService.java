@@ -18,11 +18,61 @@ package com.forgerock.securebanking.openbanking.uk.rs.service.frequency;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeConstants;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 
+/**
+ * Computes the dates of recurring payments from their frequency. Frequency strings are parsed once into a
+ * {@link FrequencyRule}, which is cached, so that projecting a schedule doesn't match regular expressions or parse
+ * numbers for every payment.
+ */
 public class FrequencyService {
 
+    /** Bounds the cache, should clients keep sending distinct (albeit valid) frequency strings. */
+    private static final int MAX_CACHED_RULES = 1024;
+
+    private static final ConcurrentMap<String, FrequencyRule> RULES = new ConcurrentHashMap<>();
+
     public static DateTime getNextDateTime(DateTime previous, String frequency) {
+        return getRule(frequency).next(previous);
+    }
+
+    /**
+     * @param previous the date of the previous payment.
+     * @param rule the frequency of the payments.
+     * @param n the number of dates to compute.
+     * @return the dates of the n payments following the previous one.
+     */
+    public static List<DateTime> nextN(DateTime previous, FrequencyRule rule, int n) {
+        List<DateTime> dateTimes = new ArrayList<>(n);
+        DateTime dateTime = previous;
+        for (int i = 0; i < n; i++) {
+            dateTime = rule.next(dateTime);
+            dateTimes.add(dateTime);
+        }
+        return dateTimes;
+    }
+
+    /**
+     * @param frequency the frequency, e.g. {@code IntrvlMnthDay:01:-01}.
+     * @return the compiled frequency, from the cache if it has been compiled before.
+     * @throws IllegalArgumentException if the frequency is invalid.
+     */
+    public static FrequencyRule getRule(String frequency) {
+        FrequencyRule rule = RULES.get(frequency);
+        if (rule == null) {
+            rule = compile(frequency);
+            if (RULES.size() < MAX_CACHED_RULES) {
+                RULES.putIfAbsent(frequency, rule);
+            }
+        }
+        return rule;
+    }
+
+    static FrequencyRule compile(String frequency) {
 
         String[] parts = frequency.split(":", 2);
 
@@ -32,23 +82,35 @@ public class FrequencyService {
             throw new IllegalArgumentException("Frequency '" + frequency + "' doesn't match regex '" + frequencyType.getPattern().pattern() + "'");
         }
         switch (frequencyType) {
-            case INTERVALWEEKDAY:
-                return nextIntervalWeekDay(previous, matcher);
+            case INTERVALWEEKDAY: {
+                int weekIntv = Integer.parseInt(matcher.group(1));
+                int dayOfWeekIntv = Integer.parseInt(matcher.group(2));
+                return previous -> nextIntervalWeekDay(previous, weekIntv, dayOfWeekIntv);
+            }
             case WEEKINMONTHDAY: {
-                return nextIntervalWeekDay(previous
+                int weekIntv = Integer.parseInt(matcher.group(1));
+                int dayOfWeekIntv = Integer.parseInt(matcher.group(2));
+                return previous -> nextIntervalWeekDay(previous
                         .plusMonths(1)
-                        .withDayOfMonth(1), matcher);
+                        .withDayOfMonth(1), weekIntv, dayOfWeekIntv);
+            }
+            case INTERVALMONTHDAY: {
+                int monthIntv = Integer.parseInt(matcher.group(1));
+                int daysIntv = Integer.parseInt(matcher.group(2));
+                return previous -> nextIntervalMonthDay(previous, monthIntv, daysIntv);
+            }
+            case QUARTERDAY: {
+                QuarterType quarterType = QuarterType.fromQuarterTypeString(matcher.group(1));
+                return quarterType::nextQuarterDay;
             }
-            case INTERVALMONTHDAY:
-                return nextIntervalMonthDay(previous, matcher);
-            case QUARTERDAY:
-                return nextQuarterDay(previous, matcher);
             case EVERYDAY:
-                return nextDay(previous);
+                return FrequencyService::nextDay;
             case EVERYWORKINGDAY:
-                return nextWorkingDay(previous);
-            case INTERVALDAY:
-                return nextIntervalDay(previous, matcher);
+                return FrequencyService::nextWorkingDay;
+            case INTERVALDAY: {
+                int dayIntv = Integer.parseInt(matcher.group(1));
+                return previous -> previous.plusDays(dayIntv);
+            }
             default:
                 throw new IllegalStateException("Frequency type should be defined at this state");
         }
@@ -66,25 +128,7 @@ public class FrequencyService {
         return previous.plusDays(1);
     }
 
-
-    private static DateTime nextQuarterDay(DateTime previous, Matcher matcher) {
-        String quarterStr = matcher.group(1);
-        QuarterType quarterType = QuarterType.fromQuarterTypeString(quarterStr);
-
-        DateTime candidateDate = previous;
-        do {
-            candidateDate = candidateDate.plusDays(1);
-            //termination
-            if (candidateDate.isAfter(previous.plusYears(1))) {
-                throw new IllegalStateException("We should always find a quarter matching for date '" + previous + "'");
-            }
-        } while(!quarterType.matchOneQuarter(candidateDate));
-        return candidateDate;
-    }
-
-    private static DateTime nextIntervalMonthDay(DateTime previous, Matcher matcher) {
-        int monthIntv = Integer.valueOf(matcher.group(1));
-        int daysIntv = Integer.valueOf(matcher.group(2));
+    private static DateTime nextIntervalMonthDay(DateTime previous, int monthIntv, int daysIntv) {
         if (daysIntv < 0) {
             return previous
                     .plusMonths(monthIntv + 1)
@@ -97,16 +141,9 @@ public class FrequencyService {
         }
     }
 
-    private static DateTime nextIntervalWeekDay(DateTime previous, Matcher matcher) {
-        int weekIntv = Integer.valueOf(matcher.group(1));
-        int dayOfWeekIntv = Integer.valueOf(matcher.group(2));
+    private static DateTime nextIntervalWeekDay(DateTime previous, int weekIntv, int dayOfWeekIntv) {
         return previous
                 .plusWeeks(weekIntv)
                 .withDayOfWeek(dayOfWeekIntv);
     }
-
-    private static DateTime nextIntervalDay(DateTime previous, Matcher matcher) {
-        int dayIntv = Integer.valueOf(matcher.group(1));
-        return previous.plusDays(dayIntv);
-    }
 }
@@ -41,12 +41,21 @@ public enum QuarterType {
     private DateTime quarter2;
     private DateTime quarter3;
     private DateTime quarter4;
+    private final int[] months;
+    private final int[] days;
 
     QuarterType(DateTime quarter1, DateTime quarter2, DateTime quarter3, DateTime quarter4) {
         this.quarter1 = quarter1;
         this.quarter2 = quarter2;
         this.quarter3 = quarter3;
         this.quarter4 = quarter4;
+        DateTime[] quarters = {quarter1, quarter2, quarter3, quarter4};
+        this.months = new int[quarters.length];
+        this.days = new int[quarters.length];
+        for (int i = 0; i < quarters.length; i++) {
+            months[i] = quarters[i].getMonthOfYear();
+            days[i] = quarters[i].getDayOfMonth();
+        }
     }
 
     public DateTime getQuarter1() {
@@ -81,6 +90,22 @@ public enum QuarterType {
                 || matchDayOfMonthAndMonth(date, quarter4);
     }
 
+    /**
+     * @param previous a date.
+     * @return the first quarter day after the provided date, at the same time of day.
+     */
+    public DateTime nextQuarterDay(DateTime previous) {
+        int month = previous.getMonthOfYear();
+        int day = previous.getDayOfMonth();
+        // Quarters are in calendar order
+        for (int i = 0; i < months.length; i++) {
+            if (months[i] > month || (months[i] == month && days[i] > day)) {
+                return previous.withDate(previous.getYear(), months[i], days[i]);
+            }
+        }
+        return previous.withDate(previous.getYear() + 1, months[0], days[0]);
+    }
+
     private boolean matchDayOfMonthAndMonth(DateTime date, DateTime quarter) {
         return date.dayOfMonth().get() == quarter.dayOfMonth().get()
                 && date.monthOfYear().get() == quarter.monthOfYear().get();
@@ -0,0 +1,332 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.payment;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRWriteDomesticDataInitiation;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRWriteInternationalDataInitiation;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticScheduledPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticStandingOrderPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRFilePaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRInternationalPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRInternationalScheduledPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRInternationalStandingOrderPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.PaymentSubmission;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.ACCEPTEDSETTLEMENTINPROCESS;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.INITIATIONCOMPLETED;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.INITIATIONPENDING;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.PENDING;
+import static org.springframework.data.mongodb.core.BulkOperations.BulkMode.UNORDERED;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Executes payment submissions in the background, so that they move on from the status they were created with:
+ * <ul>
+ * <li/>Domestic and international payments are posted by {@link PaymentPostingService}, going through
+ * {@code AcceptedSettlementInProcess} to {@code AcceptedSettlementCompleted} (or {@code Rejected} or
+ * {@code AcceptedWithoutPosting}).
+ * <li/>Scheduled payments, standing orders and file payments become {@code InitiationCompleted}. Their payments are
+ * made on their execution dates, rather than on submission.
+ * </ul>
+ * Each worker thread repeatedly claims a batch of pending submissions of each type and executes it. A batch is
+ * claimed by tagging its submissions with a random {@value #CLAIM_FIELD}, only if they are still pending and untagged,
+ * so that concurrent workers (or instances) never execute the same submission twice. Payments that fail to be posted
+ * haven't adjusted any balance (see {@link PaymentPostingService#post}), so their claim is released and they are
+ * executed again by a later batch. The time of the claim is also recorded in {@value #CLAIMED_FIELD}, so that a claim
+ * left behind (e.g. by an instance that died) is taken over once it is older than the claim timeout, which must be
+ * well above the time taken to execute a batch. The statuses of a batch are only written while it is still claimed by
+ * the worker that executed it.
+ * <p>
+ * The number of executed submissions is counted in the {@value #EXECUTED_METRIC} counter, tagged with the type and
+ * resulting status, and the time taken by each batch in the {@value #BATCH_METRIC} timer.
+ */
+@Service
+@ConditionalOnProperty(name = "rs.payments.execution.enabled", havingValue = "true")
+@Slf4j
+public class PaymentExecutionEngine {
+
+    static final String EXECUTED_METRIC = "rs.payments.executed";
+    static final String BATCH_METRIC = "rs.payments.execution.batch";
+    static final String CLAIM_FIELD = "executionClaim";
+    static final String CLAIMED_FIELD = "executionClaimed";
+
+    private static final String ID_FIELD = "_id";
+    private static final String STATUS_FIELD = "status";
+    private static final String UPDATED_FIELD = "updated";
+
+    private static final List<SubmissionType<?>> SUBMISSION_TYPES = Arrays.asList(
+            SubmissionType.posted(FRDomesticPaymentSubmission.class, submission -> {
+                FRWriteDomesticDataInitiation initiation = submission.getPayment().getData().getInitiation();
+                return new PaymentInstruction(submission.getId(), null, initiation.getDebtorAccount(),
+                        initiation.getCreditorAccount(), initiation.getInstructedAmount(),
+                        initiation.getEndToEndIdentification(), "DomesticCreditTransfer");
+            }),
+            SubmissionType.posted(FRInternationalPaymentSubmission.class, submission -> {
+                FRWriteInternationalDataInitiation initiation = submission.getPayment().getData().getInitiation();
+                return new PaymentInstruction(submission.getId(), null, initiation.getDebtorAccount(),
+                        initiation.getCreditorAccount(), initiation.getInstructedAmount(),
+                        initiation.getEndToEndIdentification(), "CrossBorderCreditTransfer");
+            }),
+            SubmissionType.initiated(FRDomesticScheduledPaymentSubmission.class),
+            SubmissionType.initiated(FRDomesticStandingOrderPaymentSubmission.class),
+            SubmissionType.initiated(FRInternationalScheduledPaymentSubmission.class),
+            SubmissionType.initiated(FRInternationalStandingOrderPaymentSubmission.class),
+            SubmissionType.initiated(FRFilePaymentSubmission.class)
+    );
+
+    private final MongoTemplate mongoTemplate;
+    private final PaymentPostingService paymentPostingService;
+    private final MeterRegistry meterRegistry;
+    private final int parallelism;
+    private final int batchSize;
+    private final long idleWaitNanos;
+    private final long claimTimeoutMillis;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public PaymentExecutionEngine(MongoTemplate mongoTemplate,
+                                  PaymentPostingService paymentPostingService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${rs.payments.execution.parallelism:2}") int parallelism,
+                                  @Value("${rs.payments.execution.batch-size:500}") int batchSize,
+                                  @Value("${rs.payments.execution.idle-wait-ms:200}") long idleWaitMillis,
+                                  @Value("${rs.payments.execution.claim-timeout:10m}") Duration claimTimeout) {
+        this.mongoTemplate = mongoTemplate;
+        this.paymentPostingService = paymentPostingService;
+        this.meterRegistry = meterRegistry;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.idleWaitNanos = TimeUnit.MILLISECONDS.toNanos(idleWaitMillis);
+        this.claimTimeoutMillis = claimTimeout.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        log.info("Executing payment submissions with {} workers, in batches of {}", parallelism, batchSize);
+        running = true;
+        for (int i = 0; i < parallelism; i++) {
+            Thread worker = new Thread(this::executeLoop, "payment-execution-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Stops the worker threads once they have finished their current batch.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void executeLoop() {
+        while (running) {
+            if (executePendingSubmissions() == 0) {
+                LockSupport.parkNanos(idleWaitNanos);
+            }
+        }
+    }
+
+    /**
+     * Executes one batch of pending submissions of each type.
+     *
+     * @return the number of submissions executed.
+     */
+    int executePendingSubmissions() {
+        int executed = 0;
+        for (SubmissionType<?> type : SUBMISSION_TYPES) {
+            try {
+                executed += executeBatch(type);
+            } catch (RuntimeException e) {
+                log.error("Failed to execute a batch of {}", type.getName(), e);
+            }
+        }
+        return executed;
+    }
+
+    private <T extends PaymentSubmission> int executeBatch(SubmissionType<T> type) {
+        List<String> ids = mongoTemplate.find(pendingQuery(type).limit(batchSize), type.documentClass).stream()
+                .map(PaymentSubmission::getId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String claim = UUID.randomUUID().toString();
+        DateTime now = DateTime.now();
+        Update claimUpdate = new Update().set(CLAIM_FIELD, claim).set(CLAIMED_FIELD, now);
+        if (type.inProcessStatus != null) {
+            claimUpdate.set(STATUS_FIELD, type.inProcessStatus).set(UPDATED_FIELD, now);
+        }
+        long claimed = mongoTemplate.updateMulti(pendingQuery(type).addCriteria(where(ID_FIELD).in(ids)),
+                claimUpdate, type.documentClass).getModifiedCount();
+        if (claimed == 0) {
+            // Claimed by another worker in the meantime
+            return 0;
+        }
+        Query claimedQuery = query(where(ID_FIELD).in(ids).and(CLAIM_FIELD).is(claim));
+
+        if (type.instruction == null) {
+            long completed = mongoTemplate.updateMulti(claimedQuery, completion(type.completedStatus),
+                    type.documentClass).getModifiedCount();
+            count(type, type.completedStatus, completed);
+        } else {
+            List<PaymentInstruction> instructions = mongoTemplate.find(claimedQuery, type.documentClass).stream()
+                    .map(type.instruction)
+                    .collect(Collectors.toList());
+            Map<String, FRSubmissionStatus> statuses;
+            try {
+                statuses = paymentPostingService.post(instructions);
+            } catch (RuntimeException e) {
+                mongoTemplate.updateMulti(claimedQuery, release(), type.documentClass);
+                throw e;
+            }
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(UNORDERED, type.documentClass);
+            statuses.forEach((id, status) ->
+                    bulkOperations.updateOne(query(where(ID_FIELD).is(id).and(CLAIM_FIELD).is(claim)),
+                            completion(status)));
+            List<String> unposted = instructions.stream()
+                    .map(PaymentInstruction::getSubmissionId)
+                    .filter(id -> !statuses.containsKey(id))
+                    .collect(Collectors.toList());
+            if (!unposted.isEmpty()) {
+                log.warn("Releasing {} submissions of {} that could not be posted", unposted.size(), type.getName());
+                bulkOperations.updateMulti(query(where(ID_FIELD).in(unposted).and(CLAIM_FIELD).is(claim)), release());
+            }
+            bulkOperations.execute();
+            statuses.values().stream()
+                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                    .forEach((status, count) -> count(type, status, count));
+        }
+        sample.stop(meterRegistry.timer(BATCH_METRIC, "type", type.getName()));
+        log.debug("Executed {} submissions of {}", claimed, type.getName());
+        return (int) claimed;
+    }
+
+    /**
+     * @return the query of the submissions that are pending and unclaimed, or whose claim is older than the claim
+     * timeout (in which case they may have been set to their in process status already).
+     */
+    private Query pendingQuery(SubmissionType<?> type) {
+        Set<FRSubmissionStatus> claimedStatuses = EnumSet.copyOf(type.pendingStatuses);
+        if (type.inProcessStatus != null) {
+            claimedStatuses.add(type.inProcessStatus);
+        }
+        Query query = query(new Criteria().orOperator(
+                where(STATUS_FIELD).in(type.pendingStatuses).and(CLAIM_FIELD).exists(false),
+                where(STATUS_FIELD).in(claimedStatuses).and(CLAIMED_FIELD)
+                        .lt(DateTime.now().minus(claimTimeoutMillis))));
+        query.fields().include(ID_FIELD);
+        return query;
+    }
+
+    private static Update completion(FRSubmissionStatus status) {
+        return new Update().set(STATUS_FIELD, status).set(UPDATED_FIELD, DateTime.now())
+                .unset(CLAIM_FIELD).unset(CLAIMED_FIELD);
+    }
+
+    /**
+     * @return the update putting a posted submission back to pending, so that it is executed again.
+     */
+    private static Update release() {
+        return new Update().set(STATUS_FIELD, PENDING).set(UPDATED_FIELD, DateTime.now())
+                .unset(CLAIM_FIELD).unset(CLAIMED_FIELD);
+    }
+
+    private void count(SubmissionType<?> type, FRSubmissionStatus status, long count) {
+        meterRegistry.counter(EXECUTED_METRIC, "type", type.getName(), "status", status.getValue())
+                .increment(count);
+    }
+
+    /**
+     * How submissions of one type (i.e. stored in one collection) are executed.
+     */
+    private static final class SubmissionType<T extends PaymentSubmission> {
+
+        private final Class<T> documentClass;
+        private final Set<FRSubmissionStatus> pendingStatuses;
+        private final FRSubmissionStatus inProcessStatus;
+        private final FRSubmissionStatus completedStatus;
+        private final Function<T, PaymentInstruction> instruction;
+
+        private SubmissionType(Class<T> documentClass, Set<FRSubmissionStatus> pendingStatuses,
+                               FRSubmissionStatus inProcessStatus, FRSubmissionStatus completedStatus,
+                               Function<T, PaymentInstruction> instruction) {
+            this.documentClass = documentClass;
+            this.pendingStatuses = pendingStatuses;
+            this.inProcessStatus = inProcessStatus;
+            this.completedStatus = completedStatus;
+            this.instruction = instruction;
+        }
+
+        /**
+         * Submissions that are posted as soon as they are executed.
+         */
+        static <T extends PaymentSubmission> SubmissionType<T> posted(Class<T> documentClass,
+                                                                      Function<T, PaymentInstruction> instruction) {
+            return new SubmissionType<>(documentClass, Collections.singleton(PENDING), ACCEPTEDSETTLEMENTINPROCESS,
+                    null, instruction);
+        }
+
+        /**
+         * Submissions whose payments are made later, so executing them only completes their initiation.
+         */
+        static <T extends PaymentSubmission> SubmissionType<T> initiated(Class<T> documentClass) {
+            return new SubmissionType<>(documentClass, EnumSet.of(PENDING, INITIATIONPENDING), null,
+                    INITIATIONCOMPLETED, null);
+        }
+
+        String getName() {
+            return documentClass.getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.payment;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import lombok.Value;
+
+/**
+ * The parts of a payment submission that are needed to post it to the accounts of the debtor and creditor.
+ */
+@Value
+public class PaymentInstruction {
+
+    String submissionId;
+    /**
+     * The ID of the debtor account, if known (e.g. for scheduled payments), otherwise the account is found from
+     * {@link #debtorAccount}.
+     */
+    String debtorAccountId;
+    FRAccountIdentifier debtorAccount;
+    FRAccountIdentifier creditorAccount;
+    FRAmount amount;
+    String reference;
+    /**
+     * The sub code of the bank transaction code of the resulting transactions, e.g. {@code DomesticCreditTransfer}.
+     */
+    String transactionSubCode;
+}
@@ -0,0 +1,511 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.payment;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRTransactionData;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRPendingCredit;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
+import com.forgerock.securebanking.openbanking.uk.rs.service.balance.BalanceStoreService;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType.INTERIMAVAILABLE;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType.INTERIMBOOKED;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator.CREDIT;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator.DEBIT;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.ACCEPTEDSETTLEMENTCOMPLETED;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.ACCEPTEDWITHOUTPOSTING;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.REJECTED;
+import static org.springframework.data.mongodb.core.BulkOperations.BulkMode.UNORDERED;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Posts a batch of payments to the accounts held by the simulator: the debtor's available balance is debited, the
+ * creditor's is credited if the creditor account is also held here, and a transaction is written for each of them.
+ * <p>
+ * The accounts and balances of the whole batch are each read with a single query, the transactions are written with
+ * a single bulk insert and each balance is adjusted once per batch, with the net amount of its payments.
+ * <p>
+ * The balances read up front only tell which payments look affordable. Each debtor is then debited with a conditional
+ * update that only succeeds if its balance still covers the payments, so that concurrent batches (from other workers
+ * or instances) can't overdraw it between them. If the balance has changed in the meantime, the payments of the
+ * debtor are debited one at a time instead, and those that aren't covered anymore are rejected.
+ * <p>
+ * The transactions are written before any balance is adjusted, so that a batch that fails to be written leaves no
+ * trace and can be posted again. The transactions of the payments that end up rejected are deleted again, and the
+ * running balance of the others is corrected if the balances they were adjusted from differ from those read up front.
+ * <p>
+ * A payment is only settled once its creditor has been credited. A credit that still fails after
+ * {@code rs.payments.posting.credit-attempts} attempts is undone by refunding the debtors of its payments, which are
+ * then left out of the result, to be posted again. A refund that fails in turn is stored as a {@link FRPendingCredit}
+ * for reconciliation, and made by the next call to {@link #post}.
+ */
+@Service
+@Slf4j
+public class PaymentPostingService {
+
+    private static final int AMOUNT_SCALE = 2;
+
+    private final MongoTemplate mongoTemplate;
+    private final BalanceStoreService balanceStoreService;
+    private final TransactionCountCache transactionCountCache;
+    private final int creditAttempts;
+
+    public PaymentPostingService(MongoTemplate mongoTemplate,
+                                 BalanceStoreService balanceStoreService,
+                                 TransactionCountCache transactionCountCache,
+                                 @Value("${rs.payments.posting.credit-attempts:3}") int creditAttempts) {
+        this.mongoTemplate = mongoTemplate;
+        this.balanceStoreService = balanceStoreService;
+        this.transactionCountCache = transactionCountCache;
+        this.creditAttempts = creditAttempts;
+    }
+
+    /**
+     * Posts the payments, in order. A payment is:
+     * <ul>
+     * <li/>{@code AcceptedSettlementCompleted} once posted.
+     * <li/>{@code Rejected} if the debtor doesn't have the funds (after the previous payments of the batch), or the
+     * amount is invalid.
+     * <li/>{@code AcceptedWithoutPosting} if the debtor account isn't held here, or the payment isn't in the currency
+     * of the account, since currency conversions aren't modelled.
+     * </ul>
+     *
+     * If this throws, no balance has been adjusted and the payments can be posted again. A payment that could not be
+     * debited or credited, e.g. as the database failed, is left out of the result, again without having adjusted any
+     * balance once its refund (if any) has been made.
+     *
+     * @param instructions the payments to post.
+     * @return the resulting status of each payment that has been settled, keyed by submission ID.
+     */
+    public Map<String, FRSubmissionStatus> post(List<PaymentInstruction> instructions) {
+        reconcilePendingCredits();
+        Map<String, String> accountIds = findAccountIds(instructions);
+        Set<String> balanceAccountIds = new HashSet<>(accountIds.values());
+        instructions.stream()
+                .map(PaymentInstruction::getDebtorAccountId)
+                .filter(Objects::nonNull)
+                .forEach(balanceAccountIds::add);
+        Map<String, FRBalance> balances = balanceStoreService.getBalances(balanceAccountIds, INTERIMAVAILABLE);
+
+        Map<String, FRSubmissionStatus> statuses = new LinkedHashMap<>();
+        Map<String, BigDecimal> availableAmounts = new HashMap<>();
+        Map<String, List<Posting>> postingsByDebtor = new LinkedHashMap<>();
+        List<FRTransaction> transactions = new ArrayList<>();
+        DateTime now = DateTime.now();
+        for (PaymentInstruction instruction : instructions) {
+            FRAmount amount = instruction.getAmount();
+            String debtorId = instruction.getDebtorAccountId() != null
+                    ? instruction.getDebtorAccountId() : accountId(instruction.getDebtorAccount(), accountIds);
+            FRBalance debtorBalance = debtorId == null ? null : balances.get(debtorId);
+            if (debtorBalance == null || amount == null || !debtorBalance.getCurrency().equals(amount.getCurrency())) {
+                statuses.put(instruction.getSubmissionId(), ACCEPTEDWITHOUTPOSTING);
+                continue;
+            }
+            BigDecimal value = toBigDecimal(amount.getAmount());
+            BigDecimal debtorAvailable = availableAmounts.computeIfAbsent(debtorId, id -> signedAmount(debtorBalance));
+            if (value == null || value.signum() <= 0 || debtorAvailable.compareTo(value) < 0) {
+                statuses.put(instruction.getSubmissionId(), REJECTED);
+                continue;
+            }
+            debtorAvailable = debtorAvailable.subtract(value);
+            availableAmounts.put(debtorId, debtorAvailable);
+            Posting posting = new Posting(instruction.getSubmissionId(), debtorId, value);
+            posting.transactions.add(transaction(debtorId, instruction, DEBIT, debtorAvailable, now));
+
+            String creditorId = accountId(instruction.getCreditorAccount(), accountIds);
+            FRBalance creditorBalance = creditorId == null ? null : balances.get(creditorId);
+            if (creditorBalance != null && creditorBalance.getCurrency().equals(amount.getCurrency())) {
+                BigDecimal creditorAvailable = availableAmounts
+                        .computeIfAbsent(creditorId, id -> signedAmount(creditorBalance))
+                        .add(value);
+                availableAmounts.put(creditorId, creditorAvailable);
+                posting.creditorId = creditorId;
+                posting.transactions.add(transaction(creditorId, instruction, CREDIT, creditorAvailable, now));
+            }
+            postingsByDebtor.computeIfAbsent(debtorId, id -> new ArrayList<>()).add(posting);
+            transactions.addAll(posting.transactions);
+        }
+        insertTransactions(transactions);
+
+        Map<String, List<Posting>> postingsByCreditor = new LinkedHashMap<>();
+        List<FRTransaction> discarded = new ArrayList<>();
+        List<FRTransaction> rebalanced = new ArrayList<>();
+        postingsByDebtor.forEach((debtorId, postings) -> {
+            for (Posting posting : debit(debtorId, postings, rebalanced)) {
+                if (posting.status == null || posting.status == REJECTED) {
+                    discarded.addAll(posting.transactions);
+                    if (posting.status == REJECTED) {
+                        statuses.put(posting.submissionId, REJECTED);
+                    }
+                } else if (posting.creditorId != null) {
+                    postingsByCreditor.computeIfAbsent(posting.creditorId, id -> new ArrayList<>()).add(posting);
+                } else {
+                    statuses.put(posting.submissionId, posting.status);
+                }
+            }
+        });
+        postingsByCreditor.forEach((creditorId, postings) -> {
+            if (credit(creditorId, postings, rebalanced)) {
+                postings.forEach(posting -> statuses.put(posting.submissionId, posting.status));
+            } else {
+                refund(postings);
+                postings.forEach(posting -> discarded.addAll(posting.transactions));
+            }
+        });
+        if (!rebalanced.isEmpty()) {
+            updateRunningBalances(rebalanced);
+        }
+        if (!discarded.isEmpty()) {
+            deleteTransactions(discarded);
+            Set<FRTransaction> discardedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            discardedSet.addAll(discarded);
+            transactions.removeIf(discardedSet::contains);
+        }
+        if (!transactions.isEmpty()) {
+            transactionCountCache.onTransactionsCreated(transactions);
+        }
+        log.debug("Posted {} payments, debiting {} accounts and crediting {}", instructions.size(),
+                postingsByDebtor.size(), postingsByCreditor.size());
+        return statuses;
+    }
+
+    /**
+     * Debits the payments of a debtor, as a whole if its balance still covers them, otherwise one at a time. The
+     * running balance of the debit transactions is set from the balance written.
+     *
+     * @return the postings, with their status set if they have been debited or rejected.
+     */
+    private List<Posting> debit(String debtorId, List<Posting> postings, List<FRTransaction> rebalanced) {
+        try {
+            BigDecimal total = postings.stream().map(posting -> posting.value).reduce(BigDecimal.ZERO, BigDecimal::add);
+            Optional<FRBalance> debited = balanceStoreService.debitIfAvailable(debtorId, INTERIMAVAILABLE, total);
+            if (debited.isPresent()) {
+                BigDecimal balance = signedAmount(debited.get()).add(total);
+                for (Posting posting : postings) {
+                    posting.status = ACCEPTEDSETTLEMENTCOMPLETED;
+                    balance = balance.subtract(posting.value);
+                    setRunningBalance(posting.debitTransaction(), balance, rebalanced);
+                }
+                return postings;
+            }
+            log.debug("Balance of account {} changed since it was read, debiting its payments one at a time", debtorId);
+            for (Posting posting : postings) {
+                debited = balanceStoreService.debitIfAvailable(debtorId, INTERIMAVAILABLE, posting.value);
+                posting.status = debited.isPresent() ? ACCEPTEDSETTLEMENTCOMPLETED : REJECTED;
+                if (debited.isPresent()) {
+                    setRunningBalance(posting.debitTransaction(), signedAmount(debited.get()), rebalanced);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to debit account {}, its remaining payments are not posted", debtorId, e);
+        }
+        return postings;
+    }
+
+    /**
+     * Credits the payments of a creditor, that have all been debited, as a whole. The running balance of the credit
+     * transactions is set from the balance written.
+     *
+     * @return true if the creditor has been credited.
+     */
+    private boolean credit(String creditorId, List<Posting> postings, List<FRTransaction> rebalanced) {
+        BigDecimal total = postings.stream().map(posting -> posting.value).reduce(BigDecimal.ZERO, BigDecimal::add);
+        FRBalance credited = creditWithRetries(creditorId, total);
+        if (credited == null) {
+            return false;
+        }
+        BigDecimal balance = signedAmount(credited).subtract(total);
+        for (Posting posting : postings) {
+            balance = balance.add(posting.value);
+            setRunningBalance(posting.creditTransaction(), balance, rebalanced);
+        }
+        return true;
+    }
+
+    /**
+     * Refunds the debtors of payments whose creditor could not be credited. A refund that can't be made is stored as
+     * a pending credit, to be made by a later posting.
+     */
+    private void refund(List<Posting> postings) {
+        Map<String, List<Posting>> postingsByDebtor = postings.stream()
+                .collect(Collectors.groupingBy(posting -> posting.debtorId, LinkedHashMap::new, Collectors.toList()));
+        postingsByDebtor.forEach((debtorId, debtorPostings) -> {
+            BigDecimal total = debtorPostings.stream()
+                    .map(posting -> posting.value)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            if (creditWithRetries(debtorId, total) == null) {
+                List<String> submissionIds = debtorPostings.stream()
+                        .map(posting -> posting.submissionId)
+                        .collect(Collectors.toList());
+                log.error("Failed to refund {} to account {} for the payments {}, recording it for reconciliation",
+                        total, debtorId, submissionIds);
+                try {
+                    mongoTemplate.insert(FRPendingCredit.builder()
+                            .id(UUID.randomUUID().toString())
+                            .accountId(debtorId)
+                            .balanceType(INTERIMAVAILABLE)
+                            .amount(total)
+                            .submissionIds(submissionIds)
+                            .created(DateTime.now())
+                            .build());
+                } catch (RuntimeException e) {
+                    log.error("Failed to record the refund of {} to account {} for the payments {}", total, debtorId,
+                            submissionIds, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the credited balance, or null if it could not be credited in {@link #creditAttempts} attempts.
+     */
+    private FRBalance creditWithRetries(String accountId, BigDecimal amount) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return balanceStoreService.credit(accountId, INTERIMAVAILABLE, amount);
+            } catch (RuntimeException e) {
+                if (attempt >= creditAttempts) {
+                    log.error("Failed to credit {} to account {} after {} attempts", amount, accountId, attempt, e);
+                    return null;
+                }
+                log.warn("Failed to credit {} to account {}, retrying", amount, accountId, e);
+            }
+        }
+    }
+
+    /**
+     * Makes the credits that could not be made by previous postings. Each one is removed before it is made, so that
+     * concurrent postings never make it twice, and stored again if it fails.
+     */
+    private void reconcilePendingCredits() {
+        FRPendingCredit pendingCredit;
+        while ((pendingCredit = mongoTemplate.findAndRemove(new Query(), FRPendingCredit.class)) != null) {
+            try {
+                balanceStoreService.credit(pendingCredit.getAccountId(), pendingCredit.getBalanceType(),
+                        pendingCredit.getAmount());
+                log.info("Reconciled the pending credit of {} to account {} for the payments {}",
+                        pendingCredit.getAmount(), pendingCredit.getAccountId(), pendingCredit.getSubmissionIds());
+            } catch (RuntimeException e) {
+                log.error("Failed to reconcile the pending credit of {} to account {}", pendingCredit.getAmount(),
+                        pendingCredit.getAccountId(), e);
+                try {
+                    mongoTemplate.insert(pendingCredit);
+                } catch (RuntimeException insertFailure) {
+                    log.error("Failed to record the pending credit of {} to account {} for the payments {} again",
+                            pendingCredit.getAmount(), pendingCredit.getAccountId(), pendingCredit.getSubmissionIds(),
+                            insertFailure);
+                }
+                return;
+            }
+        }
+    }
+
+    private static void setRunningBalance(FRTransaction transaction, BigDecimal balance,
+                                          List<FRTransaction> rebalanced) {
+        FRTransactionData.FRTransactionCashBalance runningBalance = transaction.getTransaction().getBalance();
+        FRAmount amount = cashAmount(balance.abs(), runningBalance.getAmount().getCurrency());
+        FRCreditDebitIndicator creditDebitIndicator = balance.signum() < 0 ? DEBIT : CREDIT;
+        if (!amount.equals(runningBalance.getAmount())
+                || creditDebitIndicator != runningBalance.getCreditDebitIndicator()) {
+            runningBalance.setAmount(amount);
+            runningBalance.setCreditDebitIndicator(creditDebitIndicator);
+            rebalanced.add(transaction);
+        }
+    }
+
+    /**
+     * Corrects the running balance of the transactions that were written before their balance was adjusted.
+     */
+    private void updateRunningBalances(List<FRTransaction> transactions) {
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(UNORDERED, FRTransaction.class);
+        for (FRTransaction transaction : transactions) {
+            bulkOperations.updateOne(query(where("_id").is(transaction.getId())),
+                    new Update().set("transaction.balance", transaction.getTransaction().getBalance()));
+        }
+        try {
+            bulkOperations.execute();
+        } catch (RuntimeException e) {
+            log.error("Failed to correct the running balance of {} transactions", transactions.size(), e);
+        }
+    }
+
+    private void insertTransactions(List<FRTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.insert(transactions, FRTransaction.class);
+        } catch (RuntimeException e) {
+            // Some of the transactions may have been inserted before the failure
+            deleteTransactions(transactions);
+            throw e;
+        }
+    }
+
+    private void deleteTransactions(List<FRTransaction> transactions) {
+        List<String> ids = transactions.stream().map(FRTransaction::getId).collect(Collectors.toList());
+        try {
+            mongoTemplate.remove(query(where("_id").in(ids)), FRTransaction.class);
+        } catch (RuntimeException e) {
+            log.error("Failed to delete the transactions {} of payments that haven't been posted", ids, e);
+        }
+    }
+
+    /**
+     * @return the ID of each account held here, keyed by the identification of the debtor and creditor accounts.
+     */
+    private Map<String, String> findAccountIds(List<PaymentInstruction> instructions) {
+        Set<String> identifications = new HashSet<>();
+        for (PaymentInstruction instruction : instructions) {
+            if (instruction.getDebtorAccountId() == null) {
+                addIdentification(instruction.getDebtorAccount(), identifications);
+            }
+            addIdentification(instruction.getCreditorAccount(), identifications);
+        }
+        Map<String, String> accountIds = new HashMap<>();
+        if (identifications.isEmpty()) {
+            return accountIds;
+        }
+        List<FRAccount> accounts = mongoTemplate.find(
+                query(where("account.accounts.identification").in(identifications)), FRAccount.class);
+        for (FRAccount account : accounts) {
+            for (FRAccountIdentifier subAccount : account.getAccount().getAccounts()) {
+                if (identifications.contains(subAccount.getIdentification())) {
+                    accountIds.put(subAccount.getIdentification(), account.getId());
+                }
+            }
+        }
+        return accountIds;
+    }
+
+    private static void addIdentification(FRAccountIdentifier account, Set<String> identifications) {
+        if (account != null && account.getIdentification() != null) {
+            identifications.add(account.getIdentification());
+        }
+    }
+
+    private static String accountId(FRAccountIdentifier account, Map<String, String> accountIds) {
+        return account == null ? null : accountIds.get(account.getIdentification());
+    }
+
+    private static BigDecimal toBigDecimal(String amount) {
+        try {
+            return amount == null ? null : new BigDecimal(amount);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static BigDecimal signedAmount(FRBalance balance) {
+        return balance.getCreditDebitIndicator() == DEBIT ? balance.getAmount().negate() : balance.getAmount();
+    }
+
+    private static FRTransaction transaction(String accountId, PaymentInstruction instruction,
+                                             FRCreditDebitIndicator creditDebitIndicator, BigDecimal balance,
+                                             DateTime bookingDateTime) {
+        FRAmount amount = instruction.getAmount();
+        return FRTransaction.builder()
+                .id(UUID.randomUUID().toString())
+                .accountId(accountId)
+                .bookingDateTime(bookingDateTime)
+                .transaction(FRTransactionData.builder()
+                        .accountId(accountId)
+                        .transactionId(UUID.randomUUID().toString())
+                        .transactionReference(instruction.getReference())
+                        .amount(cashAmount(new BigDecimal(amount.getAmount()), amount.getCurrency()))
+                        .creditDebitIndicator(creditDebitIndicator)
+                        .status(FRTransactionData.FREntryStatus.BOOKED)
+                        .bookingDateTime(bookingDateTime)
+                        .valueDateTime(bookingDateTime)
+                        .transactionInformation(creditDebitIndicator == CREDIT ? "Payment received" : "Payment sent")
+                        .bankTransactionCode(FRTransactionData.FRBankTransactionCodeStructure.builder()
+                                .code(creditDebitIndicator == CREDIT
+                                        ? "ReceivedCreditTransfers" : "IssuedCreditTransfers")
+                                .subCode(instruction.getTransactionSubCode())
+                                .build())
+                        .balance(FRTransactionData.FRTransactionCashBalance.builder()
+                                .amount(cashAmount(balance.abs(), amount.getCurrency()))
+                                .creditDebitIndicator(balance.signum() < 0 ? DEBIT : CREDIT)
+                                .type(INTERIMBOOKED)
+                                .build())
+                        .build())
+                .build();
+    }
+
+    private static FRAmount cashAmount(BigDecimal amount, String currency) {
+        return FRAmount.builder()
+                .amount(amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_EVEN).toPlainString())
+                .currency(currency)
+                .build();
+    }
+
+    /**
+     * A payment that the debtor appeared to be able to afford, with its transactions.
+     */
+    private static final class Posting {
+        private final String submissionId;
+        private final String debtorId;
+        private final BigDecimal value;
+        private final List<FRTransaction> transactions = new ArrayList<>(2);
+        private String creditorId;
+        private FRSubmissionStatus status;
+
+        private Posting(String submissionId, String debtorId, BigDecimal value) {
+            this.submissionId = submissionId;
+            this.debtorId = debtorId;
+            this.value = value;
+        }
+
+        private FRTransaction debitTransaction() {
+            return transactions.get(0);
+        }
+
+        private FRTransaction creditTransaction() {
+            return transactions.get(1);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.scheduledpayment;
+
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands the scheduled payments that are saved (e.g. by {@link ScheduledPaymentService} or the admin data API) to the
+ * {@link ScheduledPaymentScheduler}, so that the ones due soon don't wait for its next top up.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.scheduled-payments.execution.enabled", havingValue = "true")
+public class ScheduledPaymentMongoEventListener extends AbstractMongoEventListener<FRScheduledPayment> {
+
+    private final ScheduledPaymentScheduler scheduledPaymentScheduler;
+
+    public ScheduledPaymentMongoEventListener(ScheduledPaymentScheduler scheduledPaymentScheduler) {
+        this.scheduledPaymentScheduler = scheduledPaymentScheduler;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<FRScheduledPayment> event) {
+        scheduledPaymentScheduler.onSaved(event.getSource());
+    }
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.scheduledpayment;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRScheduledPaymentData;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment.ScheduledPaymentStatus;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus;
+import com.forgerock.securebanking.openbanking.uk.rs.service.payment.PaymentInstruction;
+import com.forgerock.securebanking.openbanking.uk.rs.service.payment.PaymentPostingService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment.ScheduledPaymentStatus.COMPLETED;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment.ScheduledPaymentStatus.PENDING;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment.ScheduledPaymentStatus.REJECTED;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.ACCEPTEDSETTLEMENTCOMPLETED;
+import static org.springframework.data.mongodb.core.BulkOperations.BulkMode.UNORDERED;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Executes {@link FRScheduledPayment}s when they are due, posting them with {@link PaymentPostingService} and marking
+ * them {@code COMPLETED} (or {@code REJECTED}).
+ * <p>
+ * Only the payments due within the lookahead are held in memory, in a {@link TimingWheel}, so that each tick only
+ * handles the payments that have become due. The wheel is loaded on startup, and topped up every half lookahead, with
+ * a range query on the due dates of pending payments. Payments saved in the meantime (see
+ * {@link ScheduledPaymentMongoEventListener}) are added directly if they are due within what has been loaded. Every
+ * top up also picks up pending payments that are overdue, e.g. because they were written without raising events.
+ * <p>
+ * Due payments are executed in batches by a pool of workers. A batch is claimed by tagging its payments with a random
+ * {@value #CLAIM_FIELD}, only if they are still pending, due and untagged, so that a payment is never executed twice
+ * even with several instances. Payments that fail to be posted haven't adjusted any balance, so their claim is
+ * released and they are picked up again by the next top up. The time of the claim is also recorded in
+ * {@value #CLAIMED_FIELD}, so that a claim left behind (e.g. by an instance that died) is taken over once it is older
+ * than the claim timeout, which must be well above the time taken to execute a batch.
+ */
+@Service
+@ConditionalOnProperty(name = "rs.scheduled-payments.execution.enabled", havingValue = "true")
+@Slf4j
+public class ScheduledPaymentScheduler {
+
+    static final String EXECUTED_METRIC = "rs.scheduled-payments.executed";
+    static final String BATCH_METRIC = "rs.scheduled-payments.execution.batch";
+    static final String SCHEDULED_METRIC = "rs.scheduled-payments.scheduled";
+    static final String CLAIM_FIELD = "executionClaim";
+    static final String CLAIMED_FIELD = "executionClaimed";
+
+    private static final String ID_FIELD = "_id";
+    private static final String STATUS_FIELD = "status";
+    private static final String DUE_FIELD = "scheduledPayment.scheduledPaymentDateTime";
+
+    private final MongoTemplate mongoTemplate;
+    private final PaymentPostingService paymentPostingService;
+    private final MeterRegistry meterRegistry;
+    private final long tickMillis;
+    private final long lookaheadMillis;
+    private final int batchSize;
+    private final long claimTimeoutMillis;
+    private final TimingWheel<String> wheel;
+    private final Set<String> scheduledIds = ConcurrentHashMap.newKeySet();
+    private final Queue<String> overdueIds = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService executor;
+    private volatile long loadedUntil = Long.MIN_VALUE;
+
+    public ScheduledPaymentScheduler(MongoTemplate mongoTemplate,
+                                     PaymentPostingService paymentPostingService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${rs.scheduled-payments.execution.tick:1s}") Duration tick,
+                                     @Value("${rs.scheduled-payments.execution.wheel-size:64}") int wheelSize,
+                                     @Value("${rs.scheduled-payments.execution.lookahead:1h}") Duration lookahead,
+                                     @Value("${rs.scheduled-payments.execution.batch-size:500}") int batchSize,
+                                     @Value("${rs.scheduled-payments.execution.parallelism:2}") int parallelism,
+                                     @Value("${rs.scheduled-payments.execution.claim-timeout:10m}")
+                                             Duration claimTimeout) {
+        this.mongoTemplate = mongoTemplate;
+        this.paymentPostingService = paymentPostingService;
+        this.meterRegistry = meterRegistry;
+        this.tickMillis = tick.toMillis();
+        this.lookaheadMillis = Math.max(lookahead.toMillis(), 2 * tickMillis);
+        this.batchSize = batchSize;
+        this.claimTimeoutMillis = claimTimeout.toMillis();
+        // Payments are loaded up to a lookahead ahead of the last top up, which is at most half a lookahead ago
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, 2 * lookaheadMillis, System.currentTimeMillis());
+        AtomicInteger timerCount = new AtomicInteger();
+        this.timer = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "scheduled-payment-timer-" + timerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "scheduled-payment-execution-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder(SCHEDULED_METRIC, wheel, TimingWheel::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        log.info("Executing scheduled payments every {}ms, looking {}ms ahead", tickMillis, lookaheadMillis);
+        timer.scheduleAtFixedRate(this::topUp, 0, lookaheadMillis / 2, TimeUnit.MILLISECONDS);
+        timer.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdown();
+        executor.shutdown();
+    }
+
+    /**
+     * Schedules a payment that has been saved, if it is pending and due within what has been loaded already (later
+     * payments are loaded by the next top up).
+     *
+     * @param scheduledPayment the payment that has been saved.
+     */
+    void onSaved(FRScheduledPayment scheduledPayment) {
+        DateTime due = dueDateTime(scheduledPayment);
+        if (scheduledPayment.getStatus() == PENDING && due != null && due.getMillis() < loadedUntil) {
+            schedule(scheduledPayment.getId(), due.getMillis());
+        }
+    }
+
+    /**
+     * Loads the pending payments due up to a lookahead from now, and those that are overdue.
+     */
+    void topUp() {
+        try {
+            long from = loadedUntil;
+            long until = System.currentTimeMillis() + lookaheadMillis;
+            // Payments saved from now on are scheduled directly, the range query picks up the ones saved before
+            loadedUntil = until;
+            Criteria due = where(DUE_FIELD).lt(new DateTime(until));
+            if (from != Long.MIN_VALUE) {
+                due.gte(new DateTime(from));
+            }
+            int loaded = load(due);
+            // Anything still pending before the current tick was missed, couldn't be executed or its claim is stale
+            int overdue = load(where(DUE_FIELD).lt(new DateTime(wheel.getCurrentTime())));
+            log.debug("Loaded {} scheduled payments due before {} and {} overdue ones", loaded, new DateTime(until),
+                    overdue);
+        } catch (RuntimeException e) {
+            log.error("Failed to load the scheduled payments due within the lookahead", e);
+        }
+    }
+
+    private int load(Criteria due) {
+        Query query = query(where(STATUS_FIELD).is(PENDING)).addCriteria(claimable()).addCriteria(due);
+        query.fields().include(ID_FIELD).include(DUE_FIELD);
+        int loaded = 0;
+        try (CloseableIterator<FRScheduledPayment> payments = mongoTemplate.stream(query, FRScheduledPayment.class)) {
+            while (payments.hasNext()) {
+                FRScheduledPayment payment = payments.next();
+                schedule(payment.getId(), dueDateTime(payment).getMillis());
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    private void schedule(String id, long dueMillis) {
+        if (scheduledIds.add(id) && !wheel.add(id, dueMillis)) {
+            overdueIds.add(id);
+        }
+    }
+
+    /**
+     * Executes the payments that have become due since the last tick.
+     */
+    void tick() {
+        try {
+            List<String> due = wheel.advance(System.currentTimeMillis());
+            String id;
+            while ((id = overdueIds.poll()) != null) {
+                due.add(id);
+            }
+            for (int from = 0; from < due.size(); from += batchSize) {
+                List<String> batch = new ArrayList<>(due.subList(from, Math.min(due.size(), from + batchSize)));
+                executor.execute(() -> execute(batch));
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to execute the scheduled payments that have become due", e);
+        }
+    }
+
+    void execute(List<String> ids) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            String claim = UUID.randomUUID().toString();
+            mongoTemplate.updateMulti(
+                    query(where(ID_FIELD).in(ids)
+                            .and(STATUS_FIELD).is(PENDING)
+                            .and(DUE_FIELD).lte(DateTime.now()))
+                            .addCriteria(claimable()),
+                    new Update().set(CLAIM_FIELD, claim).set(CLAIMED_FIELD, DateTime.now()),
+                    FRScheduledPayment.class);
+            Query claimedQuery = query(where(ID_FIELD).in(ids).and(CLAIM_FIELD).is(claim));
+            List<FRScheduledPayment> payments = mongoTemplate.find(claimedQuery, FRScheduledPayment.class);
+            if (payments.isEmpty()) {
+                return;
+            }
+
+            List<PaymentInstruction> instructions = new ArrayList<>(payments.size());
+            for (FRScheduledPayment payment : payments) {
+                FRScheduledPaymentData data = payment.getScheduledPayment();
+                instructions.add(new PaymentInstruction(payment.getId(), payment.getAccountId(), null,
+                        data.getCreditorAccount(), data.getInstructedAmount(), data.getReference(),
+                        "DomesticCreditTransfer"));
+            }
+            Map<String, FRSubmissionStatus> statuses;
+            try {
+                statuses = paymentPostingService.post(instructions);
+            } catch (RuntimeException e) {
+                mongoTemplate.updateMulti(claimedQuery, release(), FRScheduledPayment.class);
+                throw e;
+            }
+
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(UNORDERED, FRScheduledPayment.class);
+            statuses.forEach((id, status) -> {
+                ScheduledPaymentStatus scheduledPaymentStatus =
+                        status == ACCEPTEDSETTLEMENTCOMPLETED ? COMPLETED : REJECTED;
+                Update update = release().set(STATUS_FIELD, scheduledPaymentStatus);
+                if (scheduledPaymentStatus == REJECTED) {
+                    update.set("rejectionReason", rejectionReason(status));
+                }
+                // Only if the claim hasn't been taken over as stale in the meantime
+                bulkOperations.updateOne(query(where(ID_FIELD).is(id).and(CLAIM_FIELD).is(claim)), update);
+                meterRegistry.counter(EXECUTED_METRIC, "status", scheduledPaymentStatus.name()).increment();
+            });
+            List<String> unposted = instructions.stream()
+                    .map(PaymentInstruction::getSubmissionId)
+                    .filter(id -> !statuses.containsKey(id))
+                    .collect(Collectors.toList());
+            if (!unposted.isEmpty()) {
+                log.warn("Releasing {} scheduled payments that could not be posted", unposted.size());
+                bulkOperations.updateMulti(query(where(ID_FIELD).in(unposted).and(CLAIM_FIELD).is(claim)), release());
+            }
+            bulkOperations.execute();
+            log.debug("Executed {} scheduled payments", statuses.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to execute {} scheduled payments", ids.size(), e);
+        } finally {
+            scheduledIds.removeAll(ids);
+            sample.stop(meterRegistry.timer(BATCH_METRIC));
+        }
+    }
+
+    /**
+     * @return the criteria matching payments that are unclaimed, or whose claim is stale.
+     */
+    private Criteria claimable() {
+        return new Criteria().orOperator(
+                where(CLAIM_FIELD).exists(false),
+                where(CLAIMED_FIELD).lt(DateTime.now().minus(claimTimeoutMillis)));
+    }
+
+    private static Update release() {
+        return new Update().unset(CLAIM_FIELD).unset(CLAIMED_FIELD);
+    }
+
+    private static String rejectionReason(FRSubmissionStatus status) {
+        return status == FRSubmissionStatus.REJECTED
+                ? "Insufficient funds or invalid amount"
+                : "No available balance in the currency of the payment";
+    }
+
+    private static DateTime dueDateTime(FRScheduledPayment scheduledPayment) {
+        FRScheduledPaymentData data = scheduledPayment.getScheduledPayment();
+        return data == null ? null : data.getScheduledPaymentDateTime();
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.scheduledpayment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel, holding items until they are due.
+ * <p>
+ * Level {@code i} has {@code wheelSize} buckets, each spanning {@code tickMillis * wheelSize^i} milliseconds. An item
+ * is added to the lowest level that spans its due time, and moved down a level when the bucket it is in is reached,
+ * so adding an item and advancing by a tick take constant time whatever the number of items held.
+ * <p>
+ * This class is thread safe.
+ */
+final class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long[] levelTicks;
+    private final List<List<Entry<T>>>[] levels;
+    private long currentTime;
+    private int size;
+
+    /**
+     * @param tickMillis the resolution of the wheel.
+     * @param wheelSize the number of buckets of each level.
+     * @param spanMillis how far ahead of the current time items may be due.
+     * @param startMillis the current time.
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, int wheelSize, long spanMillis, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("Invalid tick (" + tickMillis + "ms) or wheel size (" + wheelSize + ")");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        List<Long> ticks = new ArrayList<>();
+        long levelTick = tickMillis;
+        ticks.add(levelTick);
+        // The top level must span a full wheel beyond its current bucket
+        while (levelTick <= spanMillis / (wheelSize - 1) && levelTick <= Long.MAX_VALUE / wheelSize / wheelSize) {
+            levelTick *= wheelSize;
+            ticks.add(levelTick);
+        }
+        this.levelTicks = ticks.stream().mapToLong(Long::longValue).toArray();
+        this.levels = new List[levelTicks.length];
+        for (int level = 0; level < levels.length; level++) {
+            levels[level] = new ArrayList<>(wheelSize);
+            for (int bucket = 0; bucket < wheelSize; bucket++) {
+                levels[level].add(new ArrayList<>());
+            }
+        }
+        this.currentTime = startMillis - Math.floorMod(startMillis, tickMillis);
+    }
+
+    /**
+     * @param item the item to hold.
+     * @param dueMillis when the item is due.
+     * @return false if the item is already due (i.e. before the current tick), in which case it is not held.
+     * @throws IllegalArgumentException if the item is due beyond the span of the wheel.
+     */
+    synchronized boolean add(T item, long dueMillis) {
+        if (!add(new Entry<>(item, dueMillis))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    private boolean add(Entry<T> entry) {
+        for (int level = 0; level < levels.length; level++) {
+            long slot = Math.floorDiv(entry.dueMillis, levelTicks[level]);
+            long currentSlot = Math.floorDiv(currentTime, levelTicks[level]);
+            if (level == 0 && slot < currentSlot) {
+                return false;
+            }
+            if (slot - currentSlot < wheelSize) {
+                levels[level].get((int) Math.floorMod(slot, (long) wheelSize)).add(entry);
+                return true;
+            }
+        }
+        throw new IllegalArgumentException("Due time " + entry.dueMillis + " is beyond the span of the wheel");
+    }
+
+    /**
+     * Moves the wheel on to the provided time.
+     *
+     * @param nowMillis the current time.
+     * @return the items due before the start of the tick the provided time is in, in order of due time (to the
+     *         resolution of a tick).
+     */
+    synchronized List<T> advance(long nowMillis) {
+        List<T> due = new ArrayList<>();
+        while (currentTime + tickMillis <= nowMillis) {
+            // The whole of the current tick has passed
+            for (Entry<T> entry : drain(0)) {
+                due.add(entry.item);
+                size--;
+            }
+            currentTime += tickMillis;
+            // Higher levels first, so that items cascade down through the levels whose bucket has also been reached
+            for (int level = levels.length - 1; level > 0; level--) {
+                if (Math.floorMod(currentTime, levelTicks[level]) == 0) {
+                    for (Entry<T> entry : drain(level)) {
+                        if (!add(entry)) {
+                            due.add(entry.item);
+                            size--;
+                        }
+                    }
+                }
+            }
+        }
+        return due;
+    }
+
+    private List<Entry<T>> drain(int level) {
+        int bucket = (int) Math.floorMod(Math.floorDiv(currentTime, levelTicks[level]), (long) wheelSize);
+        List<Entry<T>> entries = levels[level].get(bucket);
+        if (entries.isEmpty()) {
+            return entries;
+        }
+        levels[level].set(bucket, new ArrayList<>());
+        return entries;
+    }
+
+    /**
+     * @return the start of the current tick, i.e. the items due before it have been released by
+     *         {@link #advance(long)}.
+     */
+    synchronized long getCurrentTime() {
+        return currentTime;
+    }
+
+    /**
+     * @return the number of items held.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final long dueMillis;
+
+        private Entry(T item, long dueMillis) {
+            this.item = item;
+            this.dueMillis = dueMillis;
+        }
+    }
+}
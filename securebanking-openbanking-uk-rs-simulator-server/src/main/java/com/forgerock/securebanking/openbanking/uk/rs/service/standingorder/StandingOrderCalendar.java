@@ -0,0 +1,176 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.standingorder;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRStandingOrderData;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder;
+import com.forgerock.securebanking.openbanking.uk.rs.service.frequency.FrequencyRule;
+import com.forgerock.securebanking.openbanking.uk.rs.service.frequency.FrequencyService;
+import lombok.Value;
+import org.joda.time.DateTime;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.PENDING;
+
+/**
+ * The upcoming instalments of a {@link FRStandingOrder}, from the next one to be paid. The dates of the next few
+ * instalments are computed ahead, so that catching up with a long backlog of instalments doesn't evaluate the
+ * frequency of the order for every single one of them as they are executed.
+ * <p>
+ * The first instalment is paid on the first payment date, and each following one on the next date given by the
+ * frequency. The last instalment is either the n-th one, if the number of payments is set, or the one on the final
+ * payment date, if that is set. Otherwise, the standing order never ends.
+ */
+class StandingOrderCalendar {
+
+    private final FRStandingOrder standingOrder;
+    private final int size;
+    private final String frequency;
+    private final FrequencyRule frequencyRule;
+    private final DateTime finalPaymentDateTime;
+    private final Integer numberOfPayments;
+    private final Deque<Instalment> upcoming = new ArrayDeque<>();
+    private int paymentsMade;
+    private DateTime candidateDateTime;
+    private int candidateNumber;
+
+    /**
+     * @param standingOrder the standing order, as stored.
+     * @param size the number of instalments to compute ahead.
+     * @throws IllegalArgumentException if the frequency of the standing order is invalid.
+     */
+    StandingOrderCalendar(FRStandingOrder standingOrder, int size) {
+        FRStandingOrderData data = standingOrder.getStandingOrder();
+        this.standingOrder = standingOrder;
+        this.size = Math.max(size, 1);
+        this.frequency = data.getFrequency();
+        this.frequencyRule = frequency == null ? null : FrequencyService.getRule(frequency);
+        this.finalPaymentDateTime = data.getFinalPaymentDateTime();
+        this.numberOfPayments = parseNumberOfPayments(data.getNumberOfPayments());
+        if (standingOrder.getStatus() == PENDING) {
+            this.paymentsMade = 0;
+            this.candidateDateTime = data.getFirstPaymentDateTime();
+        } else {
+            // The first payment has been made, even if the standing order was created as active
+            this.paymentsMade = Math.max(standingOrder.getPaymentsMade(), 1);
+            this.candidateDateTime = data.getNextPaymentDateTime();
+        }
+        this.candidateNumber = paymentsMade + 1;
+        fill();
+    }
+
+    FRStandingOrder getStandingOrder() {
+        return standingOrder;
+    }
+
+    int getPaymentsMade() {
+        return paymentsMade;
+    }
+
+    /**
+     * @return the next instalment to pay, or null if the standing order has ended.
+     */
+    Instalment peek() {
+        return upcoming.peekFirst();
+    }
+
+    /**
+     * @return the date of the next instalment to pay, or null if the standing order has ended.
+     */
+    DateTime nextPaymentDateTime() {
+        Instalment next = upcoming.peekFirst();
+        return next == null ? null : next.getDateTime();
+    }
+
+    boolean isFinished() {
+        return upcoming.isEmpty();
+    }
+
+    /**
+     * Moves on to the following instalment, once the next one has been paid.
+     *
+     * @throws IllegalArgumentException if the frequency of the standing order is invalid.
+     */
+    void paid() {
+        if (upcoming.pollFirst() != null) {
+            paymentsMade++;
+        }
+        if (upcoming.isEmpty()) {
+            fill();
+        }
+    }
+
+    private void fill() {
+        while (upcoming.size() < size && candidateDateTime != null) {
+            DateTime dateTime = candidateDateTime;
+            int number = candidateNumber;
+            boolean last = (numberOfPayments != null && number >= numberOfPayments)
+                    || (finalPaymentDateTime != null && !dateTime.isBefore(finalPaymentDateTime));
+            upcoming.addLast(new Instalment(number, dateTime, amount(number, last), last));
+            candidateNumber++;
+            candidateDateTime = last ? null : nextDateTime(dateTime);
+        }
+    }
+
+    private DateTime nextDateTime(DateTime previous) {
+        if (frequencyRule == null) {
+            throw new IllegalArgumentException("No frequency for a standing order with more than one payment");
+        }
+        DateTime next = frequencyRule.next(previous);
+        if (!next.isAfter(previous)) {
+            throw new IllegalArgumentException("Frequency '" + frequency + "' doesn't move on from " + previous);
+        }
+        // The final payment is made on its own date, even if it falls between two dates of the frequency
+        return finalPaymentDateTime != null && next.isAfter(finalPaymentDateTime) ? finalPaymentDateTime : next;
+    }
+
+    private FRAmount amount(int number, boolean last) {
+        FRStandingOrderData data = standingOrder.getStandingOrder();
+        if (number == 1 && data.getFirstPaymentAmount() != null) {
+            return data.getFirstPaymentAmount();
+        }
+        if (last && data.getFinalPaymentAmount() != null) {
+            return data.getFinalPaymentAmount();
+        }
+        return data.getNextPaymentAmount() != null ? data.getNextPaymentAmount() : data.getFirstPaymentAmount();
+    }
+
+    private static Integer parseNumberOfPayments(String numberOfPayments) {
+        if (numberOfPayments == null || numberOfPayments.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(numberOfPayments);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of payments: " + numberOfPayments);
+        }
+    }
+
+    /**
+     * A single payment of a standing order.
+     */
+    @Value
+    static class Instalment {
+        /** The number of the instalment, starting from 1. */
+        int number;
+        DateTime dateTime;
+        FRAmount amount;
+        boolean last;
+    }
+}
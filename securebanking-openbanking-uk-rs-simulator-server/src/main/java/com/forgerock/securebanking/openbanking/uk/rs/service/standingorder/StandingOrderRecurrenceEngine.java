@@ -0,0 +1,392 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.standingorder;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRStandingOrderData;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus;
+import com.forgerock.securebanking.openbanking.uk.rs.service.payment.PaymentInstruction;
+import com.forgerock.securebanking.openbanking.uk.rs.service.payment.PaymentPostingService;
+import com.forgerock.securebanking.openbanking.uk.rs.service.standingorder.StandingOrderCalendar.Instalment;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRStandingOrderData.FRStandingOrderStatus.INACTIVE;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.ACTIVE;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.COMPLETED;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.PENDING;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.REJECTED;
+import static org.springframework.data.mongodb.core.BulkOperations.BulkMode.UNORDERED;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Pays the instalments of {@link FRStandingOrder}s as they become due, posting them with
+ * {@link PaymentPostingService} and moving each standing order on to its next payment date, until its final payment
+ * has been made.
+ * <p>
+ * Every pass claims the standing orders that have an instalment due, in chunks, by tagging them with a random
+ * {@value #CLAIM_FIELD} and the time of the claim (only if they are unclaimed, or their claim is older than the claim
+ * timeout), so that several instances never pay the same instalment twice. The claims of a chunk are renewed while it
+ * is being paid, so that only the claims of an instance that has stopped become stale.
+ * The claimed orders are expanded into a {@link StandingOrderCalendar} of their next instalments, and kept in a heap
+ * ordered by the date of their next instalment. Instalments are then paid in date order across all accounts, in
+ * batches that hold at most one instalment of each order (so that a rejected instalment stops its order before any
+ * later one is paid), until no claimed order has an instalment due. A single pass therefore catches up with any
+ * backlog, e.g. after the clock has been moved forward in a test environment.
+ * <p>
+ * An order is released as soon as its next instalment isn't due anymore. An order whose instalment is rejected (as
+ * there are insufficient funds, or no balance in the currency of the payment), or whose frequency is invalid, becomes
+ * {@code REJECTED}, as a scheduled payment would. The orders of a batch that fails to be posted, or whose instalment
+ * could not be posted, are released to be retried by the next pass. A batch whose progress fails to be recorded leaves
+ * its orders claimed until their claim is stale.
+ */
+@Service
+@ConditionalOnProperty(name = "rs.standing-orders.execution.enabled", havingValue = "true")
+@Slf4j
+public class StandingOrderRecurrenceEngine {
+
+    static final String EXECUTED_METRIC = "rs.standing-orders.instalments";
+    static final String PASS_METRIC = "rs.standing-orders.execution.pass";
+    static final String CLAIM_FIELD = "executionClaim";
+    static final String CLAIMED_FIELD = "executionClaimed";
+
+    private static final String ID_FIELD = "_id";
+    private static final String STATUS_FIELD = "status";
+    private static final String PAYMENTS_MADE_FIELD = "paymentsMade";
+    private static final String REJECTION_REASON_FIELD = "rejectionReason";
+    private static final String FIRST_PAYMENT_FIELD = "standingOrder.firstPaymentDateTime";
+    private static final String NEXT_PAYMENT_FIELD = "standingOrder.nextPaymentDateTime";
+    private static final String STATUS_CODE_FIELD = "standingOrder.standingOrderStatusCode";
+    private static final String TRANSACTION_SUB_CODE = "StandingOrder";
+
+    private static final Comparator<StandingOrderCalendar> NEXT_DUE = Comparator
+            .comparing(StandingOrderCalendar::nextPaymentDateTime)
+            .thenComparing(calendar -> calendar.getStandingOrder().getId());
+
+    private final MongoTemplate mongoTemplate;
+    private final PaymentPostingService paymentPostingService;
+    private final MeterRegistry meterRegistry;
+    private final long intervalMillis;
+    private final int calendarSize;
+    private final int claimSize;
+    private final int batchSize;
+    private final long claimTimeoutMillis;
+    private final ScheduledExecutorService executor;
+
+    public StandingOrderRecurrenceEngine(MongoTemplate mongoTemplate,
+                                         PaymentPostingService paymentPostingService,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${rs.standing-orders.execution.interval:1m}") Duration interval,
+                                         @Value("${rs.standing-orders.execution.calendar-size:8}") int calendarSize,
+                                         @Value("${rs.standing-orders.execution.claim-size:10000}") int claimSize,
+                                         @Value("${rs.standing-orders.execution.batch-size:500}") int batchSize,
+                                         @Value("${rs.standing-orders.execution.claim-timeout:10m}")
+                                                 Duration claimTimeout) {
+        this.mongoTemplate = mongoTemplate;
+        this.paymentPostingService = paymentPostingService;
+        this.meterRegistry = meterRegistry;
+        this.intervalMillis = interval.toMillis();
+        this.calendarSize = calendarSize;
+        this.claimSize = claimSize;
+        this.batchSize = batchSize;
+        this.claimTimeoutMillis = claimTimeout.toMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "standing-order-execution");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        log.info("Paying standing order instalments every {}ms, in batches of {}", intervalMillis, batchSize);
+        executor.scheduleWithFixedDelay(this::run, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    private void run() {
+        try {
+            executeDueInstalments(DateTime.now());
+        } catch (RuntimeException e) {
+            log.error("Failed to pay the standing order instalments that are due", e);
+        }
+    }
+
+    /**
+     * Pays all of the instalments due up to the provided time.
+     *
+     * @param now the time up to which instalments are due.
+     * @return the number of instalments executed (paid or rejected).
+     */
+    int executeDueInstalments(DateTime now) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int executed = 0;
+        // Orders released to be retried aren't claimed again by the same pass
+        Set<String> retried = new HashSet<>();
+        while (true) {
+            String claim = UUID.randomUUID().toString();
+            List<FRStandingOrder> claimed = claimDueStandingOrders(now, claim, retried);
+            if (claimed.isEmpty()) {
+                break;
+            }
+            executed += execute(claimed, claim, now, retried);
+        }
+        sample.stop(meterRegistry.timer(PASS_METRIC));
+        if (executed > 0) {
+            log.info("Executed {} standing order instalments due up to {}", executed, now);
+        }
+        return executed;
+    }
+
+    private List<FRStandingOrder> claimDueStandingOrders(DateTime now, String claim, Set<String> excluded) {
+        Query dueQuery = query(dueCriteria(now));
+        if (!excluded.isEmpty()) {
+            dueQuery.addCriteria(where(ID_FIELD).nin(excluded));
+        }
+        dueQuery.fields().include(ID_FIELD);
+        List<String> ids = mongoTemplate.find(dueQuery.limit(claimSize), FRStandingOrder.class).stream()
+                .map(FRStandingOrder::getId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        mongoTemplate.updateMulti(query(dueCriteria(now)).addCriteria(where(ID_FIELD).in(ids)),
+                new Update().set(CLAIM_FIELD, claim).set(CLAIMED_FIELD, DateTime.now()), FRStandingOrder.class);
+        return mongoTemplate.find(query(where(ID_FIELD).in(ids).and(CLAIM_FIELD).is(claim)), FRStandingOrder.class);
+    }
+
+    private Criteria dueCriteria(DateTime now) {
+        return new Criteria().andOperator(
+                claimable(),
+                new Criteria().orOperator(
+                        where(STATUS_FIELD).is(PENDING).and(FIRST_PAYMENT_FIELD).lte(now),
+                        where(STATUS_FIELD).is(ACTIVE).and(NEXT_PAYMENT_FIELD).lte(now)));
+    }
+
+    /**
+     * @return the criteria matching standing orders that are unclaimed, or whose claim is stale.
+     */
+    private Criteria claimable() {
+        return new Criteria().orOperator(
+                where(CLAIM_FIELD).exists(false),
+                where(CLAIMED_FIELD).lt(DateTime.now().minus(claimTimeoutMillis)));
+    }
+
+    private int execute(List<FRStandingOrder> standingOrders, String claim, DateTime now, Set<String> retried) {
+        PriorityQueue<StandingOrderCalendar> due = new PriorityQueue<>(standingOrders.size(), NEXT_DUE);
+        BulkOperations released = mongoTemplate.bulkOps(UNORDERED, FRStandingOrder.class);
+        boolean anyReleased = false;
+        for (FRStandingOrder standingOrder : standingOrders) {
+            try {
+                StandingOrderCalendar calendar = new StandingOrderCalendar(standingOrder, calendarSize);
+                if (isDue(calendar, now)) {
+                    due.add(calendar);
+                } else {
+                    // No longer due, e.g. updated since it was claimed
+                    released.updateOne(byClaim(standingOrder, claim), release());
+                    anyReleased = true;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Rejecting standing order {} that can't be scheduled", standingOrder.getId(), e);
+                released.updateOne(byClaim(standingOrder, claim), rejection(e.getMessage()));
+                anyReleased = true;
+            }
+        }
+        if (anyReleased) {
+            released.execute();
+        }
+
+        List<String> ids = standingOrders.stream().map(FRStandingOrder::getId).collect(Collectors.toList());
+        long renewed = System.currentTimeMillis();
+        int executed = 0;
+        while (!due.isEmpty()) {
+            if (System.currentTimeMillis() - renewed > claimTimeoutMillis / 2) {
+                renewClaim(ids, claim);
+                renewed = System.currentTimeMillis();
+            }
+            List<StandingOrderCalendar> batch = new ArrayList<>(Math.min(batchSize, due.size()));
+            while (batch.size() < batchSize && !due.isEmpty()) {
+                batch.add(due.poll());
+            }
+            try {
+                executed += executeBatch(batch, claim, due, now, retried);
+            } catch (RuntimeException e) {
+                log.error("Failed to pay a batch of {} standing order instalments", batch.size(), e);
+            }
+        }
+        return executed;
+    }
+
+    private int executeBatch(List<StandingOrderCalendar> batch, String claim,
+                             PriorityQueue<StandingOrderCalendar> due, DateTime now, Set<String> retried) {
+        List<PaymentInstruction> instructions = new ArrayList<>(batch.size());
+        for (StandingOrderCalendar calendar : batch) {
+            FRStandingOrder standingOrder = calendar.getStandingOrder();
+            FRStandingOrderData data = standingOrder.getStandingOrder();
+            Instalment instalment = calendar.peek();
+            instructions.add(new PaymentInstruction(submissionId(standingOrder, instalment),
+                    standingOrder.getAccountId(), null, data.getCreditorAccount(), instalment.getAmount(),
+                    data.getReference(), TRANSACTION_SUB_CODE));
+        }
+        Map<String, FRSubmissionStatus> statuses;
+        try {
+            statuses = paymentPostingService.post(instructions);
+        } catch (RuntimeException e) {
+            // Nothing has been posted
+            List<String> ids = batch.stream()
+                    .map(calendar -> calendar.getStandingOrder().getId())
+                    .collect(Collectors.toList());
+            mongoTemplate.updateMulti(query(where(ID_FIELD).in(ids).and(CLAIM_FIELD).is(claim)), release(),
+                    FRStandingOrder.class);
+            retried.addAll(ids);
+            throw e;
+        }
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(UNORDERED, FRStandingOrder.class);
+        int executed = 0;
+        for (StandingOrderCalendar calendar : batch) {
+            FRStandingOrder standingOrder = calendar.getStandingOrder();
+            Instalment instalment = calendar.peek();
+            FRSubmissionStatus status = statuses.get(submissionId(standingOrder, instalment));
+            if (status == null) {
+                log.warn("Instalment {} of standing order {} could not be posted, releasing it",
+                        instalment.getNumber(), standingOrder.getId());
+                bulkOperations.updateOne(byClaim(standingOrder, claim), release());
+                retried.add(standingOrder.getId());
+                continue;
+            }
+            count(status);
+            executed++;
+            if (status != FRSubmissionStatus.ACCEPTEDSETTLEMENTCOMPLETED) {
+                bulkOperations.updateOne(byClaim(standingOrder, claim),
+                        rejection("Instalment " + instalment.getNumber() + " was rejected " + rejectionReason(status)));
+                continue;
+            }
+            try {
+                calendar.paid();
+            } catch (RuntimeException e) {
+                log.warn("Rejecting standing order {} that can't be scheduled", standingOrder.getId(), e);
+                bulkOperations.updateOne(byClaim(standingOrder, claim), rejection(e.getMessage())
+                        .set(PAYMENTS_MADE_FIELD, calendar.getPaymentsMade()));
+                continue;
+            }
+            boolean stillDue = isDue(calendar, now);
+            // The progress is recorded even while the order stays claimed, in case the pass is interrupted
+            bulkOperations.updateOne(byClaim(standingOrder, claim), progress(calendar, !stillDue));
+            if (stillDue) {
+                due.add(calendar);
+            }
+        }
+        // Every order of the batch is updated
+        bulkOperations.execute();
+        return executed;
+    }
+
+    /**
+     * Renews the claim on the orders of a chunk that is still being paid, so that it doesn't become stale.
+     */
+    private void renewClaim(List<String> ids, String claim) {
+        mongoTemplate.updateMulti(query(where(ID_FIELD).in(ids).and(CLAIM_FIELD).is(claim)),
+                new Update().set(CLAIMED_FIELD, DateTime.now()), FRStandingOrder.class);
+    }
+
+    private static boolean isDue(StandingOrderCalendar calendar, DateTime now) {
+        DateTime next = calendar.nextPaymentDateTime();
+        return next != null && !next.isAfter(now);
+    }
+
+    private static String submissionId(FRStandingOrder standingOrder, Instalment instalment) {
+        return standingOrder.getId() + ":" + instalment.getNumber();
+    }
+
+    /**
+     * @return the query matching the order only while this pass still holds its claim (i.e. it hasn't been taken over).
+     */
+    private static Query byClaim(FRStandingOrder standingOrder, String claim) {
+        return query(where(ID_FIELD).is(standingOrder.getId()).and(CLAIM_FIELD).is(claim));
+    }
+
+    private static Update release() {
+        return new Update().unset(CLAIM_FIELD).unset(CLAIMED_FIELD);
+    }
+
+    private static String rejectionReason(FRSubmissionStatus status) {
+        return status == FRSubmissionStatus.REJECTED
+                ? "due to insufficient funds or an invalid amount"
+                : "as there is no available balance in the currency of the payment";
+    }
+
+    /**
+     * @return the update recording the payments made so far, and optionally releasing the claim on the order.
+     */
+    private static Update progress(StandingOrderCalendar calendar, boolean release) {
+        Update update = new Update().set(PAYMENTS_MADE_FIELD, calendar.getPaymentsMade());
+        if (release) {
+            update.unset(CLAIM_FIELD).unset(CLAIMED_FIELD);
+        }
+        if (calendar.isFinished()) {
+            return update.set(STATUS_FIELD, COMPLETED)
+                    .set(STATUS_CODE_FIELD, INACTIVE)
+                    .unset(NEXT_PAYMENT_FIELD);
+        }
+        return update.set(STATUS_FIELD, ACTIVE)
+                .set(NEXT_PAYMENT_FIELD, calendar.nextPaymentDateTime());
+    }
+
+    private static Update rejection(String reason) {
+        return new Update()
+                .set(STATUS_FIELD, REJECTED)
+                .set(STATUS_CODE_FIELD, INACTIVE)
+                .set(REJECTION_REASON_FIELD, reason)
+                .unset(CLAIM_FIELD)
+                .unset(CLAIMED_FIELD);
+    }
+
+    private void count(FRSubmissionStatus status) {
+        meterRegistry.counter(EXECUTED_METRIC, "status", status.getValue()).increment();
+    }
+}
@@ -20,6 +20,7 @@ import com.forgerock.securebanking.openbanking.uk.error.OBErrorResponseException
 import com.forgerock.securebanking.openbanking.uk.error.OBRIErrorResponseCategory;
 import com.forgerock.securebanking.openbanking.uk.error.OBRIErrorType;
 import com.forgerock.securebanking.openbanking.uk.rs.api.obie.ApiConstants;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRPaymentIdempotencyRecord;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.PaymentSubmission;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
@@ -38,7 +39,7 @@ import static com.forgerock.securebanking.openbanking.uk.error.OBRIErrorType.IDE
 public class IdempotencyValidator {
 
     private static final int X_IDEMPOTENCY_MAX_KEY_LENGTH = 40;
-    private static final int X_IDEMPOTENCY_KEY_EXPIRY_HOURS = 24;
+    public static final int X_IDEMPOTENCY_KEY_EXPIRY_HOURS = 24;
 
     public void verifyIdempotencyKeyLength(String xIdempotencyKey) throws OBErrorException {
         if (!isIdempotencyKeyHeaderValid(xIdempotencyKey)) {
@@ -62,26 +63,36 @@ public class IdempotencyValidator {
      */
     public static <T> void validateIdempotencyRequest(PaymentSubmission submittedPayment, PaymentSubmission existingPayment)
             throws OBErrorResponseException {
+        validateIdempotencyRequest(submittedPayment, FRPaymentIdempotencyRecord.of(existingPayment));
+    }
+
+    /**
+     * As {@link #validateIdempotencyRequest(PaymentSubmission, PaymentSubmission)}, with the idempotency record of
+     * the existing payment submission.
+     */
+    public static void validateIdempotencyRequest(PaymentSubmission submittedPayment,
+                                                  FRPaymentIdempotencyRecord existingPayment)
+            throws OBErrorResponseException {
         checkMatchingIdempotencyKey(submittedPayment.getIdempotencyKey(), existingPayment);
-        checkIdempotencyKeyExpiry(submittedPayment.getIdempotencyKey(), existingPayment.getId(), existingPayment.getCreated());
+        checkIdempotencyKeyExpiry(submittedPayment.getIdempotencyKey(), existingPayment.getSubmissionId(), existingPayment.getCreated());
         // We don't need to check if body changed since previous request as that is not possible because submission
         // data/risk cannot be changed from the consent anyway.
     }
 
-    private static void checkMatchingIdempotencyKey(String xIdempotencyKey, PaymentSubmission existingPayment
+    private static void checkMatchingIdempotencyKey(String xIdempotencyKey, FRPaymentIdempotencyRecord existingPayment
     ) throws OBErrorResponseException {
         if (!xIdempotencyKey.equals(existingPayment.getIdempotencyKey())) {
             log.warn("An existing payment submission with the same consent id but a different idempotency key was found. " +
                             "Cannot create this payment. Consent id: {}, Payment id: {}, idempotency key of request: {}, " +
-                            "idempotency key of existing payment: {}", existingPayment.getConsentId(), existingPayment.getId(),
+                            "idempotency key of existing payment: {}", existingPayment.getConsentId(), existingPayment.getSubmissionId(),
                     xIdempotencyKey, existingPayment.getIdempotencyKey());
             throw new OBErrorResponseException(
                     HttpStatus.FORBIDDEN,
                     OBRIErrorResponseCategory.REQUEST_INVALID,
-                    OBRIErrorType.PAYMENT_SUBMISSION_ALREADY_EXISTS.toOBError1(existingPayment.getId())
+                    OBRIErrorType.PAYMENT_SUBMISSION_ALREADY_EXISTS.toOBError1(existingPayment.getSubmissionId())
             );
         }
-        log.info("Existing payment '{}' has the same x-idempotency-key '{}'.", existingPayment.getId(), xIdempotencyKey);
+        log.info("Existing payment '{}' has the same x-idempotency-key '{}'.", existingPayment.getSubmissionId(), xIdempotencyKey);
     }
 
     // https://openbanking.atlassian.net/wiki/spaces/DZ/pages/937656404/Read+Write+Data+API+Specification+-+v3.1#Read/WriteDataAPISpecification-v3.1-Idempotency.1
@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
+
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccountData;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import uk.org.openbanking.datamodel.account.OBAccount6;
+import uk.org.openbanking.datamodel.account.OBBalanceType1Code;
+import uk.org.openbanking.datamodel.account.OBCashBalance1;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Spring Boot Test for {@link BulkDataImporter}.
+ */
+@SpringBootTest
+public class BulkDataImporterTest {
+
+    @Autowired
+    private BulkDataImporter bulkDataImporter;
+
+    @Autowired
+    private FRAccountRepository accountRepository;
+
+    @Autowired
+    private FRBalanceRepository balanceRepository;
+
+    @SpyBean
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    public void removeData() {
+        accountRepository.deleteAll();
+        balanceRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldImportAccountsAndBalances() {
+        // Given
+        String username = UUID.randomUUID().toString();
+        List<FRAccountData> accountDatas = List.of(accountDataWithBalance(), accountDataWithBalance());
+
+        // When
+        List<FRAccountData> imported = bulkDataImporter.importAccounts(accountDatas, username,
+                Collections.emptySet());
+
+        // Then
+        assertThat(imported).hasSize(2);
+        Collection<FRAccount> accounts = accountRepository.findByUserID(username);
+        assertThat(accounts).hasSize(2);
+        for (FRAccount account : accounts) {
+            Collection<FRBalance> balances = balanceRepository.findByAccountIdIn(List.of(account.getId()));
+            assertThat(balances).hasSize(1);
+            assertThat(balances.iterator().next().getId()).isNotNull();
+        }
+    }
+
+    @Test
+    public void shouldDeleteImportedDocumentsGivenACollectionFailsToBeWritten() {
+        // Given
+        String username = UUID.randomUUID().toString();
+        List<FRAccountData> accountDatas = List.of(accountDataWithBalance(), accountDataWithBalance());
+        doThrow(new DataAccessResourceFailureException("Unavailable"))
+                .when(mongoTemplate).bulkOps(eq(BulkMode.UNORDERED), eq(FRBalance.class));
+
+        // When
+        ResponseStatusException e = catchThrowableOfType(() -> bulkDataImporter.importAccounts(accountDatas,
+                username, Collections.emptySet()), ResponseStatusException.class);
+
+        // Then
+        assertThat(e.getStatus()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(e.getReason()).contains("FRBalance");
+        assertThat(accountRepository.findByUserID(username)).isEmpty();
+        assertThat(balanceRepository.count()).isZero();
+    }
+
+    private static FRAccountData accountDataWithBalance() {
+        FRAccountData accountData = new FRAccountData();
+        accountData.setAccount(new OBAccount6());
+        accountData.setBalances(List.of(new OBCashBalance1().type(OBBalanceType1Code.INTERIMAVAILABLE)));
+        return accountData;
+    }
+}
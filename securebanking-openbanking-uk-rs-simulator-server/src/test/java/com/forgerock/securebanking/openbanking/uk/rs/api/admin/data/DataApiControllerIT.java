@@ -15,11 +15,16 @@
  */
 package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
 
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccountData;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRDataDeletion;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRUserData;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRParty;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.party.FRPartyRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,7 +32,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.TestPropertySource;
 import uk.org.openbanking.datamodel.account.OBAccount6;
@@ -36,8 +44,11 @@ import uk.org.openbanking.datamodel.account.OBCashBalance1;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.testsupport.account.FRFinancialAccountTestDataFactory.aValidFRFinancialAccount;
+import static com.forgerock.securebanking.openbanking.uk.rs.converter.account.FRCashBalanceConverter.toFRCashBalance;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpMethod.PUT;
@@ -61,6 +72,9 @@ public class DataApiControllerIT {
     @Autowired
     private FRBalanceRepository frBalanceRepository;
 
+    @Autowired
+    private FRPartyRepository frPartyRepository;
+
     @Autowired
     private TestRestTemplate restTemplate;
 
@@ -68,6 +82,7 @@ public class DataApiControllerIT {
     public void setUp() {
         frAccountRepository.deleteAll();
         frBalanceRepository.deleteAll();
+        frPartyRepository.deleteAll();
     }
 
     @Test
@@ -86,6 +101,26 @@ public class DataApiControllerIT {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
 
+    @Test
+    public void shouldNotCreateAnyDataGivenImportExceedsDocumentLimit() {
+        // Given
+        String username = UUID.randomUUID().toString();
+        List<FRAccountData> accountDatas = List.of(
+                accountDataWithBalances(new OBAccount6(), new OBCashBalance1().type(OBBalanceType1Code.INTERIMAVAILABLE)),
+                accountDataWithBalances(new OBAccount6(), new OBCashBalance1().type(OBBalanceType1Code.INTERIMAVAILABLE)));
+        FRUserData userData = new FRUserData();
+        userData.setAccountDatas(accountDatas);
+        userData.setUserName(username);
+
+        // When
+        ResponseEntity<FRUserData> response = restTemplate.postForEntity(dataUrl(), userData, FRUserData.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        assertThat(frAccountRepository.findByUserID(username)).isEmpty();
+        assertThat(frBalanceRepository.count()).isZero();
+    }
+
     @Test
     public void shouldCreateNewDataUsingUpdate() {
         // Given
@@ -131,6 +166,136 @@ public class DataApiControllerIT {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
     }
 
+    @Test
+    public void shouldExportOnlyTheDataOfTheUsersAccounts() {
+        // Given
+        String userId = UUID.randomUUID().toString();
+        FRAccount account = saveAccountWithBalance(userId);
+        saveAccountWithBalance(UUID.randomUUID().toString());
+
+        // When
+        ResponseEntity<FRUserData> response = restTemplate.getForEntity(dataUrl() + "?userId=" + userId, FRUserData.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getAccountDatas()).hasSize(1);
+        FRAccountData accountData = response.getBody().getAccountDatas().get(0);
+        assertThat(accountData.getBalances()).extracting(OBCashBalance1::getAccountId).containsExactly(account.getId());
+    }
+
+    @Test
+    public void shouldRestoreExportedNdjsonData() {
+        // Given
+        String userId = UUID.randomUUID().toString();
+        FRAccount account = saveAccountWithBalance(userId);
+        String ndjson = restTemplate.getForObject(ndjsonUrl(userId), String.class);
+        frAccountRepository.deleteAll();
+        frBalanceRepository.deleteAll();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(DataApi.APPLICATION_NDJSON_VALUE));
+
+        // When
+        ResponseEntity<Map> response = restTemplate.exchange(ndjsonUrl(userId), HttpMethod.POST,
+                new HttpEntity<>(ndjson, headers), Map.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(ndjson.lines()).hasSize(2).allMatch(line -> line.startsWith("{"));
+        assertThat(frAccountRepository.findByUserID(userId)).extracting(FRAccount::getId).containsExactly(account.getId());
+        assertThat(frBalanceRepository.findByAccountIdAndBalanceType(account.getId(), FRBalanceType.INTERIMAVAILABLE))
+                .isPresent();
+    }
+
+    @Test
+    public void shouldNotImportNdjsonDataIntoTheAccountOfAnotherUser() {
+        // Given
+        String otherUserId = UUID.randomUUID().toString();
+        FRAccount otherAccount = saveAccountWithBalance(otherUserId);
+        String ndjson = restTemplate.getForObject(ndjsonUrl(otherUserId), String.class);
+        frBalanceRepository.deleteAll();
+        String userId = UUID.randomUUID().toString();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(DataApi.APPLICATION_NDJSON_VALUE));
+
+        // When
+        ResponseEntity<Map> response = restTemplate.exchange(ndjsonUrl(userId), HttpMethod.POST,
+                new HttpEntity<>(ndjson, headers), Map.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(frAccountRepository.findByUserID(otherUserId)).extracting(FRAccount::getId)
+                .containsExactly(otherAccount.getId());
+        assertThat(frAccountRepository.findByUserID(userId)).isEmpty();
+        assertThat(frBalanceRepository.count()).isZero();
+    }
+
+    @Test
+    public void shouldDeleteOnlyTheDataOfTheUsersAccountsInBulk() {
+        // Given
+        String userId = UUID.randomUUID().toString();
+        FRAccount account = saveAccountWithBalance(userId);
+        FRAccount otherAccount = saveAccountWithBalance(UUID.randomUUID().toString());
+
+        // When
+        ResponseEntity<FRDataDeletion> response = restTemplate.exchange(dataUrl() + "/bulk?userId=" + userId,
+                HttpMethod.DELETE, null, FRDataDeletion.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getStatus()).isEqualTo(FRDataDeletion.Status.COMPLETED);
+        assertThat(response.getBody().getDeletedDocuments()).containsValues(1L);
+        assertThat(frAccountRepository.findById(account.getId())).isEmpty();
+        assertThat(frBalanceRepository.findByAccountIdAndBalanceType(account.getId(), FRBalanceType.INTERIMAVAILABLE))
+                .isEmpty();
+        assertThat(frAccountRepository.findById(otherAccount.getId())).isPresent();
+        assertThat(frBalanceRepository.findByAccountIdAndBalanceType(otherAccount.getId(),
+                FRBalanceType.INTERIMAVAILABLE)).isPresent();
+    }
+
+    @Test
+    public void shouldDeleteThePartiesOfTheUserAndOfTheUsersAccountsInBulk() {
+        // Given
+        String userId = UUID.randomUUID().toString();
+        FRAccount account = saveAccountWithBalance(userId);
+        FRParty userParty = frPartyRepository.save(FRParty.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(userId)
+                .build());
+        FRParty accountParty = frPartyRepository.save(FRParty.builder()
+                .id(UUID.randomUUID().toString())
+                .accountId(account.getId())
+                .build());
+        FRParty otherParty = frPartyRepository.save(FRParty.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(UUID.randomUUID().toString())
+                .build());
+
+        // When
+        ResponseEntity<FRDataDeletion> response = restTemplate.exchange(dataUrl() + "/bulk?userId=" + userId,
+                HttpMethod.DELETE, null, FRDataDeletion.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(frPartyRepository.findById(userParty.getId())).isEmpty();
+        assertThat(frPartyRepository.findById(accountParty.getId())).isEmpty();
+        assertThat(frPartyRepository.findById(otherParty.getId())).isPresent();
+    }
+
+    private FRAccount saveAccountWithBalance(String userId) {
+        FRAccount account = frAccountRepository.save(FRAccount.builder()
+                .id(UUID.randomUUID().toString())
+                .userID(userId)
+                .account(aValidFRFinancialAccount())
+                .build());
+        frBalanceRepository.save(FRBalance.builder()
+                .accountId(account.getId())
+                .balance(toFRCashBalance(new OBCashBalance1()
+                        .accountId(account.getId())
+                        .type(OBBalanceType1Code.INTERIMAVAILABLE)))
+                .build());
+        return account;
+    }
+
     private FRAccountData accountDataWithBalances(OBAccount6 account, OBCashBalance1... obCashBalance1s) {
         FRAccountData accountData = new FRAccountData();
         accountData.setAccount(account);
@@ -141,4 +306,8 @@ public class DataApiControllerIT {
     private String dataUrl() {
         return BASE_URL + port + DATA_URI;
     }
+
+    private String ndjsonUrl(String userId) {
+        return dataUrl() + "/ndjson?userId=" + userId;
+    }
 }
\ No newline at end of file
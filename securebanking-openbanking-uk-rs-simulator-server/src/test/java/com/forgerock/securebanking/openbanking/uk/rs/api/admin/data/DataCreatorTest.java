@@ -18,6 +18,7 @@ package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccountData;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.beneficiaries.FRBeneficiaryRepository;
@@ -29,6 +30,7 @@ import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.acco
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.standingorders.FRStandingOrderRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.statements.FRStatementRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -80,13 +82,17 @@ public class DataCreatorTest {
     private FRPartyRepository partyRepository;
     @Mock
     private FROfferRepository offerRepository;
+    @Mock
+    private TransactionCountCache transactionCountCache;
+    @Mock
+    private FRAccountCache accountCache;
 
     @BeforeEach
     public void setUp() {
         dataCreator = new DataCreator(accountsRepository, balanceRepository, beneficiaryRepository,
                 directDebitRepository, productRepository, standingOrderRepository, transactionRepository,
-                statementRepository, scheduledPaymentRepository, partyRepository, offerRepository, 1000,
-                1000);
+                statementRepository, scheduledPaymentRepository, partyRepository, offerRepository,
+                transactionCountCache, accountCache, 1000, 1000);
     }
 
     @Test
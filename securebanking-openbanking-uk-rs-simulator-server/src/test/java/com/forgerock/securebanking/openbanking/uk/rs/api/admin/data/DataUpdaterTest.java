@@ -16,8 +16,10 @@
 package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
 
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount;
 import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRAccountData;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.*;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.beneficiaries.FRBeneficiaryRepository;
@@ -29,9 +31,11 @@ import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.acco
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.standingorders.FRStandingOrderRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.statements.FRStatementRepository;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.TransactionCountCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.internal.util.collections.Iterables;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -55,6 +59,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -86,12 +92,17 @@ public class DataUpdaterTest {
     private FRPartyRepository partyRepository;
     @Mock
     private FROfferRepository offerRepository;
+    @Mock
+    private TransactionCountCache transactionCountCache;
+    @Mock
+    private FRAccountCache accountCache;
 
     @BeforeEach
     public void setUp() {
         dataUpdater = new DataUpdater(accountsRepository, balanceRepository, beneficiaryRepository,
                 directDebitRepository, productRepository, standingOrderRepository, transactionRepository,
-                statementRepository, scheduledPaymentRepository, partyRepository, offerRepository, 1000);
+                statementRepository, scheduledPaymentRepository, partyRepository, offerRepository,
+                transactionCountCache, accountCache, 1000);
     }
 
     @Test
@@ -387,6 +398,44 @@ public class DataUpdaterTest {
         verify(offerRepository).saveAll(Collections.singletonList(existingOffer));
     }
 
+    @Test
+    public void updateAccountShouldInvalidateCachedAccountOnceSaved() {
+        // Given
+        FRAccount account = FRAccount.builder()
+                .id("1")
+                .account(FRFinancialAccount.builder().accountId("1").nickname("Old").build())
+                .build();
+        FRAccountData accountData = new FRAccountData();
+        accountData.setAccount(new OBAccount6().accountId("1").nickname("New"));
+
+        // When
+        dataUpdater.updateAccount(accountData, account, Collections.singleton("1"));
+
+        // Then
+        InOrder inOrder = inOrder(accountsRepository, accountCache);
+        inOrder.verify(accountsRepository).save(argThat(a -> a.getAccount().getNickname().equals("New")));
+        inOrder.verify(accountCache).invalidateAccount("1");
+    }
+
+    @Test
+    public void updateAccountShouldNotInvalidateCachedAccountGivenSaveFails() {
+        // Given
+        FRAccount account = FRAccount.builder()
+                .id("1")
+                .account(FRFinancialAccount.builder().accountId("1").nickname("Old").build())
+                .build();
+        FRAccountData accountData = new FRAccountData();
+        accountData.setAccount(new OBAccount6().accountId("1").nickname("New"));
+        given(accountsRepository.save(any())).willThrow(new IllegalStateException("Save failed"));
+
+        // When
+        assertThatThrownBy(() -> dataUpdater.updateAccount(accountData, account, Collections.singleton("1")))
+
+                // Then
+                .isInstanceOf(IllegalStateException.class);
+        verify(accountCache, never()).invalidateAccount(any());
+    }
+
     @Test
     public void updateBalance_noExistingBalances_acceptAndCreate() {
         // Given
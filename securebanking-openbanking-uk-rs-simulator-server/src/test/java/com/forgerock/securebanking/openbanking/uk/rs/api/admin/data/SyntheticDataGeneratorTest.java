@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.admin.data;
+
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRSyntheticDataProfile;
+import com.forgerock.securebanking.openbanking.uk.rs.api.admin.data.dto.FRSyntheticDataProfile.TransactionDistribution;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStatement;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountCache;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit test for {@link SyntheticDataGenerator}.
+ */
+@ExtendWith(MockitoExtension.class)
+public class SyntheticDataGeneratorTest {
+
+    private static final DateTime CURRENT_MONTH = new DateTime(2021, 3, 1, 0, 0);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private FRAccountCache accountCache;
+    private SyntheticDataGenerator generator;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        generator = new SyntheticDataGenerator(mongoTemplate, accountCache, 1, 100, 1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        generator.shutdown();
+    }
+
+    @Test
+    public void shouldGenerateTheSameUserGivenTheSameSeed() {
+        // Given
+        FRSyntheticDataProfile profile = profile(TransactionDistribution.UNIFORM);
+
+        // When
+        Map<Class<?>, List<Object>> first = generator.generateUser(profile, CURRENT_MONTH, 7, new SplittableRandom(42));
+        Map<Class<?>, List<Object>> second = generator.generateUser(profile, CURRENT_MONTH, 7, new SplittableRandom(42));
+
+        // Then
+        assertThat(second).isEqualTo(first);
+        assertThat(first.get(FRAccount.class)).hasSize(2)
+                .allSatisfy(account -> assertThat(((FRAccount) account).getUserID()).isEqualTo("user-7"));
+    }
+
+    @Test
+    public void shouldBookTransactionsWithinTheirStatement() {
+        // Given
+        FRSyntheticDataProfile profile = profile(TransactionDistribution.FIXED);
+
+        // When
+        Map<Class<?>, List<Object>> documents = generator.generateUser(profile, CURRENT_MONTH, 0, new SplittableRandom(1));
+
+        // Then
+        assertThat(documents.get(FRStatement.class)).hasSize(2 * 3);
+        assertThat(documents.get(FRTransaction.class)).hasSize(2 * 20).allSatisfy(document -> {
+            FRTransaction transaction = (FRTransaction) document;
+            FRStatement statement = (FRStatement) documents.get(FRStatement.class).stream()
+                    .filter(s -> ((FRStatement) s).getId().equals(transaction.getStatementIds().get(0)))
+                    .findFirst()
+                    .orElseThrow();
+            assertThat(transaction.getBookingDateTime()).isBetween(statement.getStartDateTime(), statement.getEndDateTime());
+            assertThat(transaction.getBookingDateTime()).isLessThan(CURRENT_MONTH);
+        });
+    }
+
+    private FRSyntheticDataProfile profile(TransactionDistribution distribution) {
+        FRSyntheticDataProfile profile = new FRSyntheticDataProfile();
+        profile.setUserIdPrefix("user-");
+        profile.setAccountsPerUser(2);
+        profile.setTransactionsPerAccount(20);
+        profile.setTransactionDistribution(distribution);
+        profile.setStatementMonths(3);
+        return profile;
+    }
+}
@@ -20,6 +20,10 @@ import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.acc
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
 import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRFundsConfirmationResponse;
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationBatchRequest;
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationBatchResponse;
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationRequestItem;
+import com.forgerock.securebanking.openbanking.uk.rs.api.backoffice.payment.dto.FRFundsConfirmationResultItem;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
 import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
@@ -32,8 +36,12 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.http.*;
 import org.springframework.web.util.UriComponentsBuilder;
+import uk.org.openbanking.datamodel.error.OBErrorResponse1;
 
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static com.forgerock.securebanking.openbanking.uk.rs.testsupport.FRAccountTestDataFactory.aValidFRAccount;
 import static java.util.Collections.singletonList;
@@ -113,6 +121,55 @@ public class PaymentFundsConfirmationApiControllerTest {
         assertThat(response.getBody().isFundsAvailable()).isFalse();
     }
 
+    @Test
+    public void shouldCheckFundsAvailabilityOfEachItem() {
+        // Given
+        FRAccount account = aValidFRAccount();
+        frAccountRepository.save(account);
+        String accountId = account.getId();
+        frBalanceRepository.save(aValidFRBalance(accountId));
+        FRFundsConfirmationBatchRequest request = new FRFundsConfirmationBatchRequest(Arrays.asList(
+                new FRFundsConfirmationRequestItem(accountId, BALANCE, CURRENCY),
+                new FRFundsConfirmationRequestItem(accountId, "10.01", CURRENCY),
+                new FRFundsConfirmationRequestItem(accountId, "1.00", "EUR"),
+                new FRFundsConfirmationRequestItem("unknown", "1.00", CURRENCY)));
+
+        // When
+        ResponseEntity<FRFundsConfirmationBatchResponse> response = restTemplate.exchange(
+                BASE_URL + port + FUNDS_CONFIRMATION_URI,
+                HttpMethod.POST,
+                new HttpEntity<>(request, httpHeaders()),
+                FRFundsConfirmationBatchResponse.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        List<FRFundsConfirmationResultItem> items = response.getBody().getItems();
+        assertThat(items).extracting(FRFundsConfirmationResultItem::getFundsAvailable)
+                .containsExactly(true, false, null, null);
+        assertThat(items.get(0).getAccountId()).isEqualTo(accountId);
+        assertThat(items.get(1).getAmount()).isEqualTo("10.01");
+        assertThat(items.get(2).getError()).isNotNull();
+        assertThat(items.get(3).getError()).isNotNull();
+    }
+
+    @Test
+    public void shouldRejectTooManyItems() {
+        // Given
+        FRFundsConfirmationBatchRequest request = new FRFundsConfirmationBatchRequest(Collections.nCopies(
+                FRFundsConfirmationBatchRequest.MAX_ITEMS + 1,
+                new FRFundsConfirmationRequestItem("accountId", BALANCE, CURRENCY)));
+
+        // When
+        ResponseEntity<OBErrorResponse1> response = restTemplate.exchange(
+                BASE_URL + port + FUNDS_CONFIRMATION_URI,
+                HttpMethod.POST,
+                new HttpEntity<>(request, httpHeaders()),
+                OBErrorResponse1.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
     private FRBalance aValidFRBalance(String accountId) {
         FRBalance accountBalance = FRBalance.builder()
                 .accountId(accountId)
@@ -0,0 +1,155 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.api.obie.account.v3_1_6.transactions;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRTransactionData;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.TestPropertySource;
+import uk.org.openbanking.datamodel.account.OBReadTransaction6;
+import uk.org.openbanking.datamodel.error.OBErrorResponse1;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.testsupport.account.FRFinancialAccountTestDataFactory.aValidFRFinancialAccount;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.testsupport.account.FRTransactionDataTestDataFactory.aValidFRTransactionData;
+import static com.forgerock.securebanking.openbanking.uk.rs.testsupport.api.HttpHeadersTestDataFactory.requiredAccountHttpHeaders;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Spring Boot Test for the cursor pagination of {@link TransactionsApiController}, with a single transaction per page.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@TestPropertySource(properties = {"rs.page.default.transaction.size=1"})
+public class TransactionsApiControllerCursorTest {
+
+    private static final String BASE_URL = "http://localhost:";
+    private static final String ACCOUNT_TRANSACTIONS_URI = "/open-banking/v3.1.6/aisp/accounts/{AccountId}/transactions";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private FRAccountRepository frAccountRepository;
+
+    @Autowired
+    private FRTransactionRepository frTransactionRepository;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String accountId;
+
+    @BeforeEach
+    public void saveData() {
+        FRFinancialAccount financialAccount = aValidFRFinancialAccount();
+        FRAccount account = FRAccount.builder()
+                .userID("AUserId")
+                .account(financialAccount)
+                .latestStatementId("5678")
+                .build();
+        frAccountRepository.save(account);
+        accountId = account.getId();
+
+        FRTransactionData transactionData = aValidFRTransactionData(accountId);
+        FRTransaction transaction = FRTransaction.builder()
+                .accountId(accountId)
+                .transaction(transactionData)
+                .bookingDateTime(transactionData.getBookingDateTime())
+                .build();
+        frTransactionRepository.save(transaction);
+    }
+
+    @AfterEach
+    public void removeData() {
+        frAccountRepository.deleteAll();
+        frTransactionRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldFollowCursorToNextPageOfTransactions() {
+        // Given
+        FRTransactionData transactionData = aValidFRTransactionData(accountId);
+        DateTime earlierBookingDateTime = transactionData.getBookingDateTime().minusDays(1);
+        transactionData.setBookingDateTime(earlierBookingDateTime);
+        frTransactionRepository.save(FRTransaction.builder()
+                .accountId(accountId)
+                .transaction(transactionData)
+                .bookingDateTime(earlierBookingDateTime)
+                .build());
+        String url = accountTransactionsUrl(accountId);
+
+        // When
+        ResponseEntity<OBReadTransaction6> firstPage = restTemplate.exchange(
+                url,
+                HttpMethod.GET,
+                new HttpEntity<>(requiredAccountHttpHeaders(url, accountId)),
+                OBReadTransaction6.class);
+        String nextUrl = firstPage.getBody().getLinks().getNext();
+        ResponseEntity<OBReadTransaction6> secondPage = restTemplate.exchange(
+                nextUrl,
+                HttpMethod.GET,
+                new HttpEntity<>(requiredAccountHttpHeaders(nextUrl, accountId)),
+                OBReadTransaction6.class);
+
+        // Then
+        assertThat(firstPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(firstPage.getBody().getData().getTransaction()).hasSize(1);
+        assertThat(nextUrl).contains("cursor=");
+        assertThat(firstPage.getBody().getMeta().getTotalPages()).isEqualTo(2);
+        assertThat(secondPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(secondPage.getBody().getData().getTransaction()).hasSize(1);
+        assertThat(secondPage.getBody().getData().getTransaction().get(0).getBookingDateTime())
+                .isGreaterThan(firstPage.getBody().getData().getTransaction().get(0).getBookingDateTime());
+        assertThat(secondPage.getBody().getLinks().getNext()).isNull();
+        assertThat(secondPage.getBody().getLinks().getFirst()).isEqualTo(url);
+    }
+
+    @Test
+    public void shouldRejectInvalidCursor() {
+        // Given
+        String url = accountTransactionsUrl(accountId) + "?cursor=invalid";
+
+        // When
+        ResponseEntity<OBErrorResponse1> response = restTemplate.exchange(
+                url,
+                HttpMethod.GET,
+                new HttpEntity<>(requiredAccountHttpHeaders(url, accountId)),
+                OBErrorResponse1.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private String accountTransactionsUrl(String accountId) {
+        String url = BASE_URL + port + ACCOUNT_TRANSACTIONS_URI;
+        return url.replace("{AccountId}", accountId);
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.common.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import uk.org.openbanking.datamodel.account.Links;
+import uk.org.openbanking.datamodel.account.OBReadTransaction6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit test for {@link StreamedResponse}.
+ */
+public class StreamedResponseTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void shouldWritePageAndCloseCursor() throws Exception {
+        // Given
+        AtomicBoolean closed = new AtomicBoolean();
+        List<Object> linkArguments = new ArrayList<>();
+        OBReadTransaction6 response = StreamedResponses.transactions(new StreamedResponse<>(
+                () -> Stream.of("a", "b", "c").onClose(() -> closed.set(true)),
+                2,
+                String::toUpperCase,
+                (last, hasNext) -> {
+                    linkArguments.add(last);
+                    linkArguments.add(hasNext);
+                    Links links = new Links();
+                    links.setSelf("http://rs/transactions");
+                    return links;
+                },
+                PaginationUtil.generateMetaData(3)));
+
+        // When
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(response));
+
+        // Then
+        assertThat(json.path("Data").path("Transaction")).hasSize(2);
+        assertThat(json.path("Data").path("Transaction").get(1).asText()).isEqualTo("B");
+        assertThat(json.path("Links").path("Self").asText()).isEqualTo("http://rs/transactions");
+        assertThat(json.path("Meta").path("TotalPages").asInt()).isEqualTo(3);
+        assertThat(linkArguments).containsExactly("b", true);
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    public void shouldWriteLastPageWithoutNext() throws Exception {
+        // Given
+        List<Object> linkArguments = new ArrayList<>();
+        OBReadTransaction6 response = StreamedResponses.transactions(new StreamedResponse<>(
+                () -> Stream.of("a"),
+                2,
+                String::toUpperCase,
+                (last, hasNext) -> {
+                    linkArguments.add(last);
+                    linkArguments.add(hasNext);
+                    return new Links();
+                },
+                PaginationUtil.generateMetaData(1)));
+
+        // When
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(response));
+
+        // Then
+        assertThat(json.path("Data").path("Transaction")).hasSize(1);
+        assertThat(linkArguments).containsExactly("a", false);
+    }
+
+    @Test
+    public void shouldCloseCursorGivenConversionFails() {
+        // Given
+        AtomicBoolean closed = new AtomicBoolean();
+        OBReadTransaction6 response = StreamedResponses.transactions(new StreamedResponse<String>(
+                () -> Stream.of("a", "b").onClose(() -> closed.set(true)),
+                2,
+                document -> {
+                    throw new IllegalStateException("Conversion failed");
+                },
+                (last, hasNext) -> new Links(),
+                PaginationUtil.generateMetaData(1)));
+
+        // When / Then
+        assertThatThrownBy(() -> objectMapper.writeValueAsString(response))
+                .isInstanceOf(JsonMappingException.class);
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    public void shouldNotOpenCursorUntilWritten() {
+        // Given
+        AtomicInteger opened = new AtomicInteger();
+
+        // When
+        StreamedResponses.transactions(new StreamedResponse<>(
+                () -> {
+                    opened.incrementAndGet();
+                    return Stream.of("a");
+                },
+                2,
+                String::toUpperCase,
+                (last, hasNext) -> new Links(),
+                PaginationUtil.generateMetaData(1)));
+
+        // Then
+        assertThat(opened.get()).isZero();
+    }
+}
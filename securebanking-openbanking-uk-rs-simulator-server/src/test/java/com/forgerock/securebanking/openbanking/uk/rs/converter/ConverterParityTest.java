@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.converter;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link FRAccountIdentifierConverter} and {@link FRAmountConverter} give the same results as the
+ * reflection based {@link ModelMapper} mapping they replaced, for every type they convert.
+ */
+public class ConverterParityTest {
+
+    /**
+     * Types with an enum scheme name were never converted by the {@link ModelMapper}.
+     */
+    private static final List<String> NOT_MAPPED_BY_MODEL_MAPPER = Arrays.asList(
+            "OBCashAccount2",
+            "OBCashAccountCreditor1",
+            "OBCashAccountDebtor1",
+            "OBDebtorIdentification1");
+
+    private final ModelMapper modelMapper = modelMapper();
+
+    @Test
+    public void shouldConvertAccountIdentifiersAsModelMapper() throws Exception {
+        // Given
+        FRAccountIdentifier account = FRAccountIdentifier.builder()
+                .schemeName("UK.OBIE.SortCodeAccountNumber")
+                .identification("40400411290112")
+                .name("Mr A Smith")
+                .secondaryIdentification("12345")
+                .build();
+
+        // When/Then
+        assertParity(FRAccountIdentifierConverter.class, account);
+    }
+
+    @Test
+    public void shouldConvertAccountIdentifiersWithMissingFieldsAsModelMapper() throws Exception {
+        // Given
+        FRAccountIdentifier account = FRAccountIdentifier.builder()
+                .schemeName("UK.OBIE.IBAN")
+                .identification("GB29NWBK60161331926819")
+                .build();
+
+        // When/Then
+        assertParity(FRAccountIdentifierConverter.class, account);
+    }
+
+    @Test
+    public void shouldConvertAmountsAsModelMapper() throws Exception {
+        // Given
+        FRAmount amount = FRAmount.builder()
+                .amount("10.01")
+                .currency("GBP")
+                .build();
+
+        // When/Then
+        assertParity(FRAmountConverter.class, amount);
+    }
+
+    /**
+     * Calls every public static conversion of the converter, in both directions, and compares the result with the
+     * {@link ModelMapper} one. The OB sources are built from the FR fixture.
+     */
+    private void assertParity(Class<?> converterClass, Object frFixture) throws Exception {
+        List<Method> conversions = Arrays.stream(converterClass.getDeclaredMethods())
+                .filter(method -> Modifier.isPublic(method.getModifiers()) && Modifier.isStatic(method.getModifiers()))
+                .filter(method -> method.getParameterCount() == 1)
+                .filter(method -> !NOT_MAPPED_BY_MODEL_MAPPER.contains(method.getReturnType().getSimpleName())
+                        && !NOT_MAPPED_BY_MODEL_MAPPER.contains(method.getParameterTypes()[0].getSimpleName()))
+                .collect(Collectors.toList());
+        assertThat(conversions).isNotEmpty();
+
+        for (Method conversion : conversions) {
+            Class<?> sourceType = conversion.getParameterTypes()[0];
+            Object source = sourceType.isInstance(frFixture) ? frFixture : modelMapper.map(frFixture, sourceType);
+
+            Object converted = conversion.invoke(null, source);
+            Object expected = modelMapper.map(source, conversion.getReturnType());
+
+            assertThat(converted).as(conversion.toString()).usingRecursiveComparison().isEqualTo(expected);
+            assertThat(conversion.invoke(null, (Object) null)).as(conversion + " with null").isNull();
+        }
+    }
+
+    private static ModelMapper modelMapper() {
+        // The configuration of the former FRModelMapper
+        ModelMapper modelMapper = new ModelMapper();
+        modelMapper.getConfiguration().setSkipNullEnabled(true);
+        return modelMapper;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.metrics;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRTransactionData;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import uk.org.openbanking.datamodel.account.OBReadTransaction6;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.testsupport.account.FRTransactionDataTestDataFactory.aValidFRTransactionData;
+import static com.forgerock.securebanking.openbanking.uk.rs.testsupport.api.HttpHeadersTestDataFactory.requiredAccountHttpHeaders;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Spring Boot Test for the metrics recorded while serving an Open Banking endpoint.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class ObApiMetricsTest {
+
+    private static final String TRANSACTIONS_URI = "/open-banking/v3.1.5/aisp/transactions";
+    private static final String ACCOUNT_ID = "1234";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RequestMappingHandlerMapping handlerMapping;
+
+    @Autowired
+    private ObApiTagsContributor obApiTagsContributor;
+
+    @Autowired
+    private FRTransactionRepository frTransactionRepository;
+
+    @AfterEach
+    public void removeData() {
+        frTransactionRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldTagRequestWithOpenBankingVersionAndGroup() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", TRANSACTIONS_URI);
+        Object handler = handlerMapping.getHandler(request).getHandler();
+
+        // When
+        Iterable<Tag> tags = obApiTagsContributor.getTags(request, new MockHttpServletResponse(), handler, null);
+
+        // Then
+        assertThat(tags).contains(
+                Tag.of(ObApiTagsContributor.VERSION_TAG, "v3.1.5"),
+                Tag.of(ObApiTagsContributor.GROUP_TAG, "AISP"),
+                Tag.of(ObApiTagsContributor.API_TAG, "GET_TRANSACTIONS"));
+    }
+
+    @Test
+    public void shouldTagOtherRequestsWithNone() {
+        // When
+        Iterable<Tag> tags = obApiTagsContributor.getTags(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                null, null);
+
+        // Then
+        assertThat(tags).contains(Tag.of(ObApiTagsContributor.VERSION_TAG, ObApiTagsContributor.NONE));
+    }
+
+    @Test
+    public void shouldTimeRepositoryInvocationsAndConversions() {
+        // Given
+        FRTransactionData transactionData = aValidFRTransactionData(ACCOUNT_ID);
+        frTransactionRepository.save(FRTransaction.builder()
+                .accountId(ACCOUNT_ID)
+                .transaction(transactionData)
+                .bookingDateTime(transactionData.getBookingDateTime())
+                .build());
+        String url = "http://localhost:" + port + TRANSACTIONS_URI;
+
+        // When
+        ResponseEntity<OBReadTransaction6> response = restTemplate.exchange(
+                url,
+                HttpMethod.GET,
+                new HttpEntity<>(requiredAccountHttpHeaders(url, ACCOUNT_ID)),
+                OBReadTransaction6.class);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Timer repositoryTimer = meterRegistry.find(RepositoryMetricsPostProcessor.METRIC_NAME)
+                .tags("repository", FRTransactionRepository.class.getSimpleName())
+                .timer();
+        assertThat(repositoryTimer).isNotNull();
+        assertThat(repositoryTimer.count()).isGreaterThan(0);
+        Timer conversionTimer = Metrics.globalRegistry.find(ConversionMetrics.METRIC_NAME)
+                .tags("conversion", "toOBTransaction6")
+                .timer();
+        assertThat(conversionTimer).isNotNull();
+        assertThat(conversionTimer.count()).isGreaterThan(0);
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.index;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Spring Boot Test for {@link MongoIndexInitializer}.
+ */
+@SpringBootTest
+public class MongoIndexInitializerTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexInitializer mongoIndexInitializer;
+
+    @Test
+    public void shouldCreateIndexesOnStartup() {
+        for (MongoIndexSpec spec : MongoIndexes.getIndexes()) {
+            // When
+            List<String> indexNames = mongoTemplate.indexOps(spec.getDocumentClass()).getIndexInfo().stream()
+                    .map(IndexInfo::getName)
+                    .collect(Collectors.toList());
+
+            // Then
+            assertThat(indexNames).contains(spec.getName());
+        }
+    }
+
+    @Test
+    public void shouldServeQueriesWithoutCollectionScanOrInMemorySort() {
+        for (MongoIndexSpec spec : MongoIndexes.getIndexes()) {
+            // When
+            boolean servedByIndex = mongoIndexInitializer.verifyQueryPlan(spec);
+
+            // Then
+            assertThat(servedByIndex).as(spec.getName()).isTrue();
+        }
+    }
+}
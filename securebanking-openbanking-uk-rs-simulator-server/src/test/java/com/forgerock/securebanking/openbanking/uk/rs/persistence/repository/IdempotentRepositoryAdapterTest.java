@@ -0,0 +1,252 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRWriteDataDomestic;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRWriteDomestic;
+import com.forgerock.securebanking.openbanking.uk.error.OBErrorResponseException;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRPaymentIdempotencyRecord;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.DomesticPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.PaymentIdempotencyStore;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.PENDING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+/**
+ * Spring Boot Test for {@link IdempotentRepositoryAdapter}.
+ */
+@SpringBootTest
+public class IdempotentRepositoryAdapterTest {
+
+    private static final String IDEMPOTENCY_KEY = "idempotency-key";
+    private static final int CONSENTS = 100;
+    private static final int DUPLICATES = 20;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private DomesticPaymentSubmissionRepository paymentSubmissionRepository;
+
+    @Autowired
+    private PaymentIdempotencyStore idempotencyStore;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private IdempotentRepositoryAdapter<FRDomesticPaymentSubmission> adapter;
+
+    @BeforeEach
+    public void setUp() {
+        adapter = new IdempotentRepositoryAdapter<>(paymentSubmissionRepository, idempotencyStore);
+    }
+
+    @AfterEach
+    public void removeData() {
+        paymentSubmissionRepository.deleteAll();
+        mongoTemplate.dropCollection(FRPaymentIdempotencyRecord.class);
+    }
+
+    @Test
+    public void shouldReplayRepeatedSubmission() throws OBErrorResponseException {
+        // Given
+        String consentId = UUID.randomUUID().toString();
+        FRDomesticPaymentSubmission created = adapter.idempotentSave(aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+
+        // When
+        FRDomesticPaymentSubmission replayed = adapter.idempotentSave(aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+
+        // Then
+        assertThat(replayed.getId()).isEqualTo(created.getId());
+        assertThat(paymentSubmissionRepository.count()).isEqualTo(1);
+        assertThat(idempotencyStore.find(consentId).getSubmissionId()).isEqualTo(created.getId());
+    }
+
+    @Test
+    public void shouldRejectSubmissionWithDifferentIdempotencyKey() throws OBErrorResponseException {
+        // Given
+        String consentId = UUID.randomUUID().toString();
+        adapter.idempotentSave(aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+
+        // When
+        OBErrorResponseException e = catchThrowableOfType(
+                () -> adapter.idempotentSave(aPaymentSubmission(consentId, "another-key")),
+                OBErrorResponseException.class);
+
+        // Then
+        assertThat(e.getStatus()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(paymentSubmissionRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReplayRepeatedSubmissionOnceRecordHasExpired() throws OBErrorResponseException {
+        // Given
+        String consentId = UUID.randomUUID().toString();
+        FRDomesticPaymentSubmission created = adapter.idempotentSave(aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+        idempotencyStore.remove(FRPaymentIdempotencyRecord.of(created));
+
+        // When
+        FRDomesticPaymentSubmission replayed = adapter.idempotentSave(aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+
+        // Then
+        assertThat(replayed.getId()).isEqualTo(created.getId());
+        assertThat(paymentSubmissionRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReplaySubmissionRejectedByUniqueIndex() throws OBErrorResponseException {
+        // Given
+        String consentId = UUID.randomUUID().toString();
+        FRDomesticPaymentSubmission existing = paymentSubmissionRepository.insert(
+                aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+        // An orphaned record whose submission was never saved, so that the adapter goes on to insert a duplicate
+        idempotencyStore.putIfAbsent(anOrphanedRecord(consentId));
+
+        // When
+        FRDomesticPaymentSubmission replayed = adapter.idempotentSave(aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+
+        // Then
+        assertThat(replayed.getId()).isEqualTo(existing.getId());
+        assertThat(paymentSubmissionRepository.count()).isEqualTo(1);
+        assertThat(idempotencyStore.find(consentId).getSubmissionId()).isEqualTo(existing.getId());
+    }
+
+    @Test
+    public void shouldRejectSubmissionGivenRecordedSubmissionIsStillBeingSaved() {
+        // Given
+        String consentId = UUID.randomUUID().toString();
+        FRDomesticPaymentSubmission pending = aPaymentSubmission(consentId, IDEMPOTENCY_KEY);
+        idempotencyStore.putIfAbsent(FRPaymentIdempotencyRecord.pending(pending));
+
+        // When
+        OBErrorResponseException e = catchThrowableOfType(
+                () -> adapter.idempotentSave(aPaymentSubmission(consentId, IDEMPOTENCY_KEY)),
+                OBErrorResponseException.class);
+
+        // Then
+        assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(paymentSubmissionRepository.count()).isZero();
+        FRPaymentIdempotencyRecord record = idempotencyStore.find(consentId);
+        assertThat(record.getSubmissionId()).isEqualTo(pending.getId());
+        assertThat(record.isSaved()).isFalse();
+    }
+
+    @Test
+    public void shouldCreateSubmissionGivenOrphanedRecord() throws OBErrorResponseException {
+        // Given
+        String consentId = UUID.randomUUID().toString();
+        idempotencyStore.putIfAbsent(anOrphanedRecord(consentId));
+
+        // When
+        FRDomesticPaymentSubmission created = adapter.idempotentSave(aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+
+        // Then
+        assertThat(paymentSubmissionRepository.count()).isEqualTo(1);
+        FRPaymentIdempotencyRecord record = idempotencyStore.find(consentId);
+        assertThat(record.getSubmissionId()).isEqualTo(created.getId());
+        assertThat(record.isSaved()).isTrue();
+    }
+
+    @Test
+    public void shouldCreateOneSubmissionPerConsentFromConcurrentDuplicates() throws Exception {
+        // Given
+        List<String> consentIds = new ArrayList<>();
+        for (int i = 0; i < CONSENTS; i++) {
+            consentIds.add(UUID.randomUUID().toString());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Map<String, List<Future<FRDomesticPaymentSubmission>>> results = new HashMap<>();
+
+        // When
+        for (int i = 0; i < DUPLICATES; i++) {
+            for (String consentId : consentIds) {
+                results.computeIfAbsent(consentId, id -> new ArrayList<>()).add(executor.submit(() -> {
+                    start.await();
+                    return idempotentSaveRetryingConflicts(aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+                }));
+            }
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        // Then
+        assertThat(paymentSubmissionRepository.count()).isEqualTo(CONSENTS);
+        for (String consentId : consentIds) {
+            String submissionId = paymentSubmissionRepository.findByConsentId(consentId).get().getId();
+            for (Future<FRDomesticPaymentSubmission> result : results.get(consentId)) {
+                assertThat(result.get().getId()).isEqualTo(submissionId);
+            }
+        }
+    }
+
+    private FRDomesticPaymentSubmission idempotentSaveRetryingConflicts(FRDomesticPaymentSubmission paymentSubmission)
+            throws OBErrorResponseException, InterruptedException {
+        while (true) {
+            try {
+                return adapter.idempotentSave(paymentSubmission);
+            } catch (OBErrorResponseException e) {
+                // The submission is still being saved by a concurrent request, as a client would retry
+                if (e.getStatus() != HttpStatus.CONFLICT) {
+                    throw e;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static FRPaymentIdempotencyRecord anOrphanedRecord(String consentId) {
+        FRPaymentIdempotencyRecord record = FRPaymentIdempotencyRecord.pending(
+                aPaymentSubmission(consentId, IDEMPOTENCY_KEY));
+        record.setCreated(DateTime.now().minusHours(1));
+        return record;
+    }
+
+    private static FRDomesticPaymentSubmission aPaymentSubmission(String consentId, String idempotencyKey) {
+        return FRDomesticPaymentSubmission.builder()
+                .id(UUID.randomUUID().toString())
+                .payment(FRWriteDomestic.builder()
+                        .data(FRWriteDataDomestic.builder()
+                                .consentId(consentId)
+                                .build())
+                        .build())
+                .status(PENDING)
+                .created(new DateTime())
+                .updated(new DateTime())
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+}
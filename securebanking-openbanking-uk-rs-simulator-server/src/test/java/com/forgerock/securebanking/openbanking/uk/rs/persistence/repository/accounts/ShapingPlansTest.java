@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit test for {@link ShapingPlans}.
+ */
+public class ShapingPlansTest {
+
+    @Test
+    public void shouldBuildPlanOnceGivenSamePermissionsInAnyOrder() {
+        // Given
+        AtomicInteger builtPlans = new AtomicInteger();
+        ShapingPlans<List<String>> shapingPlans = new ShapingPlans<>(permissions -> {
+            builtPlans.incrementAndGet();
+            return ShapingPlan.<List<String>>builder().build();
+        });
+
+        // When
+        ShapingPlan<List<String>> plan = shapingPlans.forPermissions(Arrays.asList(
+                FRExternalPermissionsCode.READTRANSACTIONSBASIC, FRExternalPermissionsCode.READPAN));
+        ShapingPlan<List<String>> samePlan = shapingPlans.forPermissions(Arrays.asList(
+                FRExternalPermissionsCode.READPAN, FRExternalPermissionsCode.READTRANSACTIONSBASIC));
+
+        // Then
+        assertThat(samePlan).isSameAs(plan);
+        assertThat(builtPlans.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldApplyPlanForPermissions() {
+        // Given
+        ShapingPlans<List<String>> shapingPlans = new ShapingPlans<>(permissions -> {
+            ShapingPlan.Builder<List<String>> plan = ShapingPlan.builder();
+            if (permissions.contains(FRExternalPermissionsCode.READTRANSACTIONSBASIC)) {
+                plan.exclude("transaction.balance").redact(List::clear);
+            }
+            return plan.build();
+        });
+        List<String> document = new ArrayList<>(List.of("a value"));
+
+        // When
+        ShapingPlan<List<String>> plan = shapingPlans.forPermissions(List.of(
+                FRExternalPermissionsCode.READTRANSACTIONSBASIC));
+        Query query = plan.applyTo(new Query());
+        plan.applyAll(List.of(document));
+
+        // Then
+        assertThat(query.getFieldsObject().get("transaction.balance")).isEqualTo(0);
+        assertThat(document).isEmpty();
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts;
+
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit test for {@link FRAccountCache}.
+ */
+@ExtendWith(MockitoExtension.class)
+public class FRAccountCacheTest {
+
+    private static final String USER_ID = "user";
+
+    @Mock
+    private FRAccountRepository accountRepository;
+    private MeterRegistry meterRegistry;
+    private FRAccountCache accountCache;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        accountCache = new FRAccountCache(accountRepository, meterRegistry, 10, 10, Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void shouldReadTheAccountsOfAUserOnce() {
+        // Given
+        FRAccount account = FRAccount.builder().id("account").userID(USER_ID).build();
+        given(accountRepository.findByUserID(USER_ID)).willReturn(List.of(account));
+
+        // When
+        List<FRAccount> first = accountCache.findByUserId(USER_ID);
+        List<FRAccount> second = accountCache.findByUserId(USER_ID);
+
+        // Then
+        assertThat(first).containsExactly(account);
+        assertThat(second).containsExactly(account);
+        assertThat(accountCache.findById(account.getId())).contains(account);
+        verify(accountRepository, times(1)).findByUserID(USER_ID);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", FRAccountCache.USER_ACCOUNTS_CACHE)
+                .tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReadTheAccountsOfAUserAgainOnceInvalidated() {
+        // Given
+        FRAccount account = FRAccount.builder().id("account").userID(USER_ID).build();
+        FRAccount newAccount = FRAccount.builder().id("newAccount").userID(USER_ID).build();
+        given(accountRepository.findByUserID(USER_ID)).willReturn(List.of(account), List.of(account, newAccount));
+        accountCache.findByUserId(USER_ID);
+
+        // When
+        accountCache.invalidateUser(USER_ID);
+        List<FRAccount> accounts = accountCache.findByUserId(USER_ID);
+
+        // Then
+        assertThat(accounts).containsExactly(account, newAccount);
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import uk.org.openbanking.datamodel.account.OBExternalAccountIdentification3Code;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READACCOUNTSBASIC;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READACCOUNTSDETAIL;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READPAN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Spring Boot Test for the redaction of the fields of the accounts returned by {@link FRAccountRepositoryImpl}.
+ */
+@SpringBootTest
+public class FRAccountRepositoryImplTest {
+
+    private static final String ACCOUNT_ID = "account";
+    private static final String PAN = "5409050000000000";
+
+    @Autowired
+    private FRAccountRepository accountRepository;
+
+    @BeforeEach
+    public void saveData() {
+        accountRepository.save(FRAccount.builder()
+                .id(ACCOUNT_ID)
+                .userID("user")
+                .account(FRFinancialAccount.builder()
+                        .accountId(ACCOUNT_ID)
+                        .nickname("Nickname")
+                        .accounts(Collections.singletonList(FRAccountIdentifier.builder()
+                                .schemeName(OBExternalAccountIdentification3Code.PAN.toString())
+                                .identification(PAN)
+                                .name("Name")
+                                .build()))
+                        .build())
+                .build());
+    }
+
+    @AfterEach
+    public void removeData() {
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldReturnSubAccountsGivenDetailPermission() {
+        // When
+        FRAccount account = accountRepository.byAccountId(ACCOUNT_ID, Collections.singletonList(READACCOUNTSDETAIL));
+
+        // Then
+        assertThat(account.getAccount().getAccounts()).hasSize(1);
+        assertThat(account.getAccount().getAccounts().get(0).getName()).isEqualTo("Name");
+        assertThat(account.getAccount().getAccounts().get(0).getIdentification()).isEqualTo("xxx");
+    }
+
+    @Test
+    public void shouldLeaveOutSubAccountsGivenBasicPermission() {
+        // When
+        FRAccount account = accountRepository.byAccountId(ACCOUNT_ID, Collections.singletonList(READACCOUNTSBASIC));
+
+        // Then
+        assertThat(account.getAccount().getAccounts()).isNullOrEmpty();
+        assertThat(account.getAccount().getNickname()).isEqualTo("Nickname");
+    }
+
+    @Test
+    public void shouldNotMaskPanGivenReadPanPermission() {
+        // When
+        FRAccount account = accountRepository.byAccountId(ACCOUNT_ID,
+                Arrays.asList(READACCOUNTSDETAIL, READPAN));
+
+        // Then
+        assertThat(account.getAccount().getAccounts().get(0).getIdentification()).isEqualTo(PAN);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.statements;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRStatementData;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStatement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READSTATEMENTSBASIC;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READSTATEMENTSDETAIL;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.testsupport.account.FRStatementDataTestDataFactory.aValidFRStatementData;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Spring Boot Test for the statements of several accounts returned by {@link FRStatementRepositoryImpl}.
+ */
+@SpringBootTest
+public class FRStatementRepositoryImplTest {
+
+    private static final List<String> ACCOUNT_IDS = Arrays.asList("account1", "account2");
+    private static final int STATEMENTS_PER_ACCOUNT = 3;
+
+    @Autowired
+    private FRStatementRepository statementRepository;
+
+    @BeforeEach
+    public void saveData() {
+        for (String accountId : ACCOUNT_IDS) {
+            for (int i = 0; i < STATEMENTS_PER_ACCOUNT; i++) {
+                statementRepository.save(FRStatement.builder()
+                        .accountId(accountId)
+                        .statement(aValidFRStatementData(accountId))
+                        .build());
+            }
+        }
+    }
+
+    @AfterEach
+    public void removeData() {
+        statementRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldReturnPageOfStatementsOfAllAccounts() {
+        // When
+        Page<FRStatement> statements = statementRepository.byAccountIdInWithPermissions(ACCOUNT_IDS,
+                Collections.singletonList(READSTATEMENTSDETAIL), PageRequest.of(1, 4, Sort.Direction.ASC, "_id"));
+
+        // Then
+        assertThat(statements.getContent()).hasSize(2);
+        assertThat(statements.getTotalElements()).isEqualTo(ACCOUNT_IDS.size() * STATEMENTS_PER_ACCOUNT);
+        assertThat(statements.getTotalPages()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldStreamPageOfStatementsOfAllAccounts() {
+        // When
+        List<FRStatement> statements;
+        try (Stream<FRStatement> stream = statementRepository.streamByAccountIdInWithPermissions(ACCOUNT_IDS,
+                Collections.singletonList(READSTATEMENTSBASIC), PageRequest.of(1, 4, Sort.Direction.ASC, "_id"))) {
+            statements = stream.collect(Collectors.toList());
+        }
+
+        // Then
+        assertThat(statements).hasSize(2);
+        assertThat(statements).allMatch(statement -> statement.getStatement().getStatementAmounts() == null);
+        assertThat(statementRepository.countByAccountIdIn(new HashSet<>(ACCOUNT_IDS)))
+                .isEqualTo(ACCOUNT_IDS.size() * STATEMENTS_PER_ACCOUNT);
+    }
+
+    @Test
+    public void shouldReturnStatementAmountsGivenDetailPermission() {
+        // Given
+        FRStatementData expected = aValidFRStatementData(ACCOUNT_IDS.get(0));
+
+        // When
+        Page<FRStatement> statements = statementRepository.byAccountIdInWithPermissions(ACCOUNT_IDS,
+                Collections.singletonList(READSTATEMENTSDETAIL), PageRequest.of(0, 10));
+
+        // Then
+        assertThat(statements.getContent()).hasSize(ACCOUNT_IDS.size() * STATEMENTS_PER_ACCOUNT);
+        assertThat(statements.getContent()).allSatisfy(statement -> assertThat(
+                statement.getStatement().getStatementAmounts()).isEqualTo(expected.getStatementAmounts()));
+    }
+
+    @Test
+    public void shouldLeaveOutStatementAmountsGivenBasicPermission() {
+        // When
+        Page<FRStatement> statements = statementRepository.byAccountIdInWithPermissions(ACCOUNT_IDS,
+                Collections.singletonList(READSTATEMENTSBASIC), PageRequest.of(0, 10));
+
+        // Then
+        assertThat(statements.getContent()).hasSize(ACCOUNT_IDS.size() * STATEMENTS_PER_ACCOUNT);
+        assertThat(statements.getContent()).allSatisfy(statement ->
+                assertThat(statement.getStatement().getStatementAmounts()).isNull());
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRTransactionData;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import uk.org.openbanking.datamodel.account.OBExternalAccountIdentification3Code;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READPAN;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READTRANSACTIONSBASIC;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READTRANSACTIONSCREDITS;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode.READTRANSACTIONSDETAIL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Spring Boot Test for the redaction of the fields of the transactions returned by {@link FRTransactionRepositoryImpl}.
+ */
+@SpringBootTest
+public class FRTransactionRepositoryImplTest {
+
+    private static final String ACCOUNT_ID = "account";
+    private static final String PAN = "5409050000000000";
+    private static final String TRANSACTION_INFORMATION = "Cash from Bob";
+
+    @Autowired
+    private FRTransactionRepository transactionRepository;
+
+    @BeforeEach
+    public void saveData() {
+        DateTime bookingDateTime = DateTime.now();
+        transactionRepository.save(FRTransaction.builder()
+                .accountId(ACCOUNT_ID)
+                .bookingDateTime(bookingDateTime)
+                .transaction(FRTransactionData.builder()
+                        .accountId(ACCOUNT_ID)
+                        .transactionId("transaction")
+                        .creditDebitIndicator(FRCreditDebitIndicator.CREDIT)
+                        .bookingDateTime(bookingDateTime)
+                        .transactionInformation(TRANSACTION_INFORMATION)
+                        .balance(FRTransactionData.FRTransactionCashBalance.builder()
+                                .creditDebitIndicator(FRCreditDebitIndicator.CREDIT)
+                                .type(FRBalanceType.INTERIMBOOKED)
+                                .build())
+                        .debtorAccount(FRAccountIdentifier.builder()
+                                .schemeName(OBExternalAccountIdentification3Code.PAN.toString())
+                                .identification(PAN)
+                                .build())
+                        .build())
+                .build());
+    }
+
+    @AfterEach
+    public void removeData() {
+        transactionRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldReturnDetailFieldsGivenDetailPermission() {
+        // When
+        FRTransactionData transaction = readTransaction(READTRANSACTIONSDETAIL, READTRANSACTIONSCREDITS);
+
+        // Then
+        assertThat(transaction.getTransactionInformation()).isEqualTo(TRANSACTION_INFORMATION);
+        assertThat(transaction.getBalance()).isNotNull();
+        assertThat(transaction.getBalance().getType()).isEqualTo(FRBalanceType.INTERIMBOOKED);
+        assertThat(transaction.getDebtorAccount().getIdentification()).isEqualTo("xxx");
+    }
+
+    @Test
+    public void shouldLeaveOutDetailFieldsGivenBasicPermission() {
+        // When
+        FRTransactionData transaction = readTransaction(READTRANSACTIONSBASIC, READTRANSACTIONSCREDITS);
+
+        // Then
+        assertThat(transaction.getTransactionInformation()).isEmpty();
+        assertThat(transaction.getBalance()).isNull();
+        assertThat(transaction.getTransactionId()).isEqualTo("transaction");
+        assertThat(transaction.getCreditDebitIndicator()).isEqualTo(FRCreditDebitIndicator.CREDIT);
+    }
+
+    @Test
+    public void shouldNotMaskPanGivenReadPanPermission() {
+        // When
+        FRTransactionData transaction = readTransaction(READTRANSACTIONSDETAIL, READTRANSACTIONSCREDITS, READPAN);
+
+        // Then
+        assertThat(transaction.getDebtorAccount().getIdentification()).isEqualTo(PAN);
+    }
+
+    private FRTransactionData readTransaction(FRExternalPermissionsCode... permissions) {
+        List<FRTransaction> transactions = transactionRepository.byAccountIdInWithPermissions(
+                Collections.singletonList(ACCOUNT_ID), Arrays.asList(permissions), null, PageRequest.of(0, 10))
+                .getContent();
+        assertThat(transactions).hasSize(1);
+        return transactions.get(0).getTransaction();
+    }
+}
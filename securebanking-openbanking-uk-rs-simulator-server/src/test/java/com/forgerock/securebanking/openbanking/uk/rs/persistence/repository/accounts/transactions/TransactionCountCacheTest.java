@@ -0,0 +1,148 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRExternalPermissionsCode;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRTransactionData;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit test for {@link TransactionCountCache}.
+ */
+@ExtendWith(MockitoExtension.class)
+public class TransactionCountCacheTest {
+
+    private static final String ACCOUNT_ID = "12345";
+    private static final List<FRExternalPermissionsCode> CREDITS_ONLY =
+            Collections.singletonList(FRExternalPermissionsCode.READTRANSACTIONSCREDITS);
+
+    @Mock
+    private FRTransactionRepository transactionRepository;
+
+    private TransactionCountCache transactionCountCache;
+
+    @BeforeEach
+    public void setUp() {
+        transactionCountCache = new TransactionCountCache(transactionRepository, new SimpleMeterRegistry(), true, 100);
+    }
+
+    @Test
+    public void shouldOnlyCountOnceGivenSameKey() {
+        // Given
+        TransactionCountKey key = TransactionCountKey.forAccount(ACCOUNT_ID, null, null, CREDITS_ONLY);
+        given(transactionRepository.countWithPermissions(key)).willReturn(5L);
+
+        // When
+        Integer totalPages = transactionCountCache.totalPages(key, 2);
+        Integer cachedTotalPages = transactionCountCache.totalPages(key, 2);
+
+        // Then
+        assertThat(totalPages).isEqualTo(3);
+        assertThat(cachedTotalPages).isEqualTo(3);
+        verify(transactionRepository, times(1)).countWithPermissions(any());
+    }
+
+    @Test
+    public void shouldIncrementCountGivenMatchingTransactionsCreated() {
+        // Given
+        TransactionCountKey key = TransactionCountKey.forAccount(ACCOUNT_ID, DateTime.now().minusDays(1), null,
+                CREDITS_ONLY);
+        given(transactionRepository.countWithPermissions(key)).willReturn(1L);
+        transactionCountCache.count(key);
+
+        // When
+        transactionCountCache.onTransactionsCreated(Arrays.asList(
+                aTransaction(ACCOUNT_ID, DateTime.now(), FRCreditDebitIndicator.CREDIT),
+                aTransaction(ACCOUNT_ID, DateTime.now(), FRCreditDebitIndicator.DEBIT),
+                aTransaction(ACCOUNT_ID, DateTime.now().minusDays(2), FRCreditDebitIndicator.CREDIT),
+                aTransaction("another account", DateTime.now(), FRCreditDebitIndicator.CREDIT)));
+
+        // Then
+        assertThat(transactionCountCache.count(key)).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRecountGivenAccountEvicted() {
+        // Given
+        TransactionCountKey key = TransactionCountKey.forAccount(ACCOUNT_ID, null, null, CREDITS_ONLY);
+        given(transactionRepository.countWithPermissions(key)).willReturn(4L, 0L);
+        transactionCountCache.count(key);
+
+        // When
+        transactionCountCache.evictAccount(ACCOUNT_ID);
+
+        // Then
+        assertThat(transactionCountCache.count(key)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldEvictCountsGivenMoreKeysThanMaxEntries() {
+        // Given
+        transactionCountCache = new TransactionCountCache(transactionRepository, new SimpleMeterRegistry(), true, 10);
+        given(transactionRepository.countWithPermissions(any())).willReturn(1L);
+        DateTime fromBookingDateTime = DateTime.now();
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            transactionCountCache.count(TransactionCountKey.forAccount(ACCOUNT_ID, fromBookingDateTime.minusMillis(i),
+                    null, CREDITS_ONLY));
+        }
+
+        // Then
+        assertThat(transactionCountCache.size()).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    public void shouldNotCountGivenTotalPagesDisabled() {
+        // Given
+        transactionCountCache = new TransactionCountCache(transactionRepository, new SimpleMeterRegistry(), false, 100);
+        TransactionCountKey key = TransactionCountKey.forAccount(ACCOUNT_ID, null, null, CREDITS_ONLY);
+
+        // When
+        Integer totalPages = transactionCountCache.totalPages(key, 2);
+
+        // Then
+        assertThat(totalPages).isNull();
+        verify(transactionRepository, times(0)).countWithPermissions(any());
+    }
+
+    private static FRTransaction aTransaction(String accountId, DateTime bookingDateTime,
+                                              FRCreditDebitIndicator creditDebitIndicator) {
+        return FRTransaction.builder()
+                .accountId(accountId)
+                .bookingDateTime(bookingDateTime)
+                .transaction(FRTransactionData.builder().creditDebitIndicator(creditDebitIndicator).build())
+                .build();
+    }
+}
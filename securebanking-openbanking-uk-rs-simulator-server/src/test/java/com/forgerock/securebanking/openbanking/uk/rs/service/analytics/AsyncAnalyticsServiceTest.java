@@ -0,0 +1,124 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.analytics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Unit test for {@link AsyncAnalyticsService}. The background thread is not started, batches are drained explicitly.
+ */
+@ExtendWith(MockitoExtension.class)
+public class AsyncAnalyticsServiceTest {
+
+    @Mock
+    private ObjectProvider<AnalyticsSink> sinks;
+
+    private final List<AnalyticsEvent> written = new ArrayList<>();
+    private final AggregatingAnalyticsSink aggregatingSink = new AggregatingAnalyticsSink();
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        given(sinks.orderedStream()).willReturn(Stream.<AnalyticsSink>of(written::addAll, aggregatingSink));
+    }
+
+    @Test
+    public void shouldWriteRecordedEventsToSinksInBatches() {
+        // Given
+        AsyncAnalyticsService analyticsService = analyticsService(8, 2, BackpressurePolicy.DROP);
+        analyticsService.recordActivity("Payment {} created", "1");
+        analyticsService.recordActivity("Payment {} created", "2");
+        analyticsService.recordActivity("Account {} read", "3");
+
+        // When
+        int firstBatch = analyticsService.drainBatch();
+        int secondBatch = analyticsService.drainBatch();
+
+        // Then
+        assertThat(firstBatch).isEqualTo(2);
+        assertThat(secondBatch).isEqualTo(1);
+        assertThat(written.stream().map(AnalyticsEvent::getMessage).collect(Collectors.toList()))
+                .containsExactly("Payment 1 created", "Payment 2 created", "Account 3 read");
+        assertThat(aggregatingSink.getCounts())
+                .containsEntry("Payment {} created", 2L)
+                .containsEntry("Account {} read", 1L);
+    }
+
+    @Test
+    public void shouldDropEventsGivenFullBuffer() {
+        // Given
+        AsyncAnalyticsService analyticsService = analyticsService(2, 10, BackpressurePolicy.DROP);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            analyticsService.recordActivity("Event {}", i);
+        }
+
+        // Then
+        assertThat(meterRegistry.counter(AsyncAnalyticsService.RECORDED_METRIC).count()).isEqualTo(2);
+        assertThat(meterRegistry.counter(AsyncAnalyticsService.DROPPED_METRIC, "reason", "full").count()).isEqualTo(3);
+        assertThat(analyticsService.drainBatch()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldSampleEventsGivenHalfFullBuffer() {
+        // Given
+        AsyncAnalyticsService analyticsService = analyticsService(8, 10, BackpressurePolicy.SAMPLE);
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            analyticsService.recordActivity("Event {}", i);
+        }
+
+        // Then
+        double sampledOut = meterRegistry.counter(AsyncAnalyticsService.DROPPED_METRIC, "reason", "sampled").count();
+        assertThat(sampledOut).isGreaterThan(0);
+        assertThat(meterRegistry.counter(AsyncAnalyticsService.RECORDED_METRIC).count()).isEqualTo(8 - sampledOut);
+    }
+
+    @Test
+    public void shouldGiveUpBlockingAfterTimeout() {
+        // Given
+        AsyncAnalyticsService analyticsService = analyticsService(1, 10, BackpressurePolicy.BLOCK);
+        analyticsService.recordActivity("Event {}", 1);
+
+        // When
+        analyticsService.recordActivity("Event {}", 2);
+
+        // Then
+        assertThat(meterRegistry.counter(AsyncAnalyticsService.DROPPED_METRIC, "reason", "full").count()).isEqualTo(1);
+    }
+
+    private AsyncAnalyticsService analyticsService(int bufferSize, int batchSize, BackpressurePolicy policy) {
+        return new AsyncAnalyticsService(sinks, meterRegistry, bufferSize, batchSize, policy, 2, 1, 20);
+    }
+}
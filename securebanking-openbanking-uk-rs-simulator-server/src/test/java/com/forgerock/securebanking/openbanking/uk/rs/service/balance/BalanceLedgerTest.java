@@ -0,0 +1,124 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.balance;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCashBalance;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.service.balance.BalanceLedger.UNKNOWN;
+import static com.forgerock.securebanking.openbanking.uk.rs.service.balance.BalanceLedger.toMinorUnits;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit test for {@link BalanceLedger}.
+ */
+public class BalanceLedgerTest {
+
+    private static final String ACCOUNT_ID = "account";
+    private static final Duration EXPIRE_AFTER_WRITE = Duration.ofMinutes(1);
+
+    @Test
+    public void shouldParseAmountsIntoMinorUnits() {
+        assertThat(toMinorUnits("10", false)).isEqualTo(1000);
+        assertThat(toMinorUnits("10.5", false)).isEqualTo(1050);
+        assertThat(toMinorUnits("-0.01", false)).isEqualTo(-1);
+        assertThat(toMinorUnits("10.010", false)).isEqualTo(1001);
+        assertThat(toMinorUnits("10.001", false)).isEqualTo(UNKNOWN);
+        assertThat(toMinorUnits("10.001", true)).isEqualTo(1001);
+        assertThat(toMinorUnits("-10.001", true)).isEqualTo(-1000);
+        assertThat(toMinorUnits("1e3", false)).isEqualTo(UNKNOWN);
+        assertThat(toMinorUnits(".", false)).isEqualTo(UNKNOWN);
+        assertThat(toMinorUnits("99999999999999999999", false)).isEqualTo(UNKNOWN);
+    }
+
+    @Test
+    public void shouldNotLoadBalanceReadBeforeAWrite() {
+        // Given
+        BalanceLedger ledger = new BalanceLedger(true, EXPIRE_AFTER_WRITE);
+        FRBalance balance = aBalance("10.00");
+        long versionBeforeRead = ledger.getVersion();
+        ledger.clear();
+
+        // When
+        ledger.load(balance, versionBeforeRead);
+
+        // Then
+        assertThat(ledger.getAvailable(ACCOUNT_ID)).isEqualTo(UNKNOWN);
+    }
+
+    @Test
+    public void shouldReplaceBalanceOnWrite() {
+        // Given
+        BalanceLedger ledger = new BalanceLedger(true, EXPIRE_AFTER_WRITE);
+        FRBalance balance = aBalance("10.00");
+        ledger.load(balance, ledger.getVersion());
+
+        // When
+        ledger.put(aBalance("2.50"));
+
+        // Then
+        assertThat(ledger.getAvailable(ACCOUNT_ID)).isEqualTo(250);
+    }
+
+    @Test
+    public void shouldHoldDebitBalanceAsNegative() {
+        // Given
+        BalanceLedger ledger = new BalanceLedger(true, EXPIRE_AFTER_WRITE);
+
+        // When
+        ledger.load(aBalance("10.00", FRCreditDebitIndicator.DEBIT), ledger.getVersion());
+
+        // Then
+        assertThat(ledger.getAvailable(ACCOUNT_ID)).isEqualTo(-1000);
+    }
+
+    @Test
+    public void shouldExpireBalanceAfterWrite() {
+        // Given
+        BalanceLedger ledger = new BalanceLedger(true, Duration.ZERO);
+
+        // When
+        ledger.put(aBalance("10.00"));
+
+        // Then
+        assertThat(ledger.getAvailable(ACCOUNT_ID)).isEqualTo(UNKNOWN);
+    }
+
+    private FRBalance aBalance(String amount) {
+        return aBalance(amount, FRCreditDebitIndicator.CREDIT);
+    }
+
+    private FRBalance aBalance(String amount, FRCreditDebitIndicator creditDebitIndicator) {
+        return FRBalance.builder()
+                .accountId(ACCOUNT_ID)
+                .balance(FRCashBalance.builder()
+                        .accountId(ACCOUNT_ID)
+                        .creditDebitIndicator(creditDebitIndicator)
+                        .type(FRBalanceType.INTERIMAVAILABLE)
+                        .amount(FRAmount.builder()
+                                .currency("GBP")
+                                .amount(amount)
+                                .build())
+                        .build())
+                .build();
+    }
+}
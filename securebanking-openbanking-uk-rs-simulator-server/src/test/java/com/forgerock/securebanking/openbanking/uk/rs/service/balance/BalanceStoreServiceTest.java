@@ -0,0 +1,206 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.balance;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCashBalance;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType.INTERIMAVAILABLE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Spring Boot Test for the balance updates of {@link BalanceStoreService}, under contention.
+ */
+@SpringBootTest
+@Slf4j
+public class BalanceStoreServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int UPDATES_PER_THREAD = 250;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Autowired
+    private BalanceStoreService balanceStoreService;
+
+    @Autowired
+    private FRBalanceRepository balanceRepository;
+
+    @Autowired
+    private BalanceLedger balanceLedger;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    public void removeData() {
+        balanceRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentDebitsAndCredits() throws Exception {
+        // Given
+        String accountId = UUID.randomUUID().toString();
+        balanceRepository.save(aBalance(accountId, INTERIMAVAILABLE, "1000.00", FRCreditDebitIndicator.CREDIT));
+        // A second instance has its own locks, so contention between "instances" is resolved by retrying
+        BalanceStoreService otherInstance = new BalanceStoreService(balanceRepository, balanceLedger, mongoTemplate,
+                1024, Integer.MAX_VALUE);
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            BalanceStoreService service = i % 2 == 0 ? balanceStoreService : otherInstance;
+            boolean credit = i % 4 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < UPDATES_PER_THREAD; j++) {
+                    if (credit) {
+                        service.credit(accountId, INTERIMAVAILABLE, AMOUNT);
+                    } else {
+                        service.debit(accountId, INTERIMAVAILABLE, AMOUNT);
+                    }
+                }
+                return null;
+            }));
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        executor.shutdown();
+
+        // Then
+        int updates = THREADS * UPDATES_PER_THREAD;
+        log.info("{} concurrent updates of one balance took {} ms ({} updates/s)", updates, elapsedNanos / 1_000_000,
+                updates * 1_000_000_000L / elapsedNanos);
+        // 2 of the 8 threads credit, the other 6 debit
+        FRBalance balance = balanceRepository.findByAccountIdAndBalanceType(accountId, INTERIMAVAILABLE).get();
+        assertThat(balance.getCurrencyAndAmount().getAmount()).isEqualTo("990.00");
+        assertThat(balance.getCreditDebitIndicator()).isEqualTo(FRCreditDebitIndicator.CREDIT);
+    }
+
+    @Test
+    public void shouldBecomeDebitWhenDebitingMoreThanTheBalance() {
+        // Given
+        String accountId = UUID.randomUUID().toString();
+        balanceRepository.save(aBalance(accountId, INTERIMAVAILABLE, "10.00", FRCreditDebitIndicator.CREDIT));
+
+        // When
+        FRBalance balance = balanceStoreService.debit(accountId, INTERIMAVAILABLE, new BigDecimal("10.50"));
+
+        // Then
+        assertThat(balance.getCurrencyAndAmount().getAmount()).isEqualTo("0.50");
+        assertThat(balance.getCreditDebitIndicator()).isEqualTo(FRCreditDebitIndicator.DEBIT);
+        FRBalance saved = balanceRepository.findByAccountIdAndBalanceType(accountId, INTERIMAVAILABLE).get();
+        assertThat(saved.getCurrencyAndAmount().getAmount()).isEqualTo("0.50");
+        assertThat(saved.getCreditDebitIndicator()).isEqualTo(FRCreditDebitIndicator.DEBIT);
+    }
+
+    @Test
+    public void shouldNotOverdrawGivenConcurrentConditionalDebits() throws Exception {
+        // Given
+        String accountId = UUID.randomUUID().toString();
+        balanceRepository.save(aBalance(accountId, INTERIMAVAILABLE, "10.00", FRCreditDebitIndicator.CREDIT));
+        BalanceStoreService otherInstance = new BalanceStoreService(balanceRepository, balanceLedger, mongoTemplate,
+                1024, Integer.MAX_VALUE);
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            BalanceStoreService service = i % 2 == 0 ? balanceStoreService : otherInstance;
+            futures.add(executor.submit(() -> {
+                start.await();
+                int debited = 0;
+                for (int j = 0; j < UPDATES_PER_THREAD; j++) {
+                    if (service.debitIfAvailable(accountId, INTERIMAVAILABLE, AMOUNT).isPresent()) {
+                        debited++;
+                    }
+                }
+                return debited;
+            }));
+        }
+        start.countDown();
+        int debited = 0;
+        for (Future<Integer> future : futures) {
+            debited += future.get();
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(debited).isEqualTo(1000);
+        FRBalance balance = balanceRepository.findByAccountIdAndBalanceType(accountId, INTERIMAVAILABLE).get();
+        assertThat(balance.getCurrencyAndAmount().getAmount()).isEqualTo("0.00");
+        assertThat(balance.getCreditDebitIndicator()).isEqualTo(FRCreditDebitIndicator.CREDIT);
+    }
+
+    @Test
+    public void shouldNotDebitMoreThanTheBalanceGivenConditionalDebit() {
+        // Given
+        String accountId = UUID.randomUUID().toString();
+        balanceRepository.save(aBalance(accountId, INTERIMAVAILABLE, "10.00", FRCreditDebitIndicator.CREDIT));
+
+        // When
+        Optional<FRBalance> balance = balanceStoreService.debitIfAvailable(accountId, INTERIMAVAILABLE,
+                new BigDecimal("10.50"));
+
+        // Then
+        assertThat(balance).isEmpty();
+        FRBalance saved = balanceRepository.findByAccountIdAndBalanceType(accountId, INTERIMAVAILABLE).get();
+        assertThat(saved.getCurrencyAndAmount().getAmount()).isEqualTo("10.00");
+        assertThat(saved.getCreditDebitIndicator()).isEqualTo(FRCreditDebitIndicator.CREDIT);
+    }
+
+    private static FRBalance aBalance(String accountId, FRBalanceType type, String amount,
+                                      FRCreditDebitIndicator creditDebitIndicator) {
+        return FRBalance.builder()
+                .accountId(accountId)
+                .balance(FRCashBalance.builder()
+                        .accountId(accountId)
+                        .creditDebitIndicator(creditDebitIndicator)
+                        .type(type)
+                        .amount(FRAmount.builder()
+                                .currency("GBP")
+                                .amount(amount)
+                                .build())
+                        .build())
+                .build();
+    }
+}
@@ -27,6 +27,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.Optional;
 
 import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType.INTERIMAVAILABLE;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator.DEBIT;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.mockito.BDDMockito.given;
@@ -40,6 +41,9 @@ public class FundsAvailabilityServiceTest {
     @Mock
     private BalanceStoreService balanceStoreService;
 
+    @Mock
+    private BalanceLedger balanceLedger;
+
     @InjectMocks
     private FundsAvailabilityService fundsAvailabilityService;
 
@@ -79,6 +83,25 @@ public class FundsAvailabilityServiceTest {
         assertThat(isFundsAvailable).isFalse();
     }
 
+    @Test
+    public void shouldNotBeFundsAvailableGivenDebitBalance() {
+        // Given
+        FRCashBalance cashBalance = FRCashBalanceTestDataFactory.aValidFRCashBalance();
+        cashBalance.setCreditDebitIndicator(DEBIT);
+        String accountId = cashBalance.getAccountId();
+        FRBalance balance = FRBalance.builder()
+                .accountId(accountId)
+                .balance(cashBalance)
+                .build();
+        given(balanceStoreService.getBalance(accountId, cashBalance.getType())).willReturn(Optional.of(balance));
+
+        // When
+        boolean isFundsAvailable = fundsAvailabilityService.isFundsAvailable(accountId, "1.00");
+
+        // Then
+        assertThat(isFundsAvailable).isFalse();
+    }
+
     @Test
     public void shouldFailToVerifyFundsAvailableGivenNoBalanceFound() {
         // Given
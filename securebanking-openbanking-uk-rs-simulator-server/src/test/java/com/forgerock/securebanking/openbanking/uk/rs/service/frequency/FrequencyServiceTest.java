@@ -18,6 +18,8 @@ package com.forgerock.securebanking.openbanking.uk.rs.service.frequency;
 import org.joda.time.DateTime;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
@@ -236,4 +238,52 @@ public class FrequencyServiceTest {
         assertThat(e.getMessage()).isEqualTo("Frequency '"+frequency+"' doesn't match regex '"+frequencyType.getPattern()+"'");
     }
 
+    @Test
+    public void shouldFindNextQuarterDayOfEachQuarterType() {
+        for (QuarterType quarterType : QuarterType.values()) {
+            // Given
+            String frequency = FrequencyType.QUARTERDAY.getFrequencyStr() + ":" + quarterType.name();
+
+            for (int days = 0; days < 2 * 366; days++) {
+                DateTime previous = PREVIOUS_DATE_TIME.plusDays(days);
+
+                // When
+                DateTime dateTime = FrequencyService.getNextDateTime(previous, frequency);
+
+                // Then
+                DateTime expected = previous.plusDays(1);
+                while (!quarterType.matchOneQuarter(expected)) {
+                    expected = expected.plusDays(1);
+                }
+                assertThat(dateTime).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    public void shouldProjectNextDateTimes() {
+        // Given
+        FrequencyRule rule = FrequencyService.getRule(FrequencyType.INTERVALMONTHDAY.getFrequencyStr() + ":01:-01");
+
+        // When
+        List<DateTime> dateTimes = FrequencyService.nextN(PREVIOUS_DATE_TIME, rule, 3);
+
+        // Then
+        assertThat(dateTimes).containsExactly(
+                new DateTime(2021, 3, 31, 11, 0),
+                new DateTime(2021, 4, 30, 11, 0),
+                new DateTime(2021, 5, 31, 11, 0));
+    }
+
+    @Test
+    public void shouldCacheCompiledRules() {
+        // Given
+        String frequency = FrequencyType.INTERVALDAY.getFrequencyStr() + ":10";
+
+        // When
+        FrequencyRule rule = FrequencyService.getRule(frequency);
+
+        // Then
+        assertThat(FrequencyService.getRule(frequency)).isSameAs(rule);
+    }
 }
@@ -0,0 +1,354 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.payment;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCashBalance;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRFinancialAccount;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAccountIdentifier;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRWriteDataDomestic;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRWriteDomestic;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRWriteDomesticDataInitiation;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRAccount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRPendingCredit;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRTransaction;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRDomesticScheduledPaymentSubmission;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.accounts.FRAccountRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.DomesticPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.payments.DomesticScheduledPaymentSubmissionRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.service.balance.BalanceStoreService;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType.INTERIMAVAILABLE;
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.testsupport.account.FRFinancialAccountTestDataFactory.aValidFRFinancialAccount;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.ACCEPTEDSETTLEMENTCOMPLETED;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.ACCEPTEDSETTLEMENTINPROCESS;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.ACCEPTEDWITHOUTPOSTING;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.INITIATIONCOMPLETED;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.INITIATIONPENDING;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.PENDING;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.payment.FRSubmissionStatus.REJECTED;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Spring Boot Test for {@link PaymentExecutionEngine}. No worker threads are started, the submissions are executed by
+ * the test instead.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {"rs.payments.execution.enabled=true", "rs.payments.execution.parallelism=0"})
+public class PaymentExecutionEngineTest {
+
+    private static final String CURRENCY = "GBP";
+
+    @Autowired
+    private PaymentExecutionEngine paymentExecutionEngine;
+
+    @Autowired
+    private DomesticPaymentSubmissionRepository domesticPaymentRepository;
+
+    @Autowired
+    private DomesticScheduledPaymentSubmissionRepository domesticScheduledPaymentRepository;
+
+    @Autowired
+    private FRAccountRepository accountRepository;
+
+    @Autowired
+    private FRBalanceRepository balanceRepository;
+
+    @Autowired
+    private FRTransactionRepository transactionRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @SpyBean
+    private PaymentPostingService paymentPostingService;
+
+    @SpyBean
+    private BalanceStoreService balanceStoreService;
+
+    @AfterEach
+    public void removeData() {
+        domesticPaymentRepository.deleteAll();
+        domesticScheduledPaymentRepository.deleteAll();
+        accountRepository.deleteAll();
+        balanceRepository.deleteAll();
+        transactionRepository.deleteAll();
+        mongoTemplate.remove(new Query(), FRPendingCredit.class);
+    }
+
+    @Test
+    public void shouldPostPendingDomesticPayments() {
+        // Given
+        FRAccountIdentifier debtor = anAccountIdentifier();
+        FRAccountIdentifier creditor = anAccountIdentifier();
+        String debtorId = anAccountWithBalance(debtor, "100.00");
+        String creditorId = anAccountWithBalance(creditor, "0.00");
+        String posted = aPendingPayment(debtor, creditor, "30.00");
+        String insufficientFunds = aPendingPayment(debtor, creditor, "80.00");
+        String externalDebtor = aPendingPayment(anAccountIdentifier(), creditor, "10.00");
+
+        // When
+        paymentExecutionEngine.executePendingSubmissions();
+
+        // Then
+        assertThat(domesticPaymentRepository.findById(posted).get().getStatus()).isEqualTo(ACCEPTEDSETTLEMENTCOMPLETED);
+        assertThat(domesticPaymentRepository.findById(insufficientFunds).get().getStatus()).isEqualTo(REJECTED);
+        assertThat(domesticPaymentRepository.findById(externalDebtor).get().getStatus())
+                .isEqualTo(ACCEPTEDWITHOUTPOSTING);
+        assertThat(balanceAmount(debtorId)).isEqualTo("70.00");
+        assertThat(balanceAmount(creditorId)).isEqualTo("30.00");
+        List<FRTransaction> transactions = mongoTemplate.find(
+                query(where("accountId").in(debtorId, creditorId)), FRTransaction.class);
+        assertThat(transactions).extracting(transaction -> transaction.getTransaction().getCreditDebitIndicator())
+                .containsExactlyInAnyOrder(FRCreditDebitIndicator.DEBIT, FRCreditDebitIndicator.CREDIT);
+    }
+
+    @Test
+    public void shouldReleasePaymentsGivenPostingFails() {
+        // Given
+        FRAccountIdentifier debtor = anAccountIdentifier();
+        FRAccountIdentifier creditor = anAccountIdentifier();
+        String debtorId = anAccountWithBalance(debtor, "100.00");
+        anAccountWithBalance(creditor, "0.00");
+        String id = aPendingPayment(debtor, creditor, "30.00");
+        doThrow(new DataAccessResourceFailureException("Unavailable")).doCallRealMethod()
+                .when(paymentPostingService).post(anyList());
+
+        // When
+        paymentExecutionEngine.executePendingSubmissions();
+
+        // Then
+        FRDomesticPaymentSubmission released = domesticPaymentRepository.findById(id).get();
+        assertThat(released.getStatus()).isEqualTo(PENDING);
+        assertThat(mongoTemplate.exists(query(where("_id").is(id)
+                .and(PaymentExecutionEngine.CLAIM_FIELD).exists(true)), FRDomesticPaymentSubmission.class)).isFalse();
+        assertThat(balanceAmount(debtorId)).isEqualTo("100.00");
+
+        // When
+        paymentExecutionEngine.executePendingSubmissions();
+
+        // Then
+        assertThat(domesticPaymentRepository.findById(id).get().getStatus()).isEqualTo(ACCEPTEDSETTLEMENTCOMPLETED);
+        assertThat(balanceAmount(debtorId)).isEqualTo("70.00");
+    }
+
+    @Test
+    public void shouldRefundAndReleasePaymentsGivenCreditFails() {
+        // Given
+        FRAccountIdentifier debtor = anAccountIdentifier();
+        FRAccountIdentifier creditor = anAccountIdentifier();
+        String debtorId = anAccountWithBalance(debtor, "100.00");
+        String creditorId = anAccountWithBalance(creditor, "0.00");
+        String id = aPendingPayment(debtor, creditor, "30.00");
+        DataAccessResourceFailureException failure = new DataAccessResourceFailureException("Unavailable");
+        doThrow(failure).doThrow(failure).doThrow(failure).doCallRealMethod()
+                .when(balanceStoreService).credit(eq(creditorId), any(), any());
+
+        // When
+        paymentExecutionEngine.executePendingSubmissions();
+
+        // Then
+        assertThat(domesticPaymentRepository.findById(id).get().getStatus()).isEqualTo(PENDING);
+        assertThat(balanceAmount(debtorId)).isEqualTo("100.00");
+        assertThat(balanceAmount(creditorId)).isEqualTo("0.00");
+        assertThat(mongoTemplate.count(query(where("accountId").in(debtorId, creditorId)), FRTransaction.class))
+                .isZero();
+
+        // When
+        paymentExecutionEngine.executePendingSubmissions();
+
+        // Then
+        assertThat(domesticPaymentRepository.findById(id).get().getStatus()).isEqualTo(ACCEPTEDSETTLEMENTCOMPLETED);
+        assertThat(balanceAmount(debtorId)).isEqualTo("70.00");
+        assertThat(balanceAmount(creditorId)).isEqualTo("30.00");
+    }
+
+    @Test
+    public void shouldMakePendingCreditGivenRefundFailed() {
+        // Given
+        FRAccountIdentifier debtor = anAccountIdentifier();
+        String debtorId = anAccountWithBalance(debtor, "70.00");
+        mongoTemplate.insert(FRPendingCredit.builder()
+                .id(UUID.randomUUID().toString())
+                .accountId(debtorId)
+                .balanceType(INTERIMAVAILABLE)
+                .amount(new BigDecimal("30.00"))
+                .submissionIds(singletonList(UUID.randomUUID().toString()))
+                .build());
+        aPendingPayment(anAccountIdentifier(), debtor, "10.00");
+
+        // When
+        paymentExecutionEngine.executePendingSubmissions();
+
+        // Then
+        assertThat(balanceAmount(debtorId)).isEqualTo("100.00");
+        assertThat(mongoTemplate.count(new Query(), FRPendingCredit.class)).isZero();
+    }
+
+    @Test
+    public void shouldWriteRunningBalanceOfBalanceDebited() {
+        // Given
+        FRAccountIdentifier debtor = anAccountIdentifier();
+        FRAccountIdentifier creditor = anAccountIdentifier();
+        String debtorId = anAccountWithBalance(debtor, "100.00");
+        String creditorId = anAccountWithBalance(creditor, "0.00");
+        aPendingPayment(debtor, creditor, "30.00");
+        doAnswer(invocation -> {
+            Object balances = invocation.callRealMethod();
+            // The debtor is credited once its balance has been read
+            mongoTemplate.updateFirst(query(where("accountId").is(debtorId)),
+                    new Update().set("balance.amount.amount", "150.00"), FRBalance.class);
+            return balances;
+        }).when(balanceStoreService).getBalances(anyCollection(), eq(INTERIMAVAILABLE));
+
+        // When
+        paymentExecutionEngine.executePendingSubmissions();
+
+        // Then
+        FRTransaction debit = mongoTemplate.findOne(query(where("accountId").is(debtorId)), FRTransaction.class);
+        FRTransaction credit = mongoTemplate.findOne(query(where("accountId").is(creditorId)), FRTransaction.class);
+        assertThat(balanceAmount(debtorId)).isEqualTo("120.00");
+        assertThat(debit.getTransaction().getBalance().getAmount().getAmount()).isEqualTo("120.00");
+        assertThat(credit.getTransaction().getBalance().getAmount().getAmount()).isEqualTo("30.00");
+    }
+
+    @Test
+    public void shouldTakeOverStaleClaims() {
+        // Given
+        FRAccountIdentifier debtor = anAccountIdentifier();
+        FRAccountIdentifier creditor = anAccountIdentifier();
+        String debtorId = anAccountWithBalance(debtor, "100.00");
+        anAccountWithBalance(creditor, "0.00");
+        String stale = aPendingPayment(debtor, creditor, "30.00");
+        String claimed = aPendingPayment(debtor, creditor, "20.00");
+        claim(stale, DateTime.now().minusHours(1));
+        claim(claimed, DateTime.now());
+
+        // When
+        paymentExecutionEngine.executePendingSubmissions();
+
+        // Then
+        assertThat(domesticPaymentRepository.findById(stale).get().getStatus()).isEqualTo(ACCEPTEDSETTLEMENTCOMPLETED);
+        assertThat(domesticPaymentRepository.findById(claimed).get().getStatus())
+                .isEqualTo(ACCEPTEDSETTLEMENTINPROCESS);
+        assertThat(balanceAmount(debtorId)).isEqualTo("70.00");
+    }
+
+    @Test
+    public void shouldCompleteInitiationOfScheduledPayments() {
+        // Given
+        String id = UUID.randomUUID().toString();
+        domesticScheduledPaymentRepository.save(FRDomesticScheduledPaymentSubmission.builder()
+                .id(id)
+                .status(INITIATIONPENDING)
+                .build());
+
+        // When
+        paymentExecutionEngine.executePendingSubmissions();
+
+        // Then
+        assertThat(domesticScheduledPaymentRepository.findById(id).get().getStatus()).isEqualTo(INITIATIONCOMPLETED);
+    }
+
+    private String anAccountWithBalance(FRAccountIdentifier accountIdentifier, String amount) {
+        FRFinancialAccount financialAccount = aValidFRFinancialAccount();
+        financialAccount.setAccounts(singletonList(accountIdentifier));
+        FRAccount account = accountRepository.save(FRAccount.builder()
+                .userID(UUID.randomUUID().toString())
+                .account(financialAccount)
+                .build());
+        balanceRepository.save(FRBalance.builder()
+                .accountId(account.getId())
+                .balance(FRCashBalance.builder()
+                        .accountId(account.getId())
+                        .creditDebitIndicator(FRCreditDebitIndicator.CREDIT)
+                        .type(INTERIMAVAILABLE)
+                        .amount(FRAmount.builder().amount(amount).currency(CURRENCY).build())
+                        .build())
+                .build());
+        return account.getId();
+    }
+
+    private String aPendingPayment(FRAccountIdentifier debtor, FRAccountIdentifier creditor, String amount) {
+        String id = UUID.randomUUID().toString();
+        domesticPaymentRepository.save(FRDomesticPaymentSubmission.builder()
+                .id(id)
+                .payment(FRWriteDomestic.builder()
+                        .data(FRWriteDataDomestic.builder()
+                                .consentId(UUID.randomUUID().toString())
+                                .initiation(FRWriteDomesticDataInitiation.builder()
+                                        .instructionIdentification(id)
+                                        .endToEndIdentification(id)
+                                        .instructedAmount(FRAmount.builder().amount(amount).currency(CURRENCY).build())
+                                        .debtorAccount(debtor)
+                                        .creditorAccount(creditor)
+                                        .build())
+                                .build())
+                        .build())
+                .status(PENDING)
+                .build());
+        return id;
+    }
+
+    private void claim(String id, DateTime claimed) {
+        mongoTemplate.updateFirst(query(where("_id").is(id)), new Update()
+                .set(PaymentExecutionEngine.CLAIM_FIELD, UUID.randomUUID().toString())
+                .set(PaymentExecutionEngine.CLAIMED_FIELD, claimed)
+                .set("status", ACCEPTEDSETTLEMENTINPROCESS), FRDomesticPaymentSubmission.class);
+    }
+
+    private String balanceAmount(String accountId) {
+        return balanceRepository.findByAccountIdAndBalanceType(accountId, INTERIMAVAILABLE).get()
+                .getCurrencyAndAmount().getAmount();
+    }
+
+    private static FRAccountIdentifier anAccountIdentifier() {
+        return FRAccountIdentifier.builder()
+                .schemeName("UK.OBIE.SortCodeAccountNumber")
+                .identification(UUID.randomUUID().toString())
+                .name("Mr A Smith")
+                .build();
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.scheduledpayment;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCashBalance;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRScheduledPaymentData;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment.ScheduledPaymentStatus;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.scheduledpayments.FRScheduledPaymentRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.UUID;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType.INTERIMAVAILABLE;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment.ScheduledPaymentStatus.COMPLETED;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment.ScheduledPaymentStatus.PENDING;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRScheduledPayment.ScheduledPaymentStatus.REJECTED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Spring Boot Test for {@link ScheduledPaymentScheduler}.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "rs.scheduled-payments.execution.enabled=true",
+        "rs.scheduled-payments.execution.tick=50ms",
+        "rs.scheduled-payments.execution.lookahead=1m"
+})
+public class ScheduledPaymentSchedulerTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final String CURRENCY = "GBP";
+
+    @Autowired
+    private FRScheduledPaymentRepository scheduledPaymentRepository;
+
+    @Autowired
+    private FRBalanceRepository balanceRepository;
+
+    @Autowired
+    private FRTransactionRepository transactionRepository;
+
+    @Autowired
+    private ScheduledPaymentScheduler scheduledPaymentScheduler;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    public void removeData() {
+        scheduledPaymentRepository.deleteAll();
+        balanceRepository.deleteAll();
+        transactionRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldExecuteScheduledPaymentsWhenDue() throws Exception {
+        // Given
+        String accountId = anAccountWithBalance("100.00");
+        String overdue = aScheduledPayment(accountId, "25.00", DateTime.now().minusDays(1));
+        String dueSoon = aScheduledPayment(accountId, "50.00", DateTime.now().plusSeconds(1));
+        String insufficientFunds = aScheduledPayment(accountId, "500.00", DateTime.now().plusSeconds(1));
+        String notYetDue = aScheduledPayment(accountId, "10.00", DateTime.now().plusMinutes(10));
+
+        // When
+        ScheduledPaymentStatus overdueStatus = awaitExecution(overdue);
+        ScheduledPaymentStatus dueSoonStatus = awaitExecution(dueSoon);
+        ScheduledPaymentStatus insufficientFundsStatus = awaitExecution(insufficientFunds);
+
+        // Then
+        assertThat(overdueStatus).isEqualTo(COMPLETED);
+        assertThat(dueSoonStatus).isEqualTo(COMPLETED);
+        assertThat(insufficientFundsStatus).isEqualTo(REJECTED);
+        assertThat(scheduledPaymentRepository.findById(insufficientFunds).get().getRejectionReason()).isNotNull();
+        assertThat(scheduledPaymentRepository.findById(notYetDue).get().getStatus()).isEqualTo(PENDING);
+        FRBalance balance = balanceRepository.findByAccountIdAndBalanceType(accountId, INTERIMAVAILABLE).get();
+        assertThat(balance.getCurrencyAndAmount().getAmount()).isEqualTo("25.00");
+    }
+
+    @Test
+    public void shouldTakeOverStaleClaims() throws Exception {
+        // Given
+        String accountId = anAccountWithBalance("100.00");
+        String staleClaim = aScheduledPayment(accountId, "25.00", DateTime.now().minusDays(1));
+        claim(staleClaim, DateTime.now().minusHours(1));
+        String recentClaim = aScheduledPayment(accountId, "10.00", DateTime.now().minusDays(1));
+        claim(recentClaim, DateTime.now());
+
+        // When
+        scheduledPaymentScheduler.topUp();
+        ScheduledPaymentStatus staleClaimStatus = awaitExecution(staleClaim);
+
+        // Then
+        assertThat(staleClaimStatus).isEqualTo(COMPLETED);
+        assertThat(scheduledPaymentRepository.findById(recentClaim).get().getStatus()).isEqualTo(PENDING);
+        FRBalance balance = balanceRepository.findByAccountIdAndBalanceType(accountId, INTERIMAVAILABLE).get();
+        assertThat(balance.getCurrencyAndAmount().getAmount()).isEqualTo("75.00");
+    }
+
+    private void claim(String id, DateTime claimed) {
+        mongoTemplate.updateFirst(query(where("_id").is(id)), new Update()
+                        .set(ScheduledPaymentScheduler.CLAIM_FIELD, UUID.randomUUID().toString())
+                        .set(ScheduledPaymentScheduler.CLAIMED_FIELD, claimed),
+                FRScheduledPayment.class);
+    }
+
+    private ScheduledPaymentStatus awaitExecution(String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        ScheduledPaymentStatus status = scheduledPaymentRepository.findById(id).get().getStatus();
+        while (status == PENDING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            status = scheduledPaymentRepository.findById(id).get().getStatus();
+        }
+        return status;
+    }
+
+    private String aScheduledPayment(String accountId, String amount, DateTime due) {
+        String id = UUID.randomUUID().toString();
+        scheduledPaymentRepository.save(FRScheduledPayment.builder()
+                .id(id)
+                .accountId(accountId)
+                .scheduledPayment(FRScheduledPaymentData.builder()
+                        .accountId(accountId)
+                        .scheduledPaymentId(id)
+                        .scheduledPaymentDateTime(due)
+                        .reference("Ref " + id)
+                        .instructedAmount(FRAmount.builder().amount(amount).currency(CURRENCY).build())
+                        .build())
+                .status(PENDING)
+                .build());
+        return id;
+    }
+
+    private String anAccountWithBalance(String amount) {
+        String accountId = UUID.randomUUID().toString();
+        balanceRepository.save(FRBalance.builder()
+                .accountId(accountId)
+                .balance(FRCashBalance.builder()
+                        .accountId(accountId)
+                        .creditDebitIndicator(FRCreditDebitIndicator.CREDIT)
+                        .type(INTERIMAVAILABLE)
+                        .amount(FRAmount.builder().amount(amount).currency(CURRENCY).build())
+                        .build())
+                .build());
+        return accountId;
+    }
+}
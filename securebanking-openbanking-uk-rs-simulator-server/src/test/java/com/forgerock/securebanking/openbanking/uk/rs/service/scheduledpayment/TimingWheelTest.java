@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.scheduledpayment;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit test for {@link TimingWheel}.
+ */
+public class TimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final int WHEEL_SIZE = 4;
+    private static final long SPAN = 10_000;
+
+    @Test
+    public void shouldReleaseItemsOnceTheirTickHasPassed() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, SPAN, 1000);
+        wheel.add("a", 1005);
+        wheel.add("b", 1015);
+
+        // When
+        List<String> firstTick = wheel.advance(1009);
+        List<String> secondTick = wheel.advance(1010);
+        List<String> thirdTick = wheel.advance(1020);
+
+        // Then
+        assertThat(firstTick).isEmpty();
+        assertThat(secondTick).containsExactly("a");
+        assertThat(thirdTick).containsExactly("b");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void shouldCascadeItemsDueBeyondTheFirstLevel() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, SPAN, 0);
+        wheel.add("later", 5_555);
+        wheel.add("sooner", 125);
+
+        // When
+        List<String> beforeDue = wheel.advance(5_549);
+        List<String> due = wheel.advance(5_560);
+
+        // Then
+        assertThat(beforeDue).containsExactly("sooner");
+        assertThat(due).containsExactly("later");
+    }
+
+    @Test
+    public void shouldNotHoldItemsThatAreAlreadyDue() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, SPAN, 1000);
+
+        // When
+        boolean held = wheel.add("overdue", 999);
+
+        // Then
+        assertThat(held).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void shouldRejectItemsDueBeyondTheSpan() {
+        // Given
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, SPAN, 0);
+
+        // When / Then
+        assertThatThrownBy(() -> wheel.add("too late", 1_000_000)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
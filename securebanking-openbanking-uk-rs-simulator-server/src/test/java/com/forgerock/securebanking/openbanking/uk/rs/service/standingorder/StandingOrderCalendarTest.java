@@ -0,0 +1,160 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.standingorder;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRStandingOrderData;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder;
+import com.forgerock.securebanking.openbanking.uk.rs.service.standingorder.StandingOrderCalendar.Instalment;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.ACTIVE;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.PENDING;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit test for {@link StandingOrderCalendar}.
+ */
+public class StandingOrderCalendarTest {
+
+    private static final DateTime FIRST_PAYMENT = new DateTime(2020, 1, 1, 10, 0, DateTimeZone.UTC);
+
+    @Test
+    public void shouldPayFirstNextAndFinalAmountsUpToNumberOfPayments() {
+        // Given
+        FRStandingOrderData data = aStandingOrderData("EvryDay")
+                .numberOfPayments("3")
+                .build();
+
+        // When
+        List<Instalment> instalments = allInstalments(new StandingOrderCalendar(aStandingOrder(data), 2));
+
+        // Then
+        assertThat(instalments).extracting(Instalment::getNumber).containsExactly(1, 2, 3);
+        assertThat(instalments).extracting(Instalment::getDateTime)
+                .containsExactly(FIRST_PAYMENT, FIRST_PAYMENT.plusDays(1), FIRST_PAYMENT.plusDays(2));
+        assertThat(instalments).extracting(instalment -> instalment.getAmount().getAmount())
+                .containsExactly("10.00", "20.00", "30.00");
+        assertThat(instalments).extracting(Instalment::isLast).containsExactly(false, false, true);
+    }
+
+    @Test
+    public void shouldMakeFinalPaymentOnFinalPaymentDate() {
+        // Given
+        FRStandingOrderData data = aStandingOrderData("IntrvlDay:07")
+                .finalPaymentDateTime(FIRST_PAYMENT.plusDays(10))
+                .build();
+
+        // When
+        List<Instalment> instalments = allInstalments(new StandingOrderCalendar(aStandingOrder(data), 8));
+
+        // Then
+        assertThat(instalments).extracting(Instalment::getDateTime)
+                .containsExactly(FIRST_PAYMENT, FIRST_PAYMENT.plusDays(7), FIRST_PAYMENT.plusDays(10));
+        assertThat(instalments.get(2).isLast()).isTrue();
+    }
+
+    @Test
+    public void shouldResumeActiveStandingOrderFromNextPaymentDate() {
+        // Given
+        FRStandingOrderData data = aStandingOrderData("EvryDay")
+                .nextPaymentDateTime(FIRST_PAYMENT.plusDays(4))
+                .numberOfPayments("5")
+                .build();
+        FRStandingOrder standingOrder = aStandingOrder(data);
+        standingOrder.setStatus(ACTIVE);
+        standingOrder.setPaymentsMade(4);
+
+        // When
+        StandingOrderCalendar calendar = new StandingOrderCalendar(standingOrder, 8);
+
+        // Then
+        Instalment next = calendar.peek();
+        assertThat(next.getNumber()).isEqualTo(5);
+        assertThat(next.getDateTime()).isEqualTo(FIRST_PAYMENT.plusDays(4));
+        assertThat(next.getAmount().getAmount()).isEqualTo("30.00");
+        calendar.paid();
+        assertThat(calendar.isFinished()).isTrue();
+        assertThat(calendar.getPaymentsMade()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldNotEndWithoutNumberOfPaymentsOrFinalPaymentDate() {
+        // Given
+        FRStandingOrderData data = aStandingOrderData("EvryDay").build();
+        StandingOrderCalendar calendar = new StandingOrderCalendar(aStandingOrder(data), 4);
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            calendar.paid();
+        }
+
+        // Then
+        assertThat(calendar.isFinished()).isFalse();
+        assertThat(calendar.getPaymentsMade()).isEqualTo(1000);
+        assertThat(calendar.nextPaymentDateTime()).isEqualTo(FIRST_PAYMENT.plusDays(1000));
+    }
+
+    @Test
+    public void shouldFailToScheduleInvalidFrequency() {
+        // Given
+        FRStandingOrder standingOrder = aStandingOrder(aStandingOrderData("Whenever").build());
+
+        // When / Then
+        assertThatThrownBy(() -> new StandingOrderCalendar(standingOrder, 8))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<Instalment> allInstalments(StandingOrderCalendar calendar) {
+        List<Instalment> instalments = new ArrayList<>();
+        while (!calendar.isFinished()) {
+            instalments.add(calendar.peek());
+            calendar.paid();
+        }
+        return instalments;
+    }
+
+    private static FRStandingOrder aStandingOrder(FRStandingOrderData data) {
+        return FRStandingOrder.builder()
+                .id("standingOrderId")
+                .accountId(data.getAccountId())
+                .standingOrder(data)
+                .status(PENDING)
+                .build();
+    }
+
+    private static FRStandingOrderData.FRStandingOrderDataBuilder aStandingOrderData(String frequency) {
+        return FRStandingOrderData.builder()
+                .accountId("accountId")
+                .standingOrderId("standingOrderId")
+                .frequency(frequency)
+                .reference("Reference")
+                .firstPaymentDateTime(FIRST_PAYMENT)
+                .firstPaymentAmount(anAmount("10.00"))
+                .nextPaymentAmount(anAmount("20.00"))
+                .finalPaymentAmount(anAmount("30.00"));
+    }
+
+    private static FRAmount anAmount(String amount) {
+        return FRAmount.builder().amount(amount).currency("GBP").build();
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright © 2020 ForgeRock AS (obst@forgerock.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.forgerock.securebanking.openbanking.uk.rs.service.standingorder;
+
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCashBalance;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRCreditDebitIndicator;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRStandingOrderData;
+import com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.payment.FRAmount;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRBalance;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.balances.FRBalanceRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.standingorders.FRStandingOrderRepository;
+import com.forgerock.securebanking.openbanking.uk.rs.persistence.repository.accounts.transactions.FRTransactionRepository;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.UUID;
+
+import static com.forgerock.securebanking.common.openbanking.uk.forgerock.datamodel.account.FRBalanceType.INTERIMAVAILABLE;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.ACTIVE;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.COMPLETED;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.PENDING;
+import static com.forgerock.securebanking.openbanking.uk.rs.persistence.document.account.FRStandingOrder.StandingOrderStatus.REJECTED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Spring Boot Test for {@link StandingOrderRecurrenceEngine}.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "rs.standing-orders.execution.enabled=true",
+        // Passes are only run by the test
+        "rs.standing-orders.execution.interval=1h",
+        "rs.standing-orders.execution.claim-size=2",
+        "rs.standing-orders.execution.batch-size=2"
+})
+public class StandingOrderRecurrenceEngineTest {
+
+    private static final String CURRENCY = "GBP";
+
+    @Autowired
+    private StandingOrderRecurrenceEngine engine;
+
+    @Autowired
+    private FRStandingOrderRepository standingOrderRepository;
+
+    @Autowired
+    private FRBalanceRepository balanceRepository;
+
+    @Autowired
+    private FRTransactionRepository transactionRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    public void removeData() {
+        standingOrderRepository.deleteAll();
+        balanceRepository.deleteAll();
+        transactionRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldCatchUpWithDueInstalments() {
+        // Given
+        DateTime now = DateTime.now();
+        String accountId = anAccountWithBalance("1000.00");
+        String active = aStandingOrder(accountId, now.minusDays(9), null);
+        String completed = aStandingOrder(accountId, now.minusDays(9), "3");
+        String notYetDue = aStandingOrder(accountId, now.plusDays(1), null);
+        String poorAccountId = anAccountWithBalance("15.00");
+        String rejected = aStandingOrder(poorAccountId, now.minusDays(4), null);
+
+        // When
+        int executed = engine.executeDueInstalments(now);
+
+        // Then
+        assertThat(executed).isEqualTo(10 + 3 + 2);
+        FRStandingOrder activeOrder = standingOrderRepository.findById(active).get();
+        assertThat(activeOrder.getStatus()).isEqualTo(ACTIVE);
+        assertThat(activeOrder.getPaymentsMade()).isEqualTo(10);
+        assertThat(activeOrder.getStandingOrder().getNextPaymentDateTime().getMillis())
+                .isEqualTo(now.plusDays(1).getMillis());
+        FRStandingOrder completedOrder = standingOrderRepository.findById(completed).get();
+        assertThat(completedOrder.getStatus()).isEqualTo(COMPLETED);
+        assertThat(completedOrder.getPaymentsMade()).isEqualTo(3);
+        assertThat(standingOrderRepository.findById(notYetDue).get().getStatus()).isEqualTo(PENDING);
+        FRStandingOrder rejectedOrder = standingOrderRepository.findById(rejected).get();
+        assertThat(rejectedOrder.getStatus()).isEqualTo(REJECTED);
+        assertThat(rejectedOrder.getPaymentsMade()).isEqualTo(1);
+        assertThat(rejectedOrder.getRejectionReason()).isNotNull();
+        assertThat(balance(accountId)).isEqualTo("870.00");
+        assertThat(balance(poorAccountId)).isEqualTo("5.00");
+        assertThat(engine.executeDueInstalments(now)).isZero();
+    }
+
+    @Test
+    public void shouldRejectInstalmentGivenNoBalanceInTheCurrencyOfThePayment() {
+        // Given
+        DateTime now = DateTime.now();
+        String accountId = anAccountWithBalance("1000.00", "EUR");
+        String standingOrder = aStandingOrder(accountId, now.minusHours(1), null);
+
+        // When
+        int executed = engine.executeDueInstalments(now);
+
+        // Then
+        assertThat(executed).isEqualTo(1);
+        FRStandingOrder rejectedOrder = standingOrderRepository.findById(standingOrder).get();
+        assertThat(rejectedOrder.getStatus()).isEqualTo(REJECTED);
+        assertThat(rejectedOrder.getPaymentsMade()).isZero();
+        assertThat(rejectedOrder.getRejectionReason()).contains("currency");
+        assertThat(balance(accountId)).isEqualTo("1000.00");
+    }
+
+    @Test
+    public void shouldTakeOverStaleClaims() {
+        // Given
+        DateTime now = DateTime.now();
+        String accountId = anAccountWithBalance("100.00");
+        String staleClaim = aStandingOrder(accountId, now.minusHours(1), "1");
+        claim(staleClaim, now.minusHours(1));
+        String recentClaim = aStandingOrder(accountId, now.minusHours(1), "1");
+        claim(recentClaim, now);
+
+        // When
+        int executed = engine.executeDueInstalments(now);
+
+        // Then
+        assertThat(executed).isEqualTo(1);
+        assertThat(standingOrderRepository.findById(staleClaim).get().getStatus()).isEqualTo(COMPLETED);
+        assertThat(standingOrderRepository.findById(recentClaim).get().getStatus()).isEqualTo(PENDING);
+        assertThat(balance(accountId)).isEqualTo("90.00");
+    }
+
+    private void claim(String id, DateTime claimed) {
+        mongoTemplate.updateFirst(query(where("_id").is(id)), new Update()
+                        .set(StandingOrderRecurrenceEngine.CLAIM_FIELD, UUID.randomUUID().toString())
+                        .set(StandingOrderRecurrenceEngine.CLAIMED_FIELD, claimed),
+                FRStandingOrder.class);
+    }
+
+    private String balance(String accountId) {
+        return balanceRepository.findByAccountIdAndBalanceType(accountId, INTERIMAVAILABLE).get()
+                .getCurrencyAndAmount().getAmount();
+    }
+
+    private String aStandingOrder(String accountId, DateTime firstPaymentDateTime, String numberOfPayments) {
+        String id = UUID.randomUUID().toString();
+        standingOrderRepository.save(FRStandingOrder.builder()
+                .id(id)
+                .accountId(accountId)
+                .standingOrder(FRStandingOrderData.builder()
+                        .accountId(accountId)
+                        .standingOrderId(id)
+                        .frequency("EvryDay")
+                        .reference("Ref " + id)
+                        .firstPaymentDateTime(firstPaymentDateTime)
+                        .firstPaymentAmount(anAmount("10.00"))
+                        .nextPaymentDateTime(firstPaymentDateTime.plusDays(1))
+                        .nextPaymentAmount(anAmount("10.00"))
+                        .numberOfPayments(numberOfPayments)
+                        .standingOrderStatusCode(FRStandingOrderData.FRStandingOrderStatus.ACTIVE)
+                        .build())
+                .status(PENDING)
+                .build());
+        return id;
+    }
+
+    private String anAccountWithBalance(String amount) {
+        return anAccountWithBalance(amount, CURRENCY);
+    }
+
+    private String anAccountWithBalance(String amount, String currency) {
+        String accountId = UUID.randomUUID().toString();
+        balanceRepository.save(FRBalance.builder()
+                .accountId(accountId)
+                .balance(FRCashBalance.builder()
+                        .accountId(accountId)
+                        .creditDebitIndicator(FRCreditDebitIndicator.CREDIT)
+                        .type(INTERIMAVAILABLE)
+                        .amount(FRAmount.builder().amount(amount).currency(currency).build())
+                        .build())
+                .build());
+        return accountId;
+    }
+
+    private static FRAmount anAmount(String amount) {
+        return FRAmount.builder().amount(amount).currency(CURRENCY).build();
+    }
+}